@@ -144,6 +144,68 @@ public class ArchiveFileTest extends TestCase
 		archive.close( );
 	}
 
+	@Test
+    public void testConcurrentWrite( ) throws Exception
+	{
+		final ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		archive.setCacheSize( 64 * 1024 );
+		final int threadCount = 8;
+		final int entrySize = 100000;
+		final IOException[] errors = new IOException[threadCount];
+		Thread[] threads = new Thread[threadCount];
+		for ( int i = 0; i < threadCount; i++ )
+		{
+			final int index = i;
+			threads[i] = new Thread( ) {
+
+				public void run( )
+				{
+					try
+					{
+						ArchiveEntry entry = archive.createEntry( "/stream/"
+								+ index );
+						byte[] b = new byte[1000];
+						for ( int pos = 0; pos < entrySize; pos += b.length )
+						{
+							for ( int j = 0; j < b.length; j++ )
+							{
+								b[j] = (byte) ( index + pos + j );
+							}
+							entry.write( pos, b, 0, b.length );
+						}
+						entry.close( );
+					}
+					catch ( IOException ex )
+					{
+						errors[index] = ex;
+					}
+				}
+			};
+			threads[i].start( );
+		}
+		for ( int i = 0; i < threadCount; i++ )
+		{
+			threads[i].join( );
+			assertNull( errors[i] );
+		}
+		archive.close( );
+
+		ArchiveFile reader = new ArchiveFile( ARCHIVE_FILE, "r" );
+		byte[] b = new byte[entrySize];
+		for ( int i = 0; i < threadCount; i++ )
+		{
+			ArchiveEntry entry = reader.openEntry( "/stream/" + i );
+			assertEquals( entrySize, entry.getLength( ) );
+			assertEquals( entrySize, entry.read( 0, b, 0, entrySize ) );
+			for ( int j = 0; j < entrySize; j++ )
+			{
+				assertEquals( (byte) ( i + j ), b[j] );
+			}
+			entry.close( );
+		}
+		reader.close( );
+	}
+
 	void createArchive( ArchiveFile archive ) throws IOException
 	{
 		int entryCount = 1024;
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.script;
+
+import junit.framework.TestCase;
+
+public class CompiledScriptCacheTest extends TestCase
+{
+
+	public void testHitAndMiss( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10,
+				CompiledScriptCache.EVICTION_POLICY_LRU );
+		Object compiled = new Object( );
+		assertNull( cache.get( null, "javascript", -1, "<inline>", 1,
+				"row[\"a\"]" ) );
+		cache.put( null, "javascript", -1, "<inline>", 1, "row[\"a\"]",
+				compiled );
+		assertSame( compiled,
+				cache.get( null, "javascript", -1, "<inline>", 1,
+						"row[\"a\"]" ) );
+		// different optimization level, language or source is another script
+		assertNull( cache.get( null, "javascript", 9, "<inline>", 1,
+				"row[\"a\"]" ) );
+		assertNull( cache.get( null, "groovy", -1, "<inline>", 1,
+				"row[\"a\"]" ) );
+		assertNull( cache.get( null, "javascript", -1, "report.rptdesign", 1,
+				"row[\"a\"]" ) );
+		assertEquals( 1, cache.getHitCount( ) );
+		assertEquals( 4, cache.getMissCount( ) );
+	}
+
+	public void testLRUEviction( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 2,
+				CompiledScriptCache.EVICTION_POLICY_LRU );
+		cache.put( null, "javascript", -1, null, 1, "a", "A" );
+		cache.put( null, "javascript", -1, null, 1, "b", "B" );
+		assertEquals( "A", cache.get( null, "javascript", -1, null, 1, "a" ) );
+		cache.put( null, "javascript", -1, null, 1, "c", "C" );
+		assertEquals( 2, cache.size( ) );
+		assertEquals( "A", cache.get( null, "javascript", -1, null, 1, "a" ) );
+		assertNull( cache.get( null, "javascript", -1, null, 1, "b" ) );
+		assertEquals( 1, cache.getEvictionCount( ) );
+	}
+
+	public void testFIFOEviction( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 2,
+				CompiledScriptCache.EVICTION_POLICY_FIFO );
+		cache.put( null, "javascript", -1, null, 1, "a", "A" );
+		cache.put( null, "javascript", -1, null, 1, "b", "B" );
+		assertEquals( "A", cache.get( null, "javascript", -1, null, 1, "a" ) );
+		cache.put( null, "javascript", -1, null, 1, "c", "C" );
+		assertNull( cache.get( null, "javascript", -1, null, 1, "a" ) );
+		assertEquals( "B", cache.get( null, "javascript", -1, null, 1, "b" ) );
+	}
+
+	public void testConfigure( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10,
+				CompiledScriptCache.EVICTION_POLICY_LRU );
+		cache.put( null, "javascript", -1, null, 1, "a", "A" );
+		cache.configure( 5, "fifo" );
+		assertEquals( CompiledScriptCache.EVICTION_POLICY_FIFO,
+				cache.getEvictionPolicy( ) );
+		assertEquals( "A", cache.get( null, "javascript", -1, null, 1, "a" ) );
+
+		cache.configure( 0, null );
+		assertFalse( cache.isEnabled( ) );
+		assertEquals( 0, cache.size( ) );
+		cache.put( null, "javascript", -1, null, 1, "a", "A" );
+		assertNull( cache.get( null, "javascript", -1, null, 1, "a" ) );
+	}
+
+	public void testClassLoader( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10,
+				CompiledScriptCache.EVICTION_POLICY_LRU );
+		ClassLoader loader1 = new ClassLoader( ) {
+		};
+		ClassLoader loader2 = new ClassLoader( ) {
+		};
+		cache.put( loader1, "javascript", -1, null, 1, "a", "A1" );
+		cache.put( loader2, "javascript", -1, null, 1, "a", "A2" );
+		cache.put( loader1, "javascript", -1, null, 1, "b", "B1" );
+		// a script compiled for another loader is never returned
+		assertEquals( "A1",
+				cache.get( loader1, "javascript", -1, null, 1, "a" ) );
+		assertEquals( "A2",
+				cache.get( loader2, "javascript", -1, null, 1, "a" ) );
+		assertNull( cache.get( null, "javascript", -1, null, 1, "a" ) );
+
+		cache.remove( loader1 );
+		assertEquals( 1, cache.size( ) );
+		assertNull( cache.get( loader1, "javascript", -1, null, 1, "a" ) );
+		assertNull( cache.get( loader1, "javascript", -1, null, 1, "b" ) );
+		assertEquals( "A2",
+				cache.get( loader2, "javascript", -1, null, 1, "a" ) );
+		assertEquals( 0, cache.getEvictionCount( ) );
+	}
+}
@@ -83,7 +83,7 @@ public class DataBlock extends Ext2Block
 		dirtyStart = dirtyEnd = -1;
 	}
 
-	public void flush( ) throws IOException
+	public synchronized void flush( ) throws IOException
 	{
 		if ( blockId == -1 )
 		{
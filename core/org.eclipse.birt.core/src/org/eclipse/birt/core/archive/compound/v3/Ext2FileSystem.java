@@ -15,14 +15,18 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.birt.core.archive.cache.CacheListener;
 import org.eclipse.birt.core.archive.cache.Cacheable;
@@ -37,14 +41,25 @@ import org.eclipse.birt.core.i18n.ResourceConstants;
  * 
  * 
  * 
+ * The blocks are read and written with the positional IO of the file channel,
+ * and loaded under striped locks, so the streams opened in the file system can
+ * be written concurrently. Only the block allocation and the entry operations
+ * are synchronized on the file system.
  */
 public class Ext2FileSystem
 {
 
 	private volatile RandomAccessFile rf;
-	private long length;
+	private volatile FileChannel channel;
+	private final AtomicLong length = new AtomicLong( );
 	private int maxBlockId;
 
+	/**
+	 * the number of the locks used to load the blocks
+	 */
+	private static final int BLOCK_LOCK_COUNT = 64;
+	private final Object[] blockLocks = new Object[BLOCK_LOCK_COUNT];
+
 	private String fileName;
 	private boolean readOnly;
 	private boolean removeOnExit;
@@ -94,6 +109,10 @@ public class Ext2FileSystem
 	{
 		fileName = new File( filePath ).getCanonicalPath( );
 		this.rf = rf;
+		for ( int i = 0; i < BLOCK_LOCK_COUNT; i++ )
+		{
+			blockLocks[i] = new Object( );
+		}
 
 		cacheManager.setCacheListener( new Ext2FileSystemCacheListener( ) );
 
@@ -151,8 +170,9 @@ public class Ext2FileSystem
 				rf = new RandomAccessFile( fileName, "rw" );
 			}
 		}
-		length = rf.length( );
-		maxBlockId = (int) ( ( length + BLOCK_SIZE - 1 ) / BLOCK_SIZE ) + 1;
+		channel = rf.getChannel( );
+		length.set( rf.length( ) );
+		maxBlockId = (int) ( ( length.get( ) + BLOCK_SIZE - 1 ) / BLOCK_SIZE ) + 1;
 
 		readHeader( );
 		nodeTable.read( );
@@ -181,13 +201,14 @@ public class Ext2FileSystem
 				rf = new RandomAccessFile( fileName, "rw" );
 			}
 			rf.setLength( 0 );
+			channel = rf.getChannel( );
 			writeProperties( );
 			entryTable.write( );
 			freeTable.write( );
 			nodeTable.write( );
 			writeHeader( );
 		}
-		length = 0;
+		length.set( 0 );
 		maxBlockId = 2;
 	}
 
@@ -224,6 +245,7 @@ public class Ext2FileSystem
 			{
 				rf.close( );
 				rf = null;
+				channel = null;
 			}
 			if ( removeOnExit )
 			{
@@ -534,7 +556,7 @@ public class Ext2FileSystem
 		freeTable.addFreeBlocks( node );
 	}
 
-	synchronized protected FatBlock createFatBlock( ) throws IOException
+	protected FatBlock createFatBlock( ) throws IOException
 	{
 		int blockId = allocFreeBlock( );
 		FatBlock block = new FatBlock( this, blockId );
@@ -542,7 +564,7 @@ public class Ext2FileSystem
 		return block;
 	}
 
-	synchronized protected DataBlock createDataBlock( ) throws IOException
+	protected DataBlock createDataBlock( ) throws IOException
 	{
 		int blockId = allocFreeBlock( );
 		DataBlock block = new DataBlock( this, blockId );
@@ -550,35 +572,50 @@ public class Ext2FileSystem
 		return block;
 	}
 
-	synchronized protected void unloadBlock( Block block ) throws IOException
+	protected void unloadBlock( Block block ) throws IOException
 	{
 		cacheManager.releaseCache( block );
 	}
 
-	synchronized protected FatBlock loadFatBlock( int blockId )
-			throws IOException
+	/**
+	 * return the lock used to load the block. The cache manager flushes a
+	 * block before removing it, so a block read from the disk under the lock
+	 * is never older than the cached one.
+	 */
+	private Object getBlockLock( int blockId )
+	{
+		return blockLocks[blockId & ( BLOCK_LOCK_COUNT - 1 )];
+	}
+
+	protected FatBlock loadFatBlock( int blockId ) throws IOException
 	{
-		FatBlock block = (FatBlock) cacheManager.getCache( blockId );
-		if ( block == null )
+		synchronized ( getBlockLock( blockId ) )
 		{
-			block = new FatBlock( this, blockId );
-			block.refresh( );
-			cacheManager.addCache( block );
+			FatBlock block = (FatBlock) cacheManager.getCache( blockId );
+			if ( block == null )
+			{
+				block = new FatBlock( this, blockId );
+				block.refresh( );
+				cacheManager.addCache( block );
+			}
+			return block;
 		}
-		return block;
 	}
 
-	synchronized DataBlock loadDataBlock( int blockId ) throws IOException
+	DataBlock loadDataBlock( int blockId ) throws IOException
 	{
-		Object cacheKey = Integer.valueOf( blockId );
-		DataBlock block = (DataBlock) cacheManager.getCache( cacheKey );
-		if ( block == null )
+		synchronized ( getBlockLock( blockId ) )
 		{
-			block = new DataBlock( this, blockId );
-			block.refresh( );
-			cacheManager.addCache( block );
+			Object cacheKey = Integer.valueOf( blockId );
+			DataBlock block = (DataBlock) cacheManager.getCache( cacheKey );
+			if ( block == null )
+			{
+				block = new DataBlock( this, blockId );
+				block.refresh( );
+				cacheManager.addCache( block );
+			}
+			return block;
 		}
-		return block;
 	}
 
 	void readBlock( int blockId, byte[] buffer, int offset, int size )
@@ -587,8 +624,8 @@ public class Ext2FileSystem
 		readBlock( blockId, offset, buffer, offset, size );
 	}
 
-	synchronized void readBlock( int blockId, int blockOff, byte[] buffer,
-			int offset, int size ) throws IOException
+	void readBlock( int blockId, int blockOff, byte[] buffer, int offset,
+			int size ) throws IOException
 	{
 		assert buffer != null;
 		assert blockId >= 0;
@@ -598,15 +635,22 @@ public class Ext2FileSystem
 		assert blockOff + size <= BLOCK_SIZE;
 
 		long position = ( ( (long) blockId ) << BLOCK_SIZE_BITS ) + blockOff;
-		if ( position < length )
+		long remainSize = length.get( ) - position;
+		if ( remainSize > 0 )
 		{
-			long remainSize = length - position;
-			rf.seek( position );
 			if ( remainSize < size )
 			{
 				size = (int) remainSize;
 			}
-			rf.readFully( buffer, offset, size );
+			ByteBuffer bytes = ByteBuffer.wrap( buffer, offset, size );
+			while ( bytes.hasRemaining( ) )
+			{
+				if ( channel.read( bytes, position + bytes.position( )
+						- offset ) == -1 )
+				{
+					throw new EOFException( );
+				}
+			}
 		}
 
 	}
@@ -617,8 +661,8 @@ public class Ext2FileSystem
 		writeBlock( blockId, offset, buffer, offset, size );
 	}
 
-	synchronized void writeBlock( int blockId, int blockOff, byte[] buffer,
-			int offset, int size ) throws IOException
+	void writeBlock( int blockId, int blockOff, byte[] buffer, int offset,
+			int size ) throws IOException
 	{
 		assert buffer != null;
 		assert blockId >= 0;
@@ -629,12 +673,17 @@ public class Ext2FileSystem
 
 		ensureFileOpened( );
 		long position = ( ( (long) blockId ) << BLOCK_SIZE_BITS ) + blockOff;
-		rf.seek( position );
-		rf.write( buffer, offset, size );
+		ByteBuffer bytes = ByteBuffer.wrap( buffer, offset, size );
+		while ( bytes.hasRemaining( ) )
+		{
+			channel.write( bytes, position + bytes.position( ) - offset );
+		}
 		position += size;
-		if ( position > length )
+		long oldLength = length.get( );
+		while ( position > oldLength
+				&& !length.compareAndSet( oldLength, position ) )
 		{
-			length = position;
+			oldLength = length.get( );
 		}
 	}
 
@@ -670,13 +719,18 @@ public class Ext2FileSystem
 	{
 		if ( rf == null )
 		{
-			synchronized ( this )
+			// the blocks may be flushed by the cache manager while the file
+			// system is locked, so the file system can't be used as the lock
+			synchronized ( blockLocks )
 			{
 				if ( rf == null )
 				{
 					ensureParentFolderCreated( fileName );
-					rf = new RandomAccessFile( fileName, "rw" );
-					rf.setLength( 0 );
+					RandomAccessFile file = new RandomAccessFile( fileName,
+							"rw" );
+					file.setLength( 0 );
+					channel = file.getChannel( );
+					rf = file;
 				}
 			}
 		}
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.script;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A process wide, size bounded cache of compiled scripts. The compiled script
+ * objects are shared by all the script engines (and so all the tasks) of the
+ * JVM, so the script engine must only put objects which are immutable and
+ * thread safe once compiled, such as the Rhino <code>Script</code>.
+ * <p>
+ * The cache entry is keyed by the class loader, the script language, the
+ * optimization level, the source name, the line number and the script text.
+ * The source name and line number are part of the key as they are compiled
+ * into the script and used to report the errors and to decide the security
+ * domain. The class loader is part of the key as a compiled script class is
+ * defined under the application class loader of the engine which compiled it,
+ * so it must not be returned to an engine using another loader. The owner of
+ * a class loader should call <code>remove(ClassLoader)</code> once the loader
+ * is discarded, otherwise the cached scripts keep the loader alive until they
+ * are evicted.
+ * <p>
+ * Two eviction policies are supported: <code>LRU</code> removes the least
+ * recently used script and <code>FIFO</code> removes the oldest compiled
+ * script. The cache is disabled if the max size is not positive.
+ * <p>
+ * As the cache is shared by the whole JVM, it is configured once from the
+ * system properties <code>birt.script.cache.size</code> and
+ * <code>birt.script.cache.evictionPolicy</code>.
+ */
+public class CompiledScriptCache
+{
+
+	/**
+	 * evict the least recently used script.
+	 */
+	public static final String EVICTION_POLICY_LRU = "LRU"; //$NON-NLS-1$
+
+	/**
+	 * evict the script which was put into the cache first.
+	 */
+	public static final String EVICTION_POLICY_FIFO = "FIFO"; //$NON-NLS-1$
+
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/**
+	 * the system property of the max scripts in the cache, 0 or negative value
+	 * disables the cache.
+	 */
+	public static final String PROPERTY_MAX_SIZE = "birt.script.cache.size"; //$NON-NLS-1$
+
+	/**
+	 * the system property of the eviction policy, either LRU or FIFO.
+	 */
+	public static final String PROPERTY_EVICTION_POLICY = "birt.script.cache.evictionPolicy"; //$NON-NLS-1$
+
+	private static CompiledScriptCache instance = new CompiledScriptCache(
+			getMaxSizeProperty( ),
+			System.getProperty( PROPERTY_EVICTION_POLICY ) );
+
+	private int maxSize;
+
+	private String evictionPolicy;
+
+	private Map<ScriptKey, Object> scripts;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+	public static CompiledScriptCache getInstance( )
+	{
+		return instance;
+	}
+
+	private static int getMaxSizeProperty( )
+	{
+		String size = System.getProperty( PROPERTY_MAX_SIZE );
+		if ( size != null )
+		{
+			try
+			{
+				return Integer.parseInt( size.trim( ) );
+			}
+			catch ( NumberFormatException ex )
+			{
+			}
+		}
+		return DEFAULT_MAX_SIZE;
+	}
+
+	CompiledScriptCache( int maxSize, String evictionPolicy )
+	{
+		configure( maxSize, evictionPolicy );
+	}
+
+	/**
+	 * change the size and the eviction policy of the cache. The cached scripts
+	 * are kept if possible.
+	 *
+	 * @param maxSize
+	 *            max scripts in the cache, 0 or negative value disables the
+	 *            cache.
+	 * @param evictionPolicy
+	 *            either LRU or FIFO, null means LRU.
+	 */
+	synchronized public void configure( int maxSize, String evictionPolicy )
+	{
+		String policy = EVICTION_POLICY_FIFO.equalsIgnoreCase( evictionPolicy )
+				? EVICTION_POLICY_FIFO
+				: EVICTION_POLICY_LRU;
+		if ( scripts != null && this.maxSize == maxSize
+				&& policy.equals( this.evictionPolicy ) )
+		{
+			return;
+		}
+		Map<ScriptKey, Object> oldScripts = scripts;
+		this.maxSize = maxSize;
+		this.evictionPolicy = policy;
+		this.scripts = createMap( );
+		if ( oldScripts != null && maxSize > 0 )
+		{
+			scripts.putAll( oldScripts );
+		}
+	}
+
+	private Map<ScriptKey, Object> createMap( )
+	{
+		boolean accessOrder = EVICTION_POLICY_LRU.equals( evictionPolicy );
+		return new LinkedHashMap<ScriptKey, Object>( 16, 0.75f, accessOrder ) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<ScriptKey, Object> eldest )
+			{
+				if ( size( ) > maxSize )
+				{
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public boolean isEnabled( )
+	{
+		return maxSize > 0;
+	}
+
+	/**
+	 * get the compiled script from the cache.
+	 *
+	 * @return the compiled script, null if it is not in the cache.
+	 */
+	synchronized public Object get( ClassLoader loader, String language,
+			int optimizationLevel, String sourceName, int lineNumber,
+			String script )
+	{
+		if ( maxSize <= 0 || script == null )
+		{
+			return null;
+		}
+		Object compiled = scripts.get( new ScriptKey( loader, language,
+				optimizationLevel, sourceName, lineNumber, script ) );
+		if ( compiled != null )
+		{
+			hitCount++;
+		}
+		else
+		{
+			missCount++;
+		}
+		return compiled;
+	}
+
+	/**
+	 * add a compiled script into the cache.
+	 */
+	synchronized public void put( ClassLoader loader, String language,
+			int optimizationLevel, String sourceName, int lineNumber,
+			String script, Object compiled )
+	{
+		if ( maxSize <= 0 || script == null || compiled == null )
+		{
+			return;
+		}
+		scripts.put( new ScriptKey( loader, language, optimizationLevel,
+				sourceName, lineNumber, script ), compiled );
+	}
+
+	/**
+	 * remove all the scripts compiled for the class loader, it should be
+	 * called once the class loader is discarded.
+	 */
+	synchronized public void remove( ClassLoader loader )
+	{
+		Iterator<ScriptKey> keys = scripts.keySet( ).iterator( );
+		while ( keys.hasNext( ) )
+		{
+			if ( keys.next( ).loader == loader )
+			{
+				keys.remove( );
+			}
+		}
+	}
+
+	/**
+	 * remove all the scripts and reset the statistics.
+	 */
+	synchronized public void clear( )
+	{
+		scripts.clear( );
+		hitCount = 0;
+		missCount = 0;
+		evictionCount = 0;
+	}
+
+	synchronized public int size( )
+	{
+		return scripts.size( );
+	}
+
+	synchronized public int getMaxSize( )
+	{
+		return maxSize;
+	}
+
+	synchronized public String getEvictionPolicy( )
+	{
+		return evictionPolicy;
+	}
+
+	synchronized public long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	synchronized public long getMissCount( )
+	{
+		return missCount;
+	}
+
+	synchronized public long getEvictionCount( )
+	{
+		return evictionCount;
+	}
+
+	public String toString( )
+	{
+		return "CompiledScriptCache[size=" + size( ) + ", maxSize="
+				+ getMaxSize( ) + ", policy=" + getEvictionPolicy( )
+				+ ", hits=" + getHitCount( ) + ", misses=" + getMissCount( )
+				+ ", evictions=" + getEvictionCount( ) + "]";
+	}
+
+	private static class ScriptKey
+	{
+
+		private ClassLoader loader;
+		private String language;
+		private int optimizationLevel;
+		private String sourceName;
+		private int lineNumber;
+		private String script;
+		private int hashCode;
+
+		ScriptKey( ClassLoader loader, String language, int optimizationLevel,
+				String sourceName, int lineNumber, String script )
+		{
+			this.loader = loader;
+			this.language = language;
+			this.optimizationLevel = optimizationLevel;
+			this.sourceName = sourceName;
+			this.lineNumber = lineNumber;
+			this.script = script;
+			int hash = script.hashCode( );
+			hash = hash * 31 + System.identityHashCode( loader );
+			hash = hash * 31
+					+ ( language == null ? 0 : language.hashCode( ) );
+			hash = hash * 31
+					+ ( sourceName == null ? 0 : sourceName.hashCode( ) );
+			hash = hash * 31 + optimizationLevel;
+			this.hashCode = hash * 31 + lineNumber;
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( obj == this )
+			{
+				return true;
+			}
+			if ( !( obj instanceof ScriptKey ) )
+			{
+				return false;
+			}
+			ScriptKey key = (ScriptKey) obj;
+			return hashCode == key.hashCode && loader == key.loader
+					&& optimizationLevel == key.optimizationLevel
+					&& lineNumber == key.lineNumber
+					&& script.equals( key.script )
+					&& equals( language, key.language )
+					&& equals( sourceName, key.sourceName );
+		}
+
+		private static boolean equals( String a, String b )
+		{
+			return a == null ? b == null : a.equals( b );
+		}
+	}
+}
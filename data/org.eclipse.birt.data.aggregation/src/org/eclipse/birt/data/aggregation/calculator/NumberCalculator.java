@@ -138,6 +138,41 @@ public class NumberCalculator implements ICalculator
 		}
 	}
 
+	/**
+	 * The add() of two double values, for the accumulators which work on
+	 * primitive values.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static double addDouble( double a, double b )
+	{
+		if ( isNaNorInfinity( a ) || isNaNorInfinity( b ) )
+			return Double.NaN;
+		return a + b;
+	}
+
+	/**
+	 * The multiply() of two double values, for the accumulators which work
+	 * on primitive values.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static double multiplyDouble( double a, double b )
+	{
+		if ( isNaNorInfinity( a ) || isNaNorInfinity( b ) )
+			return Double.NaN;
+		return a * b;
+	}
+
+	private static boolean isNaNorInfinity( double a )
+	{
+		return Double.isInfinite( a ) || Double.isNaN( a );
+	}
+
 	protected boolean isNaNorInfinity( Object a, Object b )
 	{
 		return isNaNorInfinity( a ) || isNaNorInfinity( b );
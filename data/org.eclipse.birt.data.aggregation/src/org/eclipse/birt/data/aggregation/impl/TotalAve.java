@@ -14,12 +14,16 @@
 
 package org.eclipse.birt.data.aggregation.impl;
 
+import java.util.BitSet;
+
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -71,6 +75,7 @@ public class TotalAve extends AggrFunction
 	}
 
 	private static class MyAccumulator extends SummaryAccumulator
+			implements IBatchAccumulator
 	{
 
 		private Number sum = null;
@@ -104,6 +109,30 @@ public class TotalAve extends AggrFunction
 			}
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator#onBatch(double[], java.util.BitSet, int)
+		 */
+		public void onBatch( double[] values, BitSet nulls, int count )
+		{
+			boolean hasSum = sum != null;
+			double total = hasSum ? sum.doubleValue( ) : 0D;
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( nulls.get( i ) )
+					continue;
+				total = hasSum ? NumberCalculator.addDouble( total, values[i] )
+						: values[i];
+				hasSum = true;
+				this.count++;
+			}
+			if ( hasSum )
+			{
+				sum = Double.valueOf( total );
+			}
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -14,10 +14,13 @@
 
 package org.eclipse.birt.data.aggregation.impl;
 
+import java.util.BitSet;
+
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 
 /**
@@ -70,6 +73,7 @@ public class TotalCount extends AggrFunction
 	}
 
 	private static class MyAccumulator extends SummaryAccumulator
+			implements IBatchAccumulator
 	{
 
 		private int count = 0;
@@ -97,6 +101,24 @@ public class TotalCount extends AggrFunction
 			}
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator#onBatch(double[], java.util.BitSet, int)
+		 */
+		public void onBatch( double[] values, BitSet nulls, int count )
+		{
+			// the rows of a batch always have the argument
+			if ( countByColumn )
+			{
+				this.count += count - nulls.cardinality( );
+			}
+			else
+			{
+				this.count += count;
+			}
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -14,12 +14,16 @@
 
 package org.eclipse.birt.data.aggregation.impl;
 
+import java.util.BitSet;
+
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -88,6 +92,7 @@ public class TotalStdDev extends AggrFunction
 	}
 
 	private static class MyAccumulator extends SummaryAccumulator
+			implements IBatchAccumulator
 	{
 
 		private Number sum = 0.0D;
@@ -125,6 +130,28 @@ public class TotalStdDev extends AggrFunction
 			}
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator#onBatch(double[], java.util.BitSet, int)
+		 */
+		public void onBatch( double[] values, BitSet nulls, int count )
+		{
+			double total = sum.doubleValue( );
+			double squareTotal = squareSum.doubleValue( );
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( nulls.get( i ) )
+					continue;
+				total = NumberCalculator.addDouble( total, values[i] );
+				squareTotal = NumberCalculator.addDouble( squareTotal,
+						NumberCalculator.multiplyDouble( values[i], values[i] ) );
+				this.count++;
+			}
+			sum = Double.valueOf( total );
+			squareSum = Double.valueOf( squareTotal );
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -14,12 +14,16 @@
 
 package org.eclipse.birt.data.aggregation.impl;
 
+import java.util.BitSet;
+
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -88,6 +92,7 @@ public class TotalSum extends AggrFunction
 	}
 
 	private static class MyAccumulator extends SummaryAccumulator
+			implements IBatchAccumulator
 	{
 		private Number sum = null;
 
@@ -118,6 +123,29 @@ public class TotalSum extends AggrFunction
 			}
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator#onBatch(double[], java.util.BitSet, int)
+		 */
+		public void onBatch( double[] values, BitSet nulls, int count )
+		{
+			boolean hasSum = sum != null;
+			double total = hasSum ? sum.doubleValue( ) : 0D;
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( nulls.get( i ) ) // ignore nulls in calculations
+					continue;
+				total = hasSum ? NumberCalculator.addDouble( total, values[i] )
+						: values[i];
+				hasSum = true;
+			}
+			if ( hasSum )
+			{
+				sum = Double.valueOf( total );
+			}
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -13,11 +13,11 @@ package org.eclipse.birt.data.aggregation.impl.rank;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
 
 import org.eclipse.birt.data.aggregation.impl.RunningAccumulator;
 import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.ICloseListener;
-import org.eclipse.birt.data.engine.cache.BasicCachedArray;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
@@ -34,7 +34,8 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 	 
 	private double N;
 	private int passNo = 0;
-	private BasicCachedArray targetValue;
+	// the indexes of the top/bottom values
+	private BitSet targetValue;
 	private int currentIndex = -1;
 	private Object value = null;
 	private static Boolean trueValue = Boolean.TRUE;
@@ -57,7 +58,7 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 					+ "AggregationPlugin_temp" + this.hashCode( )
 					+ File.separator;
 		}
-		targetValue = new BasicCachedArray( tempDir, 0 );
+		targetValue = new BitSet( );
 		DataEngineThreadLocal.getInstance( ).getCloseListener( ).add( this );
 	}
 
@@ -84,21 +85,9 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#getSummaryValue()
 	 */
-	private BasicCachedArray getTargetValueIndex( ) throws DataException
+	private BitSet getTargetValueIndex( ) throws DataException
 	{
-		int n = adjustNValue( N );
-		BasicCachedArray result = new BasicCachedArray( tempDir, (int) ( n < cachedValues.size( )
-				? n : cachedValues.size( ) ) );
-	
-		
-		for ( int i = 0; i < n && i < cachedValues.size( ); i++ )
-		{
-			int ind = getNextIndex( );
-			if ( ind == -1 )
-				return result;
-
-			result.set( i, Integer.valueOf( ind ) );
-		}
+		BitSet result = getTargetIndexes( adjustNValue( N ) );
 		this.cachedValues = null;
 		return result;
 	}
@@ -145,21 +134,17 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator implem
 	 */
 	private Boolean populateValue( )
 	{
-		for( int i = 0; i < this.targetValue.length( ); i++ )
-		{
-			if ( this.currentIndex == ( (Integer) this.targetValue.get( i ) ).intValue( ) )
-				return trueValue;
-		}
-		
-		return falseValue;
+		return this.targetValue.get( this.currentIndex ) ? trueValue
+				: falseValue;
 	}
 	
 	/**
-	 * Get index of next topmost or bottommost value in cachedValues.
+	 * Get the indexes of the n topmost or bottommost values in cachedValues.
+	 * @param n
 	 * @return
 	 * @throws DataException
 	 */
-	protected abstract int getNextIndex( ) throws DataException;
+	protected abstract BitSet getTargetIndexes( int n ) throws DataException;
 	
 	/**
 	 * Populate the N value get from argument.
@@ -12,6 +12,7 @@
 package org.eclipse.birt.data.aggregation.impl.rank;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
@@ -19,6 +20,8 @@ import java.util.List;
 import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
 import org.eclipse.birt.data.aggregation.impl.AggrException;
 import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.cache.BoundedHeap;
+import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 
@@ -28,66 +31,96 @@ import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 final class RankAggregationUtil
 {
 
-	// The dummy object.
-	private static DummyObject dummy = new DummyObject( );
 	private static NullObject nullObject = new NullObject( );
 
 	/**
-	 * Return the next top index
+	 * Return the indexes of the n top values.
 	 * 
 	 * @param cachedValues
+	 * @param n
 	 * @return
 	 * @throws DataException
 	 */
-	static int getNextTopIndex( List cachedValues ) throws DataException
+	static BitSet getTopIndexes( List cachedValues, int n )
+			throws DataException
 	{
-		return getIndex( cachedValues, true );
+		return getIndexes( cachedValues, n, true );
 	}
 
 	/**
-	 * Return next bottom index.
+	 * Return the indexes of the n bottom values.
 	 * 
 	 * @param cachedValues
+	 * @param n
 	 * @return
 	 * @throws DataException
 	 */
-	static int getNextBottomIndex( List cachedValues ) throws DataException
+	static BitSet getBottomIndexes( List cachedValues, int n )
+			throws DataException
 	{
-		return getIndex( cachedValues, false );
+		return getIndexes( cachedValues, n, false );
 	}
 
 	/**
+	 * Select the values with a heap of n values, instead of scanning all the
+	 * values for each of them. A larger n of the percent aggregations is
+	 * selected in several passes over the cached values, so that the heap
+	 * never exceeds the buffer of a cached list.
 	 * 
 	 * @param cachedValues
+	 * @param n
 	 * @param top
 	 * @return
 	 * @throws DataException
 	 */
-	private static int getIndex( List cachedValues, boolean top )
-			throws DataException
+	private static BitSet getIndexes( List cachedValues, int n,
+			final boolean top ) throws DataException
 	{
-		int result = -1;
-		for ( int i = 0; i < cachedValues.size( ); i++ )
-		{
-			if ( cachedValues.get( i ).getClass( ) == DummyObject.class )
-				continue;
+		int capacity = Math.min( n, cachedValues.size( ) );
+		BoundedHeap heap = new BoundedHeap( Math.min( capacity,
+				Constants.LIST_BUFFER_SIZE ) ) {
 
-			if ( result == -1 )
+			protected boolean isBefore( Object value1, int id1,
+					Object value2, int id2 ) throws DataException
 			{
-				result = i;
-				continue;
+				return RankAggregationUtil.isBefore( value1,
+						id1,
+						value2,
+						id2,
+						top );
 			}
+		};
+		return heap.select( cachedValues, capacity );
+	}
 
-			if ( top ? compareTop( cachedValues.get( result ),
-					cachedValues.get( i ) )
-					: compareBottom( cachedValues.get( result ),
-							cachedValues.get( i ) ) )
-			{
-				result = i;
-			}
-		}
-		cachedValues.set( result, dummy );
-		return result;
+	/**
+	 * Return whether the first value is selected before the second one. The
+	 * order is the one in which the values used to be picked one by one: the
+	 * earlier index wins a tie, except among the null values of the top
+	 * values, where the later index wins.
+	 * 
+	 * @param value1
+	 * @param index1
+	 * @param value2
+	 * @param index2
+	 * @param top
+	 * @return
+	 * @throws DataException
+	 */
+	private static boolean isBefore( Object value1, int index1,
+			Object value2, int index2, boolean top ) throws DataException
+	{
+		boolean isNull1 = value1.getClass( ) == NullObject.class;
+		boolean isNull2 = value2.getClass( ) == NullObject.class;
+		if ( isNull1 && isNull2 )
+			return top ? index1 > index2 : index1 < index2;
+		if ( top ? compareTop( value2, value1 ) : compareBottom( value2,
+				value1 ) )
+			return true;
+		if ( top ? compareTop( value1, value2 ) : compareBottom( value1,
+				value2 ) )
+			return false;
+		return index1 < index2;
 	}
 
 	/**
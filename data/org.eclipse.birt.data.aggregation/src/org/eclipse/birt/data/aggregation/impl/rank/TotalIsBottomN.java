@@ -11,6 +11,8 @@
 
 package org.eclipse.birt.data.aggregation.impl.rank;
 
+import java.util.BitSet;
+
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.aggregation.plugin.AggregationPlugin;
@@ -47,11 +49,11 @@ public class TotalIsBottomN extends BaseTopBottomAggregation
 		/*
 		 * (non-Javadoc)
 		 * 
-		 * @see org.eclipse.birt.data.engine.aggregation.rank.NAccumulator#getNextIndex()
+		 * @see org.eclipse.birt.data.engine.aggregation.rank.NAccumulator#getTargetIndexes(int)
 		 */
-		protected int getNextIndex( ) throws DataException
+		protected BitSet getTargetIndexes( int n ) throws DataException
 		{
-			return RankAggregationUtil.getNextBottomIndex( cachedValues );
+			return RankAggregationUtil.getBottomIndexes( cachedValues, n );
 		}
 	}
 
@@ -11,6 +11,8 @@
 
 package org.eclipse.birt.data.aggregation.impl.rank;
 
+import java.util.BitSet;
+
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
@@ -47,11 +49,11 @@ public class TotalIsTopN extends BaseTopBottomAggregation
 		/*
 		 * (non-Javadoc)
 		 * 
-		 * @see org.eclipse.birt.data.engine.aggregation.rank.NAccumulator#getNextIndex()
+		 * @see org.eclipse.birt.data.engine.aggregation.rank.NAccumulator#getTargetIndexes(int)
 		 */
-		protected int getNextIndex( ) throws DataException
+		protected BitSet getTargetIndexes( int n ) throws DataException
 		{
-			return RankAggregationUtil.getNextTopIndex( cachedValues );
+			return RankAggregationUtil.getTopIndexes( cachedValues, n );
 		}
 	}
 
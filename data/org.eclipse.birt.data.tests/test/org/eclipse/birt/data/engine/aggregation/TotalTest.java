@@ -3,6 +3,8 @@ package org.eclipse.birt.data.engine.aggregation;
 
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -12,6 +14,8 @@ import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.impl.BuildInAggregationFactory;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
+import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
 
 import org.junit.After;
@@ -1408,6 +1412,55 @@ public class TotalTest {
         assertTrue( ret instanceof Double );
         assertEquals( 5.980952380952380952380952380952381D, ret );
     }
+
+    /**
+     * test the summary aggregations which accept the argument values in
+     * batches return the same values as with onRow().
+     */
+	@Test
+    public void testTotalBatch() throws Exception
+    {
+        String[] names = {IBuildInAggregation.TOTAL_SUM_FUNC,
+                IBuildInAggregation.TOTAL_AVE_FUNC,
+                IBuildInAggregation.TOTAL_COUNT_FUNC,
+                IBuildInAggregation.TOTAL_STDDEV_FUNC,
+                IBuildInAggregation.TOTAL_VARIANCE_FUNC};
+        Double[][] columns = {
+                {new Double(1.5), null, new Double(-3), new Double(4.25), null, new Double(10)},
+                {new Double(2), new Double(Double.POSITIVE_INFINITY), new Double(3)},
+                {null, null}};
+        for(int i=0; i<names.length; i++)
+        {
+            IAggrFunction ag = buildInAggrFactory.getAggregation(names[i]);
+            for(int j=0; j<columns.length; j++)
+            {
+                Accumulator ac = ag.newAccumulator();
+                ac.start();
+                for(int k=0; k<columns[j].length; k++)
+                {
+                    ac.onRow(new Object[]{columns[j][k]});
+                }
+                ac.finish();
+
+                Accumulator batchAc = ag.newAccumulator();
+                assertTrue(batchAc instanceof IBatchAccumulator);
+                double[] values = new double[columns[j].length];
+                BitSet nulls = new BitSet();
+                for(int k=0; k<columns[j].length; k++)
+                {
+                    if(columns[j][k] == null)
+                        nulls.set(k);
+                    else
+                        values[k] = columns[j][k].doubleValue();
+                }
+                batchAc.start();
+                ((IBatchAccumulator)batchAc).onBatch(values, nulls, columns[j].length);
+                batchAc.finish();
+
+                assertEquals(ac.getValue(), batchAc.getValue());
+            }
+        }
+    }
 	@Test
     public void testTotalWeightedAva() throws Exception
     {
@@ -1800,6 +1853,128 @@ public class TotalTest {
         }
         ac.finish();
     }
+
+    /**
+     * test top n and bottom n aggregation with tied values. The earlier rows
+     * win the ties, and the null values are the first of the bottom values.
+     */
+	@Test
+    public void testTotalTopBottomTies() throws Exception
+    {
+        boolean[] top4 = {false, true, false, true, false, true, true, false, false};
+        boolean[] bottom4 = {true, true, false, false, true, false, false, true, false};
+        boolean[] bottom3 = {false, false, true, false, true, false, true, false};
+
+        Accumulator ac = buildInAggrFactory.getAggregation("isTopN").newAccumulator();
+        ac.start();
+        for(int i=0; i<doubleArray5.length; i++)
+        {
+            ac.onRow(new Double[]{new Double(doubleArray5[i]), new Double(4)});
+        }
+        ac.finish();
+        ac.start();
+        for(int i=0; i<doubleArray5.length; i++)
+        {
+            ac.onRow(new Double[]{new Double(doubleArray5[i]), new Double(4)});
+            assertEquals(new Boolean(top4[i]), ac.getValue());
+        }
+        ac.finish();
+
+        ac = buildInAggrFactory.getAggregation("isBottomN").newAccumulator();
+        ac.start();
+        for(int i=0; i<doubleArray5.length; i++)
+        {
+            ac.onRow(new Double[]{new Double(doubleArray5[i]), new Double(4)});
+        }
+        ac.finish();
+        ac.start();
+        for(int i=0; i<doubleArray5.length; i++)
+        {
+            ac.onRow(new Double[]{new Double(doubleArray5[i]), new Double(4)});
+            assertEquals(new Boolean(bottom4[i]), ac.getValue());
+        }
+        ac.finish();
+
+        ac = buildInAggrFactory.getAggregation("isBottomN").newAccumulator();
+        ac.start();
+        for(int i=0; i<doubleArray3.length; i++)
+        {
+            ac.onRow(new Double[]{doubleArray3[i], new Double(3)});
+        }
+        ac.finish();
+        ac.start();
+        for(int i=0; i<doubleArray3.length; i++)
+        {
+            ac.onRow(new Double[]{doubleArray3[i], new Double(3)});
+            assertEquals(new Boolean(bottom3[i]), ac.getValue());
+        }
+        ac.finish();
+    }
+
+    /**
+     * test top n percent and bottom n percent aggregation with a heap which is
+     * smaller than N, so that the values are selected in several passes over
+     * the cached values.
+     */
+	@Test
+    public void testTotalTopBottomPercentInPasses() throws Exception
+    {
+        Double[] values = new Double[doubleArray5.length + doubleArray3.length];
+        for(int i=0; i<doubleArray5.length; i++)
+        {
+            values[i] = new Double(doubleArray5[i]);
+        }
+        System.arraycopy(doubleArray3, 0, values, doubleArray5.length, doubleArray3.length);
+
+        String[] names = {"isTopNPercent", "isBottomNPercent"};
+        double[] percents = {30, 60, 100};
+        int bufferSize = Constants.LIST_BUFFER_SIZE;
+        for(int i=0; i<names.length; i++)
+        {
+            for(int j=0; j<percents.length; j++)
+            {
+                boolean[] expected = getTopBottom(names[i], values, percents[j]);
+                boolean[] result;
+                Constants.LIST_BUFFER_SIZE = 2;
+                try
+                {
+                    result = getTopBottom(names[i], values, percents[j]);
+                }
+                finally
+                {
+                    Constants.LIST_BUFFER_SIZE = bufferSize;
+                }
+                assertTrue(Arrays.equals(expected, result));
+                int count = 0;
+                for(int k=0; k<result.length; k++)
+                {
+                    if(result[k])
+                        count++;
+                }
+                assertEquals(Math.round(percents[j] / 100 * values.length), count);
+            }
+        }
+    }
+
+    private boolean[] getTopBottom(String name, Double[] values, double n) throws Exception
+    {
+        boolean[] result = new boolean[values.length];
+        Accumulator ac = buildInAggrFactory.getAggregation(name).newAccumulator();
+        ac.start();
+        for(int i=0; i<values.length; i++)
+        {
+            ac.onRow(new Double[]{values[i], new Double(n)});
+        }
+        ac.finish();
+        ac.start();
+        for(int i=0; i<values.length; i++)
+        {
+            ac.onRow(new Double[]{values[i], new Double(n)});
+            result[i] = ((Boolean) ac.getValue()).booleanValue();
+        }
+        ac.finish();
+        return result;
+    }
 	@Test
     public void testTotalBottom() throws Exception
     {
@@ -470,4 +470,57 @@ public class ProgressiveViewingTest extends BaseTestCase
 		dataEngine.shutdown( );
 		
 	}
+	
+	/**
+	 * Running aggregation on more rows than the looking ahead cache keeps
+	 * before it releases the consumed rows.
+	 * @throws BirtException
+	 */
+	@Test
+    public void testProgressiveViewing9() throws BirtException
+	{
+		DataEngineContext context = DataEngineContext.newInstance( DataEngineContext.DIRECT_PRESENTATION, 
+				this.scriptContext,
+				null,null,null );
+		context.setTmpdir( this.getTempDir( ) );
+		PlatformConfig platformConfig = new PlatformConfig();
+		platformConfig.setTempDir( this.getTempDir() );
+		DataEngine dataEngine = DataEngine.newDataEngine( platformConfig, context );
+	
+		ScriptDataSourceDesign dataSource = new ScriptDataSourceDesign( "ds" );
+		dataSource.setOpenScript( "i = 0;" );
+		ScriptDataSetDesign dataSet = new ScriptDataSetDesign( "test" );
+		dataSet.setDataSource( "ds" );
+
+		dataSet.addResultSetHint( new ColumnDefinition( "column1" ) );
+
+		dataSet.setFetchScript( " i++; if ( i % 2501 == 0 ) return false; row.column1 = i;" +
+				"return true;" );
+
+		dataEngine.defineDataSource( dataSource );
+		dataEngine.defineDataSet( dataSet );
+		
+		QueryDefinition qd = new QueryDefinition();
+		Binding aggregation = new Binding( "aggr", new ScriptExpression( "row[\"column1\"]"));
+		aggregation.setAggrFunction( "runningcount" );
+		
+		qd.addBinding( new Binding( "column1",
+				new ScriptExpression( "row[\"column1\"]" ) ) );
+		qd.addBinding( aggregation );
+		qd.setDataSetName( "test" );
+		Map appContextMap = new HashMap( );
+		IResultIterator ri1 = dataEngine.prepare( qd, appContextMap ).execute( null ).getResultIterator( );
+		
+		assertFalse(((DataEngineImpl)dataEngine).getSession( ).getDataSetCacheManager( ).doesLoadFromCache( ) );
+		int i = 0;
+		while ( ri1.next( ) )
+		{
+			i++;
+			assertEquals( i, ( (Number) ri1.getValue( "column1" ) ).intValue( ) );
+			assertEquals( i, ( (Number) ri1.getValue( "aggr" ) ).intValue( ) );
+		}
+		assertEquals( 2500, i );
+		dataEngine.shutdown( );
+		
+	}
 }
@@ -41,6 +41,7 @@ import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
 import org.eclipse.birt.data.engine.api.querydefn.SortDefinition;
 import org.eclipse.birt.data.engine.api.querydefn.SubqueryDefinition;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ComparatorUtil;
 import org.eclipse.birt.data.engine.executor.DataSetCacheManager;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.mozilla.javascript.Context;
@@ -234,6 +235,86 @@ public class DataSetCacheTest extends APITestCase
 		myDataEngine.shutdown( );
 	}
 
+	/**
+	 * Test the cached data set expires after the time to live
+	 * @throws Exception
+	 */
+	@Test
+    public void testCacheTimeToLive( ) throws Exception
+	{
+		this.dataSet.setCacheRowCount( 4 );
+		this.appContextMap.put( DataEngine.DATA_SET_CACHE_TIME_TO_LIVE, "1" );
+		myDataEngine = newDataEngine( );
+
+		QueryDefinition qd = this.newReportQuery( );
+		IQueryResults qr = myDataEngine.prepare( qd, appContextMap )
+				.execute( null );
+		qr.getResultIterator( ).next( );
+		qr.close( );
+		Thread.sleep( 10 );
+
+		assertFalse( getDataSetCacheManager( myDataEngine ).doesLoadFromCache( ) );
+		getDataSetCacheManager( myDataEngine ).resetForTest( );
+		myDataEngine.shutdown( );
+	}
+
+	/**
+	 * Test the data sets cached at JVM level are removed by clearCache
+	 * @throws BirtException
+	 */
+	@Test
+    public void testClearJVMLevelCache( ) throws BirtException
+	{
+		this.dataSet.setCacheRowCount( 4 );
+		myDataEngine = newDataEngine( );
+
+		QueryDefinition qd = this.newReportQuery( );
+		IQueryResults qr = myDataEngine.prepare( qd, appContextMap )
+				.execute( null );
+		qr.getResultIterator( ).next( );
+		qr.close( );
+
+		myDataEngine.clearCache( );
+		assertFalse( getDataSetCacheManager( myDataEngine ).doesLoadFromCache( ) );
+		getDataSetCacheManager( myDataEngine ).resetForTest( );
+		myDataEngine.shutdown( );
+	}
+
+	/**
+	 * Test the query texts of the cached data sets are compared ignoring the
+	 * white spaces, but not the line breaks which end the line comments
+	 */
+	@Test
+    public void testQueryTextComparison( )
+	{
+		assertTrue( ComparatorUtil.isEqualQueryText( "select *  from t\r\nwhere a = 1",
+				" select * from t\n  where   a = 1 " ) );
+		assertFalse( ComparatorUtil.isEqualQueryText( "select * from t where a = 'x  y'",
+				"select * from t where a = 'x y'" ) );
+		assertFalse( ComparatorUtil.isEqualQueryText( "select * from t -- all\nwhere a = 1",
+				"select * from t -- all where a = 1" ) );
+		assertTrue( ComparatorUtil.isEqualQueryText( "select * from t -- all\n\n where a = 1",
+				"select * from t -- all\r\nwhere a = 1" ) );
+		// the quoted identifiers and the comments are kept as they are
+		assertFalse( ComparatorUtil.isEqualQueryText( "select [a  b] from t",
+				"select [a b] from t" ) );
+		assertFalse( ComparatorUtil.isEqualQueryText( "select `a  b` from t",
+				"select `a b` from t" ) );
+		assertFalse( ComparatorUtil.isEqualQueryText( "select [a]]  b] from t",
+				"select [a]] b] from t" ) );
+		assertFalse( ComparatorUtil.isEqualQueryText( "select 'it''s  a' from t",
+				"select 'it''s a' from t" ) );
+		assertFalse( ComparatorUtil.isEqualQueryText( "select * from t -- it's\nwhere a = 'x  y'",
+				"select * from t -- it's\nwhere a = 'x y'" ) );
+		assertFalse( ComparatorUtil.isEqualQueryText( "select * from t /* it's */ where a = 'x  y'",
+				"select * from t /* it's */ where a = 'x y'" ) );
+		assertTrue( ComparatorUtil.isEqualQueryText( "select  [a b]  from t /* it's */  where a = 'x  y'",
+				"select [a b] from t /* it's */ where a = 'x  y'" ) );
+		// the query texts which might use escapes are compared exactly
+		assertFalse( ComparatorUtil.isEqualQueryText( "select  * from t where a = 'x\\'  y'",
+				"select * from t where a = 'x\\' y'" ) );
+	}
+
 	/**
 	 * Test feature of cancel cache. This test case may fail in some cases. 
 	 * @throws BirtException
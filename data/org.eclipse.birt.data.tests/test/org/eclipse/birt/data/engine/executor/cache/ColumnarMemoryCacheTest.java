@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the column oriented memory cache
+ */
+public class ColumnarMemoryCacheTest
+{
+
+	private IResultClass rsMeta;
+	private Object[][] rows;
+
+	@Before
+	public void columnarMemoryCacheSetUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( createColumn( 1, "int", DataType.INTEGER_TYPE ) );
+		columnsList.add( createColumn( 2, "double", DataType.DOUBLE_TYPE ) );
+		columnsList.add( createColumn( 3, "decimal", DataType.DECIMAL_TYPE ) );
+		columnsList.add( createColumn( 4, "date", DataType.DATE_TYPE ) );
+		columnsList.add( createColumn( 5, "string", DataType.STRING_TYPE ) );
+		columnsList.add( createColumn( 6, "boolean", DataType.BOOLEAN_TYPE ) );
+		rsMeta = new ResultClass( columnsList );
+
+		Timestamp timestamp = new Timestamp( 1000000000123L );
+		timestamp.setNanos( 123456789 );
+		rows = new Object[][]{
+				{
+						Integer.valueOf( 3 ),
+						Double.valueOf( 1.5 ),
+						new BigDecimal( "12.340" ),
+						new Date( 1000L ),
+						"abc",
+						Boolean.TRUE
+				},
+				{
+						null, null, null, null, null, null
+				},
+				{
+						Integer.valueOf( 1 ),
+						Double.valueOf( -2 ),
+						new BigDecimal( "123456789012345678901234567890.5" ),
+						timestamp,
+						"abc",
+						Boolean.FALSE
+				},
+				{
+						Integer.valueOf( 2 ),
+						Double.valueOf( Double.NaN ),
+						new BigDecimal( "-7" ),
+						new java.sql.Date( 86400000L ),
+						"def",
+						Boolean.TRUE
+				}
+		};
+	}
+
+	private static ResultFieldMetadata createColumn( int index, String name,
+			int dataType )
+	{
+		return new ResultFieldMetadata( index,
+				name,
+				name,
+				DataType.getClass( dataType ),
+				null,
+				false );
+	}
+
+	private ColumnarRowStore createRowStore( ) throws DataException
+	{
+		ColumnarRowStore rowStore = new ColumnarRowStore( rsMeta );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			rowStore.add( new ResultObject( rsMeta, rows[i].clone( ) ) );
+		}
+		return rowStore;
+	}
+
+	private void assertRow( Object[] expected, IResultObject row )
+			throws DataException
+	{
+		for ( int i = 0; i < expected.length; i++ )
+		{
+			assertEquals( expected[i], row.getFieldValue( i + 1 ) );
+			if ( expected[i] != null )
+			{
+				assertEquals( expected[i].getClass( ), row.getFieldValue( i + 1 )
+						.getClass( ) );
+			}
+		}
+	}
+
+	@Test
+	public void testApplicable( ) throws DataException
+	{
+		assertTrue( ColumnarRowStore.isApplicable( rsMeta ) );
+
+		List columnsList = new ArrayList( );
+		columnsList.add( createColumn( 1, "any", DataType.ANY_TYPE ) );
+		assertFalse( ColumnarRowStore.isApplicable( new ResultClass( columnsList ) ) );
+	}
+
+	@Test
+	public void testNext( ) throws DataException
+	{
+		ColumnarMemoryCache cache = new ColumnarMemoryCache( createRowStore( ),
+				rsMeta,
+				null );
+		assertEquals( rows.length, cache.getCount( ) );
+		assertEquals( -1, cache.getCurrentIndex( ) );
+		int i = 0;
+		while ( cache.next( ) )
+		{
+			assertEquals( i, cache.getCurrentIndex( ) );
+			assertRow( rows[i], cache.getCurrentResult( ) );
+			i++;
+		}
+		assertEquals( rows.length, i );
+		assertFalse( cache.next( ) );
+		assertNull( cache.getCurrentResult( ) );
+	}
+
+	@Test
+	public void testMoveTo( ) throws DataException
+	{
+		ColumnarMemoryCache cache = new ColumnarMemoryCache( createRowStore( ),
+				rsMeta,
+				null );
+		cache.moveTo( 2 );
+		assertRow( rows[2], cache.getCurrentResult( ) );
+		cache.moveTo( 0 );
+		assertRow( rows[0], cache.getCurrentResult( ) );
+		cache.moveTo( rows.length );
+		assertNull( cache.getCurrentResult( ) );
+		try
+		{
+			cache.moveTo( rows.length + 1 );
+			fail( "should throw exception" );
+		}
+		catch ( DataException e )
+		{
+		}
+	}
+
+	@Test
+	public void testSort( ) throws DataException
+	{
+		Comparator comparator = new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				try
+				{
+					Object v1 = ( (IResultObject) o1 ).getFieldValue( 1 );
+					Object v2 = ( (IResultObject) o2 ).getFieldValue( 1 );
+					if ( v1 == null || v2 == null )
+						return v1 == null ? ( v2 == null ? 0 : -1 ) : 1;
+					return ( (Integer) v1 ).compareTo( (Integer) v2 );
+				}
+				catch ( DataException e )
+				{
+					throw new IllegalStateException( e );
+				}
+			}
+		};
+		ColumnarMemoryCache cache = new ColumnarMemoryCache( createRowStore( ),
+				rsMeta,
+				comparator );
+		int[] expectedOrder = new int[]{
+				1, 2, 3, 0
+		};
+		for ( int i = 0; i < expectedOrder.length; i++ )
+		{
+			assertTrue( cache.next( ) );
+			assertRow( rows[expectedOrder[i]], cache.getCurrentResult( ) );
+		}
+	}
+
+	@Test
+	public void testSortSetCustomField( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( createColumn( 1, "int", DataType.INTEGER_TYPE ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"custom",
+				"custom",
+				String.class,
+				null,
+				true ) );
+		final IResultClass customMeta = new ResultClass( columnsList );
+		ColumnarRowStore rowStore = new ColumnarRowStore( customMeta );
+		for ( int i = 3; i > 0; i-- )
+		{
+			rowStore.add( new ResultObject( customMeta, new Object[]{
+					Integer.valueOf( i ), null
+			} ) );
+		}
+		// the comparator computes the custom field, as the group
+		// calculation does
+		Comparator comparator = new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				try
+				{
+					IResultObject row1 = (IResultObject) o1;
+					IResultObject row2 = (IResultObject) o2;
+					row1.setCustomFieldValue( "custom", "v"
+							+ row1.getFieldValue( 1 ) );
+					row2.setCustomFieldValue( 2, "v" + row2.getFieldValue( 1 ) );
+					try
+					{
+						row1.setCustomFieldValue( 1, Integer.valueOf( 0 ) );
+						fail( "should throw exception" );
+					}
+					catch ( DataException e )
+					{
+					}
+					return ( (Integer) row1.getFieldValue( 1 ) ).compareTo( (Integer) row2.getFieldValue( 1 ) );
+				}
+				catch ( DataException e )
+				{
+					throw new IllegalStateException( e );
+				}
+			}
+		};
+		ColumnarMemoryCache cache = new ColumnarMemoryCache( rowStore,
+				customMeta,
+				comparator );
+		for ( int i = 1; i <= 3; i++ )
+		{
+			assertTrue( cache.next( ) );
+			assertEquals( Integer.valueOf( i ), cache.getCurrentResult( )
+					.getFieldValue( 1 ) );
+			assertEquals( "v" + i, cache.getCurrentResult( )
+					.getFieldValue( 2 ) );
+		}
+	}
+
+	@Test
+	public void testSortSetCustomFieldMemorySize( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( createColumn( 1, "int", DataType.INTEGER_TYPE ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"custom",
+				"custom",
+				Object.class,
+				null,
+				true ) );
+		IResultClass customMeta = new ResultClass( columnsList );
+		ColumnarRowStore rowStore = new ColumnarRowStore( customMeta );
+		ColumnarRowStore expectedStore = new ColumnarRowStore( customMeta );
+		for ( int i = 1; i <= 3; i++ )
+		{
+			rowStore.add( new ResultObject( customMeta, new Object[]{
+					Integer.valueOf( i ), null
+			} ) );
+			expectedStore.add( new ResultObject( customMeta, new Object[]{
+					Integer.valueOf( i ), new BigDecimal( i )
+			} ) );
+		}
+		// the comparator sets the custom fields many times, the memory of
+		// the value replaced is not counted
+		rowStore.sort( new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				try
+				{
+					IResultObject row1 = (IResultObject) o1;
+					IResultObject row2 = (IResultObject) o2;
+					row1.setCustomFieldValue( 2,
+							new BigDecimal( ( (Integer) row1.getFieldValue( 1 ) ).intValue( ) ) );
+					row2.setCustomFieldValue( 2,
+							new BigDecimal( ( (Integer) row2.getFieldValue( 1 ) ).intValue( ) ) );
+					return ( (Integer) row1.getFieldValue( 1 ) ).compareTo( (Integer) row2.getFieldValue( 1 ) );
+				}
+				catch ( DataException e )
+				{
+					throw new IllegalStateException( e );
+				}
+			}
+		} );
+		assertEquals( new BigDecimal( 2 ), rowStore.getFieldValue( 1, 2 ) );
+		assertEquals( expectedStore.getMemorySize( ), rowStore.getMemorySize( ) );
+	}
+
+	@Test
+	public void testSetResultClass( ) throws DataException
+	{
+		ColumnarMemoryCache cache = new ColumnarMemoryCache( createRowStore( ),
+				rsMeta,
+				null );
+		// the new meta drops the first columns and adds one
+		List columnsList = new ArrayList( );
+		columnsList.add( createColumn( 1, "string", DataType.STRING_TYPE ) );
+		columnsList.add( createColumn( 2, "double", DataType.DOUBLE_TYPE ) );
+		columnsList.add( createColumn( 3, "added", DataType.INTEGER_TYPE ) );
+		IResultClass newMeta = new ResultClass( columnsList );
+		cache.moveTo( 0 );
+		cache.setResultClass( newMeta );
+		assertSame( newMeta, cache.getCurrentResult( ).getResultClass( ) );
+		cache.reset( );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			assertTrue( cache.next( ) );
+			IResultObject row = cache.getCurrentResult( );
+			assertSame( newMeta, row.getResultClass( ) );
+			assertEquals( rows[i][4], row.getFieldValue( "string" ) );
+			assertEquals( rows[i][1], row.getFieldValue( 2 ) );
+			assertNull( row.getFieldValue( 3 ) );
+		}
+	}
+
+	@Test
+	public void testEnabledByAppContext( )
+	{
+		assertTrue( CacheUtil.enableColumnarMemoryCache( null ) );
+		Map appContext = new HashMap( );
+		assertTrue( CacheUtil.enableColumnarMemoryCache( appContext ) );
+		appContext.put( DataEngine.COLUMNAR_MEMORY_CACHE, "true" );
+		assertTrue( CacheUtil.enableColumnarMemoryCache( appContext ) );
+		appContext.put( DataEngine.COLUMNAR_MEMORY_CACHE, "false" );
+		assertFalse( CacheUtil.enableColumnarMemoryCache( appContext ) );
+	}
+
+	@Test
+	public void testNumericColumns( ) throws DataException
+	{
+		ColumnarRowStore rowStore = createRowStore( );
+		assertTrue( rowStore.isNumericColumn( 1 ) );
+		assertTrue( rowStore.isNumericColumn( 2 ) );
+		assertFalse( rowStore.isNumericColumn( 3 ) );
+		assertFalse( rowStore.isNumericColumn( 5 ) );
+
+		assertTrue( rowStore.isPrimitive( 0, 1 ) );
+		assertEquals( 3, rowStore.getDouble( 0, 1 ), 0 );
+		assertEquals( -2, rowStore.getDouble( 2, 2 ), 0 );
+		assertTrue( Double.isNaN( rowStore.getDouble( 3, 2 ) ) );
+		assertFalse( rowStore.isPrimitive( 1, 1 ) );
+		assertTrue( rowStore.isNull( 1, 1 ) );
+
+		// a value which the column can not hold is not primitive
+		rowStore.add( new ResultObject( rsMeta, new Object[]{
+				Integer.valueOf( 5 ), "abc", null, null, null, null
+		} ) );
+		assertTrue( rowStore.isPrimitive( 4, 1 ) );
+		assertFalse( rowStore.isPrimitive( 4, 2 ) );
+		assertFalse( rowStore.isNull( 4, 2 ) );
+	}
+
+	@Test
+	public void testMemorySize( ) throws DataException
+	{
+		ColumnarRowStore rowStore = new ColumnarRowStore( rsMeta );
+		SizeOfUtil sizeOfUtil = new SizeOfUtil( rsMeta );
+		long objectSize = 0;
+		for ( int i = 0; i < 1000; i++ )
+		{
+			IResultObject row = new ResultObject( rsMeta, new Object[]{
+					Integer.valueOf( i ),
+					Double.valueOf( i ),
+					BigDecimal.valueOf( i, 2 ),
+					new Date( i ),
+					"name" + ( i % 10 ),
+					Boolean.TRUE
+			} );
+			objectSize += sizeOfUtil.sizeOf( row );
+			rowStore.add( row );
+		}
+		assertEquals( 1000, rowStore.getRowCount( ) );
+		assertTrue( rowStore.getMemorySize( ) * 4 < objectSize );
+		assertEquals( "name7", rowStore.getFieldValue( 997, 5 ) );
+	}
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the loser tree merge and the prefetching of the parallel disk sort.
+ */
+public class LoserTreeRowFilesTest
+{
+
+	private IResultClass rsMeta;
+	private Comparator comparator;
+
+	@Before
+	public void loserTreeRowFilesSetUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( new ResultFieldMetadata( 1,
+				"key",
+				"key",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				null,
+				false ) );
+		columnsList.add( new ResultFieldMetadata( 2,
+				"run",
+				"run",
+				DataType.getClass( DataType.INTEGER_TYPE ),
+				null,
+				false ) );
+		rsMeta = new ResultClass( columnsList );
+		comparator = new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				return getInt( (IResultObject) o1, 1 )
+						- getInt( (IResultObject) o2, 1 );
+			}
+		};
+	}
+
+	private static int getInt( IResultObject row, int index )
+	{
+		try
+		{
+			return ( (Integer) row.getFieldValue( index ) ).intValue( );
+		}
+		catch ( DataException e )
+		{
+			throw new IllegalStateException( e );
+		}
+	}
+
+	private IRowIterator[] createRuns( int runCount, Random random,
+			DiskSortExecutor executor )
+	{
+		IRowIterator[] runs = new IRowIterator[runCount];
+		for ( int i = 0; i < runCount; i++ )
+		{
+			int rowCount = i % 4 == 0 ? 0 : random.nextInt( 300 );
+			int[] keys = new int[rowCount];
+			for ( int j = 0; j < rowCount; j++ )
+			{
+				keys[j] = random.nextInt( 20 );
+			}
+			Arrays.sort( keys );
+			IResultObject[] rows = new IResultObject[rowCount];
+			for ( int j = 0; j < rowCount; j++ )
+			{
+				rows[j] = new ResultObject( rsMeta, new Object[]{
+						Integer.valueOf( keys[j] ), Integer.valueOf( i )
+				} );
+			}
+			runs[i] = new ArrayRowIterator( rows );
+			if ( executor != null )
+				runs[i] = new PrefetchRowIterator( runs[i], executor, 16 );
+		}
+		return runs;
+	}
+
+	private void assertMerged( IRowIterator merged ) throws IOException,
+			DataException
+	{
+		IResultObject previous = null;
+		IResultObject row;
+		while ( ( row = merged.fetch( ) ) != null )
+		{
+			if ( previous != null )
+			{
+				int result = comparator.compare( previous, row );
+				assertTrue( result <= 0 );
+				// the rows which are equal keep the order of the runs
+				if ( result == 0 )
+					assertTrue( getInt( previous, 2 ) <= getInt( row, 2 ) );
+			}
+			previous = row;
+		}
+	}
+
+	@Test
+	public void testMerge( ) throws IOException, DataException
+	{
+		Random random = new Random( 0 );
+		for ( int runCount = 1; runCount <= 17; runCount++ )
+		{
+			LoserTreeRowFiles merged = new LoserTreeRowFiles( createRuns( runCount,
+					random,
+					null ),
+					MergeSortUtil.getUtil( comparator ) );
+			assertMerged( merged );
+			merged.reset( );
+			assertMerged( merged );
+			merged.close( );
+		}
+	}
+
+	@Test
+	public void testPrefetch( ) throws IOException, DataException
+	{
+		DiskSortExecutor executor = new DiskSortExecutor( 2 );
+		try
+		{
+			Random random = new Random( 1 );
+			IRowIterator[] runs = createRuns( 9, random, executor );
+			LoserTreeRowFiles merged = new LoserTreeRowFiles( runs,
+					MergeSortUtil.getUtil( comparator ) );
+			assertMerged( merged );
+			merged.close( );
+		}
+		finally
+		{
+			executor.shutdown( );
+		}
+	}
+
+	private static class ArrayRowIterator implements IRowIterator
+	{
+
+		private IResultObject[] rows;
+		private int position;
+
+		ArrayRowIterator( IResultObject[] rows )
+		{
+			this.rows = rows;
+		}
+
+		public void reset( )
+		{
+			position = 0;
+		}
+
+		public IResultObject fetch( )
+		{
+			return position < rows.length ? rows[position++] : null;
+		}
+
+		public void close( )
+		{
+			rows = null;
+		}
+	}
+}
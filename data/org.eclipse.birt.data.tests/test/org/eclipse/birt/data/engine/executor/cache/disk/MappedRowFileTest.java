@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the fixed width row format and the memory mapped segment files.
+ */
+public class MappedRowFileTest
+{
+
+	private IResultClass rsMeta;
+	private File tempDir;
+
+	@Before
+	public void mappedRowFileSetUp( ) throws DataException
+	{
+		List columnsList = new ArrayList( );
+		columnsList.add( createColumn( 1, "int", DataType.INTEGER_TYPE ) );
+		columnsList.add( createColumn( 2, "double", DataType.DOUBLE_TYPE ) );
+		columnsList.add( createColumn( 3, "decimal", DataType.DECIMAL_TYPE ) );
+		columnsList.add( createColumn( 4, "date", DataType.DATE_TYPE ) );
+		columnsList.add( createColumn( 5, "string", DataType.STRING_TYPE ) );
+		columnsList.add( createColumn( 6, "boolean", DataType.BOOLEAN_TYPE ) );
+		columnsList.add( new ResultFieldMetadata( 7,
+				"timestamp",
+				"timestamp",
+				Timestamp.class,
+				null,
+				false ) );
+		rsMeta = new ResultClass( columnsList );
+
+		tempDir = new File( System.getProperty( "java.io.tmpdir" ),
+				"MappedRowFileTest" + System.nanoTime( ) );
+		tempDir.mkdirs( );
+	}
+
+	@After
+	public void mappedRowFileTearDown( )
+	{
+		File[] files = tempDir.listFiles( );
+		for ( int i = 0; files != null && i < files.length; i++ )
+		{
+			files[i].delete( );
+		}
+		tempDir.delete( );
+	}
+
+	private static ResultFieldMetadata createColumn( int index, String name,
+			int dataType )
+	{
+		return new ResultFieldMetadata( index,
+				name,
+				name,
+				DataType.getClass( dataType ),
+				null,
+				false );
+	}
+
+	@Test
+	public void testCodec( ) throws IOException, DataException
+	{
+		Object[][] rows = new Object[][]{
+				{
+						Integer.valueOf( 3 ),
+						Double.valueOf( 1.5 ),
+						new BigDecimal( "-123456789012345678901234567890.125" ),
+						new Date( 1000L ),
+						"abc\u00e9\u4e2d",
+						Boolean.TRUE,
+						new Timestamp( 2000L )
+				}, {
+						null, null, null, null, null, null, null
+				}, {
+						"7", Integer.valueOf( 2 ), "0.5", null, "", Boolean.FALSE, null
+				}
+		};
+		FixedWidthRowCodec codec = new FixedWidthRowCodec( rsMeta );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			int length = codec.encode( new ResultObject( rsMeta, rows[i] ) );
+			byte[] bytes = new byte[length + 5];
+			System.arraycopy( codec.getBytes( ), 0, bytes, 5, length );
+			Object[] values = codec.decode( ByteBuffer.wrap( bytes ), 5 );
+			assertEquals( rows[i].length, values.length );
+			if ( i == 2 )
+			{
+				// the values are converted to the column types
+				assertEquals( Integer.valueOf( 7 ), values[0] );
+				assertEquals( Double.valueOf( 2 ), values[1] );
+				assertEquals( new BigDecimal( "0.5" ), values[2] );
+				assertEquals( "", values[4] );
+				assertEquals( Boolean.FALSE, values[5] );
+				continue;
+			}
+			for ( int j = 0; j < values.length; j++ )
+			{
+				assertEquals( rows[i][j], values[j] );
+			}
+		}
+	}
+
+	@Test
+	public void testSegmentFile( ) throws IOException
+	{
+		// small segments so that the records span several segments
+		MappedSegmentFile file = new MappedSegmentFile( new File( tempDir,
+				"segment" ), 10, 64, 64 );
+		for ( int i = 0; i < 100; i++ )
+		{
+			byte[] bytes = new byte[i % 10 == 9 ? 100 : 8];
+			ByteBuffer.wrap( bytes ).putInt( i );
+			file.append( bytes, bytes.length );
+		}
+		assertEquals( 100, file.getRecordCount( ) );
+		for ( int i = 99; i >= 0; i-- )
+		{
+			assertEquals( i, file.getSegment( i ).getInt( file.getOffset( i ) ) );
+		}
+		file.close( );
+		assertEquals( 0, file.getRecordCount( ) );
+	}
+
+	@Test
+	public void testSegmentSize( ) throws IOException
+	{
+		File baseFile = new File( tempDir, "size" );
+		MappedSegmentFile file = new MappedSegmentFile( baseFile, 100, 16, 1024 );
+		// the first segment is sized for the expected records
+		file.append( new byte[8], 8 );
+		assertEquals( 800, new File( tempDir, "size_0" ).length( ) );
+		// the index grows from 1024 entries
+		assertEquals( 1024 * 8, new File( tempDir, "size.idx_0" ).length( ) );
+		for ( int i = 1; i < 3000; i++ )
+		{
+			byte[] bytes = new byte[8];
+			ByteBuffer.wrap( bytes ).putInt( i );
+			file.append( bytes, bytes.length );
+		}
+		// then each segment doubles the mapped size up to the max size
+		assertEquals( 800, new File( tempDir, "size_1" ).length( ) );
+		assertEquals( 1024, new File( tempDir, "size_2" ).length( ) );
+		assertEquals( 2048 * 8, new File( tempDir, "size.idx_1" ).length( ) );
+		for ( int i = 2999; i > 0; i-- )
+		{
+			assertEquals( i, file.getSegment( i ).getInt( file.getOffset( i ) ) );
+		}
+		file.close( );
+		assertFalse( new File( tempDir, "size_0" ).exists( ) );
+		assertFalse( new File( tempDir, "size.idx_0" ).exists( ) );
+	}
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the evaluation of the simple expressions without Rhino.
+ */
+public class JavaExpressionEvaluatorTest
+{
+
+	private static final String[] NAMES = new String[]{
+			"INT", "DOUBLE", "DECIMAL", "STR", "NUMSTR", "BOOL", "NULL"
+	};
+
+	private static final Object[] VALUES = new Object[]{
+			Integer.valueOf( 3 ),
+			new Double( 2.5 ),
+			new BigDecimal( "10.25" ),
+			"abc",
+			"7",
+			Boolean.TRUE,
+			null
+	};
+
+	private ExpressionCompiler compiler;
+	private ScriptContext cx;
+	private Scriptable scope;
+	private IResultObject resultObject;
+
+	@Before
+	public void javaExpressionEvaluatorSetUp( ) throws Exception
+	{
+		compiler = new ExpressionCompiler( );
+		compiler.setDataSetMode( true );
+		cx = new ScriptContext( );
+		cx.compile( "javascript", null, 0, "1 == 1;" );
+		scope = Context.getCurrentContext( ).initStandardObjects( );
+
+		// the same row is seen by Rhino and by the result object
+		Scriptable row = Context.getCurrentContext( ).newObject( scope );
+		List fields = new ArrayList( );
+		for ( int i = 0; i < NAMES.length; i++ )
+		{
+			row.put( NAMES[i], row, VALUES[i] );
+			fields.add( new ResultFieldMetadata( i + 1,
+					NAMES[i],
+					NAMES[i],
+					VALUES[i] == null ? String.class : VALUES[i].getClass( ),
+					null,
+					false ) );
+		}
+		scope.put( "row", scope, row );
+		resultObject = new ResultObject( new ResultClass( fields ), VALUES );
+	}
+
+	@After
+	public void javaExpressionEvaluatorTearDown( ) throws Exception
+	{
+		cx.close( );
+	}
+
+	/**
+	 * Assert the expression is evaluated in Java, with the same result as
+	 * Rhino.
+	 *
+	 * @param expression
+	 * @throws Exception
+	 */
+	private void assertSameResult( String expression ) throws Exception
+	{
+		CompiledExpression expr = compiler.compile( expression, null, cx );
+		assertTrue( expression, expr instanceof ComplexExpression );
+		JavaExpressionEvaluator evaluator = ( (ComplexExpression) expr ).getJavaEvaluator( );
+		assertNotNull( expression, evaluator );
+		Object value = evaluator.evaluate( resultObject, 1 );
+		assertTrue( expression, value != JavaExpressionEvaluator.UNSUPPORTED );
+		assertEquals( expression, expr.evaluate( cx, scope ), value );
+		assertEquals( expression,
+				value,
+				ExprEvaluateUtil.evaluateCompiledExpression( expr,
+						resultObject,
+						1,
+						scope,
+						cx ) );
+	}
+
+	@Test
+	public void testArithmetic( ) throws Exception
+	{
+		assertSameResult( "row.INT + 1" );
+		assertSameResult( "row[\"INT\"] * row[\"DOUBLE\"] - row.DECIMAL" );
+		assertSameResult( "row.DECIMAL / 4 % 2" );
+		assertSameResult( "row.INT / 0" );
+		assertSameResult( "-row.INT + +row.NUMSTR" );
+		assertSameResult( "row.NUMSTR * 2" );
+		assertSameResult( "row.NULL * 2 + row.BOOL" );
+		assertSameResult( "row[1] + row[2]" );
+	}
+
+	@Test
+	public void testConcat( ) throws Exception
+	{
+		assertSameResult( "row.STR + row.INT" );
+		assertSameResult( "row.DOUBLE + \"-\" + row.STR" );
+		assertSameResult( "row.STR + row.NULL + row.BOOL" );
+		assertSameResult( "row.INT + 1 + row.NUMSTR" );
+	}
+
+	@Test
+	public void testComparison( ) throws Exception
+	{
+		assertSameResult( "row.INT > 2" );
+		assertSameResult( "row.INT <= row.DOUBLE" );
+		assertSameResult( "row.NUMSTR == 7" );
+		assertSameResult( "row.NUMSTR === 7" );
+		assertSameResult( "row.NULL == null" );
+		assertSameResult( "row.NULL != 0" );
+		assertSameResult( "row.STR < \"abd\"" );
+		assertSameResult( "row.STR >= row.NUMSTR" );
+	}
+
+	@Test
+	public void testLogical( ) throws Exception
+	{
+		assertSameResult( "row.INT > 2 && row.STR" );
+		assertSameResult( "row.NULL || row.STR" );
+		assertSameResult( "!row.NULL" );
+		assertSameResult( "row.INT > 5 ? row.STR : row.DECIMAL" );
+		assertSameResult( "row.BOOL ? row.INT : 0" );
+		assertSameResult( "row.INT > 2 && row.INT" );
+	}
+
+	@Test
+	public void testFunctionError( ) throws Exception
+	{
+		String expression = "BirtStr.left( row.STR, -1 )";
+		CompiledExpression expr = compiler.compile( expression, null, cx );
+		assertTrue( expr instanceof ComplexExpression );
+		assertNotNull( ( (ComplexExpression) expr ).getJavaEvaluator( ) );
+		// the function is not called again by Rhino
+		try
+		{
+			ExprEvaluateUtil.evaluateCompiledExpression( expr,
+					resultObject,
+					1,
+					scope,
+					cx );
+			fail( expression );
+		}
+		catch ( IllegalArgumentException e )
+		{
+		}
+	}
+
+	@Test
+	public void testUnsupported( ) throws Exception
+	{
+		String[] expressions = new String[]{
+				"row.STR.length", "row.dataSet", "Math.abs( row.INT )",
+				"row.INT; row.STR", "x = row.INT"
+		};
+		for ( int i = 0; i < expressions.length; i++ )
+		{
+			CompiledExpression expr = compiler.compile( expressions[i],
+					null,
+					cx );
+			if ( expr instanceof ComplexExpression )
+				assertNull( expressions[i],
+						( (ComplexExpression) expr ).getJavaEvaluator( ) );
+		}
+	}
+}
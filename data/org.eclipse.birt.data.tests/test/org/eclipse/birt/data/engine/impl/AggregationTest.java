@@ -14,8 +14,14 @@
 
 package org.eclipse.birt.data.engine.impl;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.engine.api.APITestCase;
+import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.api.IBinding;
 import org.eclipse.birt.data.engine.api.IConditionalExpression;
 import org.eclipse.birt.data.engine.api.IPreparedQuery;
@@ -934,6 +940,74 @@ public class AggregationTest extends APITestCase
 		outputQueryResult( executeQuery( query ), cols );
 		checkOutputFile( );
 	}
+	
+	/**
+	 * A query which is only grouped and sorted on data set columns is sorted
+	 * and grouped in the pass which fetches the rows. The result is the same
+	 * as the one of the separate passes.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testFusedPass( ) throws Exception
+	{
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.FUSED_ROW_PASS, "false" );
+		List expected = getFusedPassResult( appContext );
+		List result = getFusedPassResult( new HashMap( ) );
+		assertTrue( expected.size( ) > 0 );
+		assertEquals( expected, result );
+	}
+
+	/**
+	 * 
+	 * @param appContext
+	 * @return
+	 * @throws Exception
+	 */
+	private List getFusedPassResult( Map appContext ) throws Exception
+	{
+		QueryDefinition query = newReportQuery( );
+
+		GroupDefinition g1 = new GroupDefinition( "G1" );
+		g1.setKeyColumn( "CITY" );
+		query.addGroup( g1 );
+
+		SortDefinition sort = new SortDefinition( );
+		sort.setColumn( "SALE_DATE" );
+		sort.setSortDirection( ISortDefinition.SORT_DESC );
+		query.addSort( sort );
+
+		query.addBinding( new Binding( "b1",
+				new ScriptExpression( "dataSetRow[\"CITY\"]" ) ) );
+		query.addBinding( new Binding( "b2",
+				new ScriptExpression( "dataSetRow[\"SALE_DATE\"]" ) ) );
+		query.addBinding( new Binding( "b3",
+				new ScriptExpression( "dataSetRow[\"PRICE\"]" ) ) );
+		Binding b = new Binding( "b4", null );
+		b.setAggrFunction( IBuildInAggregation.TOTAL_SUM_FUNC );
+		b.addArgument( new ScriptExpression( "dataSetRow[\"PRICE\"]" ) );
+		b.addAggregateOn( "G1" );
+		query.addBinding( b );
+
+		String[] cols = new String[]{
+				"b1", "b2", "b3", "b4"
+		};
+		List result = new ArrayList( );
+		IResultIterator it = dataEngine.prepare( query, appContext )
+				.execute( null )
+				.getResultIterator( );
+		while ( it.next( ) )
+		{
+			for ( int i = 0; i < cols.length; i++ )
+			{
+				result.add( it.getValue( cols[i] ) );
+			}
+			result.add( Integer.valueOf( it.getStartingGroupLevel( ) ) );
+		}
+		it.close( );
+		return result;
+	}
 }
 
 class CancelDataEngineThread extends Thread 
@@ -11,11 +11,16 @@
 package org.eclipse.birt.data.engine.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
 import org.eclipse.birt.data.engine.api.APITestCase;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IDataQueryDefinition;
 import org.eclipse.birt.data.engine.api.IGroupDefinition;
 import org.eclipse.birt.data.engine.api.IJoinCondition;
 import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
@@ -57,6 +62,8 @@ public class JointDataSetTest extends APITestCase
 	//
 	private static int CARTESIAN_POPULATOR = 0;
 	private static int BINARY_TREE_POPULATOR = 1;
+	private static int HASH_JOIN_POPULATOR = 2;
+	private static Map hashJoinAppContext = null;
 	private static boolean ADD_FETCH_LIMIT = false;
 	private ScriptContext cx;
 	/*
@@ -229,6 +236,91 @@ public class JointDataSetTest extends APITestCase
 		checkOutputFile();
 	}
 	
+	/**
+	 * The hash join returns the same rows as the binary tree populator, in
+	 * the order of the larger data set.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testHashJoin( ) throws Exception
+	{
+		int[] joinTypes = new int[]{
+				IJointDataSetDesign.INNER_JOIN,
+				IJointDataSetDesign.LEFT_OUTER_JOIN,
+				IJointDataSetDesign.RIGHT_OUTER_JOIN,
+				IJointDataSetDesign.FULL_OUTER_JOIN
+		};
+		for ( int i = 0; i < joinTypes.length; i++ )
+		{
+			assertSameRows( basicJoinTest( joinTypes[i], BINARY_TREE_POPULATOR ),
+					basicJoinTest( joinTypes[i], HASH_JOIN_POPULATOR ) );
+		}
+	}
+
+	/**
+	 * The rows are spilled to disk with a tiny memory buffer.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+    public void testHashJoinOnDisk( ) throws Exception
+	{
+		hashJoinAppContext = new HashMap( );
+		hashJoinAppContext.put( "birt.data.engine.test.memcachesize", "1" );
+		try
+		{
+			assertSameRows( basicJoinTest( IJointDataSetDesign.INNER_JOIN,
+					BINARY_TREE_POPULATOR ),
+					basicJoinTest( IJointDataSetDesign.INNER_JOIN,
+							HASH_JOIN_POPULATOR ) );
+			assertSameRows( basicJoinTest( IJointDataSetDesign.FULL_OUTER_JOIN,
+					BINARY_TREE_POPULATOR ),
+					basicJoinTest( IJointDataSetDesign.FULL_OUTER_JOIN,
+							HASH_JOIN_POPULATOR ) );
+		}
+		finally
+		{
+			hashJoinAppContext = null;
+		}
+	}
+
+	/**
+	 * The hash join is only used for equal join conditions when it is
+	 * enabled.
+	 */
+	@Test
+    public void testIsHashJoin( )
+	{
+		List conditions = new ArrayList( );
+		conditions.add( new JoinCondition( new ScriptExpression( "dataSetRow.ID" ),
+				new ScriptExpression( "dataSetRow.ID" ),
+				IJoinCondition.OP_EQ ) );
+		Map appContext = new HashMap( );
+		assertFalse( JointDataSetPopulatorFactory.isHashJoin( conditions,
+				appContext ) );
+		appContext.put( DataEngine.JOINT_DATA_SET_HASH_JOIN, "true" );
+		assertTrue( JointDataSetPopulatorFactory.isHashJoin( conditions,
+				appContext ) );
+		assertFalse( JointDataSetPopulatorFactory.isHashJoin( new ArrayList( ),
+				appContext ) );
+	}
+
+	/**
+	 * Compare the rows ignoring the order.
+	 * 
+	 * @param expected
+	 * @param actual
+	 */
+	private static void assertSameRows( String expected, String actual )
+	{
+		String[] expectedRows = expected.split( "\n" );
+		String[] actualRows = actual.split( "\n" );
+		Arrays.sort( expectedRows );
+		Arrays.sort( actualRows );
+		assertEquals( Arrays.asList( expectedRows ), Arrays.asList( actualRows ) );
+	}
+
 	/**
 	 * 
 	 * @param joinType
@@ -432,6 +524,8 @@ public class JointDataSetTest extends APITestCase
 		
 		if( populateType == BINARY_TREE_POPULATOR) 
 			populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator(it1, it2, meta, matcher, joinType, ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit);
+		else if( populateType == HASH_JOIN_POPULATOR )
+			populator = JointDataSetPopulatorFactory.getHashJoinDataSetPopulator(it1, it2, meta, matcher, joinType, ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit, hashJoinAppContext);
 		else 
 			populator = JointDataSetPopulatorFactory.getCartesianJointDataSetPopulator(it1, it2, meta, matcher, joinType,  ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit);
 		
@@ -491,4 +585,40 @@ public class JointDataSetTest extends APITestCase
 				columnDefinition.getAlias( ) );
 	}
 
+	/**
+	 * The data sets joined by a joint data set are counted when the queries
+	 * are registered, so a data set used by a joint data set and by another
+	 * query is cached.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testJoinedDataSetsCached( ) throws Exception
+	{
+		OdaDataSetDesign dset1 = newDataSet( "dset1", "Select ID, CITY, STORE FROM "
+				+ this.getTestTableName( ) + " order by ID asc" );
+		OdaDataSetDesign dset2 = newDataSet( "dset2", "Select ID, SKU, CATEGORY, PRICE FROM "
+				+ this.getTestTableName( ) + " order by ID asc" );
+
+		List a = new ArrayList( );
+		a.add( new JoinCondition( new ScriptExpression( "dataSetRow.ID" ),
+				new ScriptExpression( "dataSetRow.ID" ),
+				IJoinCondition.OP_EQ ) );
+		JointDataSetDesign dset3 = new JointDataSetDesign( "dset3",
+				dset1.getName( ),
+				dset2.getName( ),
+				IJointDataSetDesign.INNER_JOIN,
+				a );
+		dataEngine.defineDataSet( dset3 );
+
+		dataEngine.registerQueries( new IDataQueryDefinition[]{
+				this.newReportQuery( dset3 ), this.newReportQuery( dset1 )
+		} );
+		IEngineExecutionHints hints = ( (DataEngineImpl) dataEngine ).getExecutionHints( );
+		assertTrue( hints.needCacheDataSet( "dset1" ) );
+		// only used by the joint data set
+		assertFalse( hints.needCacheDataSet( "dset2" ) );
+		assertFalse( hints.needCacheDataSet( "dset3" ) );
+	}
+
 }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Run the tests of FileDocumentManagerTest against the memory mapped
+ * document manager, which saves the same files.
+ */
+
+public class MappedDocumentManagerTest extends FileDocumentManagerTest
+{
+
+	private static final String TMP_DIR = System.getProperty( "java.io.tmpdir" );
+	private static final String MANAGER_NAME = "cub1";
+
+	@Before
+	public void mappedDocumentManagerSetUp( ) throws Exception
+	{
+		documentManager.close( );
+		documentManager = DocumentManagerFactory.createMappedDocumentManager( TMP_DIR,
+				MANAGER_NAME );
+	}
+
+	@Test
+	public void testLoadMappedDocumentManager( ) throws IOException,
+			DataException
+	{
+		byte[] out = new byte[MappedDocumentManager.REGION_SIZE + 100];
+		for ( int i = 0; i < out.length; i++ )
+		{
+			out[i] = (byte) i;
+		}
+		documentManager.createDocumentObject( "obj1" );
+		documentManager.createDocumentObject( "obj2" );
+		IDocumentObject obj1 = documentManager.openDocumentObject( "obj1" );
+		IDocumentObject obj2 = documentManager.openDocumentObject( "obj2" );
+		// the blocks of both objects interleave and span two regions
+		obj1.write( out, 0, 5000 );
+		obj2.writeInt( 7 );
+		obj1.write( out, 5000, out.length - 5000 );
+		obj1.close( );
+		obj2.close( );
+		documentManager.close( );
+		// the blocks of both objects, not whole regions
+		int blockCount = ( out.length - 1 ) / IObjectAllocTable.BLOCK_SIZE + 2;
+		assertEquals( (long) blockCount * IObjectAllocTable.BLOCK_SIZE,
+				new File( TMP_DIR, MANAGER_NAME + "data" ).length( ) );
+
+		documentManager = DocumentManagerFactory.loadMappedDocumentManager( TMP_DIR,
+				MANAGER_NAME );
+		obj1 = documentManager.openDocumentObject( "obj1" );
+		obj2 = documentManager.openDocumentObject( "obj2" );
+		assertEquals( out.length, obj1.length( ) );
+		byte[] in = new byte[out.length];
+		assertEquals( in.length, obj1.read( in, 0, in.length ) );
+		assertArrayEquals( out, in );
+		assertEquals( 7, obj2.readInt( ) );
+		obj1.close( );
+		obj2.close( );
+	}
+
+	@Test
+	public void testLoadFileDocumentManager( ) throws IOException,
+			DataException
+	{
+		byte[] out = new byte[MappedDocumentManager.REGION_SIZE];
+		for ( int i = 0; i < out.length; i++ )
+		{
+			out[i] = (byte) i;
+		}
+		documentManager.close( );
+		documentManager = DocumentManagerFactory.createFileDocumentManager( TMP_DIR,
+				MANAGER_NAME );
+		documentManager.createDocumentObject( "obj1" );
+		documentManager.createDocumentObject( "obj2" );
+		IDocumentObject obj1 = documentManager.openDocumentObject( "obj1" );
+		IDocumentObject obj2 = documentManager.openDocumentObject( "obj2" );
+		// obj1 fills the first region, the last block of obj2 is the first
+		// block of the second region and the data file ends in the middle of
+		// it
+		int length1 = out.length - IObjectAllocTable.BLOCK_SIZE;
+		int length2 = IObjectAllocTable.BLOCK_SIZE + 100;
+		obj1.write( out, 0, length1 );
+		obj2.write( out, 0, length2 );
+		obj1.close( );
+		obj2.close( );
+		documentManager.close( );
+		assertEquals( (long) MappedDocumentManager.REGION_SIZE + 100,
+				new File( TMP_DIR, MANAGER_NAME + "data" ).length( ) );
+
+		documentManager = DocumentManagerFactory.loadMappedDocumentManager( TMP_DIR,
+				MANAGER_NAME );
+		obj1 = documentManager.openDocumentObject( "obj1" );
+		obj2 = documentManager.openDocumentObject( "obj2" );
+		assertEquals( length1, obj1.length( ) );
+		assertEquals( length2, obj2.length( ) );
+		byte[] in = new byte[length2];
+		assertEquals( length2, obj2.read( in, 0, length2 ) );
+		assertArrayEquals( Arrays.copyOf( out, length2 ), in );
+		in = new byte[length1];
+		assertEquals( length1, obj1.read( in, 0, length1 ) );
+		assertArrayEquals( Arrays.copyOf( out, length1 ), in );
+		obj1.close( );
+		obj2.close( );
+	}
+}
@@ -13,10 +13,13 @@ package org.eclipse.birt.data.engine.olap.data.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.compound.ArchiveFile;
@@ -56,11 +59,13 @@ import org.eclipse.birt.data.engine.olap.data.api.cube.IHierarchy;
 import org.eclipse.birt.data.engine.olap.data.api.cube.ILevelDefn;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.LevelFilter;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionForTest;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.LevelDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.impl.query.CubeElementFactory;
 import org.eclipse.birt.data.engine.olap.impl.query.CubeQueryExecutor;
@@ -454,6 +459,117 @@ public class CubeAggregationTest extends BaseTestCase
 		}
 	}
 	@Test
+    public void testCube1AggregationInParallel( ) throws IOException, DataException, BirtException
+	{
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[3];
+		funcitons[0] = new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_SUM_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC );
+		funcitons[2] = new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_AVE_FUNC );
+		int[] sortType = new int[]{
+			IDimensionSortDefn.SORT_ASC
+		};
+		AggregationDefinition[] aggregations = new AggregationDefinition[4];
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel21}, sortType, funcitons );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel31}, sortType, funcitons );
+		aggregations[2] = new AggregationDefinition( new DimLevel[]{dimLevel21, dimLevel31}, 
+				new int[]{ IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_DESC }, funcitons );
+		aggregations[3] = new AggregationDefinition( null, null, funcitons );
+
+		CubeQueryExecutorHelper cubeQueryExcutorHelper = new CubeQueryExecutorHelper( 
+				CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) ), new ComputedMeasureHelper( ), null );
+		IAggregationResultSet[] expected = cubeQueryExcutorHelper.execute( aggregations,
+				new StopSign( ) );
+
+		// the aggregations on dimension2 and on dimension3 are sorted in
+		// different stacks, which are aggregated in parallel
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBE_AGGREGATION_THREAD_COUNT, "4" );
+		cubeQueryExcutorHelper = new CubeQueryExecutorHelper( 
+				CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) ), new ComputedMeasureHelper( ), null );
+		cubeQueryExcutorHelper.setAppContext( appContext );
+		IAggregationResultSet[] resultSet = cubeQueryExcutorHelper.execute( aggregations,
+				new StopSign( ) );
+
+		assertEquals( expected.length, resultSet.length );
+		for ( int i = 0; i < resultSet.length; i++ )
+		{
+			assertEquals( expected[i].length( ), resultSet[i].length( ) );
+			for ( int j = 0; j < resultSet[i].length( ); j++ )
+			{
+				expected[i].seek( j );
+				resultSet[i].seek( j );
+				assertTrue( Arrays.equals( expected[i].getCurrentRow( ).getLevelMembers( ),
+						resultSet[i].getCurrentRow( ).getLevelMembers( ) ) );
+				for ( int k = 0; k < funcitons.length; k++ )
+				{
+					assertEquals( expected[i].getAggregationValue( k ),
+							resultSet[i].getAggregationValue( k ) );
+				}
+			}
+			expected[i].close( );
+			resultSet[i].close( );
+		}
+	}
+	@Test
+    public void testCube1AggregationFromRollup( ) throws IOException, DataException, BirtException
+	{
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[4];
+		funcitons[0] = new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_SUM_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC );
+		funcitons[2] = new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_MIN_FUNC );
+		funcitons[3] = new AggregationFunctionDefinition( "measure2", IBuildInAggregation.TOTAL_MAX_FUNC );
+		int[] sortType = new int[]{
+			IDimensionSortDefn.SORT_ASC
+		};
+		AggregationDefinition[] aggregations = new AggregationDefinition[3];
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel21}, sortType, funcitons );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel21, dimLevel31},
+				new int[]{ IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_DESC }, funcitons );
+		aggregations[2] = new AggregationDefinition( null, null, funcitons );
+
+		CubeQueryExecutorHelper cubeQueryExcutorHelper = new CubeQueryExecutorHelper(
+				CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) ), new ComputedMeasureHelper( ), null );
+		IAggregationResultSet[] expected = cubeQueryExcutorHelper.execute( aggregations,
+				new StopSign( ) );
+
+		Cube cube = new Cube( "cube1", documentManager );
+		cube.load( new StopSign( ) );
+		CubeRollup.create( cube, new DimLevel[]{
+				dimLevel21, dimLevel31
+		}, 0, new StopSign( ) );
+		cube.close( );
+		documentManager.flush( );
+
+		cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube1", documentManager, new StopSign( ) );
+		assertEquals( 1, cube.getRollups( ).length );
+		assertTrue( cube.getRollups( )[0].covers( aggregations ) );
+		cubeQueryExcutorHelper = new CubeQueryExecutorHelper( cube, new ComputedMeasureHelper( ), null );
+		IAggregationResultSet[] resultSet = cubeQueryExcutorHelper.execute( aggregations,
+				new StopSign( ) );
+
+		assertEquals( expected.length, resultSet.length );
+		for ( int i = 0; i < resultSet.length; i++ )
+		{
+			assertEquals( expected[i].length( ), resultSet[i].length( ) );
+			for ( int j = 0; j < resultSet[i].length( ); j++ )
+			{
+				expected[i].seek( j );
+				resultSet[i].seek( j );
+				assertTrue( Arrays.equals( expected[i].getCurrentRow( ).getLevelMembers( ),
+						resultSet[i].getCurrentRow( ).getLevelMembers( ) ) );
+				for ( int k = 0; k < funcitons.length; k++ )
+				{
+					assertEquals( expected[i].getAggregationDataType( k ),
+							resultSet[i].getAggregationDataType( k ) );
+					assertEquals( expected[i].getAggregationValue( k ),
+							resultSet[i].getAggregationValue( k ) );
+				}
+			}
+			expected[i].close( );
+			resultSet[i].close( );
+		}
+	}
+	@Test
     public void testCube1AggregationWithFunctionFilter( ) throws IOException, DataException, BirtException
 	{
 		//query
@@ -1275,6 +1391,12 @@ public class CubeAggregationTest extends BaseTestCase
 	}
 	
 	private void createCube2( ) throws IOException, BirtException
+	{
+		createCube2( "cube2", new TestFactTable( ) );
+	}
+
+	private void createCube2( String cubeName, TestFactTable factTable2 )
+			throws IOException, BirtException
 	{
 		Dimension[] dimensions = new Dimension[2];
 		
@@ -1310,17 +1432,78 @@ public class CubeAggregationTest extends BaseTestCase
 		assertEquals( hierarchy.getName( ), "dimension2" );
 		assertEquals( dimensions[1].length( ), 3 );
 		
-		TestFactTable factTable2 = new TestFactTable();
 		String[] measureColumnName = new String[2];
 		measureColumnName[0] = "measure1";
 		measureColumnName[1] = "measure2";
-		Cube cube = new Cube( "cube2", documentManager );
+		Cube cube = new Cube( cubeName, documentManager );
 		
 		cube.create( CubeUtility.getKeyColNames( dimensions ), dimensions, factTable2, measureColumnName, new StopSign( ) );
 		documentManager.flush( );	
 		
 	}
 	@Test
+    public void testCubeRollupOfDecimalMeasure( ) throws IOException, BirtException
+	{
+		createCube2( "cube3", new DecimalFactTable( ) );
+		Cube cube = new Cube( "cube3", documentManager );
+		cube.load( new StopSign( ) );
+		CubeRollup.create( cube, new DimLevel[]{
+			dimLevel21
+		}, 0, new StopSign( ) );
+		cube.close( );
+		documentManager.flush( );
+
+		cube = (Cube) CubeQueryExecutorHelper.loadCube( "cube3", documentManager, new StopSign( ) );
+		CubeRollup rollup = cube.getRollups( )[0];
+		MeasureInfo[] columns = rollup.getColumns( );
+		int sumIndex = -1;
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			if ( columns[i].getMeasureName( ).equals( "SUM(measure1)" ) )
+				sumIndex = i;
+		}
+		assertEquals( DataType.BIGDECIMAL_TYPE, columns[sumIndex].getDataType( ) );
+
+		// the sums keep the digits which doubles lose
+		BigDecimal[] sums = new BigDecimal[]{
+				new BigDecimal( "40000000000000001.0" ),
+				new BigDecimal( "40000000000000002.6" ),
+				new BigDecimal( "40000000000000004.2" )
+		};
+		assertEquals( sums.length, rollup.getRowCount( ) );
+		IDocumentObject rows = rollup.openRows( );
+		Member[] members = new Member[1];
+		for ( int i = 0; i < sums.length; i++ )
+		{
+			Object[] values = rollup.readRow( rows, members );
+			assertEquals( sums[i], values[sumIndex] );
+		}
+		rows.close( );
+
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[]{
+			new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_SUM_FUNC )
+		};
+		AggregationDefinition[] aggregations = new AggregationDefinition[]{
+			new AggregationDefinition( new DimLevel[]{
+				dimLevel21
+			}, new int[]{
+				IDimensionSortDefn.SORT_ASC
+			}, funcitons )
+		};
+		assertTrue( rollup.covers( aggregations ) );
+		CubeQueryExecutorHelper cubeQueryExcutorHelper = new CubeQueryExecutorHelper( cube, new ComputedMeasureHelper( ), null );
+		IAggregationResultSet[] resultSet = cubeQueryExcutorHelper.execute( aggregations,
+				new StopSign( ) );
+		for ( int i = 0; i < sums.length; i++ )
+		{
+			resultSet[0].seek( i );
+			assertEquals( sums[i].doubleValue( ),
+					( (Number) resultSet[0].getAggregationValue( 0 ) ).doubleValue( ),
+					0 );
+		}
+		resultSet[0].close( );
+	}
+	@Test
     public void testCube2Aggregation( ) throws IOException, BirtException
 	{
 		createCube2( );
@@ -1623,6 +1806,33 @@ class TestFactTable implements IDatasetIterator
 	}
 }
 
+/**
+ * The fact table whose measure1 is a BigDecimal with more digits than a double
+ * holds.
+ */
+class DecimalFactTable extends TestFactTable
+{
+
+	public int getFieldType( String name ) throws BirtException
+	{
+		if ( name.equals( "measure1" ) )
+		{
+			return DataType.BIGDECIMAL_TYPE;
+		}
+		return super.getFieldType( name );
+	}
+
+	public Object getValue( int fieldIndex ) throws BirtException
+	{
+		if ( fieldIndex == 5 )
+		{
+			return new BigDecimal( "10000000000000000" ).add( BigDecimal.valueOf( ptr + 1,
+					1 ) );
+		}
+		return super.getValue( fieldIndex );
+	}
+}
+
 class ComputedMeasureHelper implements IComputedMeasureHelper
 {
 	private MeasureInfo[] measureInfos = {new MeasureInfo("C_Measure1", DataType.INTEGER_TYPE)};
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.birt.core.archive.ArchiveUtil;
+import org.eclipse.birt.core.archive.FolderArchiveReader;
+import org.eclipse.birt.core.archive.FolderArchiveWriter;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineContext;
+import org.eclipse.birt.data.engine.impl.DataEngineImpl;
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.cursor.CubeUtility;
+import org.eclipse.birt.data.engine.olap.data.api.CubeQueryExecutorHelper;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.api.IDimensionSortDefn;
+import org.eclipse.birt.data.engine.olap.data.api.cube.CubeMaterializer;
+import org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator;
+import org.eclipse.birt.data.engine.olap.data.api.cube.ILevelDefn;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionForTest;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.LevelDefinition;
+import org.eclipse.birt.data.engine.olap.data.util.DataType;
+
+import testutil.BaseTestCase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Appends fact table rows with new dimension members to a saved cube, and
+ * compares the cube with the one created from all the rows.
+ */
+public class CubeAppendTest extends BaseTestCase
+{
+
+	private static final String[] MEASURES = new String[]{
+		"measure1"
+	};
+
+	private static final Object[][] SAVED_ROWS = new Object[][]{
+			{"a", new Integer( 1 ), new Integer( 1 )},
+			{"a", new Integer( 3 ), new Integer( 2 )},
+			{"c", new Integer( 1 ), new Integer( 3 )},
+			{"c", new Integer( 3 ), new Integer( 4 )}
+	};
+
+	// "b" and 2 are new members, "b" is saved before "c"
+	private static final Object[][] APPENDED_ROWS = new Object[][]{
+			{"b", new Integer( 2 ), new Integer( 5 )},
+			{"c", new Integer( 2 ), new Integer( 6 )},
+			{"a", new Integer( 1 ), new Integer( 7 )}
+	};
+
+	private DataEngineImpl engine;
+	private File folder;
+
+	@Before
+	public void cubeAppendSetUp( ) throws Exception
+	{
+		DataEngineContext context = DataEngineContext.newInstance( DataEngineContext.DIRECT_PRESENTATION,
+				null,
+				null,
+				null );
+		context.setTmpdir( getTempDir( ) );
+		engine = (DataEngineImpl) DataEngine.newDataEngine( context );
+		folder = new File( getTempDir( ), "savedCube" );
+		ArchiveUtil.deleteAllFiles( folder );
+	}
+
+	@After
+	public void cubeAppendTearDown( ) throws Exception
+	{
+		engine.shutdown( );
+		ArchiveUtil.deleteAllFiles( folder );
+	}
+
+	@Test
+	public void testAppendNewMembers( ) throws IOException, BirtException
+	{
+		CubeMaterializer saved = new CubeMaterializer( engine, "saved" );
+		Dimension[] dimensions = createDimensions( saved,
+				new Object[]{"a", "c"},
+				new int[]{1, 3} );
+		saved.createCube( "cube",
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				dimensions,
+				new RowsForAppendTest( SAVED_ROWS ),
+				MEASURES,
+				0,
+				new StopSign( ) );
+		FolderArchiveWriter writer = new FolderArchiveWriter( folder.getAbsolutePath( ) );
+		saved.saveCubeToReportDocument( "cube", writer, new StopSign( ) );
+		writer.finish( );
+
+		CubeMaterializer appended = new CubeMaterializer( engine, "appended" );
+		dimensions = createDimensions( appended,
+				new Object[]{"a", "b", "c"},
+				new int[]{1, 2, 3} );
+		FolderArchiveReader reader = new FolderArchiveReader( folder.getAbsolutePath( ) );
+		assertTrue( appended.appendCube( "cube",
+				reader,
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				dimensions,
+				new RowsForAppendTest( APPENDED_ROWS ),
+				MEASURES,
+				null,
+				null,
+				0,
+				new StopSign( ) ) );
+		// a count of the saved counts is not the count of all the rows
+		assertFalse( appended.appendCube( "cube",
+				reader,
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				dimensions,
+				new RowsForAppendTest( APPENDED_ROWS ),
+				MEASURES,
+				null,
+				new String[]{
+					IBuildInAggregation.TOTAL_COUNT_FUNC
+				},
+				0,
+				new StopSign( ) ) );
+		reader.close( );
+
+		CubeMaterializer all = new CubeMaterializer( engine, "all" );
+		dimensions = createDimensions( all,
+				new Object[]{"a", "b", "c"},
+				new int[]{1, 2, 3} );
+		Object[][] allRows = new Object[SAVED_ROWS.length
+				+ APPENDED_ROWS.length][];
+		System.arraycopy( SAVED_ROWS, 0, allRows, 0, SAVED_ROWS.length );
+		System.arraycopy( APPENDED_ROWS,
+				0,
+				allRows,
+				SAVED_ROWS.length,
+				APPENDED_ROWS.length );
+		all.createCube( "cube",
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				dimensions,
+				new RowsForAppendTest( allRows ),
+				MEASURES,
+				0,
+				new StopSign( ) );
+
+		IAggregationResultSet expected = aggregate( all );
+		IAggregationResultSet result = aggregate( appended );
+		assertEquals( 6, expected.length( ) );
+		assertEquals( expected.length( ), result.length( ) );
+		for ( int i = 0; i < result.length( ); i++ )
+		{
+			expected.seek( i );
+			result.seek( i );
+			assertTrue( Arrays.equals( expected.getCurrentRow( )
+					.getLevelMembers( ), result.getCurrentRow( )
+					.getLevelMembers( ) ) );
+			assertEquals( expected.getAggregationValue( 0 ),
+					result.getAggregationValue( 0 ) );
+		}
+		// the saved row and the appended row of "a" and 1
+		result.seek( 0 );
+		assertEquals( new Integer( 8 ), result.getAggregationValue( 0 ) );
+		expected.close( );
+		result.close( );
+	}
+
+	private Dimension[] createDimensions( CubeMaterializer materializer,
+			Object[] members1, int[] members2 ) throws IOException,
+			BirtException
+	{
+		Dimension[] dimensions = new Dimension[2];
+		DimensionForTest iterator = new DimensionForTest( new String[]{
+			"level11"
+		} );
+		iterator.setLevelMember( 0, members1 );
+		dimensions[0] = (Dimension) DimensionFactory.createDimension( "dimension1",
+				materializer.getDocumentManager( ),
+				iterator,
+				new ILevelDefn[]{
+					new LevelDefinition( "level11", new String[]{
+						"level11"
+					}, null )
+				},
+				false,
+				new StopSign( ) );
+		iterator = new DimensionForTest( new String[]{
+			"level21"
+		} );
+		iterator.setLevelMember( 0, members2 );
+		dimensions[1] = (Dimension) DimensionFactory.createDimension( "dimension2",
+				materializer.getDocumentManager( ),
+				iterator,
+				new ILevelDefn[]{
+					new LevelDefinition( "level21", new String[]{
+						"level21"
+					}, null )
+				},
+				false,
+				new StopSign( ) );
+		return dimensions;
+	}
+
+	private IAggregationResultSet aggregate( CubeMaterializer materializer )
+			throws IOException, BirtException
+	{
+		AggregationDefinition aggregation = new AggregationDefinition( new DimLevel[]{
+				new DimLevel( "dimension1", "level11" ),
+				new DimLevel( "dimension2", "level21" )
+		},
+				new int[]{
+						IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_ASC
+				},
+				new AggregationFunctionDefinition[]{
+					new AggregationFunctionDefinition( "measure1",
+							IBuildInAggregation.TOTAL_SUM_FUNC )
+				} );
+		CubeQueryExecutorHelper helper = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube",
+				materializer.getDocumentManager( ),
+				new StopSign( ) ) );
+		return helper.execute( new AggregationDefinition[]{
+			aggregation
+		}, new StopSign( ) )[0];
+	}
+}
+
+/**
+ * The fact table rows of level11, level21 and measure1.
+ */
+class RowsForAppendTest implements IDatasetIterator
+{
+
+	private static final String[] FIELDS = new String[]{
+			"level11", "level21", "measure1"
+	};
+
+	private Object[][] rows;
+	private int ptr = -1;
+
+	RowsForAppendTest( Object[][] rows )
+	{
+		this.rows = rows;
+	}
+
+	public int getFieldIndex( String name ) throws BirtException
+	{
+		return Arrays.asList( FIELDS ).indexOf( name );
+	}
+
+	public int getFieldType( String name ) throws BirtException
+	{
+		if ( "level11".equals( name ) )
+		{
+			return DataType.STRING_TYPE;
+		}
+		return DataType.INTEGER_TYPE;
+	}
+
+	public boolean next( ) throws BirtException
+	{
+		ptr++;
+		return ptr < rows.length;
+	}
+
+	public Object getValue( int fieldIndex ) throws BirtException
+	{
+		return rows[ptr][fieldIndex];
+	}
+
+	public void close( ) throws BirtException
+	{
+	}
+}
@@ -69,6 +69,28 @@ public class DimensionTest {
 	}
 	
 
+	/**
+	 * A dimension saved by the file document manager is loaded by the memory
+	 * mapped one, although the data file ends in the middle of a block.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testDimensionLoadMapped( ) throws IOException, BirtException
+	{
+		String tmpDir = System.getProperty( "java.io.tmpdir" );
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( tmpDir,
+				"mappedDim" );
+		testDimensionCreate( documentManager );
+		documentManager.close( );
+
+		documentManager = DocumentManagerFactory.loadMappedDocumentManager( tmpDir,
+				"mappedDim" );
+		testDimensionFind( documentManager );
+		documentManager.close( );
+	}
+
 	private void testDimensionCreate( IDocumentManager documentManager ) throws IOException, BirtException, DataException
 	{
 		ILevelDefn[] levelDefs = new ILevelDefn[1];
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+
+public class PositionBitmapTest
+{
+
+	@Test
+	public void testSparse( ) throws IOException
+	{
+		IDiskArray positions = new BufferedPrimitiveDiskArray( );
+		positions.add( Integer.valueOf( 3 ) );
+		positions.add( Integer.valueOf( 70000 ) );
+		positions.add( Integer.valueOf( 70005 ) );
+		PositionBitmap bitmap = PositionBitmap.valueOf( positions );
+		assertEquals( 3, bitmap.getCardinality( ) );
+		assertTrue( bitmap.contains( 3 ) );
+		assertTrue( bitmap.contains( 70005 ) );
+		assertFalse( bitmap.contains( 4 ) );
+		assertFalse( bitmap.contains( 65539 ) );
+		assertTrue( bitmap.intersects( 0, 3 ) );
+		assertFalse( bitmap.intersects( 4, 69999 ) );
+		assertTrue( bitmap.intersects( 4, 70000 ) );
+		assertFalse( bitmap.intersects( 70006, Integer.MAX_VALUE ) );
+		positions.close( );
+	}
+
+	@Test
+	public void testDense( )
+	{
+		PositionBitmap bitmap = new PositionBitmap( );
+		bitmap.add( 100, 20000 );
+		bitmap.add( 50 );
+		bitmap.add( 150 );
+		assertEquals( 19902, bitmap.getCardinality( ) );
+		assertTrue( bitmap.contains( 50 ) );
+		assertFalse( bitmap.contains( 51 ) );
+		assertTrue( bitmap.contains( 20000 ) );
+		assertFalse( bitmap.contains( 20001 ) );
+		assertTrue( bitmap.intersects( 51, 100 ) );
+		assertFalse( bitmap.intersects( 51, 99 ) );
+		assertFalse( bitmap.intersects( 20001, 65535 ) );
+	}
+
+	@Test
+	public void testAnd( )
+	{
+		Random random = new Random( 0 );
+		PositionBitmap[] bitmaps = new PositionBitmap[3];
+		BitSet[] expected = new BitSet[3];
+		int[] counts = new int[]{
+				100, 10000, 150000
+		};
+		for ( int i = 0; i < bitmaps.length; i++ )
+		{
+			bitmaps[i] = new PositionBitmap( );
+			expected[i] = new BitSet( );
+			for ( int j = 0; j < counts[i]; j++ )
+			{
+				int pos = random.nextInt( 200000 );
+				bitmaps[i].add( pos );
+				expected[i].set( pos );
+			}
+		}
+		for ( int i = 0; i < bitmaps.length; i++ )
+		{
+			for ( int j = 0; j < bitmaps.length; j++ )
+			{
+				PositionBitmap result = bitmaps[i].and( bitmaps[j] );
+				BitSet expectedResult = (BitSet) expected[i].clone( );
+				expectedResult.and( expected[j] );
+				assertEquals( expectedResult.cardinality( ),
+						result.getCardinality( ) );
+				for ( int pos = 0; pos < 200000; pos++ )
+				{
+					assertEquals( expectedResult.get( pos ),
+							result.contains( pos ) );
+				}
+			}
+		}
+	}
+}
@@ -81,6 +81,24 @@ abstract public class DataEngine
 	
 	
 	public static String DATA_SET_CACHE_DELTA_FILE = "org.eclipse.birt.data.cache.DeltaFile";
+
+	/**
+	 * The time in milliseconds after which a data set cached at JVM level is
+	 * retrieved again from the data source. Zero or negative integer: the
+	 * cache never expires, which is the default. The setting is read from
+	 * appContext, or else from the system property of the same name.
+	 */
+	public static String DATA_SET_CACHE_TIME_TO_LIVE = "org.eclipse.birt.data.cache.TimeToLive";
+
+	/**
+	 * The total size in MB of the data sets cached at JVM level, which are
+	 * shared by all the data engines. Once it is exceeded, the least recently
+	 * used data sets are removed from the cache when a data set is saved.
+	 * Zero or negative integer: no limit, which is the default. The setting
+	 * is read from appContext, or else from the system property of the same
+	 * name.
+	 */
+	public static String DATA_SET_CACHE_SIZE_LIMIT = "org.eclipse.birt.data.cache.SizeLimit";
 	
 	/**
 	 * Indicates whether memory data set cache function need to be used:
@@ -155,7 +173,101 @@ abstract public class DataEngine
 	 * of materialized cube exceed the assigned memory size, the disk will automatically be used. 
 	 */
 	public static String IN_MEMORY_CUBE_SIZE = "org.eclipse.birt.data.engine.cube.inmemory.size";
+
+	/**
+	 * Indicates whether the materialized cube is saved in a memory mapped
+	 * file, which is read from the page cache without being copied into the
+	 * buffers of the data engine. "true" to map the file, the in memory cube
+	 * size is ignored then. The default value is "false". Only the temporary
+	 * files in which the cubes are materialized are mapped, the cubes saved
+	 * into a report document are read from the document as before.
+	 */
+	public static String MAPPED_CUBE_DOCUMENT = "org.eclipse.birt.data.engine.cube.mapped";
+
+	/**
+	 * The level combinations at which the rows of the cubes are aggregated
+	 * and saved when the cubes are created. A cube query whose levels are all
+	 * in one of the combinations, and which has no filter, is calculated from
+	 * the aggregated rows. The combinations are separated by ";", the levels
+	 * of a combination by "," and each level is given as
+	 * "dimensionName/levelName", e.g. "Time/Year,Geography/Region;Time/Year".
+	 * A combination with a level which is not in a cube is ignored for the
+	 * cube. There are no aggregated rows by default.
+	 */
+	public static String CUBE_ROLLUP_LEVELS = "org.eclipse.birt.data.engine.cube.rollups";
+
+	/**
+	 * The folder where the materialized cubes are kept between the runs, so
+	 * that the next run only queries the fact table rows which are appended
+	 * after the cube is saved, see CUBE_APPEND_FILTER. Each cube is saved in a
+	 * sub folder named after the cube. It is only used together with
+	 * CUBE_APPEND_FILTER, and not for the cubes whose primary key is generated.
+	 */
+	public static String CUBE_APPEND_FOLDER = "org.eclipse.birt.data.engine.cube.append.folder";
+
+	/**
+	 * The filter expression on the rows of the fact table data set which
+	 * selects the rows that are not in the saved cube yet, e.g.
+	 * "dataSetRow[\"ID\"] > 1000". When the cube is saved in
+	 * CUBE_APPEND_FOLDER, the dimensions are created from all their members
+	 * and the selected rows are appended to the saved rows; otherwise the cube
+	 * is created from all the rows and saved.
+	 */
+	public static String CUBE_APPEND_FILTER = "org.eclipse.birt.data.engine.cube.append.filter";
+
+	/**
+	 * Indicates whether the rows cached in memory are stored in columns with
+	 * primitive values when the result class allows. "false" to keep one
+	 * result object per row. The default value is "true".
+	 */
+	public static String COLUMNAR_MEMORY_CACHE = "org.eclipse.birt.data.cache.columnar";
+	
+	/**
+	 * Indicates whether the rows which exceed the memory cache are spilled to
+	 * memory mapped files with fixed width format, which allows the disk
+	 * cache to move to any row directly. It applies to the rows which are not
+	 * sorted, the sorted rows are always merged in stream based files. "true"
+	 * to map the files. The default value is "false".
+	 */
+	public static String MAPPED_DISK_CACHE = "org.eclipse.birt.data.cache.disk.mapped";
 	
+	/**
+	 * The count of threads used to sort the rows which exceed the memory
+	 * cache. With more than one thread, the sorted runs are prepared while the
+	 * rows are still being fetched and the runs are merged in parallel. The
+	 * sort keys are compared in the worker threads, so the sort must not
+	 * depend on script evaluation. The default value is 1, which sorts the
+	 * rows in the caller thread.
+	 */
+	public static String DISK_SORT_THREAD_COUNT = "org.eclipse.birt.data.cache.disk.sort.threads";
+	
+	/**
+	 * The count of threads used to aggregate a cube. The fact table rows are
+	 * sorted once for each group of aggregations which share the leading
+	 * levels, and the groups are aggregated in parallel. The aggregations
+	 * with script filters or time functions are always aggregated in the
+	 * caller thread. The default value is 1.
+	 */
+	public static String CUBE_AGGREGATION_THREAD_COUNT = "org.eclipse.birt.data.cube.aggregation.threads";
+	
+	/**
+	 * Indicates whether the joint data sets with equal join conditions are
+	 * joined with a hash table rather than by merging the sorted data sets.
+	 * Neither data set is sorted then, and the joint rows follow the order of
+	 * the larger data set instead of the order of the join keys. The default
+	 * value is "false".
+	 */
+	public static String JOINT_DATA_SET_HASH_JOIN = "org.eclipse.birt.data.join.hash";
+
+	/**
+	 * Indicates whether a query which is only grouped and sorted evaluates
+	 * the data set computed columns and filters, sorts and groups the rows
+	 * in the pass which fetches them, instead of passing the cached rows
+	 * again. "false" to always make separate passes. The default value is
+	 * "true".
+	 */
+	public static String FUSED_ROW_PASS = "org.eclipse.birt.data.query.pass.fused";
+
 	/**
 	 * Creates a new instance of DataEngine, using the specified
 	 * DataEngineContext as its running environment
@@ -302,6 +414,15 @@ abstract public class DataEngine
 	 */
 	abstract public void clearCache( String cacheID ) throws BirtException;
 	
+	/**
+	 * Clear all the data sets cached at JVM level, which are shared by all the
+	 * data engines. The data sets which are being read from the cache are
+	 * removed once they are closed, or after one minute.
+	 * 
+	 * @throws BirtException
+	 */
+	abstract public void clearCache( ) throws BirtException;
+	
 	/**
 	 * Verifies the elements of a report query spec
 	 * and provides a hint to the query to prepare and optimize 
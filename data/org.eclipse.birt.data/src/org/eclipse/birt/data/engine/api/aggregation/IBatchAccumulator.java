@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.api.aggregation;
+
+import java.util.BitSet;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * An Accumulator of a summary aggregation with one argument may implement this
+ * interface to accept the numeric argument values a batch at a time. The Data
+ * Engine then collects the argument values of the rows as doubles, and passes
+ * them with onBatch() instead of calling onRow() for each of them. The argument
+ * values which are not numbers are still passed with onRow(), after the
+ * batch of the rows before them.
+ * <p>
+ * A batch never spans two groups: the Data Engine passes the pending batch
+ * before it calls finish().
+ */
+public interface IBatchAccumulator
+{
+
+	/**
+	 * This method is called for a batch of rows, with the values of the
+	 * argument of each row. The value of row i is null if bit i of nulls is
+	 * set, in which case values[i] is undefined.
+	 *
+	 * @param values
+	 *            the argument values, of which the first count are used
+	 * @param nulls
+	 *            the rows with null argument values
+	 * @param count
+	 *            the count of the rows in the batch
+	 * @throws DataException
+	 */
+	public void onBatch( double[] values, BitSet nulls, int count )
+			throws DataException;
+}
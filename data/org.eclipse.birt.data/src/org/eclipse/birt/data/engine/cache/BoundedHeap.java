@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.cache;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * A heap which keeps the first N of the offered values in the order defined by
+ * isBefore. The root of the heap is the kept value which is dropped first, so
+ * every value is offered in O(log N) and the values which are not kept are
+ * rejected with one comparison. When N is larger than the memory to be spent,
+ * the values of a list can be selected in passes with a smaller heap.
+ */
+
+public abstract class BoundedHeap
+{
+
+	private int capacity;
+	private int size;
+	private Object[] values;
+	private int[] ids;
+
+	/**
+	 *
+	 * @param capacity
+	 *            the count of the values to be kept
+	 */
+	public BoundedHeap( int capacity )
+	{
+		if ( capacity < 0 )
+			throw new IllegalArgumentException( "Illegal Capacity: "
+					+ capacity );
+		this.capacity = capacity;
+		// the arrays grow with the values, as N might exceed the count of
+		// the values
+		int initialSize = capacity < 16 ? capacity : 16;
+		this.values = new Object[initialSize];
+		this.ids = new int[initialSize];
+	}
+
+	/**
+	 * Offer a value with its id, which identifies the value in the result.
+	 *
+	 * @param value
+	 * @param id
+	 * @return whether the value is kept
+	 * @throws DataException
+	 */
+	public boolean offer( Object value, int id ) throws DataException
+	{
+		if ( size < capacity )
+		{
+			if ( size == values.length )
+			{
+				int newSize = values.length * 2 < capacity ? values.length * 2
+						: capacity;
+				values = Arrays.copyOf( values, newSize );
+				ids = Arrays.copyOf( ids, newSize );
+			}
+			values[size] = value;
+			ids[size] = id;
+			siftUp( size++ );
+			return true;
+		}
+		if ( capacity == 0 || !isBefore( value, id, values[0], ids[0] ) )
+		{
+			return false;
+		}
+		values[0] = value;
+		ids[0] = id;
+		siftDown( 0 );
+		return true;
+	}
+
+	/**
+	 *
+	 * @return the count of the kept values
+	 */
+	public int size( )
+	{
+		return size;
+	}
+
+	/**
+	 *
+	 * @return the ids of the kept values in ascending order
+	 */
+	public int[] getSortedIds( )
+	{
+		int[] result = Arrays.copyOf( ids, size );
+		Arrays.sort( result );
+		return result;
+	}
+
+	/**
+	 * Select the first n values of a list, which is usually cached on disk, in
+	 * passes over the list. Each pass keeps the first of the values which are
+	 * not selected yet, at most the capacity of this heap, so that n is not
+	 * bounded by the memory. The null values are skipped, and the id of a value
+	 * is its index in the list. The values offered before are dropped.
+	 *
+	 * @param list
+	 * @param n
+	 * @return the indexes of the selected values
+	 * @throws DataException
+	 */
+	public BitSet select( List list, int n ) throws DataException
+	{
+		BitSet selected = new BitSet( );
+		int count = list.size( );
+		while ( n > 0 && capacity > 0 )
+		{
+			clear( );
+			for ( int i = 0; i < count; i++ )
+			{
+				Object value = list.get( i );
+				// the selected values are before all the others
+				if ( value != null && !selected.get( i ) )
+					offer( value, i );
+			}
+			if ( size == 0 )
+				break;
+			while ( size > n )
+				removeRoot( );
+			for ( int i = 0; i < size; i++ )
+				selected.set( ids[i] );
+			n -= size;
+		}
+		clear( );
+		return selected;
+	}
+
+	/**
+	 * Drop all the kept values.
+	 */
+	public void clear( )
+	{
+		Arrays.fill( values, 0, size, null );
+		size = 0;
+	}
+
+	/**
+	 * Return whether the first value is ordered before the second one. The
+	 * order must be total, the ids are never equal.
+	 *
+	 * @param value1
+	 * @param id1
+	 * @param value2
+	 * @param id2
+	 * @return
+	 * @throws DataException
+	 */
+	protected abstract boolean isBefore( Object value1, int id1,
+			Object value2, int id2 ) throws DataException;
+
+	/**
+	 * Whether the value at index1 is dropped before the one at index2.
+	 *
+	 * @param index1
+	 * @param index2
+	 * @return
+	 * @throws DataException
+	 */
+	private boolean isAfter( int index1, int index2 ) throws DataException
+	{
+		return isBefore( values[index2], ids[index2], values[index1], ids[index1] );
+	}
+
+	/**
+	 * Drop the kept value which is dropped first.
+	 *
+	 * @throws DataException
+	 */
+	private void removeRoot( ) throws DataException
+	{
+		size--;
+		values[0] = values[size];
+		ids[0] = ids[size];
+		values[size] = null;
+		siftDown( 0 );
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @throws DataException
+	 */
+	private void siftUp( int index ) throws DataException
+	{
+		while ( index > 0 )
+		{
+			int parent = ( index - 1 ) / 2;
+			if ( !isAfter( index, parent ) )
+				break;
+			swap( index, parent );
+			index = parent;
+		}
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @throws DataException
+	 */
+	private void siftDown( int index ) throws DataException
+	{
+		while ( true )
+		{
+			int child = index * 2 + 1;
+			if ( child >= size )
+				break;
+			if ( child + 1 < size && isAfter( child + 1, child ) )
+				child++;
+			if ( !isAfter( child, index ) )
+				break;
+			swap( index, child );
+			index = child;
+		}
+	}
+
+	/**
+	 *
+	 * @param index1
+	 * @param index2
+	 */
+	private void swap( int index1, int index2 )
+	{
+		Object value = values[index1];
+		values[index1] = values[index2];
+		values[index2] = value;
+		int id = ids[index1];
+		ids[index1] = ids[index2];
+		ids[index2] = id;
+	}
+}
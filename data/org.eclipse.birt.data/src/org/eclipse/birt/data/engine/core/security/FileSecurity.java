@@ -18,6 +18,10 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
@@ -444,4 +448,62 @@ public class FileSecurity
 
 		}
 	}
+
+	/**
+	 * Unmap a memory mapped buffer at once, rather than when it is garbage
+	 * collected, so that its file can be deleted on the platforms which lock
+	 * the mapped files, such as Windows. The buffer, and any buffer
+	 * duplicated from it, must not be used any more. If the running JVM does
+	 * not allow it, the buffer is left to the garbage collector.
+	 * 
+	 * @param buffer
+	 * @return whether the buffer is unmapped
+	 */
+	public static boolean releaseMappedBuffer( final MappedByteBuffer buffer )
+	{
+		if ( buffer == null )
+			return true;
+		return AccessController.doPrivileged( new PrivilegedAction<Boolean>( ) {
+
+			public Boolean run( )
+			{
+				try
+				{
+					// Java 9 and later
+					Class unsafeClass = Class.forName( "sun.misc.Unsafe" ); //$NON-NLS-1$
+					Method invokeCleaner = unsafeClass.getMethod( "invokeCleaner", //$NON-NLS-1$
+							ByteBuffer.class );
+					Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" ); //$NON-NLS-1$
+					theUnsafe.setAccessible( true );
+					invokeCleaner.invoke( theUnsafe.get( null ), buffer );
+					return Boolean.TRUE;
+				}
+				catch ( NoSuchMethodException e )
+				{
+					// Java 8 and before, use the cleaner of the buffer
+				}
+				catch ( Exception e )
+				{
+					return Boolean.FALSE;
+				}
+				try
+				{
+					Method cleanerMethod = buffer.getClass( )
+							.getMethod( "cleaner" ); //$NON-NLS-1$
+					cleanerMethod.setAccessible( true );
+					Object cleaner = cleanerMethod.invoke( buffer );
+					if ( cleaner == null )
+						return Boolean.FALSE;
+					cleaner.getClass( )
+							.getMethod( "clean" ) //$NON-NLS-1$
+							.invoke( cleaner );
+					return Boolean.TRUE;
+				}
+				catch ( Exception e )
+				{
+					return Boolean.FALSE;
+				}
+			}
+		} );
+	}
 }
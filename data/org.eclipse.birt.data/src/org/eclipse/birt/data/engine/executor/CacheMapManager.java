@@ -10,19 +10,28 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.executor;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
 import org.eclipse.birt.data.engine.odi.IResultClass;
 
 /**
- * Manage the cache map
+ * Manage the cache map. The JVM level cache map is kept in the order of
+ * access, so that the least recently used data sets can be removed once the
+ * size limit of the cache is exceeded. A data set cached at JVM level can
+ * also expire after a time to live.
  */
 public class CacheMapManager
 {
@@ -30,9 +39,17 @@ public class CacheMapManager
 	 * Please notice that we must use static variable here for the sharing of
 	 * cached data set would be cross data set session.
 	 */
-	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new HashMap( ) );
+	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new LinkedHashMap( 16,
+			0.75f,
+			true ) );
 	private static Map<DataSourceAndDataSet, Integer> lockedDataSetCacheMap = Collections.synchronizedMap( new HashMap( ) );	
 	
+	// the save time, time to live and size of the data sets cached at JVM
+	// level
+	private static Map<IDataSetCacheObject, CacheEntry> JVMLevelCacheEntries = Collections.synchronizedMap( new WeakHashMap<IDataSetCacheObject, CacheEntry>( ) );
+	
+	private static Logger logger = Logger.getLogger( CacheMapManager.class.getName( ) );
+	
 	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
 	// use this field temporarily keep the data set object need to be saved in
 	// cache. After the data set result has been cached, saved data set object
@@ -105,7 +122,8 @@ public class CacheMapManager
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
 			if (cacheObject != null)
 			{
-				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability );
+				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability )
+						&& !( useJVMLevelCache && isExpired( cacheObject ) );
 				if ( !reusable )
 				{
 					if ( useJVMLevelCache )
@@ -158,13 +176,165 @@ public class CacheMapManager
 		}
 	}
 	
+	/**
+	 * @param dsAndDs
+	 * @param dsco
+	 * @param dscc
+	 *            the cache config which provides the time to live and the
+	 *            size limit of the JVM level cache, or null
+	 */
 	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
-			IDataSetCacheObject dsco )
+			IDataSetCacheObject dsco, DataSetCacheConfig dscc )
 	{
+		if ( !useJVMLevelCache || dscc == null )
+		{
+			synchronized ( cacheMap )
+			{
+				cacheMap.put( dsAndDs, dsco );
+			}
+			return;
+		}
+		// estimate the size out of the lock, since the rows may be scanned
+		CacheEntry entry = new CacheEntry( dscc.getTimeToLive( ),
+				getCacheSize( dsco ) );
+		List<IDataSetCacheObject> removed;
 		synchronized ( cacheMap )
 		{
 			cacheMap.put( dsAndDs, dsco );
+			JVMLevelCacheEntries.put( dsco, entry );
+			removed = removeLeastRecentlyUsed( dsAndDs, dscc.getSizeLimit( ) );
+		}
+		for ( IDataSetCacheObject cacheObject : removed )
+		{
+			cacheObject.release( );
+		}
+	}
+	
+	/**
+	 * Remove the least recently used data sets until the total size of the
+	 * JVM level cache does not exceed the limit. The data sets which are
+	 * being read and the data set just saved are kept.
+	 * 
+	 * @param saved
+	 * @param sizeLimit
+	 * @return the removed cache objects, to be released
+	 */
+	private List<IDataSetCacheObject> removeLeastRecentlyUsed(
+			DataSourceAndDataSet saved, long sizeLimit )
+	{
+		List<IDataSetCacheObject> removed = new ArrayList<IDataSetCacheObject>( );
+		if ( sizeLimit <= 0 )
+			return removed;
+		long totalSize = 0;
+		for ( Iterator it = cacheMap.values( ).iterator( ); it.hasNext( ); )
+		{
+			totalSize += getEntry( (IDataSetCacheObject) it.next( ) ).size;
 		}
+		for ( Iterator it = cacheMap.entrySet( ).iterator( ); it.hasNext( )
+				&& totalSize > sizeLimit; )
+		{
+			Map.Entry mapEntry = (Map.Entry) it.next( );
+			Object key = mapEntry.getKey( );
+			if ( key == saved || lockedDataSetCacheMap.containsKey( key ) )
+				continue;
+			IDataSetCacheObject cacheObject = (IDataSetCacheObject) mapEntry.getValue( );
+			totalSize -= getEntry( cacheObject ).size;
+			it.remove( );
+			tempDataSetCacheMap.remove( key );
+			removed.add( cacheObject );
+		}
+		if ( !removed.isEmpty( ) )
+			logger.log( Level.FINE, removed.size( )
+					+ " data sets are removed from the cache, the cache size is "
+					+ totalSize );
+		return removed;
+	}
+	
+	/**
+	 * @param cacheObject
+	 * @return whether the time to live of the JVM level cache object expires
+	 */
+	private static boolean isExpired( IDataSetCacheObject cacheObject )
+	{
+		CacheEntry entry = getEntry( cacheObject );
+		return entry.timeToLive > 0
+				&& System.currentTimeMillis( ) - entry.saveTime >= entry.timeToLive;
+	}
+	
+	/**
+	 * @param cacheObject
+	 * @return
+	 */
+	private static CacheEntry getEntry( IDataSetCacheObject cacheObject )
+	{
+		CacheEntry entry = JVMLevelCacheEntries.get( cacheObject );
+		return entry == null ? CacheEntry.UNKNOWN : entry;
+	}
+	
+	/**
+	 * Estimate the size in bytes of a cache object.
+	 * 
+	 * @param cacheObject
+	 * @return
+	 */
+	private static long getCacheSize( IDataSetCacheObject cacheObject )
+	{
+		try
+		{
+			if ( cacheObject instanceof DataSetCacheObjectWithDummyData )
+			{
+				return getCacheSize( ( (DataSetCacheObjectWithDummyData) cacheObject ).getSourceDataSetCacheObject( ) );
+			}
+			if ( cacheObject instanceof MemoryDataSetCacheObject )
+			{
+				MemoryDataSetCacheObject memoryCache = (MemoryDataSetCacheObject) cacheObject;
+				if ( memoryCache.getResultClass( ) == null )
+					return 0;
+				SizeOfUtil sizeOfUtil = new SizeOfUtil( memoryCache.getResultClass( ) );
+				long size = 0;
+				int count = memoryCache.getSize( );
+				for ( int i = 0; i < count; i++ )
+				{
+					size += sizeOfUtil.sizeOf( memoryCache.getResultObject( i ) );
+				}
+				return size;
+			}
+			if ( cacheObject instanceof DiskDataSetCacheObject )
+			{
+				return getFileSize( new File( ( (DiskDataSetCacheObject) cacheObject ).getCacheDir( ) ) );
+			}
+			if ( cacheObject instanceof IncreDataSetCacheObject )
+			{
+				return getFileSize( new File( ( (IncreDataSetCacheObject) cacheObject ).getCacheDir( ) ) );
+			}
+		}
+		catch ( DataException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+		catch ( RuntimeException e )
+		{
+			// the soft referenced rows may be collected meanwhile
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+		return 0;
+	}
+	
+	/**
+	 * @param file
+	 * @return the total length of the files in a folder
+	 */
+	private static long getFileSize( File file )
+	{
+		File[] files = file.listFiles( );
+		if ( files == null )
+			return file.length( );
+		long size = 0;
+		for ( int i = 0; i < files.length; i++ )
+		{
+			size += getFileSize( files[i] );
+		}
+		return size;
 	}
 	
 	/**
@@ -305,13 +475,31 @@ public class CacheMapManager
 	}
 	
 	public static void clearCache( Set<String> cacheIDs ) 
+	{
+		clearJVMLevelCache( cacheIDs );
+	}
+	
+	/**
+	 * Clear all the data sets cached at JVM level. The data sets which are
+	 * being read are removed once they are closed, or after one minute.
+	 */
+	public static void clearJVMLevelCache( )
+	{
+		clearJVMLevelCache( null );
+	}
+	
+	/**
+	 * @param cacheIDs
+	 *            the cache scope IDs of the data sets to remove, null for all
+	 */
+	private static void clearJVMLevelCache( Set<String> cacheIDs )
 	{
 		List<IDataSetCacheObject> removed = new ArrayList<IDataSetCacheObject>( );
 		
 		Object[] keyArray = JVMLevelCacheMap.keySet( ).toArray( new DataSourceAndDataSet[]{} );
 		for( Object dsAndDs : keyArray )
 		{
-			if( cacheIDs.contains( ((DataSourceAndDataSet)dsAndDs).getCacheScopeID( ) ))
+			if( cacheIDs == null || cacheIDs.contains( ((DataSourceAndDataSet)dsAndDs).getCacheScopeID( ) ))
 			{
 				// here we do not use while clause to avoid thread suspending if
 				// cached is not properly closed.
@@ -361,6 +549,25 @@ public class CacheMapManager
 		}
 	}
 }
+/**
+ * The save time, time to live and size of a data set cached at JVM level.
+ */
+class CacheEntry
+{
+	static final CacheEntry UNKNOWN = new CacheEntry( 0, 0 );
+	
+	long saveTime;
+	long timeToLive;
+	long size;
+	
+	CacheEntry( long timeToLive, long size )
+	{
+		this.saveTime = System.currentTimeMillis( );
+		this.timeToLive = timeToLive;
+		this.size = size;
+	}
+}
+
 /**
  * Register shutdown hook on JVM exit to ensure that JVM cache will be cleared correctly.
  * 
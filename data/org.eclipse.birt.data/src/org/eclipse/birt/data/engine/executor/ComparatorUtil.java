@@ -64,6 +64,155 @@ public class ComparatorUtil
 		return isEqualObject( str1, str2 );
 	}
 
+	/**
+	 * Compare two query texts, ignoring the differences of the white spaces
+	 * out of the literals, the quoted identifiers and the comments. The query
+	 * texts which can't be split into them with certainty are compared
+	 * exactly.
+	 * 
+	 * @param query1
+	 * @param query2
+	 * @return
+	 */
+	public static boolean isEqualQueryText( String query1, String query2 )
+	{
+		if ( query1 == null || query2 == null )
+			return query1 == query2;
+		if ( query1.equals( query2 ) )
+			return true;
+		String normalized1 = normalizeQueryText( query1 );
+		return normalized1 != null
+				&& normalized1.equals( normalizeQueryText( query2 ) );
+	}
+
+	/**
+	 * Trim a query text and replace each run of white spaces out of the
+	 * literals, the quoted identifiers and the comments with a single space,
+	 * or with a single line break if the run has one. The line breaks are
+	 * kept since they end the line comments.
+	 * 
+	 * @param query
+	 * @return the normalized query text, or null if the query text can't be
+	 *         normalized with certainty
+	 */
+	private static String normalizeQueryText( String query )
+	{
+		StringBuffer buffer = new StringBuffer( query.length( ) );
+		boolean space = false;
+		boolean lineBreak = false;
+		int i = 0;
+		while ( i < query.length( ) )
+		{
+			char c = query.charAt( i );
+			if ( Character.isWhitespace( c ) )
+			{
+				space = true;
+				if ( c == '\n' || c == '\r' )
+					lineBreak = true;
+				i++;
+				continue;
+			}
+			if ( space && buffer.length( ) > 0 )
+				buffer.append( lineBreak ? '\n' : ' ' );
+			space = false;
+			lineBreak = false;
+			int end = getTokenEnd( query, i );
+			if ( end < 0 )
+				return null;
+			buffer.append( query, i, end );
+			i = end;
+		}
+		return buffer.toString( );
+	}
+
+	/**
+	 * Return the end of the literal, the quoted identifier or the comment
+	 * which starts at an index of a query text, which is kept as is, or the
+	 * next index for any other character.
+	 * 
+	 * @param query
+	 * @param start
+	 * @return the end index, or -1 if the query text can't be split with
+	 *         certainty
+	 */
+	private static int getTokenEnd( String query, int start )
+	{
+		char c = query.charAt( start );
+		switch ( c )
+		{
+			case '\'' :
+			case '"' :
+			case '`' :
+				return getQuotedEnd( query, start, c );
+			case '[' :
+				return getQuotedEnd( query, start, ']' );
+			case '-' :
+				if ( query.startsWith( "--", start ) )
+				{
+					int end = start + 2;
+					while ( end < query.length( )
+							&& query.charAt( end ) != '\n'
+							&& query.charAt( end ) != '\r' )
+						end++;
+					return end;
+				}
+				return start + 1;
+			case '/' :
+				if ( query.startsWith( "/*", start ) )
+				{
+					int end = query.indexOf( "*/", start + 2 );
+					// the nested comments of some databases
+					if ( end < 0
+							|| query.substring( start + 2, end )
+									.indexOf( "/*" ) >= 0 )
+						return -1;
+					return end + 2;
+				}
+				return start + 1;
+			case '#' :
+			case '$' :
+			case '\\' :
+				// the comments, the quotes and the escapes of some databases
+				return -1;
+			default :
+				return start + 1;
+		}
+	}
+
+	/**
+	 * Return the end of a quoted literal or identifier, in which a doubled
+	 * closing quote is an escaped quote.
+	 * 
+	 * @param query
+	 * @param start
+	 *            the index of the opening quote
+	 * @param close
+	 *            the closing quote
+	 * @return the end index, or -1 if the quote is not closed or a backslash
+	 *         might escape a quote
+	 */
+	private static int getQuotedEnd( String query, int start, char close )
+	{
+		int i = start + 1;
+		while ( i < query.length( ) )
+		{
+			char c = query.charAt( i );
+			if ( c == '\\' )
+				return -1;
+			if ( c == close )
+			{
+				if ( i + 1 < query.length( ) && query.charAt( i + 1 ) == close )
+				{
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return -1;
+	}
+
 	/**
 	 * @param map1
 	 * @param map2
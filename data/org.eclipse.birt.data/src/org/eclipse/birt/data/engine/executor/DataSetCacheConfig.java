@@ -24,6 +24,13 @@ public class DataSetCacheConfig
 	private boolean isIncremental;
 	private String cacheDir;
 	
+	/**
+	 * the time to live in milliseconds and the total size limit in bytes of
+	 * the JVM level cache, <=0 for no limit
+	 */
+	private long timeToLive;
+	private long sizeLimit;
+	
 	private DataSetCacheConfig( DataSetCacheMode cacheMode, int countConfig, boolean isIncremental, String cacheDir)
 	{
 		assert cacheMode != null && countConfig != 0; 
@@ -69,6 +76,36 @@ public class DataSetCacheConfig
 		return countConfig < 0 ? Integer.MAX_VALUE : countConfig;
 	}
 	
+	/**
+	 * @param timeToLive
+	 *            the time in milliseconds after which the cached data set
+	 *            expires, <=0 for never
+	 */
+	public void setTimeToLive( long timeToLive )
+	{
+		this.timeToLive = timeToLive;
+	}
+	
+	long getTimeToLive( )
+	{
+		return timeToLive;
+	}
+	
+	/**
+	 * @param sizeLimit
+	 *            the total size in bytes of the JVM level cache, <=0 for no
+	 *            limit
+	 */
+	public void setSizeLimit( long sizeLimit )
+	{
+		this.sizeLimit = sizeLimit;
+	}
+	
+	long getSizeLimit( )
+	{
+		return sizeLimit;
+	}
+	
 	String getCacheDir( )
 	{
 		return cacheDir;
@@ -329,7 +329,9 @@ public class DataSetCacheManager
 		
 		cacheMapManager.saveFinishOnCache( DataSourceAndDataSet.newInstance( this.dataSourceDesign,
 				this.dataSetDesign,
-				this.parameterHints, this.cacheID, this.enableSamplePreview ), dsco );
+				this.parameterHints, this.cacheID, this.enableSamplePreview ),
+				dsco,
+				getDataSetCacheConfig( dataSetDesign, appContext ) );
 	}
 	
 	/**
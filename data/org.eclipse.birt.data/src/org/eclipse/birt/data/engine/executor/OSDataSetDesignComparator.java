@@ -33,7 +33,7 @@ public class OSDataSetDesignComparator
 			IOdaDataSetDesign dataSet = (IOdaDataSetDesign) dataSetDesign;
 			IOdaDataSetDesign dataSet2 = (IOdaDataSetDesign) dataSetDesign2;
 
-			if ( ComparatorUtil.isEqualString( dataSet.getQueryText( ),
+			if ( ComparatorUtil.isEqualQueryText( dataSet.getQueryText( ),
 					dataSet2.getQueryText( ) ) == false
 					|| ComparatorUtil.isEqualString( dataSet.getExtensionID( ),
 							dataSet2.getExtensionID( ) ) == false
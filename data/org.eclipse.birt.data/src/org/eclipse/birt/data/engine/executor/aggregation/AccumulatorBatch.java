@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.aggregation;
+
+import java.util.BitSet;
+
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.ColumnarRowStore;
+
+/**
+ * Collects the argument values of an aggregation into a column of doubles and
+ * passes them to its IBatchAccumulator a batch at a time. The values which can
+ * not be held as doubles are passed with onRow() after the pending batch, so
+ * that the accumulator sees the rows in their order.
+ */
+public class AccumulatorBatch
+{
+
+	private static final int BATCH_SIZE = 1024;
+
+	private double[] values;
+	private BitSet nulls;
+	private int count;
+
+	private AccumulatorBatch( )
+	{
+		this.values = new double[BATCH_SIZE];
+		this.nulls = new BitSet( BATCH_SIZE );
+		this.count = 0;
+	}
+
+	/**
+	 * Create a batch for the aggregation.
+	 *
+	 * @param aggregation
+	 * @param acc
+	 *            an accumulator of the aggregation
+	 * @return null if the argument values of the aggregation can not be passed
+	 *         in batches
+	 */
+	public static AccumulatorBatch create( IAggrFunction aggregation,
+			Accumulator acc )
+	{
+		if ( acc instanceof IBatchAccumulator
+				&& aggregation.getType( ) == IAggrFunction.SUMMARY_AGGR
+				&& aggregation.getParameterDefn( ).length == 1 )
+		{
+			return new AccumulatorBatch( );
+		}
+		return null;
+	}
+
+	/**
+	 * Add the arguments of a row to the batch, or pass them to the accumulator
+	 * if they can not be added.
+	 *
+	 * @param acc
+	 * @param args
+	 * @throws DataException
+	 */
+	public void onRow( Accumulator acc, Object[] args ) throws DataException
+	{
+		if ( args != null && args.length == 1 && add( args[0] ) )
+		{
+			if ( count == values.length )
+			{
+				flush( acc );
+			}
+			return;
+		}
+		flush( acc );
+		acc.onRow( args );
+	}
+
+	/**
+	 * Add the value of a numeric column of the row store to the batch without
+	 * building the argument of the row.
+	 *
+	 * @param acc
+	 * @param rowStore
+	 * @param rowIndex
+	 * @param fieldIndex
+	 *            the 1-based index of a numeric column
+	 * @return false if the value is not held in the primitive array of the
+	 *         column, the argument must be evaluated and passed with onRow()
+	 * @throws DataException
+	 */
+	public boolean onColumnValue( Accumulator acc, ColumnarRowStore rowStore,
+			int rowIndex, int fieldIndex ) throws DataException
+	{
+		if ( rowStore.isNull( rowIndex, fieldIndex ) )
+		{
+			nulls.set( count );
+		}
+		else if ( rowStore.isPrimitive( rowIndex, fieldIndex ) )
+		{
+			values[count] = rowStore.getDouble( rowIndex, fieldIndex );
+		}
+		else
+		{
+			return false;
+		}
+		count++;
+		if ( count == values.length )
+		{
+			flush( acc );
+		}
+		return true;
+	}
+
+	/**
+	 * Pass the pending batch to the accumulator. This must be called before
+	 * the accumulator is finished.
+	 *
+	 * @param acc
+	 * @throws DataException
+	 */
+	public void flush( Accumulator acc ) throws DataException
+	{
+		if ( count == 0 )
+		{
+			return;
+		}
+		try
+		{
+			( (IBatchAccumulator) acc ).onBatch( values, nulls, count );
+		}
+		finally
+		{
+			count = 0;
+			nulls.clear( );
+		}
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return whether the value is added
+	 */
+	private boolean add( Object value )
+	{
+		if ( value == null )
+		{
+			nulls.set( count );
+		}
+		else if ( value instanceof Double
+				|| value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte )
+		{
+			values[count] = ( (Number) value ).doubleValue( );
+		}
+		else
+		{
+			// the conversion of the other types, such as BigDecimal and
+			// Float, might fail or differ
+			return false;
+		}
+		count++;
+		return true;
+	}
+}
@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.api.IBaseExpression;
@@ -27,14 +28,20 @@ import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 import org.eclipse.birt.data.engine.cache.BasicCachedList;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.ColumnarRowStore;
+import org.eclipse.birt.data.engine.executor.cache.ResultSetCache;
+import org.eclipse.birt.data.engine.executor.cache.SmartCache;
 import org.eclipse.birt.data.engine.executor.transform.ResultSetPopulator;
+import org.eclipse.birt.data.engine.expression.ColumnReferenceExpression;
 import org.eclipse.birt.data.engine.expression.ExprEvaluateUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IAggrDefnManager;
 import org.eclipse.birt.data.engine.odi.IAggrInfo;
 import org.eclipse.birt.data.engine.odi.IAggrValueHolder;
+import org.eclipse.birt.data.engine.odi.IResultClass;
 import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.JSRowObject;
 
 
 /**
@@ -66,6 +73,15 @@ public class AggregationHelper implements IAggrValueHolder
 	
 	private AccumulatorManager[] accumulatorManagers;
 	
+	// The batches of the aggregations whose values are passed in batches
+	private AccumulatorBatch[] accumulatorBatches;
+	
+	// The columnar store of the cached rows, and the 1-based index of the
+	// numeric column whose values are passed to the batch of aggregation #i,
+	// or 0 if the argument must be evaluated
+	private ColumnarRowStore rowStore;
+	private int[] batchColumns;
+	
 	private Set invalidAggrSet;
 	private Map invalidAggrMsg;
 	private Set<String> aggrNames;
@@ -105,6 +121,8 @@ public class AggregationHelper implements IAggrValueHolder
 					this.aggrNames.add( this.manager.getAggrDefn( i ).getName( ) );
 				}
 				accumulatorManagers = new AccumulatorManager[currentAggrCount];
+				accumulatorBatches = new AccumulatorBatch[currentAggrCount];
+				batchColumns = new int[currentAggrCount];
 				
 			}
 			this.calculate( );
@@ -120,6 +138,9 @@ public class AggregationHelper implements IAggrValueHolder
 	{
 		List validAggregations = new ArrayList( );
 		boolean[] populateAggrValue = new boolean[this.currentAggrCount];
+		ResultSetCache cache = this.populator.getCache( );
+		if ( cache instanceof SmartCache )
+			rowStore = ( (SmartCache) cache ).getColumnarRowStore( );
 		int count = 1;
 		for ( int i = 0; i < this.currentAggrCount; i++ )
 		{
@@ -129,6 +150,12 @@ public class AggregationHelper implements IAggrValueHolder
 			else
 				populateAggrValue[i] = true;
 			accumulatorManagers[i] = new AccumulatorManager( this.getAggrInfo( i ).getAggregation( ) );
+			if ( this.getAggrInfo( i ).getAggregation( ).getNumberOfPasses( ) < 2 )
+				accumulatorBatches[i] = AccumulatorBatch.create( this.getAggrInfo( i )
+						.getAggregation( ),
+						accumulatorManagers[i].getCurrentAccumulator( ) );
+			if ( accumulatorBatches[i] != null )
+				batchColumns[i] = getBatchColumn( this.getAggrInfo( i ) );
 		}
 
 		while ( validAggregations.size( ) > 0 )
@@ -312,7 +339,18 @@ public class AggregationHelper implements IAggrValueHolder
 				accepted = false;
 		}
 		
-		if ( accepted )
+		if ( accepted
+				&& batchColumns[aggrIndex] > 0
+				&& accumulatorBatches[aggrIndex].onColumnValue( acc,
+						rowStore,
+						this.populator.getCache( ).getCurrentIndex( ),
+						batchColumns[aggrIndex] ) )
+		{
+			// The argument is a numeric column, its value is read from the
+			// row store
+			newGroup = false;
+		}
+		else if ( accepted )
 		{
 			// Calculate arguments to the aggregate aggregationtion
 			
@@ -362,7 +400,11 @@ public class AggregationHelper implements IAggrValueHolder
 					wrapException( aggrIndex, e );
 					return false;
 				}
-				acc.onRow( aggrArgs[aggrIndex] );
+				if ( accumulatorBatches[aggrIndex] != null )
+					accumulatorBatches[aggrIndex].onRow( acc,
+							aggrArgs[aggrIndex] );
+				else
+					acc.onRow( aggrArgs[aggrIndex] );
 				newGroup = false;
 			}
 			catch ( DataException e )
@@ -384,8 +426,20 @@ public class AggregationHelper implements IAggrValueHolder
 
 		if ( endingGroupLevel <= aggrInfo.getGroupLevel( ) )
 		{
-			// Current group ends for this aggregate; call finish() on
-			// accumulator
+			// Current group ends for this aggregate; pass the pending batch
+			// and call finish() on accumulator
+			if ( accumulatorBatches[aggrIndex] != null )
+			{
+				try
+				{
+					accumulatorBatches[aggrIndex].flush( acc );
+				}
+				catch ( DataException e )
+				{
+					wrapException( aggrIndex, e );
+					return false;
+				}
+			}
 			acc.finish( );
 
 			// For non-running aggregates, this is the time to call getValue
@@ -401,6 +455,55 @@ public class AggregationHelper implements IAggrValueHolder
 		return true;
 	}
 	
+	/**
+	 * Return the column whose values can be passed to the batch of the
+	 * aggregation without evaluating its argument. This is the case if the
+	 * argument is a reference to a numeric column of the columnar row store,
+	 * and the data type of the argument does not convert the values of the
+	 * column.
+	 * 
+	 * @param aggrInfo
+	 * @return the 1-based column index, or 0 if the argument must be evaluated
+	 * @throws DataException
+	 */
+	private int getBatchColumn( IAggrInfo aggrInfo ) throws DataException
+	{
+		IParameterDefn[] argDefs = aggrInfo.getAggregation( ).getParameterDefn( );
+		IBaseExpression[] arguments = aggrInfo.getArgument( );
+		if ( rowStore == null
+				|| argDefs.length != 1 || argDefs[0].isOptional( )
+				|| arguments == null || arguments.length != 1
+				|| isEmptyAggrArgument( aggrInfo )
+				|| !( arguments[0].getHandle( ) instanceof ColumnReferenceExpression ) )
+		{
+			return 0;
+		}
+		ColumnReferenceExpression colref = (ColumnReferenceExpression) arguments[0].getHandle( );
+		if ( colref.isIndexed( )
+				|| JSRowObject.ROW_POSITION.equals( colref.getColumnName( ) ) )
+		{
+			return 0;
+		}
+		IResultClass rsMeta = rowStore.getResultClass( );
+		int index = rsMeta.getFieldIndex( colref.getColumnName( ) );
+		if ( index < 1 || !rowStore.isNumericColumn( index ) )
+		{
+			return 0;
+		}
+		switch ( arguments[0].getDataType( ) )
+		{
+			case DataType.ANY_TYPE :
+			case DataType.UNKNOWN_TYPE :
+			case DataType.DOUBLE_TYPE :
+				return index;
+			case DataType.INTEGER_TYPE :
+				return Integer.class.equals( rsMeta.getFieldValueClass( index ) )
+						? index : 0;
+			default :
+				return 0;
+		}
+	}
+
 	/**
 	 * Checks whether the arguments number is valid
 	 * 
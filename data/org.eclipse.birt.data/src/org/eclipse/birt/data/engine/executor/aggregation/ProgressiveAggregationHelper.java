@@ -76,6 +76,7 @@ public class ProgressiveAggregationHelper implements IProgressiveAggregationHelp
 
 	private Set<String> aggrNames;
 	private List<Accumulator> accumulators;
+	private List<AccumulatorBatch> accumulatorBatches;
 	private Scriptable currentScope;
 	private ScriptContext sc;
 	private DummyJSResultSetRow jsRow;
@@ -97,6 +98,7 @@ public class ProgressiveAggregationHelper implements IProgressiveAggregationHelp
 		this.manager = manager;
 		this.currentRoundAggrValue = new List[0];
 		this.accumulators = new ArrayList<Accumulator>();
+		this.accumulatorBatches = new ArrayList<AccumulatorBatch>();
 		this.sc = sc;
 		try
 		{
@@ -133,6 +135,8 @@ public class ProgressiveAggregationHelper implements IProgressiveAggregationHelp
 							.getParameterDefn( ).length];
 					this.aggrNames.add( this.manager.getAggrDefn( i ).getName( ) );
 					this.accumulators.add(aggrInfo.getAggregation().newAccumulator());
+					this.accumulatorBatches.add( AccumulatorBatch.create( aggrInfo.getAggregation( ),
+							this.accumulators.get( i ) ) );
 				}
 				
 			}
@@ -180,6 +184,7 @@ public class ProgressiveAggregationHelper implements IProgressiveAggregationHelp
 	{
 		IAggrInfo aggrInfo = getAggrInfo( aggrIndex );
 		Accumulator acc = this.accumulators.get(aggrIndex);
+		AccumulatorBatch batch = this.accumulatorBatches.get( aggrIndex );
 		boolean newGroup = false;
 		IParameterDefn[] argDefs = aggrInfo.getAggregation( ).getParameterDefn( );
 		if (startingGroupLevel <= aggrInfo.getGroupLevel( )) 
@@ -259,7 +264,10 @@ public class ProgressiveAggregationHelper implements IProgressiveAggregationHelp
 							aggrInfo.getName( ) );
 					currentRoundAggrValue[aggrIndex].add( e );
 				}
-				acc.onRow( aggrArgs[aggrIndex] );
+				if ( batch != null )
+					batch.onRow( acc, aggrArgs[aggrIndex] );
+				else
+					acc.onRow( aggrArgs[aggrIndex] );
 				newGroup = false;
 			}
 			catch ( DataException e )
@@ -279,8 +287,19 @@ public class ProgressiveAggregationHelper implements IProgressiveAggregationHelp
 
 		if ( endingGroupLevel <= aggrInfo.getGroupLevel( ) )
 		{
-			// Current group ends for this aggregate; call finish() on
-			// accumulator
+			// Current group ends for this aggregate; pass the pending batch
+			// and call finish() on accumulator
+			if ( batch != null )
+			{
+				try
+				{
+					batch.flush( acc );
+				}
+				catch ( DataException e )
+				{
+					currentRoundAggrValue[aggrIndex].add( e );
+				}
+			}
 			acc.finish( );
 
 			// For non-running aggregates, this is the time to call getValue
@@ -99,6 +99,83 @@ public class CacheUtil
 		return memoryCacheSize > MAGIC_NUMBER;
 	}
 	
+	/**
+	 * Return whether the memory cache can store the rows in columns.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static boolean enableColumnarMemoryCache( Map appContext )
+	{
+		if ( appContext == null )
+			return true;
+		Object propValue = appContext.get( DataEngine.COLUMNAR_MEMORY_CACHE );
+		if ( propValue == null )
+			return true;
+		return !"false".equalsIgnoreCase( propValue.toString( ).trim( ) );
+	}
+
+	/**
+	 * Return whether the disk cache spills the rows to memory mapped files.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static boolean enableMappedDiskCache( Map appContext )
+	{
+		if ( appContext == null )
+			return false;
+		Object propValue = appContext.get( DataEngine.MAPPED_DISK_CACHE );
+		if ( propValue == null )
+			return false;
+		return "true".equalsIgnoreCase( propValue.toString( ).trim( ) );
+	}
+
+	/**
+	 * Return the count of threads which sort the rows in disk cache.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static int getDiskSortThreadCount( Map appContext )
+	{
+		return getThreadCount( appContext, DataEngine.DISK_SORT_THREAD_COUNT );
+	}
+
+	/**
+	 * Return the count of threads which aggregate a cube.
+	 * 
+	 * @param appContext
+	 * @return
+	 */
+	public static int getCubeAggregationThreadCount( Map appContext )
+	{
+		return getThreadCount( appContext,
+				DataEngine.CUBE_AGGREGATION_THREAD_COUNT );
+	}
+
+	/**
+	 * @param appContext
+	 * @param key
+	 * @return the thread count set in appContext, at least 1
+	 */
+	private static int getThreadCount( Map appContext, String key )
+	{
+		if ( appContext == null )
+			return 1;
+		Object propValue = appContext.get( key );
+		if ( propValue == null )
+			return 1;
+		try
+		{
+			return Math.max( 1, Integer.parseInt( propValue.toString( ).trim( ) ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return 1;
+		}
+	}
+
 	public static int getMaxRows( Map appContext )
 	{
 		if ( appContext == null )
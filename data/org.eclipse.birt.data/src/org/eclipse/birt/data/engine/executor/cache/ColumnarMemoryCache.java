@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.api.IBinding;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.StringTable;
+import org.eclipse.birt.data.engine.impl.document.viewing.ExprMetaUtil;
+import org.eclipse.birt.data.engine.impl.index.IAuxiliaryIndexCreator;
+import org.eclipse.birt.data.engine.impl.index.IIndexSerializer;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Memory implementation of ResultSetCache which keeps the rows in a
+ * ColumnarRowStore instead of one result object per row. As DiskCache does,
+ * a new result object is created for the current row each time the cursor
+ * moves.
+ */
+public class ColumnarMemoryCache implements ResultSetCache
+{
+	private int countOfResult;
+	private int currResultIndex = -1;
+
+	private IResultClass rsMeta;
+	private IResultObject currResultObject;
+	private ColumnarRowStore rowStore;
+
+	/**
+	 * @param rowStore
+	 * @param rsMeta
+	 * @param comparator
+	 */
+	public ColumnarMemoryCache( ColumnarRowStore rowStore,
+			IResultClass rsMeta, Comparator comparator )
+	{
+		this.rowStore = rowStore;
+		this.rsMeta = rsMeta;
+		this.countOfResult = rowStore.getRowCount( );
+
+		if ( comparator != null )
+			rowStore.sort( comparator );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentIndex()
+	 */
+	public int getCurrentIndex( ) throws DataException
+	{
+		return currResultIndex;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentResult()
+	 */
+	public IResultObject getCurrentResult( ) throws DataException
+	{
+		return currResultObject;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#next()
+	 */
+	public boolean next( ) throws DataException
+	{
+		if ( countOfResult == 0 )
+			return false;
+
+		if ( currResultIndex > countOfResult - 1 )
+		{
+			currResultObject = null;
+		}
+		else
+		{
+			currResultIndex++;
+			if ( currResultIndex == countOfResult )
+				currResultObject = null;
+			else
+				currResultObject = rowStore.getRow( currResultIndex );
+		}
+
+		return currResultObject != null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#fetch()
+	 */
+	public IResultObject fetch( ) throws DataException
+	{
+		next( );
+		return getCurrentResult( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#moveTo(int)
+	 */
+	public void moveTo( int destIndex ) throws DataException
+	{
+		if ( destIndex < -1 || destIndex > countOfResult )
+			throw new DataException( ResourceConstants.DESTINDEX_OUTOF_RANGE,
+					new Object[]{
+							Integer.valueOf( -1 ),
+							Integer.valueOf( countOfResult )
+					} );
+
+		if ( destIndex == currResultIndex && currResultObject != null )
+			return;
+
+		currResultIndex = destIndex;
+		if ( currResultIndex == -1 || currResultIndex == countOfResult )
+			currResultObject = null;
+		else
+			currResultObject = rowStore.getRow( currResultIndex );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCount()
+	 */
+	public int getCount( )
+	{
+		return countOfResult;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#reset()
+	 */
+	public void reset( )
+	{
+		currResultIndex = -1;
+		currResultObject = null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#close()
+	 */
+	public void close( )
+	{
+		reset( );
+		if ( rowStore != null )
+		{
+			rowStore.clear( );
+			rowStore = null;
+		}
+	}
+
+	/**
+	 * @return the row store, which allows to read the field values without
+	 *         creating the result objects.
+	 */
+	public ColumnarRowStore getRowStore( )
+	{
+		return rowStore;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#doSave(java.io.DataOutputStream, java.io.DataOutputStream, java.util.Map, java.util.Map, java.util.List, int, java.util.List, boolean)
+	 */
+	public void doSave( DataOutputStream outputStream,
+			DataOutputStream rowLensStream,
+			Map<String, StringTable> stringTable,
+			Map<String, IIndexSerializer> index,
+			List<IBinding> cacheRequestMap, int version,
+			List<IAuxiliaryIndexCreator> auxiliaryIndexCreators,
+			boolean saveInnerId ) throws DataException
+	{
+		DataOutputStream dos = new DataOutputStream( outputStream );
+		Set resultSetNameSet = ResultSetUtil.getRsColumnRequestMap( cacheRequestMap );
+		try
+		{
+			// save data
+			int colCount = getColumnCount( this.rsMeta );
+
+			IOUtil.writeInt( dos, countOfResult );
+			long offset = 4;
+			for ( int i = 0; i < countOfResult; i++ )
+			{
+				IResultObject resultObject = rowStore.getRow( i );
+				IOUtil.writeLong( rowLensStream, offset );
+				offset += ResultSetUtil.writeResultObject( dos,
+						resultObject,
+						colCount,
+						resultSetNameSet,
+						stringTable,
+						index,
+						i,
+						version,
+						saveInnerId );
+				if ( auxiliaryIndexCreators != null )
+				{
+					for ( IAuxiliaryIndexCreator creator : auxiliaryIndexCreators )
+					{
+						creator.save( resultObject, i );
+					}
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_SAVE_ERROR, e );
+		}
+	}
+
+	private static int getColumnCount( IResultClass meta )
+			throws DataException
+	{
+		int count = meta.getFieldCount( );
+		for ( int i = 1; i <= meta.getFieldCount( ); i++ )
+		{
+			if ( meta.getFieldName( i ).equals( ExprMetaUtil.POS_NAME ) )
+			{
+				count--;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#incrementalUpdate(java.io.OutputStream, java.io.OutputStream, int, java.util.Map, java.util.Map, java.util.List, int, java.util.List)
+	 */
+	public void incrementalUpdate( OutputStream outputStream,
+			OutputStream rowLensStream, int originalRowCount,
+			Map<String, StringTable> stringTable,
+			Map<String, IIndexSerializer> map, List<IBinding> cacheRequestMap,
+			int version, List<IAuxiliaryIndexCreator> auxiliaryIndexCreators )
+			throws DataException
+	{
+		Set resultSetNameSet = ResultSetUtil.getRsColumnRequestMap( cacheRequestMap );
+		try
+		{
+			// save data
+			int rowCount = originalRowCount + countOfResult;
+			int colCount = this.rsMeta.getFieldCount( );
+
+			IOUtil.writeInt( outputStream, rowCount );
+			if ( outputStream instanceof RAOutputStream )
+				( (RAOutputStream) outputStream ).seek( ( (RAOutputStream) outputStream ).length( ) );
+			if ( rowLensStream instanceof RAOutputStream )
+				( (RAOutputStream) rowLensStream ).seek( ( (RAOutputStream) rowLensStream ).length( ) );
+			DataOutputStream dos = new DataOutputStream( outputStream );
+			DataOutputStream rlos = new DataOutputStream( rowLensStream );
+
+			long offset = 4;
+			if ( outputStream instanceof RAOutputStream )
+				offset = ( (RAOutputStream) outputStream ).length( );
+			for ( int i = 0; i < countOfResult; i++ )
+			{
+				IResultObject resultObject = rowStore.getRow( i );
+				IOUtil.writeLong( rlos, offset );
+				offset += ResultSetUtil.writeResultObject( dos,
+						resultObject,
+						colCount,
+						resultSetNameSet,
+						stringTable,
+						map,
+						originalRowCount + i,
+						version );
+				if ( auxiliaryIndexCreators != null )
+				{
+					for ( IAuxiliaryIndexCreator creator : auxiliaryIndexCreators )
+					{
+						creator.save( resultObject, originalRowCount + i );
+					}
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.RD_SAVE_ERROR, e );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#setResultClass(org.eclipse.birt.data.engine.odi.IResultClass)
+	 */
+	public void setResultClass( IResultClass rsMeta ) throws DataException
+	{
+		this.rsMeta = rsMeta;
+		rowStore.setResultClass( rsMeta );
+		if ( currResultIndex >= 0 && currResultIndex < countOfResult )
+			currResultObject = rowStore.getRow( currResultIndex );
+	}
+}
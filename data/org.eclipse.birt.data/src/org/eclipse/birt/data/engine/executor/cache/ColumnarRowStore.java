@@ -0,0 +1,1089 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType.AnyType;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Column oriented storage of result objects. Integer, double, decimal, date
+ * and boolean values are kept in primitive arrays, string values are kept in
+ * a dictionary. Each column has a null bitmap. The value whose class is not the
+ * declared class of the column is kept as is in an exception map of the
+ * column, so the row read back is always equal to the row added.
+ * <p>
+ * The store doesn't keep the result objects, a new result object is created
+ * each time a row is read.
+ */
+public class ColumnarRowStore
+{
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private IResultClass rsMeta;
+	private Column[] columns;
+	private int rowCount;
+	private int capacity;
+	private long memorySize;
+
+	/**
+	 * @param rsMeta
+	 *            the meta data of the rows added
+	 * @throws DataException
+	 */
+	public ColumnarRowStore( IResultClass rsMeta ) throws DataException
+	{
+		this.rsMeta = rsMeta;
+		this.capacity = INITIAL_CAPACITY;
+		this.columns = new Column[rsMeta.getFieldCount( )];
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i] = createColumn( rsMeta.getFieldValueClass( i + 1 ),
+					capacity );
+		}
+	}
+
+	/**
+	 * Return whether the rows of the result class can be stored in columns
+	 * with less memory than the result objects.
+	 *
+	 * @param rsMeta
+	 * @return
+	 * @throws DataException
+	 */
+	public static boolean isApplicable( IResultClass rsMeta )
+			throws DataException
+	{
+		if ( rsMeta == null || rsMeta.getFieldCount( ) == 0
+				|| rsMeta.hasAnyTYpe( ) )
+		{
+			return false;
+		}
+		for ( int i = 1; i <= rsMeta.getFieldCount( ); i++ )
+		{
+			Class clazz = rsMeta.getFieldValueClass( i );
+			if ( clazz == null || AnyType.class.equals( clazz ) )
+			{
+				return false;
+			}
+		}
+		for ( int i = 1; i <= rsMeta.getFieldCount( ); i++ )
+		{
+			if ( isColumnarClass( rsMeta.getFieldValueClass( i ) ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isColumnarClass( Class clazz )
+	{
+		return clazz.equals( Integer.class )
+				|| clazz.equals( Double.class )
+				|| clazz.equals( BigDecimal.class )
+				|| clazz.equals( Boolean.class )
+				|| clazz.equals( String.class ) || isDateClass( clazz );
+	}
+
+	private static boolean isDateClass( Class clazz )
+	{
+		return clazz.equals( Date.class )
+				|| clazz.equals( java.sql.Date.class )
+				|| clazz.equals( Time.class ) || clazz.equals( Timestamp.class );
+	}
+
+	private static Column createColumn( Class clazz, int capacity )
+	{
+		if ( Integer.class.equals( clazz ) )
+			return new IntColumn( capacity );
+		if ( Double.class.equals( clazz ) )
+			return new DoubleColumn( capacity );
+		if ( BigDecimal.class.equals( clazz ) )
+			return new DecimalColumn( capacity );
+		if ( Boolean.class.equals( clazz ) )
+			return new BooleanColumn( capacity );
+		if ( String.class.equals( clazz ) )
+			return new StringColumn( capacity );
+		if ( clazz != null && isDateClass( clazz ) )
+			return new DateColumn( capacity );
+		return new ObjectColumn( capacity );
+	}
+
+	/**
+	 * Append a row. The fields which don't exist in the result object are
+	 * stored as null.
+	 *
+	 * @param resultObject
+	 * @throws DataException
+	 */
+	public void add( IResultObject resultObject ) throws DataException
+	{
+		if ( rowCount == capacity )
+		{
+			capacity = capacity + ( capacity >> 1 );
+			for ( int i = 0; i < columns.length; i++ )
+			{
+				columns[i].ensureCapacity( capacity );
+			}
+		}
+		int fieldCount = Math.min( columns.length,
+				resultObject.getResultClass( ).getFieldCount( ) );
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			Object value = i < fieldCount
+					? resultObject.getFieldValue( i + 1 ) : null;
+			memorySize += columns[i].set( rowCount, value );
+		}
+		rowCount++;
+	}
+
+	/**
+	 * @return the count of rows in the store
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * @return the estimated memory used by the store in bytes
+	 */
+	public long getMemorySize( )
+	{
+		return memorySize;
+	}
+
+	/**
+	 * @return the meta data of the rows
+	 */
+	public IResultClass getResultClass( )
+	{
+		return rsMeta;
+	}
+
+	/**
+	 * Change the meta data of the rows, as when the temporary columns are
+	 * removed. The columns are matched by name, the column which is not in
+	 * the store is null in all the rows.
+	 *
+	 * @param rsMeta
+	 * @throws DataException
+	 */
+	public void setResultClass( IResultClass rsMeta ) throws DataException
+	{
+		Column[] newColumns = new Column[rsMeta.getFieldCount( )];
+		for ( int i = 0; i < newColumns.length; i++ )
+		{
+			int index = this.rsMeta.getFieldIndex( rsMeta.getFieldName( i + 1 ) );
+			if ( index > 0 )
+			{
+				newColumns[i] = columns[index - 1];
+				continue;
+			}
+			newColumns[i] = createColumn( rsMeta.getFieldValueClass( i + 1 ),
+					capacity );
+			for ( int j = 0; j < rowCount; j++ )
+			{
+				memorySize += newColumns[i].set( j, null );
+			}
+		}
+		this.columns = newColumns;
+		this.rsMeta = rsMeta;
+	}
+
+	/**
+	 * Get the value of a field.
+	 *
+	 * @param rowIndex
+	 *            0-based row index
+	 * @param fieldIndex
+	 *            1-based field index
+	 * @return
+	 */
+	public Object getFieldValue( int rowIndex, int fieldIndex )
+	{
+		return columns[fieldIndex - 1].get( rowIndex );
+	}
+
+	/**
+	 * Return whether the field value is null without boxing it.
+	 *
+	 * @param rowIndex
+	 *            0-based row index
+	 * @param fieldIndex
+	 *            1-based field index
+	 * @return
+	 */
+	public boolean isNull( int rowIndex, int fieldIndex )
+	{
+		return columns[fieldIndex - 1].isNull( rowIndex );
+	}
+
+	/**
+	 * Return whether the field is stored in a column of ints or doubles, whose
+	 * values can be read by <code>getDouble</code> without boxing them.
+	 *
+	 * @param fieldIndex
+	 *            1-based field index
+	 * @return
+	 */
+	public boolean isNumericColumn( int fieldIndex )
+	{
+		return columns[fieldIndex - 1].isNumeric( );
+	}
+
+	/**
+	 * Return whether the field value is held in the primitive array, that is
+	 * it is neither null nor a value the column can't hold.
+	 *
+	 * @param rowIndex
+	 *            0-based row index
+	 * @param fieldIndex
+	 *            1-based field index
+	 * @return
+	 */
+	public boolean isPrimitive( int rowIndex, int fieldIndex )
+	{
+		return columns[fieldIndex - 1].isPrimitive( rowIndex );
+	}
+
+	/**
+	 * Read the value of a numeric column as a double, the value must be held
+	 * in the primitive array.
+	 *
+	 * @param rowIndex
+	 *            0-based row index
+	 * @param fieldIndex
+	 *            1-based field index
+	 * @return
+	 */
+	public double getDouble( int rowIndex, int fieldIndex )
+	{
+		return columns[fieldIndex - 1].getDouble( rowIndex );
+	}
+
+	/**
+	 * Read a row as a new result object.
+	 *
+	 * @param rowIndex
+	 *            0-based row index
+	 * @return
+	 */
+	public IResultObject getRow( int rowIndex )
+	{
+		Object[] fields = new Object[columns.length];
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			fields[i] = columns[i].get( rowIndex );
+		}
+		return new ResultObject( rsMeta, fields );
+	}
+
+	/**
+	 * Read all the rows as result objects, used when the rows have to be
+	 * exported to disk.
+	 *
+	 * @return
+	 */
+	public IResultObject[] toResultObjects( )
+	{
+		IResultObject[] rows = new IResultObject[rowCount];
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			rows[i] = getRow( i );
+		}
+		return rows;
+	}
+
+	/**
+	 * Sort the rows. The sort is stable, as <code>Arrays.sort</code> on
+	 * result objects is.
+	 *
+	 * @param comparator
+	 *            the comparator of result objects
+	 */
+	public void sort( final Comparator comparator )
+	{
+		if ( comparator == null || rowCount < 2 )
+		{
+			return;
+		}
+		Integer[] order = new Integer[rowCount];
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			order[i] = Integer.valueOf( i );
+		}
+		final RowView left = new RowView( );
+		final RowView right = new RowView( );
+		Arrays.sort( order, new Comparator<Integer>( ) {
+
+			public int compare( Integer o1, Integer o2 )
+			{
+				left.rowIndex = o1.intValue( );
+				right.rowIndex = o2.intValue( );
+				return comparator.compare( left, right );
+			}
+		} );
+		int[] permutation = new int[rowCount];
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			permutation[i] = order[i].intValue( );
+		}
+		order = null;
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i].reorder( permutation, rowCount );
+		}
+	}
+
+	/**
+	 * Release the column data.
+	 */
+	public void clear( )
+	{
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i] = null;
+		}
+		rowCount = 0;
+		memorySize = 0;
+	}
+
+	/**
+	 * A flyweight result object which reads the fields from the store, used to
+	 * sort the rows. As a result object does, it sets the custom fields, which
+	 * are written into the store.
+	 */
+	private class RowView implements IResultObject
+	{
+
+		private int rowIndex;
+
+		public IResultClass getResultClass( )
+		{
+			return rsMeta;
+		}
+
+		public Object getFieldValue( String fieldName ) throws DataException
+		{
+			return getFieldValue( rsMeta.getFieldIndex( fieldName ) );
+		}
+
+		public Object getFieldValue( int fieldIndex ) throws DataException
+		{
+			return columns[fieldIndex - 1].get( rowIndex );
+		}
+
+		public void setCustomFieldValue( String fieldName, Object value )
+				throws DataException
+		{
+			setCustomFieldValue( rsMeta.getFieldIndex( fieldName ), value );
+		}
+
+		public void setCustomFieldValue( int fieldIndex, Object value )
+				throws DataException
+		{
+			if ( !rsMeta.isCustomField( fieldIndex ) )
+				throw new DataException( ResourceConstants.INVALID_CUSTOM_FIELD_INDEX,
+						Integer.valueOf( fieldIndex ) );
+			// the value replaces the one set when the row was added
+			Column column = columns[fieldIndex - 1];
+			memorySize -= column.sizeOf( rowIndex );
+			memorySize += column.set( rowIndex, value );
+		}
+	}
+
+	/**
+	 * The base class of columns. The value which can't be stored in the
+	 * primitive array is put into the exception map.
+	 */
+	private static abstract class Column
+	{
+
+		protected BitSet nulls = new BitSet( );
+		protected Map<Integer, Object> exceptions;
+
+		/**
+		 * @return the estimated memory used to store the value
+		 */
+		long set( int rowIndex, Object value )
+		{
+			if ( exceptions != null )
+			{
+				// the row might be set again
+				exceptions.remove( Integer.valueOf( rowIndex ) );
+			}
+			if ( value == null )
+			{
+				nulls.set( rowIndex );
+				clearPrimitive( rowIndex );
+				return 1;
+			}
+			nulls.clear( rowIndex );
+			if ( setPrimitive( rowIndex, value ) )
+			{
+				return primitiveSize( );
+			}
+			if ( exceptions == null )
+			{
+				exceptions = new HashMap<Integer, Object>( );
+			}
+			exceptions.put( Integer.valueOf( rowIndex ), value );
+			return exceptionSize( value );
+		}
+
+		/**
+		 * @return the estimated memory used to store the value of the row,
+		 *         which is released when the row is set again
+		 */
+		long sizeOf( int rowIndex )
+		{
+			if ( nulls.get( rowIndex ) )
+			{
+				return 1;
+			}
+			if ( exceptions != null )
+			{
+				Object value = exceptions.get( Integer.valueOf( rowIndex ) );
+				if ( value != null )
+				{
+					return exceptionSize( value );
+				}
+			}
+			return primitiveSize( );
+		}
+
+		private long exceptionSize( Object value )
+		{
+			return primitiveSize( ) + SizeOfUtil.POINTER_SIZE * 4
+					+ SizeOfUtil.OBJECT_OVERHEAD * 2
+					+ SizeOfUtil.sizeOf( value.getClass( ), value );
+		}
+
+		Object get( int rowIndex )
+		{
+			if ( nulls.get( rowIndex ) )
+			{
+				return null;
+			}
+			if ( exceptions != null )
+			{
+				Object value = exceptions.get( Integer.valueOf( rowIndex ) );
+				if ( value != null )
+				{
+					return value;
+				}
+			}
+			return getPrimitive( rowIndex );
+		}
+
+		boolean isNull( int rowIndex )
+		{
+			return nulls.get( rowIndex );
+		}
+
+		void reorder( int[] permutation, int rowCount )
+		{
+			BitSet newNulls = new BitSet( rowCount );
+			Map<Integer, Object> newExceptions = exceptions == null
+					? null : new HashMap<Integer, Object>( );
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				int from = permutation[i];
+				if ( nulls.get( from ) )
+				{
+					newNulls.set( i );
+				}
+				if ( exceptions != null )
+				{
+					Object value = exceptions.get( Integer.valueOf( from ) );
+					if ( value != null )
+					{
+						newExceptions.put( Integer.valueOf( i ), value );
+					}
+				}
+			}
+			nulls = newNulls;
+			exceptions = newExceptions;
+			reorderPrimitive( permutation, rowCount );
+		}
+
+		boolean isPrimitive( int rowIndex )
+		{
+			return !nulls.get( rowIndex )
+					&& ( exceptions == null || !exceptions.containsKey( Integer.valueOf( rowIndex ) ) );
+		}
+
+		boolean isNumeric( )
+		{
+			return false;
+		}
+
+		double getDouble( int rowIndex )
+		{
+			throw new UnsupportedOperationException( );
+		}
+
+		abstract void ensureCapacity( int capacity );
+
+		abstract int primitiveSize( );
+
+		abstract boolean setPrimitive( int rowIndex, Object value );
+
+		abstract void clearPrimitive( int rowIndex );
+
+		abstract Object getPrimitive( int rowIndex );
+
+		abstract void reorderPrimitive( int[] permutation, int rowCount );
+	}
+
+	private static class IntColumn extends Column
+	{
+
+		private int[] values;
+
+		IntColumn( int capacity )
+		{
+			values = new int[capacity];
+		}
+
+		void ensureCapacity( int capacity )
+		{
+			values = Arrays.copyOf( values, capacity );
+		}
+
+		int primitiveSize( )
+		{
+			return 4;
+		}
+
+		boolean setPrimitive( int rowIndex, Object value )
+		{
+			if ( value.getClass( ) == Integer.class )
+			{
+				values[rowIndex] = ( (Integer) value ).intValue( );
+				return true;
+			}
+			values[rowIndex] = 0;
+			return false;
+		}
+
+		void clearPrimitive( int rowIndex )
+		{
+			values[rowIndex] = 0;
+		}
+
+		Object getPrimitive( int rowIndex )
+		{
+			return Integer.valueOf( values[rowIndex] );
+		}
+
+		boolean isNumeric( )
+		{
+			return true;
+		}
+
+		double getDouble( int rowIndex )
+		{
+			return values[rowIndex];
+		}
+
+		void reorderPrimitive( int[] permutation, int rowCount )
+		{
+			int[] newValues = new int[values.length];
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				newValues[i] = values[permutation[i]];
+			}
+			values = newValues;
+		}
+	}
+
+	private static class DoubleColumn extends Column
+	{
+
+		private double[] values;
+
+		DoubleColumn( int capacity )
+		{
+			values = new double[capacity];
+		}
+
+		void ensureCapacity( int capacity )
+		{
+			values = Arrays.copyOf( values, capacity );
+		}
+
+		int primitiveSize( )
+		{
+			return 8;
+		}
+
+		boolean setPrimitive( int rowIndex, Object value )
+		{
+			if ( value.getClass( ) == Double.class )
+			{
+				values[rowIndex] = ( (Double) value ).doubleValue( );
+				return true;
+			}
+			values[rowIndex] = 0;
+			return false;
+		}
+
+		void clearPrimitive( int rowIndex )
+		{
+			values[rowIndex] = 0;
+		}
+
+		Object getPrimitive( int rowIndex )
+		{
+			return Double.valueOf( values[rowIndex] );
+		}
+
+		boolean isNumeric( )
+		{
+			return true;
+		}
+
+		double getDouble( int rowIndex )
+		{
+			return values[rowIndex];
+		}
+
+		void reorderPrimitive( int[] permutation, int rowCount )
+		{
+			double[] newValues = new double[values.length];
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				newValues[i] = values[permutation[i]];
+			}
+			values = newValues;
+		}
+	}
+
+	/**
+	 * Decimal is stored as unscaled long value and scale. The decimal whose
+	 * unscaled value doesn't fit in a long is kept in the exception map.
+	 */
+	private static class DecimalColumn extends Column
+	{
+
+		private long[] unscaledValues;
+		private int[] scales;
+
+		DecimalColumn( int capacity )
+		{
+			unscaledValues = new long[capacity];
+			scales = new int[capacity];
+		}
+
+		void ensureCapacity( int capacity )
+		{
+			unscaledValues = Arrays.copyOf( unscaledValues, capacity );
+			scales = Arrays.copyOf( scales, capacity );
+		}
+
+		int primitiveSize( )
+		{
+			return 12;
+		}
+
+		boolean setPrimitive( int rowIndex, Object value )
+		{
+			if ( value.getClass( ) == BigDecimal.class )
+			{
+				BigDecimal decimal = (BigDecimal) value;
+				BigInteger unscaled = decimal.unscaledValue( );
+				if ( unscaled.bitLength( ) < 64 )
+				{
+					unscaledValues[rowIndex] = unscaled.longValue( );
+					scales[rowIndex] = decimal.scale( );
+					return true;
+				}
+			}
+			clearPrimitive( rowIndex );
+			return false;
+		}
+
+		void clearPrimitive( int rowIndex )
+		{
+			unscaledValues[rowIndex] = 0;
+			scales[rowIndex] = 0;
+		}
+
+		Object getPrimitive( int rowIndex )
+		{
+			return BigDecimal.valueOf( unscaledValues[rowIndex],
+					scales[rowIndex] );
+		}
+
+		void reorderPrimitive( int[] permutation, int rowCount )
+		{
+			long[] newValues = new long[unscaledValues.length];
+			int[] newScales = new int[scales.length];
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				newValues[i] = unscaledValues[permutation[i]];
+				newScales[i] = scales[permutation[i]];
+			}
+			unscaledValues = newValues;
+			scales = newScales;
+		}
+	}
+
+	/**
+	 * Date is stored as epoch milliseconds and a tag of the date class, the
+	 * sub millisecond part of the timestamp is kept in a separate array
+	 * allocated on demand.
+	 */
+	private static class DateColumn extends Column
+	{
+
+		private static final Class[] DATE_CLASSES = new Class[]{
+				Date.class, java.sql.Date.class, Time.class, Timestamp.class
+		};
+		private static final byte TIMESTAMP = 3;
+
+		private long[] values;
+		private byte[] kinds;
+		private int[] nanos;
+
+		DateColumn( int capacity )
+		{
+			values = new long[capacity];
+			kinds = new byte[capacity];
+		}
+
+		void ensureCapacity( int capacity )
+		{
+			values = Arrays.copyOf( values, capacity );
+			kinds = Arrays.copyOf( kinds, capacity );
+			if ( nanos != null )
+			{
+				nanos = Arrays.copyOf( nanos, capacity );
+			}
+		}
+
+		int primitiveSize( )
+		{
+			return nanos == null ? 9 : 13;
+		}
+
+		boolean setPrimitive( int rowIndex, Object value )
+		{
+			byte kind = getKind( value.getClass( ) );
+			if ( kind < 0 )
+			{
+				clearPrimitive( rowIndex );
+				return false;
+			}
+			values[rowIndex] = ( (Date) value ).getTime( );
+			kinds[rowIndex] = kind;
+			if ( kind == TIMESTAMP )
+			{
+				int nano = ( (Timestamp) value ).getNanos( );
+				if ( nano % 1000000 != 0 && nanos == null )
+				{
+					nanos = new int[values.length];
+				}
+				if ( nanos != null )
+				{
+					nanos[rowIndex] = nano;
+				}
+			}
+			return true;
+		}
+
+		private static byte getKind( Class clazz )
+		{
+			for ( byte i = 0; i < DATE_CLASSES.length; i++ )
+			{
+				if ( DATE_CLASSES[i] == clazz )
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void clearPrimitive( int rowIndex )
+		{
+			values[rowIndex] = 0;
+			kinds[rowIndex] = 0;
+			if ( nanos != null )
+			{
+				nanos[rowIndex] = 0;
+			}
+		}
+
+		Object getPrimitive( int rowIndex )
+		{
+			long time = values[rowIndex];
+			switch ( kinds[rowIndex] )
+			{
+				case TIMESTAMP :
+					Timestamp timestamp = new Timestamp( time );
+					// the nanos of the rows added before the array is
+					// allocated are in the milliseconds.
+					if ( nanos != null && nanos[rowIndex] != 0 )
+					{
+						timestamp.setNanos( nanos[rowIndex] );
+					}
+					return timestamp;
+				case 2 :
+					return new Time( time );
+				case 1 :
+					return new java.sql.Date( time );
+				default :
+					return new Date( time );
+			}
+		}
+
+		void reorderPrimitive( int[] permutation, int rowCount )
+		{
+			long[] newValues = new long[values.length];
+			byte[] newKinds = new byte[kinds.length];
+			int[] newNanos = nanos == null ? null : new int[nanos.length];
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				newValues[i] = values[permutation[i]];
+				newKinds[i] = kinds[permutation[i]];
+				if ( newNanos != null )
+				{
+					newNanos[i] = nanos[permutation[i]];
+				}
+			}
+			values = newValues;
+			kinds = newKinds;
+			nanos = newNanos;
+		}
+	}
+
+	private static class BooleanColumn extends Column
+	{
+
+		private BitSet values = new BitSet( );
+
+		BooleanColumn( int capacity )
+		{
+		}
+
+		void ensureCapacity( int capacity )
+		{
+		}
+
+		int primitiveSize( )
+		{
+			return 1;
+		}
+
+		boolean setPrimitive( int rowIndex, Object value )
+		{
+			if ( value.getClass( ) == Boolean.class )
+			{
+				values.set( rowIndex, ( (Boolean) value ).booleanValue( ) );
+				return true;
+			}
+			values.clear( rowIndex );
+			return false;
+		}
+
+		void clearPrimitive( int rowIndex )
+		{
+			values.clear( rowIndex );
+		}
+
+		Object getPrimitive( int rowIndex )
+		{
+			return Boolean.valueOf( values.get( rowIndex ) );
+		}
+
+		void reorderPrimitive( int[] permutation, int rowCount )
+		{
+			BitSet newValues = new BitSet( rowCount );
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				if ( values.get( permutation[i] ) )
+				{
+					newValues.set( i );
+				}
+			}
+			values = newValues;
+		}
+	}
+
+	/**
+	 * String is stored as the code of the string in a dictionary, so the
+	 * repeated values share one string instance.
+	 */
+	private static class StringColumn extends Column
+	{
+
+		private int[] codes;
+		private Map<String, Integer> dictionary = new HashMap<String, Integer>( );
+		private List<String> strings = new ArrayList<String>( );
+
+		StringColumn( int capacity )
+		{
+			codes = new int[capacity];
+		}
+
+		void ensureCapacity( int capacity )
+		{
+			codes = Arrays.copyOf( codes, capacity );
+		}
+
+		int primitiveSize( )
+		{
+			return 4;
+		}
+
+		long set( int rowIndex, Object value )
+		{
+			if ( value != null && value.getClass( ) == String.class
+					&& !dictionary.containsKey( value ) )
+			{
+				// the new entry of the dictionary: the string, the map entry
+				// and the list slot.
+				return super.set( rowIndex, value )
+						+ SizeOfUtil.sizeOf( String.class, value )
+						+ SizeOfUtil.POINTER_SIZE * 5
+						+ SizeOfUtil.OBJECT_OVERHEAD * 2;
+			}
+			return super.set( rowIndex, value );
+		}
+
+		boolean setPrimitive( int rowIndex, Object value )
+		{
+			if ( value.getClass( ) == String.class )
+			{
+				Integer code = dictionary.get( value );
+				if ( code == null )
+				{
+					code = Integer.valueOf( strings.size( ) );
+					strings.add( (String) value );
+					dictionary.put( (String) value, code );
+				}
+				codes[rowIndex] = code.intValue( );
+				return true;
+			}
+			codes[rowIndex] = 0;
+			return false;
+		}
+
+		void clearPrimitive( int rowIndex )
+		{
+			codes[rowIndex] = 0;
+		}
+
+		Object getPrimitive( int rowIndex )
+		{
+			return strings.get( codes[rowIndex] );
+		}
+
+		void reorderPrimitive( int[] permutation, int rowCount )
+		{
+			int[] newCodes = new int[codes.length];
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				newCodes[i] = codes[permutation[i]];
+			}
+			codes = newCodes;
+		}
+	}
+
+	private static class ObjectColumn extends Column
+	{
+
+		private Object[] values;
+
+		ObjectColumn( int capacity )
+		{
+			values = new Object[capacity];
+		}
+
+		void ensureCapacity( int capacity )
+		{
+			values = Arrays.copyOf( values, capacity );
+		}
+
+		int primitiveSize( )
+		{
+			return SizeOfUtil.POINTER_SIZE;
+		}
+
+		long set( int rowIndex, Object value )
+		{
+			long size = super.set( rowIndex, value );
+			if ( value != null )
+			{
+				size += SizeOfUtil.sizeOf( value.getClass( ), value );
+			}
+			return size;
+		}
+
+		long sizeOf( int rowIndex )
+		{
+			long size = super.sizeOf( rowIndex );
+			if ( !nulls.get( rowIndex ) )
+			{
+				size += SizeOfUtil.sizeOf( values[rowIndex].getClass( ),
+						values[rowIndex] );
+			}
+			return size;
+		}
+
+		boolean setPrimitive( int rowIndex, Object value )
+		{
+			values[rowIndex] = value;
+			return true;
+		}
+
+		void clearPrimitive( int rowIndex )
+		{
+			values[rowIndex] = null;
+		}
+
+		Object getPrimitive( int rowIndex )
+		{
+			return values[rowIndex];
+		}
+
+		void reorderPrimitive( int[] permutation, int rowCount )
+		{
+			Object[] newValues = new Object[values.length];
+			for ( int i = 0; i < rowCount; i++ )
+			{
+				newValues[i] = values[permutation[i]];
+			}
+			values = newValues;
+		}
+	}
+}
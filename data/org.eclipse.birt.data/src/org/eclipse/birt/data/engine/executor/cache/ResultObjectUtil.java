@@ -115,6 +115,14 @@ public class ResultObjectUtil
 		return new ResultObject( rsMetaData, rowData );
 	}
 
+	/**
+	 * @return the metadata of the serialized result objects
+	 */
+	public IResultClass getResultClass( )
+	{
+		return rsMetaData;
+	}
+
 	/**
 	 * Deserialze result object array from input stream. The reading procedure
 	 * is strictly sequential, that means there is no random access.
@@ -250,4 +250,18 @@ public class SmartCache implements ResultSetCache
 	{
 		this.resultSetCache.setResultClass( rsMeta );
 	}
+
+	/**
+	 * Return the columnar store of the rows when they are held in memory by
+	 * the columnar cache, so that their primitive values can be read without
+	 * building result objects.
+	 *
+	 * @return the row store, or null if another cache is used
+	 */
+	public ColumnarRowStore getColumnarRowStore( )
+	{
+		if ( resultSetCache instanceof ColumnarMemoryCache )
+			return ( (ColumnarMemoryCache) resultSetCache ).getRowStore( );
+		return null;
+	}
 }
\ No newline at end of file
@@ -310,6 +310,14 @@ class SmartCacheHelper
 		IResultObject odaObject;
 		IResultObject[] resultObjects;
 		List resultObjectsList = new ArrayList( );
+		// the rows are stored in columns if the result class allows
+		ColumnarRowStore rowStore = null;
+		if ( CacheUtil.enableColumnarMemoryCache( eventHandler == null
+				? null : eventHandler.getAppContext( ) )
+				&& ColumnarRowStore.isApplicable( rsMeta ) )
+		{
+			rowStore = new ColumnarRowStore( rsMeta );
+		}
 
 		int dataCount = 0;
 		long usedMemorySize = 0;
@@ -324,6 +332,29 @@ class SmartCacheHelper
 				{
 					throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
 				}
+				if ( rowStore != null
+						&& odaObject.getResultClass( ).getFieldCount( ) > rsMeta.getFieldCount( ) )
+				{
+					// the row has more fields than the columns, fall back to
+					// keep the result objects.
+					usedMemorySize = 0;
+					for ( int i = 0; i < rowStore.getRowCount( ); i++ )
+					{
+						IResultObject row = rowStore.getRow( i );
+						resultObjectsList.add( row );
+						if( memoryCacheSize != 0 )
+							usedMemorySize += sizeOfUtil.sizeOf( row );
+					}
+					rowStore.clear( );
+					rowStore = null;
+				}
+				if ( rowStore != null )
+				{
+					rowStore.add( odaObject );
+					if ( memoryCacheSize != 0 )
+						usedMemorySize = rowStore.getMemorySize( );
+					continue;
+				}
 				//the followed variable is for performance
 				int odaObjectFieldCount = odaObject.getResultClass( ).getFieldCount( );
 				int metaFieldCount = rsMeta.getFieldCount( );
@@ -352,7 +383,16 @@ class SmartCacheHelper
 			{
 				logger.fine( "DiskCache is used" );
 
-				resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				if ( rowStore != null )
+				{
+					resultObjects = rowStore.toResultObjects( );
+					rowStore.clear( );
+					rowStore = null;
+				}
+				else
+				{
+					resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
+				}
 				// the order is: resultObjects, odaObject, rowResultSet
 				resultSetCache = new DiskCache( resultObjects,
 						odaObject,
@@ -361,12 +401,21 @@ class SmartCacheHelper
 						getComparator( sortSpec, eventHandler ),
 						dataCount,
 						maxRows,
-						this.session );
+						this.session,
+						eventHandler == null ? null : eventHandler.getAppContext( ) );
 				break;
 			}
 		}
 
-		if ( resultSetCache == null )
+		if ( resultSetCache == null && rowStore != null )
+		{
+			logger.fine( "ColumnarMemoryCache is used" );
+
+			resultSetCache = new ColumnarMemoryCache( rowStore,
+					rsMeta,
+					getComparator( sortSpec, eventHandler ) );
+		}
+		else if ( resultSetCache == null )
 		{
 			logger.fine( "MemoryCache is used" );
 
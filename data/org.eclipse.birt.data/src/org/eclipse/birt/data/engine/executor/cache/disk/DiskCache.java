@@ -77,6 +77,41 @@ public class DiskCache implements ResultSetCache
 	
 	private boolean needCache;
 	private BufferedStructureArray cache;
+	
+	// whether the rows are spilled to memory mapped files, only used when
+	// the rows are not sorted
+	private boolean mappedFile;
+	
+	// the count of threads to sort the rows
+	private int sortThreadCount = 1;
+	
+	/**
+	 * @param resultObjects
+	 * @param resultObject
+	 * @param rowResultSet
+	 * @param rsMeta
+	 * @param comparator
+	 * @param MemoryCacheRowCount
+	 * @param maxRows
+	 * @param session
+	 * @throws DataException
+	 */
+	public DiskCache( IResultObject[] resultObjects, IResultObject resultObject,
+			IRowResultSet rowResultSet, IResultClass rsMeta,
+			Comparator comparator, int MemoryCacheRowCount,int maxRows, DataEngineSession session )
+			throws DataException
+	{
+		this( resultObjects,
+				resultObject,
+				rowResultSet,
+				rsMeta,
+				comparator,
+				MemoryCacheRowCount,
+				maxRows,
+				session,
+				null );
+	}
+	
 	/**
 	 * The MemoryCacheRowCount indicates the upper limitation of how many rows
 	 * can be loaded into memory. Note this value is included as well. Look at
@@ -92,16 +127,24 @@ public class DiskCache implements ResultSetCache
 	 * @param rsMeta
 	 * @param comparator
 	 * @param MemoryCacheRowCount
-	 * @param stopSign
+	 * @param maxRows
+	 * @param session
+	 * @param appContext
+	 *            decides whether the rows are spilled to memory mapped
+	 *            files, with which moveTo does not need to read the rows
+	 *            before the destination, and how many threads sort the rows.
 	 * @throws DataException
 	 */
 	public DiskCache( IResultObject[] resultObjects, IResultObject resultObject,
 			IRowResultSet rowResultSet, IResultClass rsMeta,
-			Comparator comparator, int MemoryCacheRowCount,int maxRows, DataEngineSession session )
+			Comparator comparator, int MemoryCacheRowCount, int maxRows,
+			DataEngineSession session, Map appContext )
 			throws DataException
 	{
 		//this.rsMeta = rsMeta;
 		this.MemoryCacheRowCount = MemoryCacheRowCount;
+		this.mappedFile = CacheUtil.enableMappedDiskCache( appContext );
+		this.sortThreadCount = CacheUtil.getDiskSortThreadCount( appContext );
 		this.rsMeta = rsMeta;
 		this.session = session;
 		this.diskBasedResultSet = new DiskCacheResultSet( getInfoMap( ), session );
@@ -218,6 +261,12 @@ public class DiskCache implements ResultSetCache
 	{
 		checkValid( destIndex );
 		
+		if ( diskBasedResultSet.isRandomAccess( ) )
+		{
+			seek( destIndex );
+			return;
+		}
+		
 		int advancedStep;
 		if ( destIndex >= currResultIndex )
 		{
@@ -259,6 +308,33 @@ public class DiskCache implements ResultSetCache
 			currResultObject = null;
 	}
 
+	/**
+	 * Move to the destination directly when the goal file supports random
+	 * access.
+	 * 
+	 * @param destIndex
+	 * @throws DataException
+	 */
+	private void seek( int destIndex ) throws DataException
+	{
+		currResultIndex = destIndex;
+		if ( currResultIndex == -1 || currResultIndex == countOfResult )
+		{
+			currResultObject = null;
+			diskBasedResultSet.seek( currResultIndex + 1 );
+			return;
+		}
+		try
+		{
+			diskBasedResultSet.seek( currResultIndex );
+			currResultObject = diskBasedResultSet.nextRow( );
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR, e );
+		}
+	}
+
 	/**
 	 * 
 	 */
@@ -349,6 +425,8 @@ public class DiskCache implements ResultSetCache
 	 * 		tempDir, to generated temp file in DiskMergeSort
 	 * 		goalFile, to generate the end result file
 	 * 		dataCountOfUnit, to indicate how many rows can be loaded into memory
+	 * 		mappedFile, to indicate whether the rows are spilled to mapped files
+	 * 		sortThreadCount, to indicate how many threads sort the rows
 	 * @throws DataException 
 	 */
 	private Map getInfoMap( ) throws DataException
@@ -359,6 +437,8 @@ public class DiskCache implements ResultSetCache
 		goalFileStr = getGoalFileStr( );
 		infoMap.put( "goalFile", goalFileStr );
 		infoMap.put( "dataCountOfUnit", "" + MemoryCacheRowCount );
+		infoMap.put( "mappedFile", String.valueOf( mappedFile ) );
+		infoMap.put( "sortThreadCount", String.valueOf( sortThreadCount ) );
 
 		return infoMap;
 	}
@@ -102,6 +102,30 @@ class DiskCacheResultSet
 		return rowIterator.fetch( );
 	}
 	
+	/**
+	 * Whether the goal file supports to fetch any row without reading the
+	 * rows before it.
+	 * 
+	 * @return
+	 */
+	public boolean isRandomAccess( )
+	{
+		return rowIterator instanceof RowFile
+				&& ( (RowFile) rowIterator ).isRandomAccess( );
+	}
+	
+	/**
+	 * Move the file reader to the specified row, and then nextRow returns
+	 * that row. This method can only be called when isRandomAccess returns
+	 * true.
+	 * 
+	 * @param index
+	 */
+	public void seek( int index )
+	{
+		( (RowFile) rowIterator ).seek( index );
+	}
+	
 	/**
 	 * Set the file reader to the start of the goal file
 	 * @throws DataException 
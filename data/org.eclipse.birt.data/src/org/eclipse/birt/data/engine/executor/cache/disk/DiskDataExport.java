@@ -46,7 +46,14 @@ abstract class DiskDataExport
 			ResultObjectUtil resultObjectUtil, DataEngineSession session )
 	{
 		DiskDataExport dbExport;
-		if ( comparator != null )
+		int sortThreadCount = infoMap.get( "sortThreadCount" ) == null
+				? 1 : Integer.parseInt( (String) infoMap.get( "sortThreadCount" ) );
+		if ( comparator != null && sortThreadCount > 1 )
+			dbExport = new ParallelDiskSortExport( infoMap,
+					comparator,
+					resultObjectUtil,
+					sortThreadCount );
+		else if ( comparator != null )
 			dbExport = new DiskSortExport2( infoMap, comparator, resultObjectUtil );
 		else
 			dbExport = new DiskDirectExport( infoMap, resultObjectUtil );
@@ -36,7 +36,8 @@ class DiskDirectExport extends DiskDataExport
 		dataCountOfUnit = Integer.parseInt( (String) infoMap.get( "dataCountOfUnit" ) );
 		rowFile = new RowFile( new File( (String) infoMap.get( "goalFile" ) ),
 				resultObjectUtil,
-				dataCountOfUnit );
+				dataCountOfUnit,
+				"true".equals( infoMap.get( "mappedFile" ) ) );
 	}
 	
 	/*
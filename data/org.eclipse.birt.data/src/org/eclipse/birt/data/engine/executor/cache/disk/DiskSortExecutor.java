@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+
+/**
+ * The worker threads of the parallel disk sort. The tasks are the sorting of
+ * the initial runs, the merging of the runs and the prefetching of the rows
+ * in the run files.
+ */
+class DiskSortExecutor
+{
+	private static AtomicInteger threadNumber = new AtomicInteger( );
+
+	private ThreadPoolExecutor executor;
+	private int threadCount;
+
+	/**
+	 * @param threadCount
+	 */
+	DiskSortExecutor( int threadCount )
+	{
+		assert threadCount > 0;
+
+		this.threadCount = threadCount;
+		this.executor = new ThreadPoolExecutor( threadCount,
+				threadCount,
+				60,
+				TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>( ),
+				new ThreadFactory( ) {
+
+					public Thread newThread( Runnable r )
+					{
+						Thread thread = new Thread( r, "BIRT disk sort-" //$NON-NLS-1$
+								+ threadNumber.incrementAndGet( ) );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+		// the threads stop when the sort is not closed properly
+		this.executor.allowCoreThreadTimeOut( true );
+	}
+
+	/**
+	 * @return the count of worker threads
+	 */
+	int getThreadCount( )
+	{
+		return threadCount;
+	}
+
+	/**
+	 * @param task
+	 * @return
+	 */
+	<T> Future<T> submit( Callable<T> task )
+	{
+		return executor.submit( task );
+	}
+
+	/**
+	 * Wait for the task and throw the exception of the task if any.
+	 *
+	 * @param future
+	 * @return the result of the task
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	static <T> T waitFor( Future<T> future ) throws IOException,
+			DataException
+	{
+		try
+		{
+			return future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			future.cancel( true );
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR, e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof DataException )
+				throw (DataException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			if ( cause instanceof Error )
+				throw (Error) cause;
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR,
+					cause );
+		}
+	}
+
+	/**
+	 * Wait for the task and ignore its exception, which is used to make sure
+	 * the task does not use the files any more before they are closed.
+	 *
+	 * @param future
+	 */
+	static void waitQuietly( Future<?> future )
+	{
+		if ( future == null )
+			return;
+		try
+		{
+			future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+		}
+		catch ( ExecutionException e )
+		{
+			// the exception has been or will not be reported
+		}
+	}
+
+	/**
+	 * Stop the worker threads after the submitted tasks are done.
+	 */
+	void shutdown( )
+	{
+		executor.shutdown( );
+	}
+}
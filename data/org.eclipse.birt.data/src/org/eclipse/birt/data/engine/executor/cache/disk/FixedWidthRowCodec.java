@@ -0,0 +1,413 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Serialize the rows to a binary format in which the integer, double, date
+ * and boolean columns have a fixed width and a fixed offset in the row. The
+ * row is composed of:
+ * <ul>
+ * <li>the null bitmap, one bit for each column</li>
+ * <li>the fixed width columns, in the column order. A null value takes its
+ * slot as well</li>
+ * <li>the non null values of the variable width columns, in the column
+ * order</li>
+ * </ul>
+ * Decimal is written as its scale and unscaled bytes, and string as its UTF-8
+ * bytes. The other types fall back to ResultObjectUtil.writeObject. The
+ * values are read back as the same classes as ResultObjectUtil.readObject
+ * does.
+ */
+class FixedWidthRowCodec
+{
+	private static final int INTEGER = 0;
+	private static final int DOUBLE = 1;
+	private static final int DATE = 2;
+	private static final int BOOLEAN = 3;
+	private static final int DECIMAL = 4;
+	private static final int STRING = 5;
+	private static final int OTHER = 6;
+
+	// the sub type of the date columns
+	private static final int DATE_UTIL = 0;
+	private static final int DATE_SQL = 1;
+	private static final int DATE_TIME = 2;
+	private static final int DATE_TIMESTAMP = 3;
+
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	private Class[] types;
+	private int[] kinds;
+	private int[] dateKinds;
+	private int[] fixedOffsets;
+	private int nullBitmapLength;
+	private int fixedLength;
+
+	private Object[] values;
+	private RowBuffer rowBuffer = new RowBuffer( );
+	private DataOutputStream rowOutput = new DataOutputStream( rowBuffer );
+	private ByteArrayOutputStream objectBuffer;
+
+	/**
+	 * @param rsMeta
+	 */
+	FixedWidthRowCodec( IResultClass rsMeta )
+	{
+		int columnCount = rsMeta.getFieldCount( );
+		types = new Class[columnCount];
+		kinds = new int[columnCount];
+		dateKinds = new int[columnCount];
+		fixedOffsets = new int[columnCount];
+		values = new Object[columnCount];
+		nullBitmapLength = ( columnCount + 7 ) / 8;
+
+		int offset = nullBitmapLength;
+		for ( int i = 0; i < columnCount; i++ )
+		{
+			try
+			{
+				types[i] = rsMeta.getFieldValueClass( i + 1 );
+			}
+			catch ( DataException e )
+			{
+				// the index will be always valid
+			}
+			kinds[i] = getKind( types[i] );
+			if ( kinds[i] == DATE )
+				dateKinds[i] = getDateKind( types[i] );
+			fixedOffsets[i] = offset;
+			offset += getFixedWidth( kinds[i] );
+		}
+		fixedLength = offset;
+	}
+
+	private static int getKind( Class type )
+	{
+		if ( type == null )
+			return OTHER;
+		if ( type.equals( Integer.class ) )
+			return INTEGER;
+		if ( type.equals( Double.class ) )
+			return DOUBLE;
+		if ( Date.class.isAssignableFrom( type ) )
+			return DATE;
+		if ( type.equals( Boolean.class ) )
+			return BOOLEAN;
+		if ( type.equals( BigDecimal.class ) )
+			return DECIMAL;
+		if ( type.equals( String.class ) )
+			return STRING;
+		return OTHER;
+	}
+
+	private static int getDateKind( Class type )
+	{
+		if ( type.equals( Time.class ) )
+			return DATE_TIME;
+		if ( type.equals( Timestamp.class ) )
+			return DATE_TIMESTAMP;
+		if ( type.equals( java.sql.Date.class ) )
+			return DATE_SQL;
+		return DATE_UTIL;
+	}
+
+	private static int getFixedWidth( int kind )
+	{
+		switch ( kind )
+		{
+			case INTEGER :
+				return 4;
+			case DOUBLE :
+			case DATE :
+				return 8;
+			case BOOLEAN :
+				return 1;
+			default :
+				return 0;
+		}
+	}
+
+	/**
+	 * Serialize the row into the internal buffer.
+	 *
+	 * @param resultObject
+	 * @return the length of the serialized row, which is available from
+	 *         getBytes
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	int encode( IResultObject resultObject ) throws IOException,
+			DataException
+	{
+		byte[] nullBitmap = new byte[nullBitmapLength];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			Object value = convertValue( resultObject.getFieldValue( i + 1 ), i );
+			values[i] = value;
+			if ( value == null )
+				nullBitmap[i >> 3] |= 1 << ( i & 7 );
+		}
+
+		rowBuffer.reset( );
+		rowOutput.write( nullBitmap );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			Object value = values[i];
+			switch ( kinds[i] )
+			{
+				case INTEGER :
+					rowOutput.writeInt( value == null
+							? 0 : ( (Integer) value ).intValue( ) );
+					break;
+				case DOUBLE :
+					rowOutput.writeDouble( value == null
+							? 0 : ( (Double) value ).doubleValue( ) );
+					break;
+				case DATE :
+					rowOutput.writeLong( value == null
+							? 0 : ( (Date) value ).getTime( ) );
+					break;
+				case BOOLEAN :
+					rowOutput.writeBoolean( value != null
+							&& ( (Boolean) value ).booleanValue( ) );
+					break;
+				default :
+					break;
+			}
+		}
+		for ( int i = 0; i < values.length; i++ )
+		{
+			Object value = values[i];
+			if ( value == null )
+				continue;
+			switch ( kinds[i] )
+			{
+				case DECIMAL :
+					BigDecimal decimal = (BigDecimal) value;
+					byte[] unscaled = decimal.unscaledValue( ).toByteArray( );
+					rowOutput.writeInt( decimal.scale( ) );
+					rowOutput.writeInt( unscaled.length );
+					rowOutput.write( unscaled );
+					break;
+				case STRING :
+					byte[] chars = value.toString( ).getBytes( ENCODING );
+					rowOutput.writeInt( chars.length );
+					rowOutput.write( chars );
+					break;
+				case OTHER :
+					if ( objectBuffer == null )
+						objectBuffer = new ByteArrayOutputStream( );
+					objectBuffer.reset( );
+					ResultObjectUtil.writeObject( new DataOutputStream( objectBuffer ),
+							value,
+							types[i],
+							VersionManager.getLatestVersion( ) );
+					rowOutput.writeInt( objectBuffer.size( ) );
+					objectBuffer.writeTo( rowOutput );
+					break;
+				default :
+					break;
+			}
+			values[i] = null;
+		}
+		rowOutput.flush( );
+		return rowBuffer.size( );
+	}
+
+	/**
+	 * @return the buffer of the last encoded row
+	 */
+	byte[] getBytes( )
+	{
+		return rowBuffer.getBuffer( );
+	}
+
+	/**
+	 * Convert the value to the class of the column as
+	 * ResultObjectUtil.writeObject does.
+	 *
+	 * @param value
+	 * @param index
+	 * @return
+	 * @throws DataException
+	 */
+	private Object convertValue( Object value, int index )
+			throws DataException
+	{
+		if ( value == null )
+			return null;
+		switch ( kinds[index] )
+		{
+			case INTEGER :
+				return value instanceof Integer
+						? value : convert( value, DataType.INTEGER_TYPE );
+			case DOUBLE :
+				return value instanceof Double
+						? value : convert( value, DataType.DOUBLE_TYPE );
+			case DATE :
+				return value instanceof Date
+						? value : convert( value, DataType.DATE_TYPE );
+			case BOOLEAN :
+				return value instanceof Boolean
+						? value : convert( value, DataType.BOOLEAN_TYPE );
+			case DECIMAL :
+				return value instanceof BigDecimal
+						? value : convert( value, DataType.DECIMAL_TYPE );
+			default :
+				return value;
+		}
+	}
+
+	private static Object convert( Object value, int type )
+			throws DataException
+	{
+		try
+		{
+			return DataTypeUtil.convert( value, type );
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+	}
+
+	/**
+	 * Deserialize the row which starts from offset. The position of the
+	 * buffer is changed.
+	 *
+	 * @param buffer
+	 * @param offset
+	 * @return the field values
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	Object[] decode( ByteBuffer buffer, int offset ) throws IOException,
+			DataException
+	{
+		Object[] row = new Object[kinds.length];
+		int varOffset = offset + fixedLength;
+		for ( int i = 0; i < kinds.length; i++ )
+		{
+			if ( ( buffer.get( offset + ( i >> 3 ) ) & ( 1 << ( i & 7 ) ) ) != 0 )
+				continue;
+
+			int fieldOffset = offset + fixedOffsets[i];
+			switch ( kinds[i] )
+			{
+				case INTEGER :
+					row[i] = Integer.valueOf( buffer.getInt( fieldOffset ) );
+					break;
+				case DOUBLE :
+					row[i] = new Double( buffer.getDouble( fieldOffset ) );
+					break;
+				case DATE :
+					row[i] = newDate( buffer.getLong( fieldOffset ), dateKinds[i] );
+					break;
+				case BOOLEAN :
+					row[i] = Boolean.valueOf( buffer.get( fieldOffset ) != 0 );
+					break;
+				case DECIMAL :
+					int scale = buffer.getInt( varOffset );
+					byte[] unscaled = readBytes( buffer, varOffset + 4 );
+					varOffset += 8 + unscaled.length;
+					row[i] = new BigDecimal( new BigInteger( unscaled ), scale );
+					break;
+				case STRING :
+					byte[] chars = readBytes( buffer, varOffset );
+					varOffset += 4 + chars.length;
+					row[i] = new String( chars, ENCODING );
+					break;
+				default :
+					byte[] bytes = readBytes( buffer, varOffset );
+					varOffset += 4 + bytes.length;
+					row[i] = ResultObjectUtil.readObject( new DataInputStream( new ByteArrayInputStream( bytes ) ),
+							types[i],
+							null,
+							VersionManager.getLatestVersion( ) );
+					break;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Read the length prefixed bytes.
+	 */
+	private static byte[] readBytes( ByteBuffer buffer, int offset )
+	{
+		byte[] bytes = new byte[buffer.getInt( offset )];
+		buffer.position( offset + 4 );
+		buffer.get( bytes );
+		return bytes;
+	}
+
+	private static Date newDate( long time, int dateKind )
+			throws DataException
+	{
+		switch ( dateKind )
+		{
+			case DATE_TIME :
+				return new Time( time );
+			case DATE_TIMESTAMP :
+				return new Timestamp( time );
+			case DATE_SQL :
+				try
+				{
+					return DataTypeUtil.toSqlDate( new java.sql.Date( time ) );
+				}
+				catch ( BirtException e )
+				{
+					throw DataException.wrap( e );
+				}
+			default :
+				return new Date( time );
+		}
+	}
+
+	/**
+	 * A byte array output stream whose buffer can be accessed without copy.
+	 */
+	private static class RowBuffer extends ByteArrayOutputStream
+	{
+
+		RowBuffer( )
+		{
+			super( 256 );
+		}
+
+		byte[] getBuffer( )
+		{
+			return buf;
+		}
+	}
+}
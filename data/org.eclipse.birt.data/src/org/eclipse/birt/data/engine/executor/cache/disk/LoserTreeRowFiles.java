@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.Comparator;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * K-way merge of sorted row iterators with a loser tree. Each fetch costs
+ * log(k) comparisons. As MergeSortRowFiles does, the rows which are equal are
+ * returned in the order of the iterators, so that the merge is stable.
+ */
+class LoserTreeRowFiles implements IRowIterator
+{
+	private IRowIterator[] subRowIterators;
+	private Comparator comparator;
+
+	// the current row of each iterator, null if the iterator is exhausted
+	private IResultObject[] heads;
+
+	// tree[0] is the index of the winner, the other nodes keep the losers
+	private int[] tree;
+
+	/**
+	 * @param subRowIterators
+	 *            the rows of each iterator are sorted
+	 * @param mergeSortUtil
+	 */
+	LoserTreeRowFiles( IRowIterator[] subRowIterators,
+			MergeSortUtil mergeSortUtil )
+	{
+		assert subRowIterators != null && subRowIterators.length > 0;
+
+		this.subRowIterators = subRowIterators;
+		this.comparator = mergeSortUtil.getComparator( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#reset()
+	 */
+	public void reset( ) throws DataException
+	{
+		for ( int i = 0; i < subRowIterators.length; i++ )
+		{
+			subRowIterators[i].reset( );
+		}
+		tree = null;
+		heads = null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#fetch()
+	 */
+	public IResultObject fetch( ) throws IOException, DataException
+	{
+		if ( tree == null )
+		{
+			buildTree( );
+		}
+		int winner = tree[0];
+		IResultObject resultObject = heads[winner];
+		if ( resultObject == null )
+		{
+			return null;
+		}
+		heads[winner] = subRowIterators[winner].fetch( );
+		adjust( winner );
+		return resultObject;
+	}
+
+	/**
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void buildTree( ) throws IOException, DataException
+	{
+		int k = subRowIterators.length;
+		heads = new IResultObject[k];
+		for ( int i = 0; i < k; i++ )
+		{
+			heads[i] = subRowIterators[i].fetch( );
+		}
+		// k stands for a virtual row which is less than any row, so that the
+		// real rows are all pushed down to the tree
+		tree = new int[k];
+		for ( int i = 0; i < k; i++ )
+		{
+			tree[i] = k;
+		}
+		for ( int i = k - 1; i >= 0; i-- )
+		{
+			adjust( i );
+		}
+	}
+
+	/**
+	 * Replay the matches from the leaf of the iterator to the root.
+	 *
+	 * @param index
+	 */
+	private void adjust( int index )
+	{
+		int k = subRowIterators.length;
+		int winner = index;
+		for ( int node = ( index + k ) >> 1; node > 0; node >>= 1 )
+		{
+			if ( beats( tree[node], winner ) )
+			{
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
+			}
+		}
+		tree[0] = winner;
+	}
+
+	/**
+	 * @return whether the row of iterator a is returned before the row of b
+	 */
+	private boolean beats( int a, int b )
+	{
+		int k = subRowIterators.length;
+		if ( a == k )
+			return true;
+		if ( b == k )
+			return false;
+		IResultObject rowA = heads[a];
+		IResultObject rowB = heads[b];
+		if ( rowA == null || rowB == null )
+			return rowB == null && ( rowA != null || a < b );
+		int result = comparator.compare( rowA, rowB );
+		return result < 0 || ( result == 0 && a < b );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#close()
+	 */
+	public void close( ) throws DataException
+	{
+		for ( int i = 0; i < subRowIterators.length; i++ )
+		{
+			subRowIterators[i].close( );
+		}
+		heads = null;
+		tree = null;
+	}
+}
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+
+/**
+ * An append only store of variable length records kept in memory mapped
+ * segment files. A record never spans two segments. The position of each
+ * record is kept in an index which is memory mapped as well, so that any
+ * record can be located in constant time without reading the records before
+ * it.
+ * <p>
+ * The position of a record is encoded in a long, the high 32 bits are the
+ * index of the segment and the low 32 bits are the offset in the segment.
+ * <p>
+ * The first data segment is sized for the expected count of records, and
+ * each new one is as large as all the previous ones, up to
+ * MAX_SEGMENT_SIZE, so that a small file maps little more than it writes.
+ * The index segments grow in the same way, from the expected count of
+ * entries up to INDEX_SEGMENT_ENTRIES. A mapped file is never extended,
+ * since a file can not be resized on some platforms while it is mapped.
+ */
+class MappedSegmentFile
+{
+	static final int MIN_SEGMENT_SIZE = 64 * 1024;
+	static final int MAX_SEGMENT_SIZE = 32 * 1024 * 1024;
+
+	// 1M entries, 8M bytes at most for each segment of the index
+	private static final int INDEX_SEGMENT_BITS = 20;
+	private static final int INDEX_SEGMENT_ENTRIES = 1 << INDEX_SEGMENT_BITS;
+	private static final int INDEX_SEGMENT_MASK = INDEX_SEGMENT_ENTRIES - 1;
+	private static final int MIN_INDEX_SEGMENT_BITS = 10;
+
+	private File baseFile;
+	private int expectedCount;
+	private int minSegmentSize;
+	private int maxSegmentSize;
+	private long mappedSize;
+
+	private List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>( );
+	private List<File> segmentFiles = new ArrayList<File>( );
+	private List<ByteBuffer> readBuffers = new ArrayList<ByteBuffer>( );
+
+	// the first index segment has 1 << firstIndexBits entries, and each next
+	// one twice as many, until growingIndexSegments segments. The other ones
+	// have INDEX_SEGMENT_ENTRIES each.
+	private int firstIndexBits;
+	private int growingIndexSegments;
+	private int growingIndexEntries;
+	private List<MappedByteBuffer> indexSegments = new ArrayList<MappedByteBuffer>( );
+	private List<File> indexFiles = new ArrayList<File>( );
+
+	private MappedByteBuffer currentSegment;
+	private int recordCount;
+
+	/**
+	 * @param baseFile
+	 *            the segment files are created beside this file, with the
+	 *            segment number as suffix.
+	 * @param expectedCount
+	 *            the count of records expected, from which the first
+	 *            segments are sized
+	 */
+	MappedSegmentFile( File baseFile, int expectedCount )
+	{
+		this( baseFile, expectedCount, MIN_SEGMENT_SIZE, MAX_SEGMENT_SIZE );
+	}
+
+	MappedSegmentFile( File baseFile, int expectedCount, int minSegmentSize,
+			int maxSegmentSize )
+	{
+		assert baseFile != null;
+		assert minSegmentSize > 0 && minSegmentSize <= maxSegmentSize;
+
+		this.baseFile = baseFile;
+		this.expectedCount = Math.max( 1, expectedCount );
+		this.minSegmentSize = minSegmentSize;
+		this.maxSegmentSize = maxSegmentSize;
+
+		firstIndexBits = MIN_INDEX_SEGMENT_BITS;
+		while ( firstIndexBits < INDEX_SEGMENT_BITS
+				&& ( 1 << firstIndexBits ) < this.expectedCount )
+		{
+			firstIndexBits++;
+		}
+		growingIndexSegments = INDEX_SEGMENT_BITS - firstIndexBits;
+		growingIndexEntries = ( ( 1 << growingIndexSegments ) - 1 ) << firstIndexBits;
+	}
+
+	/**
+	 * Append a record.
+	 *
+	 * @param bytes
+	 * @param length
+	 * @throws IOException
+	 */
+	void append( byte[] bytes, int length ) throws IOException
+	{
+		if ( currentSegment == null || currentSegment.remaining( ) < length )
+		{
+			currentSegment = newSegment( getNextSegmentSize( length ) );
+		}
+		long position = ( (long) ( segments.size( ) - 1 ) << 32 )
+				| currentSegment.position( );
+		currentSegment.put( bytes, 0, length );
+
+		int indexSegment = getIndexSegment( recordCount );
+		if ( indexSegment == indexSegments.size( ) )
+		{
+			File file = new File( baseFile.getPath( ) + ".idx_" + indexSegment );
+			indexFiles.add( file );
+			indexSegments.add( map( file, getIndexSegmentEntries( indexSegment ) * 8 ) );
+		}
+		indexSegments.get( indexSegment ).putLong( getIndexOffset( recordCount ) * 8,
+				position );
+		recordCount++;
+	}
+
+	/**
+	 * The first segment holds the expected records, if they are as long as
+	 * the first one. The next ones double the mapped size.
+	 *
+	 * @param length
+	 *            the length of the record to be appended
+	 * @return
+	 */
+	private int getNextSegmentSize( int length )
+	{
+		long size = segments.isEmpty( ) ? (long) length * expectedCount
+				: mappedSize;
+		size = Math.min( Math.max( size, minSegmentSize ), maxSegmentSize );
+		return (int) Math.max( size, length );
+	}
+
+	private int getIndexSegment( int index )
+	{
+		if ( index < growingIndexEntries )
+			return 31 - Integer.numberOfLeadingZeros( ( index >>> firstIndexBits ) + 1 );
+		return growingIndexSegments
+				+ ( ( index - growingIndexEntries ) >>> INDEX_SEGMENT_BITS );
+	}
+
+	private int getIndexOffset( int index )
+	{
+		if ( index < growingIndexEntries )
+		{
+			int segment = getIndexSegment( index );
+			return index - ( ( ( 1 << segment ) - 1 ) << firstIndexBits );
+		}
+		return ( index - growingIndexEntries ) & INDEX_SEGMENT_MASK;
+	}
+
+	private int getIndexSegmentEntries( int indexSegment )
+	{
+		if ( indexSegment < growingIndexSegments )
+			return 1 << ( firstIndexBits + indexSegment );
+		return INDEX_SEGMENT_ENTRIES;
+	}
+
+	/**
+	 * Return the segment which contains the record. The record starts from
+	 * the position returned by getOffset. The returned buffer is only used by
+	 * the caller thread, whose position can be changed freely.
+	 *
+	 * @param index
+	 * @return
+	 */
+	ByteBuffer getSegment( int index )
+	{
+		int segment = (int) ( getPosition( index ) >>> 32 );
+		ByteBuffer buffer = readBuffers.get( segment );
+		if ( buffer == null )
+		{
+			buffer = segments.get( segment ).duplicate( );
+			readBuffers.set( segment, buffer );
+		}
+		return buffer;
+	}
+
+	/**
+	 * @param index
+	 * @return the offset of the record in its segment
+	 */
+	int getOffset( int index )
+	{
+		return (int) getPosition( index );
+	}
+
+	private long getPosition( int index )
+	{
+		if ( index < 0 || index >= recordCount )
+			throw new IndexOutOfBoundsException( String.valueOf( index ) );
+		return indexSegments.get( getIndexSegment( index ) )
+				.getLong( getIndexOffset( index ) * 8 );
+	}
+
+	/**
+	 * @return the count of appended records
+	 */
+	int getRecordCount( )
+	{
+		return recordCount;
+	}
+
+	private MappedByteBuffer newSegment( int size ) throws IOException
+	{
+		File file = new File( baseFile.getPath( ) + "_" + segments.size( ) );
+		MappedByteBuffer segment = map( file, size );
+		mappedSize += size;
+		segmentFiles.add( file );
+		segments.add( segment );
+		readBuffers.add( null );
+		return segment;
+	}
+
+	private static MappedByteBuffer map( File file, int size )
+			throws IOException
+	{
+		RandomAccessFile raf = FileSecurity.createRandomAccessFile( file, "rw" );
+		try
+		{
+			// the mapping keeps valid after the channel is closed
+			return raf.getChannel( ).map( FileChannel.MapMode.READ_WRITE,
+					0,
+					size );
+		}
+		finally
+		{
+			raf.close( );
+		}
+	}
+
+	/**
+	 * Release the mapped buffers and delete the segment files. The buffers
+	 * returned by getSegment must not be used any more.
+	 */
+	void close( )
+	{
+		releaseBuffers( segments );
+		releaseBuffers( indexSegments );
+		readBuffers.clear( );
+		currentSegment = null;
+		recordCount = 0;
+		mappedSize = 0;
+		deleteFiles( segmentFiles );
+		deleteFiles( indexFiles );
+	}
+
+	private static void releaseBuffers( List<MappedByteBuffer> buffers )
+	{
+		for ( int i = 0; i < buffers.size( ); i++ )
+		{
+			FileSecurity.releaseMappedBuffer( buffers.get( i ) );
+		}
+		buffers.clear( );
+	}
+
+	private static void deleteFiles( List<File> files )
+	{
+		for ( int i = 0; i < files.size( ); i++ )
+		{
+			// a file which is still mapped can not be deleted on some
+			// platforms, if the JVM does not allow to release the buffer
+			if ( !FileSecurity.fileDelete( files.get( i ) ) )
+				FileSecurity.fileDeleteOnExit( files.get( i ) );
+		}
+		files.clear( );
+	}
+}
@@ -13,6 +13,8 @@ package org.eclipse.birt.data.engine.executor.cache.disk;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
@@ -34,6 +36,10 @@ class MergeSortImpl
 	private final static int maxOpenFile = 500;
 	
 	private DataEngineSession session;
+	
+	// the worker threads, null if the merge is done in the caller thread
+	private DiskSortExecutor executor;
+	
 	/**
 	 * @param dataCountOfUnit
 	 * @param mergeSortUtil
@@ -42,12 +48,37 @@ class MergeSortImpl
 	 */
 	MergeSortImpl( int dataCountOfUnit, MergeSortUtil mergeSortUtil,
 			MergeTempFileUtil tempFileUtil, List tempRowFiles, DataEngineSession session )
+	{
+		this( dataCountOfUnit,
+				mergeSortUtil,
+				tempFileUtil,
+				tempRowFiles,
+				session,
+				null );
+	}
+	
+	/**
+	 * With the executor, the merges of one level are done in parallel, the
+	 * rows are merged with a loser tree and the rows of the last level are
+	 * prefetched in the worker threads.
+	 * 
+	 * @param dataCountOfUnit
+	 * @param mergeSortUtil
+	 * @param tempFileUtil
+	 * @param tempRowFiles
+	 * @param session
+	 * @param executor
+	 */
+	MergeSortImpl( int dataCountOfUnit, MergeSortUtil mergeSortUtil,
+			MergeTempFileUtil tempFileUtil, List tempRowFiles,
+			DataEngineSession session, DiskSortExecutor executor )
 	{
 		this.dataCountOfUnit = dataCountOfUnit;
 		this.mergeSortUtil = mergeSortUtil;
 		this.tempFileUtil = tempFileUtil;
 		this.tempRowFiles = tempRowFiles;
 		this.session = session;
+		this.executor = executor;
 	}
 	
 	/**
@@ -70,9 +101,9 @@ class MergeSortImpl
 			granularity = getMergeGranularity( );
 			if ( granularity == tempRowFiles.size( ) )
 			{
-				goalFile = new MergeSortRowFiles( getSubList( tempRowFiles,
+				goalFile = newMergedRows( getSubList( tempRowFiles,
 						0,
-						tempRowFiles.size( ) - 1 ), mergeSortUtil );
+						tempRowFiles.size( ) - 1 ), true );
 				tempRowFiles.clear( );
 				finish = true;
 			}
@@ -90,9 +121,40 @@ class MergeSortImpl
 	 */
 	private int getMergeGranularity( )
 	{
-		return Math.min( dataCountOfUnit, Math.min( maxOpenFile,
+		// the merges of one level share the max open files
+		int openFiles = executor == null ? maxOpenFile : Math.max( 2,
+				maxOpenFile / executor.getThreadCount( ) );
+		return Math.min( dataCountOfUnit, Math.min( openFiles,
 				tempRowFiles.size( ) ) );
 	}
+	
+	/**
+	 * @param sourceFiles
+	 * @param lastLevel
+	 *            whether the rows are merged for the goal file
+	 * @return the iterator of merged rows
+	 */
+	private IRowIterator newMergedRows( RowFile[] sourceFiles,
+			boolean lastLevel )
+	{
+		if ( executor == null )
+			return new MergeSortRowFiles( sourceFiles, mergeSortUtil );
+		
+		IRowIterator[] subRowIterators = sourceFiles;
+		if ( lastLevel )
+		{
+			// the merges of other levels are done in the worker threads,
+			// which read the rows directly
+			subRowIterators = new IRowIterator[sourceFiles.length];
+			for ( int i = 0; i < sourceFiles.length; i++ )
+			{
+				subRowIterators[i] = new PrefetchRowIterator( sourceFiles[i],
+						executor,
+						PrefetchRowIterator.DEFAULT_BLOCK_SIZE );
+			}
+		}
+		return new LoserTreeRowFiles( subRowIterators, mergeSortUtil );
+	}
 
 	/**
 	 * merge rows in temp files to new temp files. The number of new temp files
@@ -108,19 +170,52 @@ class MergeSortImpl
 		int mergeCount = 0;
 		List newTempList = new ArrayList( );
 		
+		List<Future<Object>> merges = new ArrayList<Future<Object>>( );
 		RowFile targetFile = null;
 		do
 		{
 			targetFile = tempFileUtil.newTempFile( 0 );
-			mergeRowFiles( getSubList( tempRowFiles,
+			final RowFile[] sourceFiles = getSubList( tempRowFiles,
 					mergeCount * granularity,
-					( mergeCount + 1 ) * granularity - 1 ), targetFile );
+					( mergeCount + 1 ) * granularity - 1 );
+			if ( executor == null )
+			{
+				mergeRowFiles( sourceFiles, targetFile );
+			}
+			else
+			{
+				final RowFile target = targetFile;
+				merges.add( executor.submit( new Callable<Object>( ) {
+
+					public Object call( ) throws Exception
+					{
+						mergeRowFiles( sourceFiles, target );
+						return null;
+					}
+				} ) );
+			}
 			newTempList.add( targetFile );
 			mergeCount++;
 			if( session.getStopSign( ).isStopped( ) )
 				break;
 		} while ( mergeCount * granularity <= tempRowFiles.size( ) - 1 );
 		
+		try
+		{
+			for ( int i = 0; i < merges.size( ); i++ )
+			{
+				DiskSortExecutor.waitFor( merges.get( i ) );
+			}
+		}
+		finally
+		{
+			// the files can only be closed after all the merges stop
+			for ( int i = 0; i < merges.size( ); i++ )
+			{
+				DiskSortExecutor.waitQuietly( merges.get( i ) );
+			}
+		}
+		
 		tempRowFiles.clear( );
 		tempRowFiles = newTempList;
 	}
@@ -156,8 +251,7 @@ class MergeSortImpl
 	private void mergeRowFiles( RowFile[] sourceFiles, RowFile targetFile )
 			throws IOException, DataException
 	{
-		MergeSortRowFiles mergeSortRowSet = new MergeSortRowFiles( sourceFiles,
-				mergeSortUtil );
+		IRowIterator mergeSortRowSet = newMergedRows( sourceFiles, false );
 		IResultObject resultObject = mergeSortRowSet.fetch( );
 		while ( resultObject != null )
 		{
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.IRowResultSet;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * One implementation of DataBaseExport which sorts the data with several
+ * threads. While the rows are read from data base, the initial runs are
+ * sorted and written to temp files by the worker threads. The runs are then
+ * merged by MergeSortImpl with the same worker threads.
+ * <p>
+ * To keep the memory usage close to DiskSortExport2, whose run holds
+ * dataCountOfUnit rows, the size of the run is dataCountOfUnit / (thread
+ * count + 1), since one run is being read while the others are being sorted.
+ */
+class ParallelDiskSortExport extends DiskDataExport
+{
+	private int dataCountOfUnit;
+	private int runSize;
+
+	private MergeTempFileUtil tempFileUtil;
+	private MergeSortUtil mergeSortUtil;
+	private DiskSortExecutor executor;
+
+	private List runFiles = new ArrayList( );
+	private LinkedList<Future<Object>> pendingRuns = new LinkedList<Future<Object>>( );
+
+	private IRowIterator goalRowIterator;
+
+	/**
+	 * @param infoMap
+	 * @param comparator
+	 * @param resultObjectUtil
+	 * @param threadCount
+	 */
+	ParallelDiskSortExport( Map infoMap, Comparator comparator,
+			ResultObjectUtil resultObjectUtil, int threadCount )
+	{
+		dataCountOfUnit = Integer.parseInt( (String) infoMap.get( "dataCountOfUnit" ) );
+
+		if ( dataCountOfUnit < 2 )
+		{
+			throw new IllegalArgumentException( "the dataCountOfUnit of "
+					+ dataCountOfUnit + " is less than 2 "
+					+ ", and then merge sort on file can not be done" );
+		}
+		runSize = Math.max( 2, dataCountOfUnit / ( threadCount + 1 ) );
+
+		tempFileUtil = new MergeTempFileUtil( (String) ( infoMap.get( "tempDir" ) ),
+				resultObjectUtil );
+		mergeSortUtil = MergeSortUtil.getUtil( comparator );
+		executor = new DiskSortExecutor( threadCount );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#exportStartDataToDisk(org.eclipse.birt.data.engine.odi.IResultObject[])
+	 */
+	public void exportStartDataToDisk( IResultObject[] resultObjects )
+			throws IOException, DataException
+	{
+		for ( int from = 0; from < resultObjects.length; from += runSize )
+		{
+			int count = Math.min( runSize, resultObjects.length - from );
+			IResultObject[] run = new IResultObject[count];
+			System.arraycopy( resultObjects, from, run, 0, count );
+			submitRun( run );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#exportRestDataToDisk(org.eclipse.birt.data.engine.odi.IResultObject, org.eclipse.birt.data.engine.executor.cache.IRowResultSet, int)
+	 */
+	public int exportRestDataToDisk( IResultObject resultObject,
+			IRowResultSet rs, int maxRows ) throws DataException, IOException
+	{
+		int dataCountOfRest;
+		try
+		{
+			dataCountOfRest = innerExportRestData( resultObject,
+					rs,
+					runSize,
+					maxRows );
+			while ( !pendingRuns.isEmpty( ) )
+			{
+				DiskSortExecutor.waitFor( pendingRuns.removeFirst( ) );
+			}
+
+			MergeSortImpl mergeSortImpl = new MergeSortImpl( dataCountOfUnit,
+					mergeSortUtil,
+					tempFileUtil,
+					runFiles,
+					session,
+					executor );
+			goalRowIterator = mergeSortImpl.mergeSortOnUnits( );
+		}
+		catch ( IOException ie )
+		{
+			closeRunFiles( );
+			throw ie;
+		}
+		catch ( DataException de )
+		{
+			closeRunFiles( );
+			throw de;
+		}
+		return dataCountOfRest;
+	}
+
+	/**
+	 * Sort the run and write it to a temp file in a worker thread. At most
+	 * thread count runs are pending, the caller waits for the oldest one
+	 * otherwise.
+	 *
+	 * @param run
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void submitRun( final IResultObject[] run ) throws IOException,
+			DataException
+	{
+		if ( pendingRuns.size( ) >= executor.getThreadCount( ) )
+		{
+			DiskSortExecutor.waitFor( pendingRuns.removeFirst( ) );
+		}
+		// the row file must be created in the caller thread, which registers
+		// it to the close listener of the thread
+		final RowFile runFile = tempFileUtil.newTempFile( 0 );
+		runFiles.add( runFile );
+		pendingRuns.add( executor.submit( new Callable<Object>( ) {
+
+			public Object call( ) throws Exception
+			{
+				mergeSortUtil.sortSelf( run );
+				runFile.writeRows( run, run.length );
+				runFile.endWrite( );
+				return null;
+			}
+		} ) );
+	}
+
+	/**
+	 * Close the run files after all the runs stop.
+	 */
+	private void closeRunFiles( )
+	{
+		while ( !pendingRuns.isEmpty( ) )
+		{
+			DiskSortExecutor.waitQuietly( pendingRuns.removeFirst( ) );
+		}
+		for ( int i = 0; i < runFiles.size( ); i++ )
+		{
+			( (RowFile) runFiles.get( i ) ).close( );
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#outputResultObjects(org.eclipse.birt.data.engine.odi.IResultObject[], int)
+	 */
+	protected void outputResultObjects( IResultObject[] resultObjects,
+			int indexOfUnit ) throws IOException, DataException
+	{
+		// the array is reused by the caller
+		IResultObject[] run = new IResultObject[resultObjects.length];
+		System.arraycopy( resultObjects, 0, run, 0, resultObjects.length );
+		submitRun( run );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#getRowIterator()
+	 */
+	public IRowIterator getRowIterator( )
+	{
+		return goalRowIterator;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.DiskDataExport#close()
+	 */
+	public void close( )
+	{
+		executor.shutdown( );
+		tempFileUtil.clearTempDir( );
+	}
+}
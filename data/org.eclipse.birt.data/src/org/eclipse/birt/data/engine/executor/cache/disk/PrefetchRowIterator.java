@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * A row iterator which reads the next block of rows of the source iterator in
+ * a worker thread, while the current block is consumed. The source iterator
+ * is only accessed by one thread at a time.
+ */
+class PrefetchRowIterator implements IRowIterator
+{
+	static final int DEFAULT_BLOCK_SIZE = 256;
+
+	private IRowIterator source;
+	private DiskSortExecutor executor;
+	private int blockSize;
+
+	private IResultObject[] block;
+	private int blockPos;
+	private Future<IResultObject[]> nextBlock;
+
+	private Callable<IResultObject[]> readTask = new Callable<IResultObject[]>( ) {
+
+		public IResultObject[] call( ) throws Exception
+		{
+			return readBlock( );
+		}
+	};
+
+	/**
+	 * @param source
+	 * @param executor
+	 * @param blockSize
+	 */
+	PrefetchRowIterator( IRowIterator source, DiskSortExecutor executor,
+			int blockSize )
+	{
+		assert source != null;
+		assert blockSize > 0;
+
+		this.source = source;
+		this.executor = executor;
+		this.blockSize = blockSize;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#fetch()
+	 */
+	public IResultObject fetch( ) throws IOException, DataException
+	{
+		if ( block == null )
+		{
+			block = readBlock( );
+			blockPos = 0;
+			prefetch( );
+		}
+		while ( blockPos >= block.length )
+		{
+			if ( nextBlock == null )
+				return null;
+			block = DiskSortExecutor.waitFor( nextBlock );
+			nextBlock = null;
+			blockPos = 0;
+			prefetch( );
+		}
+		IResultObject resultObject = block[blockPos];
+		block[blockPos++] = null;
+		return resultObject;
+	}
+
+	/**
+	 * Start to read the next block if the source is not exhausted.
+	 */
+	private void prefetch( )
+	{
+		if ( block.length == blockSize )
+			nextBlock = executor.submit( readTask );
+	}
+
+	/**
+	 * Read at most blockSize rows from the source. A shorter block means the
+	 * source is exhausted.
+	 *
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IResultObject[] readBlock( ) throws IOException, DataException
+	{
+		IResultObject[] rows = new IResultObject[blockSize];
+		int count = 0;
+		while ( count < blockSize )
+		{
+			IResultObject resultObject = source.fetch( );
+			if ( resultObject == null )
+				break;
+			rows[count++] = resultObject;
+		}
+		if ( count < blockSize )
+		{
+			IResultObject[] lastRows = new IResultObject[count];
+			System.arraycopy( rows, 0, lastRows, 0, count );
+			return lastRows;
+		}
+		return rows;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#reset()
+	 */
+	public void reset( ) throws DataException
+	{
+		DiskSortExecutor.waitQuietly( nextBlock );
+		nextBlock = null;
+		block = null;
+		source.reset( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.executor.cache.disk.IRowIterator#close()
+	 */
+	public void close( ) throws DataException
+	{
+		DiskSortExecutor.waitQuietly( nextBlock );
+		nextBlock = null;
+		block = null;
+		source.close( );
+	}
+}
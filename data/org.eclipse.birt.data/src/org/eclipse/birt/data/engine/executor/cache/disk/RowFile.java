@@ -13,6 +13,7 @@ package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.ICloseListener;
@@ -39,6 +40,11 @@ class RowFile implements IRowIterator, ICloseListener
 	private DataFileReader dfr = null;
 	private DataFileWriter dfw = null;
 	
+	// the rows out of memory cache are kept in memory mapped files instead
+	private boolean mapped;
+	private MappedSegmentFile mappedFile = null;
+	private FixedWidthRowCodec rowCodec = null;
+	
 	/**
 	 * 
 	 * @param file
@@ -46,11 +52,28 @@ class RowFile implements IRowIterator, ICloseListener
 	 * @param cacheSize
 	 */
 	RowFile( File file, ResultObjectUtil resultObjectUtil, int cacheSize )
+	{
+		this( file, resultObjectUtil, cacheSize, false );
+	}
+	
+	/**
+	 * 
+	 * @param file
+	 * @param resultObjectUtil
+	 * @param cacheSize
+	 * @param mapped
+	 *            whether the rows out of memory cache are written to memory
+	 *            mapped files with fixed width format, which supports random
+	 *            access.
+	 */
+	RowFile( File file, ResultObjectUtil resultObjectUtil, int cacheSize,
+			boolean mapped )
 	{
 		assert file != null;
 		
 		this.tempFile = file;
 		this.resultObjectUtil = resultObjectUtil;
+		this.mapped = mapped;
 		setCacheSize( cacheSize );
 		DataEngineThreadLocal.getInstance( ).getCloseListener( ).add( this );
 	}
@@ -136,6 +159,11 @@ class RowFile implements IRowIterator, ICloseListener
 	private void writeRowsToFile( IResultObject[] resultObjects, int from,
 			int count ) throws IOException, DataException
 	{
+		if ( mapped )
+		{
+			writeRowsToMappedFile( resultObjects, from, count );
+			return;
+		}
 		if ( dfw == null )
 		{
 			createWriter( );
@@ -144,6 +172,34 @@ class RowFile implements IRowIterator, ICloseListener
 		rowCount += count;
 	}
 	
+	/**
+	 * Write objects to memory mapped file.
+	 * 
+	 * @param resultObjects
+	 * @param from
+	 * @param count
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeRowsToMappedFile( IResultObject[] resultObjects,
+			int from, int count ) throws IOException, DataException
+	{
+		if ( mappedFile == null )
+		{
+			// the rows are spilled in units as large as the memory cache, so
+			// the segments are first sized for one unit
+			mappedFile = new MappedSegmentFile( tempFile,
+					Math.max( count, memoryRowCache.length ) );
+			rowCodec = new FixedWidthRowCodec( resultObjectUtil.getResultClass( ) );
+		}
+		for ( int i = from; i < from + count; i++ )
+		{
+			int length = rowCodec.encode( resultObjects[i] );
+			mappedFile.append( rowCodec.getBytes( ), length );
+			rowCount++;
+		}
+	}
+	
 	/**
 	 * Get subarray of a object array
 	 * @param resultObjects
@@ -194,7 +250,32 @@ class RowFile implements IRowIterator, ICloseListener
 	public void reset( )
 	{
 		readPos = 0;
-		createReader( );
+		if ( !mapped )
+			createReader( );
+	}
+	
+	/**
+	 * Whether any row can be fetched without reading the rows before it, which
+	 * is only supported by the memory mapped files.
+	 * 
+	 * @return
+	 */
+	boolean isRandomAccess( )
+	{
+		return mapped;
+	}
+	
+	/**
+	 * Move the read position to the specified row, and then the next fetch
+	 * returns that row. This method can only be called when isRandomAccess
+	 * returns true.
+	 * 
+	 * @param index
+	 */
+	void seek( int index )
+	{
+		assert isRandomAccess( );
+		readPos = index;
 	}
 	
 	/*
@@ -239,6 +320,10 @@ class RowFile implements IRowIterator, ICloseListener
 		{
 			return null;
 		}
+		if ( mapped )
+		{
+			return readRowFromMappedFile( readPos++ - memoryRowCache.length );
+		}
 		if ( dfr == null )
 		{
 			createReader( );
@@ -247,6 +332,23 @@ class RowFile implements IRowIterator, ICloseListener
 		return ( dfr.read( 1 ) )[0];
 	}
 	
+	/**
+	 * Read one object from memory mapped file.
+	 * 
+	 * @param index
+	 *            the index of row in the file
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IResultObject readRowFromMappedFile( int index )
+			throws IOException, DataException
+	{
+		ByteBuffer segment = mappedFile.getSegment( index );
+		return resultObjectUtil.newResultObject( rowCodec.decode( segment,
+				mappedFile.getOffset( index ) ) );
+	}
+	
 	/**
 	 * Create a instance of DataFileReader
 	 *
@@ -267,6 +369,11 @@ class RowFile implements IRowIterator, ICloseListener
 	{
 		closeWriter( );
 		closeReader( );
+		if ( mappedFile != null )
+		{
+			mappedFile.close( );
+			mappedFile = null;
+		}
 
 		if ( tempFile != null )
 			FileSecurity.fileDelete( tempFile );
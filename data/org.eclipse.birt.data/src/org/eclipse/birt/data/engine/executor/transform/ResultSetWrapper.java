@@ -36,9 +36,17 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
 
 public class ResultSetWrapper implements IResultIterator
 {
+	// the count of the consumed rows which are released at a time
+	private static final int RELEASE_SIZE = 1000;
+	
 	private SimpleResultSet source;
 	private int index;
+	// the rows from the current row to the last row read from the source. The
+	// rows before the current one are never visited again, so they are
+	// released once all the read rows are consumed
 	private CachedList cachedRows;
+	// the index of the first row in cachedRows
+	private int offset;
 	private IResultClass trimedResultClass;
 	public ResultSetWrapper( DataEngineSession session, SimpleResultSet source ) throws DataException
 	{
@@ -82,17 +90,24 @@ public class ResultSetWrapper implements IResultIterator
 
 	public boolean next( ) throws DataException
 	{
-		if( this.index < this.cachedRows.size( ) - 1 )
+		int lastIndex = this.offset + this.cachedRows.size( ) - 1;
+		if( this.index < lastIndex )
 		{
 			this.index++;
 			return true;
 		}
-		else if( this.index == this.cachedRows.size( ) - 1 )
+		else if( this.index == lastIndex )
 		{
 			boolean result = this.source.next( );
 			this.index++;			
 			if( result )
 			{
+				if ( this.cachedRows.size( ) >= RELEASE_SIZE )
+				{
+					// all the cached rows are consumed
+					this.cachedRows.clear( );
+					this.offset = this.index;
+				}
 				this.cachedRows.add( new ResultObjectHolder( this.source.getCurrentResult( ),
 						this.source.getStartingGroupLevel( ),
 						this.source.getEndingGroupLevel( ), source.getGroupIndex( ) ) );
@@ -118,7 +133,7 @@ public class ResultSetWrapper implements IResultIterator
 
 	public IResultObject getCurrentResult( ) throws DataException
 	{
-		if( this.index >= this.cachedRows.size( )||this.index < 0)
+		if( this.index >= this.offset + this.cachedRows.size( )||this.index < 0)
 			return null;
 		return getResultObjectHolder( ).getResultObject( );
 	}
@@ -135,24 +150,25 @@ public class ResultSetWrapper implements IResultIterator
 
 	public int getStartingGroupLevel( ) throws DataException
 	{
-		assert this.index < this.cachedRows.size( );
+		assert this.index < this.offset + this.cachedRows.size( );
 		return getResultObjectHolder( ).getStartingGroupIndex( );
 	}
 
 	private ResultObjectHolder getResultObjectHolder( )
 	{
-		return ((ResultObjectHolder)this.cachedRows.get( this.index ));
+		return ((ResultObjectHolder)this.cachedRows.get( this.index - this.offset ));
 	}
 
 	public int getEndingGroupLevel( ) throws DataException
 	{
-		assert this.index < this.cachedRows.size( );
+		assert this.index < this.offset + this.cachedRows.size( );
 		return getResultObjectHolder( ).getEndingGroupIndex( );
 	}
 
 	public void close( ) throws DataException
 	{
 		this.source.close( );
+		this.cachedRows.close( );
 	}
 
 	public int[] getGroupStartAndEndIndex( int groupLevel )
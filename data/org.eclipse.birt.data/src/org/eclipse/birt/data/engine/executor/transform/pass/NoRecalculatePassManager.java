@@ -34,6 +34,16 @@ public class NoRecalculatePassManager extends PassManager
 		super( populator );
 	}
 
+	/*
+	 * The rows are filtered on the existing groups, so they are not regrouped
+	 * in the data set pass.
+	 * @see org.eclipse.birt.data.engine.executor.transform.pass.PassManager#fuseQueryPasses()
+	 */
+	protected boolean fuseQueryPasses( )
+	{
+		return false;
+	}
+
 	protected void prepareQueryResultSet( ) throws DataException
 	{
 		populator.getExpressionProcessor( ).setDataSetMode( false );
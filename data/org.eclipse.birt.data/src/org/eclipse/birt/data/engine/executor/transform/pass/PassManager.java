@@ -51,6 +51,9 @@ public class PassManager
 	protected ComputedColumnsState iccState; 
 	protected PassStatusController psController;
 	
+	// whether the rows are sorted and grouped in the data set pass
+	private boolean fusedPass;
+	
 	/**
 	 * Constructor.
 	 * 
@@ -77,11 +80,20 @@ public class PassManager
 	public static void populateDataSetResultSet( ResultSetPopulator populator, 
 			OdiResultSetWrapper odaResultSetWrapper ) throws DataException
 	{
-		new PassManager( populator ).prepareDataSetResultSet( odaResultSetWrapper );
+		new PassManager( populator ).prepareDataSetResultSet( odaResultSetWrapper,
+				false );
 	}
 	
-	
-	private void prepareDataSetResultSet( OdiResultSetWrapper odaResultSet ) throws DataException
+	/**
+	 * 
+	 * @param odaResultSet
+	 * @param fuseQueryPasses
+	 *            whether the sorting and grouping of the query can be done in
+	 *            the data set pass
+	 * @throws DataException
+	 */
+	private void prepareDataSetResultSet( OdiResultSetWrapper odaResultSet,
+			boolean fuseQueryPasses ) throws DataException
 	{
 		this.populator.getExpressionProcessor( ).setDataSetMode( true );
 		prepareFetchEventList( );
@@ -91,7 +103,14 @@ public class PassManager
 		boolean needMultiPass = psController.needMultipassProcessing( );
 		if ( !needMultiPass )
 		{
-			doSinglePass( odaResultSet );
+			doSinglePass( odaResultSet, false );
+		}
+		else if ( fuseQueryPasses && psController.canFusePasses( ) )
+		{
+			// The computed columns and filters are evaluated while the rows
+			// are fetched, and the same pass sorts and groups them.
+			fusedPass = true;
+			doSinglePass( odaResultSet, true );
 		}
 		else
 		{
@@ -102,7 +121,7 @@ public class PassManager
 	
 	protected void prepareQueryResultSet( ) throws DataException
 	{
-		if ( psController.needMultipassProcessing( ) )
+		if ( psController.needMultipassProcessing( ) && !fusedPass )
 		{
 			this.populator.getExpressionProcessor( ).setDataSetMode( false );
 			ResultSetProcessUtil.doPopulate( this.populator,
@@ -131,10 +150,21 @@ public class PassManager
 	 */
 	protected void pass( OdiResultSetWrapper odaResultSet ) throws DataException
 	{
-		prepareDataSetResultSet( odaResultSet );
+		prepareDataSetResultSet( odaResultSet, fuseQueryPasses( ) );
 		prepareQueryResultSet( );
 	}
 
+	/**
+	 * Return whether the sorting and grouping of the query can be done in the
+	 * pass which populates the data set.
+	 * 
+	 * @return
+	 */
+	protected boolean fuseQueryPasses( )
+	{
+		return true;
+	}
+
 
 	/**
 	 * 
@@ -160,14 +190,15 @@ public class PassManager
 	/**
 	 * 
 	 * @param odaResultSet
-	 * @param stopSign
+	 * @param doGroup
 	 * @throws DataException
 	 */
-	private void doSinglePass( OdiResultSetWrapper odaResultSet ) throws DataException
+	private void doSinglePass( OdiResultSetWrapper odaResultSet,
+			boolean doGroup ) throws DataException
 	{
 		if ( computedColumnHelper != null )
 			computedColumnHelper.setModel( TransformationConstants.DATA_SET_MODEL );
-		PassUtil.pass( this.populator, odaResultSet, false );
+		PassUtil.pass( this.populator, odaResultSet, doGroup );
 		this.populator.getExpressionProcessor( ).setDataSetMode( false );
 		
 		removeOnFetchScriptHelper( );
@@ -13,7 +13,9 @@ package org.eclipse.birt.data.engine.executor.transform.pass;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.api.IComputedColumn;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.transform.FilterUtil;
@@ -21,6 +23,8 @@ import org.eclipse.birt.data.engine.executor.transform.ResultSetPopulator;
 import org.eclipse.birt.data.engine.executor.transform.TransformationConstants;
 import org.eclipse.birt.data.engine.impl.ComputedColumnHelper;
 import org.eclipse.birt.data.engine.impl.FilterByRow;
+import org.eclipse.birt.data.engine.impl.PreparedQueryUtil;
+import org.eclipse.birt.data.engine.odi.IQuery.GroupSpec;
 
 /**
  * A class which is used to control pass process.
@@ -47,6 +51,7 @@ class PassStatusController
 	private boolean hasAggrRowFilters;
 	private boolean hasDataSetAggrFilter;
 	private boolean needMultipassProcessing;
+	private boolean canFusePasses;
 	private boolean hasNoUpdateRowFilters;
 
 	// private boolean hasAggregationInResultSetCC;
@@ -119,6 +124,63 @@ class PassStatusController
 						.getOrdering( ).length > 0 )
 				|| this.hasAggrRowFilters
 				|| this.hasNoUpdateRowFilters;
+
+		// If the multipass processing is only required by the grouping and
+		// sorting, the data set filters and computed columns can be evaluated
+		// while the rows are fetched, sorted and grouped in the same pass.
+		canFusePasses = needMultipassProcessing
+				&& !hasAggregationInDataSetCC
+				&& !FilterUtil.hasMultiPassFilters( filterByRow )
+				&& !this.hasAggrRowFilters
+				&& !this.hasNoUpdateRowFilters
+				&& !this.hasDataSetAggrFilter
+				&& !this.hasResultSetFilters
+				&& !this.hasResultSetTempCC
+				&& !this.hasGroupRowFilters
+				&& !hasGroupFiltersOrSorts( populator )
+				&& !( populator.getQuery( ).getQueryDefinition( ) != null && PreparedQueryUtil.hasSortOnAggregat( populator.getQuery( )
+						.getQueryDefinition( ) ) )
+				&& enableFusedPass( populator );
+	}
+
+	/**
+	 * Return whether any group instance filter or group sort is defined.
+	 * 
+	 * @param populator
+	 * @return
+	 */
+	private static boolean hasGroupFiltersOrSorts( ResultSetPopulator populator )
+	{
+		GroupSpec[] groups = populator.getQuery( ).getGrouping( );
+		if ( groups == null )
+			return false;
+		for ( int i = 0; i < groups.length; i++ )
+		{
+			if ( ( groups[i].getFilters( ) != null && groups[i].getFilters( )
+					.size( ) > 0 )
+					|| ( groups[i].getSorts( ) != null && groups[i].getSorts( )
+							.size( ) > 0 ) )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return whether the fused pass is allowed by the application context.
+	 * 
+	 * @param populator
+	 * @return
+	 */
+	private static boolean enableFusedPass( ResultSetPopulator populator )
+	{
+		Map appContext = populator.getEventHandler( ) == null ? null
+				: populator.getEventHandler( ).getAppContext( );
+		if ( appContext == null )
+			return true;
+		Object propValue = appContext.get( DataEngine.FUSED_ROW_PASS );
+		if ( propValue == null )
+			return true;
+		return !"false".equalsIgnoreCase( propValue.toString( ).trim( ) );
 	}
 
 	/**
@@ -161,6 +223,17 @@ class PassStatusController
 		return this.needMultipassProcessing;
 	}
 
+	/**
+	 * Return whether the data set processing, the sorting and the grouping
+	 * can be done in a single pass over the rows.
+	 * 
+	 * @return
+	 */
+	boolean canFusePasses( )
+	{
+		return this.canFusePasses;
+	}
+
 	/**
 	 * Return whether there are aggregations in the query.
 	 * 
@@ -207,6 +207,10 @@ abstract class AbstractExpressionCompiler
 			}
 			assert ( child != null && parent != null );
 			expr = processChild( context, false, parent, child, tree );
+			// the tree is not transformed by Rhino yet
+			if ( expr instanceof ComplexExpression && parent != tree )
+				( (ComplexExpression) expr ).setJavaEvaluator( JavaExpressionEvaluator.create( parent.getFirstChild( ),
+						rowIndicator ) );
 		}
 		else
 		{
@@ -25,6 +25,7 @@ public final class ComplexExpression extends BytecodeExpression
     private ArrayList m_subExpressions;
     private ArrayList m_tokenList;
     private ArrayList m_constantExpressions;
+    private JavaExpressionEvaluator m_evaluator;
 
     ComplexExpression()
 	{
@@ -151,6 +152,26 @@ public final class ComplexExpression extends BytecodeExpression
 		m_tokenList.add( token );
 	}
 	
+	/**
+	 * Sets the evaluator which evaluates this expression in Java, if the
+	 * expression is simple enough.
+	 * 
+	 * @param evaluator
+	 */
+	void setJavaEvaluator( JavaExpressionEvaluator evaluator )
+	{
+		m_evaluator = evaluator;
+	}
+
+	/**
+	 * @return the evaluator which evaluates this expression in Java, or null
+	 *         if the expression is only evaluated by Rhino.
+	 */
+	JavaExpressionEvaluator getJavaEvaluator( )
+	{
+		return m_evaluator;
+	}
+
 	/**
 	 * Returen a <code>Collection</code> of Token value.
 	 * @return
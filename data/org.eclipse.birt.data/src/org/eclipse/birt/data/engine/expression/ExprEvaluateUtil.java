@@ -216,10 +216,44 @@ public class ExprEvaluateUtil
 		}
 		else
 		{
+			if ( ro != null )
+			{
+				Object value = evaluateInJava( expr, ro, currentIndex );
+				if ( value != JavaExpressionEvaluator.UNSUPPORTED )
+					return value;
+			}
 			return expr.evaluate( cx, scope );
 		}
 	}
 
+	/**
+	 * Evaluate a simple complex expression without entering Rhino.
+	 * 
+	 * @param expr
+	 * @param ro
+	 * @param currentIndex
+	 * @return <code>JavaExpressionEvaluator.UNSUPPORTED</code> if the
+	 *         expression should be evaluated by Rhino
+	 * @throws DataException
+	 */
+	private static Object evaluateInJava( CompiledExpression expr,
+			IResultObject ro, int currentIndex ) throws DataException
+	{
+		if ( expr instanceof ComplexExpression )
+		{
+			JavaExpressionEvaluator evaluator = ( (ComplexExpression) expr ).getJavaEvaluator( );
+			if ( evaluator != null )
+			{
+				Object value = evaluator.evaluate( ro, currentIndex );
+				if ( value == JavaExpressionEvaluator.UNSUPPORTED )
+					return value;
+				// the same as BytecodeExpression
+				return JavascriptEvalUtil.convertJavascriptValue( value );
+			}
+		}
+		return JavaExpressionEvaluator.UNSUPPORTED;
+	}
+
 	/**
 	 * @param expr
 	 * @param odiResult
@@ -666,6 +700,12 @@ public class ExprEvaluateUtil
 		}
 		else
 		{
+			if ( roObject != null )
+			{
+				Object value = evaluateInJava( expr, roObject, index );
+				if ( value != JavaExpressionEvaluator.UNSUPPORTED )
+					return value;
+			}
 			return  expr.evaluate( cx, scope );
 		}
 
@@ -120,6 +120,9 @@ public class ExpressionCompiler extends AbstractExpressionCompiler
 			Node exprNode = new Node( Token.EXPR_RESULT);
 			exprNode.addChildToFront( arg );
 			tree.addChildrenToFront( exprNode );
+			if ( expr instanceof ComplexExpression )
+				( (ComplexExpression) expr ).setJavaEvaluator( JavaExpressionEvaluator.create( arg,
+						rowIndicator ) );
 			compileForBytecodeExpr( context, tree, expr );
 			aggregateExpression.addArgument( expr );
 			
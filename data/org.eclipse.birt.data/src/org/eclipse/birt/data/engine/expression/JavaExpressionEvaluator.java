@@ -0,0 +1,523 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.core.script.functionservice.IScriptFunction;
+import org.eclipse.birt.core.script.functionservice.impl.FunctionProvider;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.JSRowObject;
+import org.eclipse.birt.data.engine.script.ScriptConstants;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Token;
+
+/**
+ * Evaluates a simple <code>ComplexExpression</code> in Java against the
+ * current result object, without entering a Rhino context. The supported
+ * expressions are made of constants, direct column references, arithmetic,
+ * comparison, logical and conditional operators, and the functions of the
+ * BirtMath and BirtStr categories, for instance
+ * <code>row["PRICE"] * row["QUANTITY"] + 1</code>.
+ * <p>
+ * The operators follow the Javascript conversion rules of Rhino, and the
+ * column values, the function arguments and the results are converted by
+ * JavascriptEvalUtil the same way as the compiled script. The values other
+ * than null, numbers, strings and booleans, such as dates, are left to Rhino:
+ * <code>UNSUPPORTED</code> is returned instead, and the caller should evaluate
+ * the compiled script. A function is only called when all its arguments are
+ * supported, so the errors of a function are thrown rather than left to
+ * Rhino, which would call it again.
+ */
+abstract class JavaExpressionEvaluator
+{
+
+	/**
+	 * Returned when the expression can not be evaluated in Java for the
+	 * current row.
+	 */
+	static final Object UNSUPPORTED = new Object( );
+
+	private static final String BIRT_MATH = "BirtMath"; //$NON-NLS-1$
+	private static final String BIRT_STR = "BirtStr"; //$NON-NLS-1$
+
+	// the properties of the row object which are not columns
+	private static final String DATA_SET = "dataSet"; //$NON-NLS-1$
+	private static final String COLUMN_DEFNS = "columnDefns"; //$NON-NLS-1$
+
+	private static Logger logger = Logger.getLogger( JavaExpressionEvaluator.class.getName( ) );
+
+	/**
+	 * @param resultObject
+	 *            the current result object, which is not null
+	 * @param index
+	 *            the index of the current result object
+	 * @return the value, or <code>UNSUPPORTED</code>
+	 * @throws DataException
+	 *             if a function fails
+	 */
+	abstract Object evaluate( IResultObject resultObject, int index )
+			throws DataException;
+
+	/**
+	 * Create the evaluator of a parsed expression.
+	 *
+	 * @param node
+	 *            the root node of the expression
+	 * @param rowIndicator
+	 *            the name of the row object
+	 * @return null if the expression is not supported
+	 */
+	static JavaExpressionEvaluator create( Node node, String rowIndicator )
+	{
+		if ( node == null )
+			return null;
+		switch ( node.getType( ) )
+		{
+			case Token.NUMBER :
+				return new Constant( new Double( node.getDouble( ) ) );
+			case Token.STRING :
+				return new Constant( node.getString( ) );
+			case Token.NULL :
+				return new Constant( null );
+			case Token.TRUE :
+				return new Constant( Boolean.TRUE );
+			case Token.FALSE :
+				return new Constant( Boolean.FALSE );
+			case Token.GETPROP :
+			case Token.GETELEM :
+				return createColumnReference( node, rowIndicator );
+			case Token.CALL :
+				return createFunctionCall( node, rowIndicator );
+			case Token.NEG :
+			case Token.POS :
+			case Token.NOT :
+			{
+				JavaExpressionEvaluator operand = create( node.getFirstChild( ),
+						rowIndicator );
+				if ( operand == null || node.getFirstChild( ) != node.getLastChild( ) )
+					return null;
+				return new UnaryOperation( node.getType( ), operand );
+			}
+			case Token.ADD :
+			case Token.SUB :
+			case Token.MUL :
+			case Token.DIV :
+			case Token.MOD :
+			case Token.EQ :
+			case Token.NE :
+			case Token.SHEQ :
+			case Token.SHNE :
+			case Token.LT :
+			case Token.LE :
+			case Token.GT :
+			case Token.GE :
+			case Token.AND :
+			case Token.OR :
+			{
+				Node left = node.getFirstChild( );
+				if ( left == null || left.getNext( ) != node.getLastChild( ) )
+					return null;
+				JavaExpressionEvaluator leftOperand = create( left, rowIndicator );
+				if ( leftOperand == null )
+					return null;
+				JavaExpressionEvaluator rightOperand = create( left.getNext( ),
+						rowIndicator );
+				if ( rightOperand == null )
+					return null;
+				return new BinaryOperation( node.getType( ),
+						leftOperand,
+						rightOperand );
+			}
+			case Token.HOOK :
+			{
+				Node condition = node.getFirstChild( );
+				if ( condition == null
+						|| condition.getNext( ) == null
+						|| condition.getNext( ).getNext( ) != node.getLastChild( ) )
+					return null;
+				JavaExpressionEvaluator test = create( condition, rowIndicator );
+				JavaExpressionEvaluator ifTrue = create( condition.getNext( ),
+						rowIndicator );
+				JavaExpressionEvaluator ifFalse = create( node.getLastChild( ),
+						rowIndicator );
+				if ( test == null || ifTrue == null || ifFalse == null )
+					return null;
+				return new Conditional( test, ifTrue, ifFalse );
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * row.name, row["name"] or row[index]
+	 *
+	 * @param node
+	 * @param rowIndicator
+	 * @return
+	 */
+	private static JavaExpressionEvaluator createColumnReference( Node node,
+			String rowIndicator )
+	{
+		Node rowName = node.getFirstChild( );
+		if ( rowName == null
+				|| rowName.getType( ) != Token.NAME
+				|| !rowIndicator.equals( rowName.getString( ) ) )
+			return null;
+		Node column = rowName.getNext( );
+		if ( column == null || column.getNext( ) != null )
+			return null;
+		if ( column.getType( ) == Token.NUMBER
+				&& node.getType( ) == Token.GETELEM )
+		{
+			double index = column.getDouble( );
+			if ( index < 0 || index != (int) index )
+				return null;
+			return new ColumnReference( null, (int) index );
+		}
+		if ( column.getType( ) != Token.STRING )
+			return null;
+		String name = column.getString( );
+		if ( name.length( ) == 0
+				|| DATA_SET.equals( name )
+				|| COLUMN_DEFNS.equals( name )
+				|| ScriptConstants.OUTER_RESULT_KEYWORD.equalsIgnoreCase( name )
+				|| ScriptConstants.ROW_NUM_KEYWORD.equalsIgnoreCase( name ) )
+			return null;
+		return new ColumnReference( name, -1 );
+	}
+
+	/**
+	 * BirtMath.xxx( ... ) or BirtStr.xxx( ... )
+	 *
+	 * @param node
+	 * @param rowIndicator
+	 * @return
+	 */
+	private static JavaExpressionEvaluator createFunctionCall( Node node,
+			String rowIndicator )
+	{
+		Node target = node.getFirstChild( );
+		if ( target == null || target.getType( ) != Token.GETPROP )
+			return null;
+		Node category = target.getFirstChild( );
+		Node name = target.getLastChild( );
+		if ( category.getType( ) != Token.NAME
+				|| name.getType( ) != Token.STRING )
+			return null;
+		String categoryName = category.getString( );
+		// the functions of the other categories may depend on the script
+		// function context, such as the locale
+		if ( !BIRT_MATH.equals( categoryName )
+				&& !BIRT_STR.equals( categoryName ) )
+			return null;
+		IScriptFunction function = getFunction( categoryName, name.getString( ) );
+		if ( function == null )
+			return null;
+
+		int count = 0;
+		for ( Node arg = target.getNext( ); arg != null; arg = arg.getNext( ) )
+			count++;
+		JavaExpressionEvaluator[] args = new JavaExpressionEvaluator[count];
+		int i = 0;
+		for ( Node arg = target.getNext( ); arg != null; arg = arg.getNext( ) )
+		{
+			args[i] = create( arg, rowIndicator );
+			if ( args[i] == null )
+				return null;
+			i++;
+		}
+		return new FunctionCall( function, args );
+	}
+
+	/**
+	 * @param categoryName
+	 * @param functionName
+	 * @return null if the function is not defined
+	 */
+	private static IScriptFunction getFunction( String categoryName,
+			String functionName )
+	{
+		try
+		{
+			IScriptFunction[] functions = FunctionProvider.getFunctions( categoryName );
+			for ( int i = 0; functions != null && i < functions.length; i++ )
+			{
+				if ( functionName.equals( functions[i].getName( ) ) )
+					return functions[i];
+			}
+		}
+		catch ( BirtException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+		}
+		return null;
+	}
+
+	/**
+	 * @param value
+	 * @return whether the value is converted the same way by Rhino and by
+	 *         this class
+	 */
+	private static boolean isPrimitive( Object value )
+	{
+		return value == null
+				|| value instanceof String || value instanceof Number
+				|| value instanceof Boolean;
+	}
+
+	/**
+	 * A constant.
+	 */
+	private static class Constant extends JavaExpressionEvaluator
+	{
+
+		private Object value;
+
+		Constant( Object value )
+		{
+			this.value = value;
+		}
+
+		Object evaluate( IResultObject resultObject, int index )
+		{
+			return value;
+		}
+	}
+
+	/**
+	 * A direct column reference, which is evaluated the same way as a
+	 * <code>ColumnReferenceExpression</code>.
+	 */
+	private static class ColumnReference extends JavaExpressionEvaluator
+	{
+
+		private String name;
+		private int columnIndex;
+
+		ColumnReference( String name, int columnIndex )
+		{
+			this.name = name;
+			this.columnIndex = columnIndex;
+		}
+
+		Object evaluate( IResultObject resultObject, int index )
+		{
+			// row[0] and row._rowPosition refer to the internal row id
+			if ( columnIndex == 0 || JSRowObject.ROW_POSITION.equals( name ) )
+				return Integer.valueOf( index );
+			Object value;
+			try
+			{
+				if ( name == null )
+					value = resultObject.getFieldValue( columnIndex );
+				else
+					value = resultObject.getFieldValue( name );
+			}
+			catch ( DataException e )
+			{
+				// let Rhino report the error
+				return UNSUPPORTED;
+			}
+			if ( !isPrimitive( value ) )
+				return UNSUPPORTED;
+			// the same as JSRowObject
+			return JavascriptEvalUtil.convertToJavascriptValue( value );
+		}
+	}
+
+	/**
+	 * -x, +x and !x
+	 */
+	private static class UnaryOperation extends JavaExpressionEvaluator
+	{
+
+		private int operator;
+		private JavaExpressionEvaluator operand;
+
+		UnaryOperation( int operator, JavaExpressionEvaluator operand )
+		{
+			this.operator = operator;
+			this.operand = operand;
+		}
+
+		Object evaluate( IResultObject resultObject, int index )
+				throws DataException
+		{
+			Object value = operand.evaluate( resultObject, index );
+			if ( value == UNSUPPORTED || !isPrimitive( value ) )
+				return UNSUPPORTED;
+			switch ( operator )
+			{
+				case Token.NEG :
+					return new Double( -ScriptRuntime.toNumber( value ) );
+				case Token.POS :
+					return new Double( ScriptRuntime.toNumber( value ) );
+				default :
+					return Boolean.valueOf( !ScriptRuntime.toBoolean( value ) );
+			}
+		}
+	}
+
+	/**
+	 * The arithmetic, comparison and logical operators.
+	 */
+	private static class BinaryOperation extends JavaExpressionEvaluator
+	{
+
+		private int operator;
+		private JavaExpressionEvaluator left;
+		private JavaExpressionEvaluator right;
+
+		BinaryOperation( int operator, JavaExpressionEvaluator left,
+				JavaExpressionEvaluator right )
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate( IResultObject resultObject, int index )
+				throws DataException
+		{
+			Object value1 = left.evaluate( resultObject, index );
+			if ( value1 == UNSUPPORTED || !isPrimitive( value1 ) )
+				return UNSUPPORTED;
+			// the right operand of && and || is evaluated only if needed
+			if ( operator == Token.AND )
+				return ScriptRuntime.toBoolean( value1 ) ? right.evaluate( resultObject,
+						index )
+						: value1;
+			if ( operator == Token.OR )
+				return ScriptRuntime.toBoolean( value1 ) ? value1
+						: right.evaluate( resultObject, index );
+
+			Object value2 = right.evaluate( resultObject, index );
+			if ( value2 == UNSUPPORTED || !isPrimitive( value2 ) )
+				return UNSUPPORTED;
+			switch ( operator )
+			{
+				case Token.ADD :
+					if ( value1 instanceof String || value2 instanceof String )
+						return ScriptRuntime.toString( value1 )
+								.concat( ScriptRuntime.toString( value2 ) );
+					return new Double( ScriptRuntime.toNumber( value1 )
+							+ ScriptRuntime.toNumber( value2 ) );
+				case Token.SUB :
+					return new Double( ScriptRuntime.toNumber( value1 )
+							- ScriptRuntime.toNumber( value2 ) );
+				case Token.MUL :
+					return new Double( ScriptRuntime.toNumber( value1 )
+							* ScriptRuntime.toNumber( value2 ) );
+				case Token.DIV :
+					return new Double( ScriptRuntime.toNumber( value1 )
+							/ ScriptRuntime.toNumber( value2 ) );
+				case Token.MOD :
+					return new Double( ScriptRuntime.toNumber( value1 )
+							% ScriptRuntime.toNumber( value2 ) );
+				case Token.EQ :
+					return Boolean.valueOf( ScriptRuntime.eq( value1, value2 ) );
+				case Token.NE :
+					return Boolean.valueOf( !ScriptRuntime.eq( value1, value2 ) );
+				case Token.SHEQ :
+					return Boolean.valueOf( ScriptRuntime.shallowEq( value1,
+							value2 ) );
+				case Token.SHNE :
+					return Boolean.valueOf( !ScriptRuntime.shallowEq( value1,
+							value2 ) );
+				case Token.LT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( value1, value2 ) );
+				case Token.LE :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( value1, value2 ) );
+				case Token.GT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( value2, value1 ) );
+				default :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( value2, value1 ) );
+			}
+		}
+	}
+
+	/**
+	 * condition ? x : y
+	 */
+	private static class Conditional extends JavaExpressionEvaluator
+	{
+
+		private JavaExpressionEvaluator test;
+		private JavaExpressionEvaluator ifTrue;
+		private JavaExpressionEvaluator ifFalse;
+
+		Conditional( JavaExpressionEvaluator test,
+				JavaExpressionEvaluator ifTrue, JavaExpressionEvaluator ifFalse )
+		{
+			this.test = test;
+			this.ifTrue = ifTrue;
+			this.ifFalse = ifFalse;
+		}
+
+		Object evaluate( IResultObject resultObject, int index )
+				throws DataException
+		{
+			Object value = test.evaluate( resultObject, index );
+			if ( value == UNSUPPORTED || !isPrimitive( value ) )
+				return UNSUPPORTED;
+			return ScriptRuntime.toBoolean( value ) ? ifTrue.evaluate( resultObject,
+					index )
+					: ifFalse.evaluate( resultObject, index );
+		}
+	}
+
+	/**
+	 * A call of a script function which does not use the script function
+	 * context.
+	 */
+	private static class FunctionCall extends JavaExpressionEvaluator
+	{
+
+		private IScriptFunction function;
+		private JavaExpressionEvaluator[] args;
+
+		FunctionCall( IScriptFunction function, JavaExpressionEvaluator[] args )
+		{
+			this.function = function;
+			this.args = args;
+		}
+
+		Object evaluate( IResultObject resultObject, int index )
+				throws DataException
+		{
+			Object[] values = new Object[args.length];
+			for ( int i = 0; i < args.length; i++ )
+			{
+				values[i] = args[i].evaluate( resultObject, index );
+				if ( values[i] == UNSUPPORTED || !isPrimitive( values[i] ) )
+					return UNSUPPORTED;
+			}
+			// the same as CategoryWrapper, the errors are thrown as they are
+			// by the compiled script
+			try
+			{
+				return function.execute( JavascriptEvalUtil.convertToJavaObjects( values ),
+						null );
+			}
+			catch ( BirtException e )
+			{
+				throw DataException.wrap( e );
+			}
+		}
+	}
+}
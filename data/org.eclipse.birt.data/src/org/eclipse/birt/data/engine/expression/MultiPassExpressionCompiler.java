@@ -575,6 +575,9 @@ class MultiPassExpressionCompiler extends AbstractExpressionCompiler
 					replaceAggregateNode( registry, exprNode, arg );
 			}
 			
+			if ( expr instanceof ComplexExpression )
+				( (ComplexExpression) expr ).setJavaEvaluator( JavaExpressionEvaluator.create( arg,
+						rowIndicator ) );
 			compileForBytecodeExpr( context, tree, expr );
 			aggregateExpression.addArgument( expr );
 			arg = nextArg;
@@ -37,6 +37,7 @@ import org.eclipse.birt.data.engine.api.IResultMetaData;
 import org.eclipse.birt.data.engine.api.IShutdownListener;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.CacheMapManager;
 import org.eclipse.birt.data.engine.executor.DataSetCacheManager;
 import org.eclipse.birt.data.engine.impl.document.QueryResults;
 import org.eclipse.birt.data.engine.olap.api.IPreparedCubeQuery;
@@ -307,6 +308,14 @@ public class DataEngineImpl extends DataEngine
 		else
 			dscManager.clearCache( cacheID );
 	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.api.DataEngine#clearCache()
+	 */
+	public void clearCache( ) throws BirtException
+	{
+		CacheMapManager.clearJVMLevelCache( );
+	}
 	
 	/**
 	 * Returns the runtime defn of a data source. If data source is not found,
@@ -45,6 +45,33 @@ public class DataSetCacheUtil
 		{
 			return DataSetCacheConfig.getInstance( DataSetCacheMode.IN_DISK, -1, true, tempDir );
 		}
+		DataSetCacheConfig result = getJVMDataSetCacheConfig( appContext,
+				context,
+				dataSetDesign,
+				tempDir );
+		if ( result != null )
+		{
+			result.setTimeToLive( getLongValue( appContext,
+					DataEngine.DATA_SET_CACHE_TIME_TO_LIVE ) );
+			result.setSizeLimit( getLongValue( appContext,
+					DataEngine.DATA_SET_CACHE_SIZE_LIMIT ) * 1024 * 1024 );
+		}
+		return result;
+	}
+	
+	/**
+	 * @param appContext
+	 * @param context
+	 * @param dataSetDesign
+	 * @param tempDir
+	 * @return null if no JVM level data set cache settings
+	 * @throws DataException
+	 */
+	private static DataSetCacheConfig getJVMDataSetCacheConfig(
+			Map appContext, DataEngineContext context,
+			IBaseDataSetDesign dataSetDesign, String tempDir )
+			throws DataException
+	{
 		if ( appContext != null )
 		{
 			Object option = appContext.get( DataEngine.MEMORY_DATA_SET_CACHE );
@@ -194,6 +221,23 @@ public class DataSetCacheUtil
 	{
 		return Integer.valueOf(option.toString()).intValue();
 	}
+	
+	/**
+	 * Read a setting from appContext, or else from the system properties.
+	 * 
+	 * @param appContext
+	 * @param name
+	 * @return 0 if the setting is not defined
+	 */
+	private static long getLongValue( Map appContext, String name )
+	{
+		Object option = appContext == null ? null : appContext.get( name );
+		if ( option == null )
+			option = System.getProperty( name );
+		if ( option == null || option.toString( ).trim( ).length( ) == 0 )
+			return 0;
+		return Long.valueOf( option.toString( ).trim( ) ).longValue( );
+	}
 }
 
 
@@ -30,8 +30,10 @@ import org.eclipse.birt.data.engine.api.querydefn.BaseDataSetDesign;
 import org.eclipse.birt.data.engine.core.DataException;
 
 /**
- * 
- *
+ * Decides which data sets are cached at the DTE level for the queries
+ * registered together. A data set is cached when more than one of the
+ * queries uses it, directly or as one of the data sets of a joint data set,
+ * so that it is fetched once.
  */
 public class EngineExecutionHints implements IEngineExecutionHints
 {
@@ -74,22 +76,22 @@ public class EngineExecutionHints implements IEngineExecutionHints
 						if( design instanceof IScriptDataSetDesign)
 							continue;
 
-						if( design instanceof ICacheable  )
-							DataSetDesignHelper.populateDataSetNames( dataEngine.getDataSetDesign( dataSetName ), dataEngine, temp2 );
+						// the data sets joined by a joint data set are counted
+						// as well, the joint data set itself is not cached
+						if( design instanceof ICacheable || design instanceof IJointDataSetDesign )
+							DataSetDesignHelper.populateDataSetNames( design, dataEngine, temp2 );
 												
 						if( qd.getParentQuery() != null && qd.getInputParamBindings().size() == 0 )
 						{
 							for ( int i = 0; i < temp2.size( ); i++ )
 							{
-								if ( ( (BaseDataSetDesign) dataEngine.getDataSetDesign( temp2.get( i )
-										.toString( ) ) ).needCache( ) )
+								if ( canCache( dataEngine, temp2.get( i ).toString( ) ) )
 									this.cachedDataSetNames.add( temp2.get( i ) );
 							}
 						}
 						for( int i =0;i<temp2.size( );i++)
 						{
-							if ( ( (BaseDataSetDesign) dataEngine.getDataSetDesign( temp2.get( i )
-									.toString( ) ) ).needCache( ) )
+							if ( canCache( dataEngine, temp2.get( i ).toString( ) ) )
 							{
 								temp.add( temp2.get( i ) );
 							}
@@ -135,6 +137,23 @@ public class EngineExecutionHints implements IEngineExecutionHints
 		}
 	}
 	
+	/**
+	 * Whether the data set is counted for the cache. Only the cacheable data
+	 * sets, except the script ones, are cached.
+	 * 
+	 * @param dataEngine
+	 * @param dataSetName
+	 * @return
+	 * @throws DataException
+	 */
+	private static boolean canCache( DataEngineImpl dataEngine, String dataSetName ) throws DataException
+	{
+		IBaseDataSetDesign design = dataEngine.getDataSetDesign( dataSetName );
+		return design instanceof ICacheable
+				&& !( design instanceof IScriptDataSetDesign )
+				&& ( (BaseDataSetDesign) design ).needCache( );
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.impl.IQueryExecutionHints#needCacheDataSet(java.lang.String)
@@ -542,11 +542,15 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 				isLeftDataSet,
 				queryDefinition );
 
-		for ( int i = 0; i < conditions.size( ); i++ )
+		// the hash join does not need the sorted data sets
+		if ( !JointDataSetPopulatorFactory.isHashJoin( conditions, appContext ) )
 		{
-			addSortToQuery( (IJoinCondition) conditions.get( i ),
-					isLeftDataSet,
-					queryDefinition );
+			for ( int i = 0; i < conditions.size( ); i++ )
+			{
+				addSortToQuery( (IJoinCondition) conditions.get( i ),
+						isLeftDataSet,
+						queryDefinition );
+			}
 		}
 
 		IPreparedQuery preparedQuery = PreparedQueryUtil.newInstance( dataEngine,
@@ -651,12 +655,22 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 			JointResultMetadata jrm = getJointResultMetadata( left.getResultMetaData( ),
 					right.getResultMetaData( ) );
 			resultClass = jrm.getResultClass( );
-			populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator( left.getOdiResult( ),
-					right.getOdiResult( ),
-					jrm,
-					matcher,
-					joinType, dataEngine.getSession( ),
-					dataSetDesign.getRowFetchLimit( ) );
+			if ( JointDataSetPopulatorFactory.isHashJoin( PreparedJointDataSourceQuery.this.dataSet.getJoinConditions( ),
+					appContext ) )
+				populator = JointDataSetPopulatorFactory.getHashJoinDataSetPopulator( left.getOdiResult( ),
+						right.getOdiResult( ),
+						jrm,
+						matcher,
+						joinType, dataEngine.getSession( ),
+						dataSetDesign.getRowFetchLimit( ),
+						appContext );
+			else
+				populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator( left.getOdiResult( ),
+						right.getOdiResult( ),
+						jrm,
+						matcher,
+						joinType, dataEngine.getSession( ),
+						dataSetDesign.getRowFetchLimit( ) );
 			
 			DataSetCacheManager dscm = dataEngine.getSession( ).getDataSetCacheManager( );
 			dscm.setDataSourceAndDataSet( 
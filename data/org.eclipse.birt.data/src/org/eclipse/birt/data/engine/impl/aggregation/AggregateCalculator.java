@@ -26,6 +26,7 @@ import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 import org.eclipse.birt.data.engine.cache.BasicCachedList;
 import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.aggregation.AccumulatorBatch;
 import org.eclipse.birt.data.engine.expression.ExprEvaluateUtil;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IResultIterator;
@@ -66,6 +67,9 @@ class AggregateCalculator
 	
 	private AccumulatorManager[] accumulatorManagers;
 	
+	// The batches of the aggregations whose values are passed in batches
+	private AccumulatorBatch[] accumulatorBatches;
+	
 	private Set invalidAggrSet;
 	private Map invalidAggrMsg;
 	
@@ -108,6 +112,7 @@ class AggregateCalculator
 				aggrArgs[i] = new Object[aggrInfo.aggregation.getParameterDefn( ).length];
 			}
 			accumulatorManagers = new AccumulatorManager[aggrCount];
+			accumulatorBatches = new AccumulatorBatch[aggrCount];
 		}
 		logger.exiting( AggregateCalculator.class.getName( ), "AggregateCalculator" );
 	}
@@ -132,6 +137,9 @@ class AggregateCalculator
 			else
 				populateAggrValue[i] = true;
 			accumulatorManagers[i] = new AccumulatorManager( this.getAggrInfo( i ).aggregation );
+			if ( this.getAggrInfo( i ).aggregation.getNumberOfPasses( ) < 2 )
+				accumulatorBatches[i] = AccumulatorBatch.create( this.getAggrInfo( i ).aggregation,
+						accumulatorManagers[i].getCurrentAccumulator( ) );
 		}
 
 		while ( validAggregations.size( ) > 0 )
@@ -295,7 +303,11 @@ class AggregateCalculator
 						newGroup,
 						argDefs );
 
-				acc.onRow( aggrArgs[aggrIndex] );
+				if ( accumulatorBatches[aggrIndex] != null )
+					accumulatorBatches[aggrIndex].onRow( acc,
+							aggrArgs[aggrIndex] );
+				else
+					acc.onRow( aggrArgs[aggrIndex] );
 			}
 			catch ( DataException e )
 			{
@@ -319,8 +331,23 @@ class AggregateCalculator
 
 		if ( endingGroupLevel <= aggrInfo.groupLevel )
 		{
-			// Current group ends for this aggregate; call finish() on
-			// accumulator
+			// Current group ends for this aggregate; pass the pending batch
+			// and call finish() on accumulator
+			if ( accumulatorBatches[aggrIndex] != null )
+			{
+				try
+				{
+					accumulatorBatches[aggrIndex].flush( acc );
+				}
+				catch ( DataException e )
+				{
+					if ( invalidAggrMsg == null )
+						invalidAggrMsg = new HashMap( );
+					invalidAggrMsg.put( Integer.valueOf( aggrIndex ), e );
+
+					return false;
+				}
+			}
 			acc.finish( );
 
 			// For non-running aggregates, this is the time to call getValue
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+
+/**
+ * Creates the hash keys of the join condition values. The join condition
+ * values are compared with JointDataSetUtil, which converts a string to the
+ * type of the other value, so the values are normalized before hashing: the
+ * numbers by their double value, the dates by their time, and the strings to
+ * the type of the column when the other data set holds numbers, dates or
+ * booleans in it. Two values which compare equal always get the same key;
+ * the values which get the same key are still compared by the caller.
+ */
+class HashJoinKeyHelper
+{
+	private static final int UNKNOWN = 0;
+	private static final int STRING = 1;
+	private static final int NUMBER = 2;
+	private static final int DATE = 3;
+	private static final int BOOLEAN = 4;
+	private static final int OTHER = 5;
+
+	// the value type of each join condition
+	private int[] columnTypes;
+
+	/**
+	 * The column types are decided with the first value other than null of
+	 * each data set, since the join condition values of one data set are
+	 * normally of the same type.
+	 *
+	 * @param buildValues
+	 *            the values of the hashed data set, null if it is empty
+	 * @param probeValues
+	 *            the values of the other data set, null if it is empty
+	 */
+	void initialize( Object[] buildValues, Object[] probeValues )
+	{
+		int length = buildValues != null ? buildValues.length
+				: ( probeValues != null ? probeValues.length : 0 );
+		columnTypes = new int[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			int buildType = getType( buildValues == null ? null
+					: buildValues[i] );
+			int probeType = getType( probeValues == null ? null
+					: probeValues[i] );
+			if ( buildType == UNKNOWN || buildType == STRING )
+				columnTypes[i] = probeType == UNKNOWN ? buildType : probeType;
+			else if ( probeType == UNKNOWN
+					|| probeType == STRING || probeType == buildType )
+				columnTypes[i] = buildType;
+			else
+				// the values of different types other than string are never
+				// equal
+				columnTypes[i] = UNKNOWN;
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static int getType( Object value )
+	{
+		if ( value == null )
+			return UNKNOWN;
+		if ( value instanceof String )
+			return STRING;
+		if ( value instanceof Number )
+			return NUMBER;
+		if ( value instanceof Date )
+			return DATE;
+		if ( value instanceof Boolean )
+			return BOOLEAN;
+		return OTHER;
+	}
+
+	/**
+	 * @param values
+	 *            the join condition values of a row
+	 * @return the hash key of the values
+	 */
+	Object getKey( Object[] values )
+	{
+		if ( columnTypes == null )
+			initialize( values, null );
+		Object[] keys = new Object[values.length];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			keys[i] = normalize( values[i], columnTypes[i] );
+		}
+		return new Key( keys );
+	}
+
+	/**
+	 * @param value
+	 * @param columnType
+	 * @return
+	 */
+	private static Object normalize( Object value, int columnType )
+	{
+		if ( value instanceof Number )
+			return Double.valueOf( ( (Number) value ).doubleValue( ) );
+		if ( value instanceof Date )
+			return Long.valueOf( ( (Date) value ).getTime( ) );
+		if ( !( value instanceof String ) || columnType <= STRING )
+			return value;
+
+		try
+		{
+			switch ( columnType )
+			{
+				case NUMBER :
+					return normalize( DataTypeUtil.toDouble( value ), NUMBER );
+				case DATE :
+					return normalize( DataTypeUtil.toDate( value ), DATE );
+				case BOOLEAN :
+					return DataTypeUtil.toBoolean( value );
+				default :
+					return value;
+			}
+		}
+		catch ( BirtException e )
+		{
+			// the string is compared as a string
+			return value;
+		}
+	}
+
+	/**
+	 * Hash key of the join condition values.
+	 */
+	private static class Key
+	{
+		private Object[] values;
+		private int hashCode;
+
+		Key( Object[] values )
+		{
+			this.values = values;
+			this.hashCode = Arrays.hashCode( values );
+		}
+
+		/*
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		/*
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals( Object o )
+		{
+			if ( this == o )
+				return true;
+			if ( !( o instanceof Key ) )
+				return false;
+			Key other = (Key) o;
+			return hashCode == other.hashCode
+					&& Arrays.equals( values, other.values );
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * This implementation of IMatchResultObjectSeeker is used for hash join. The
+ * rows of one data set are kept in a hash table of their join condition
+ * values, so that the rows matching a row of the other data set are found
+ * without sorting either data set.
+ */
+public class HashJoinResultObjectSeeker implements IMatchResultObjectSeeker
+{
+	//
+	private IJoinConditionMatcher matcher;
+	private HashJoinKeyHelper keyHelper;
+	private boolean isLeft;
+
+	// key -> list of Entry
+	private Map table = new HashMap( );
+	// all the entries in the order they are added
+	private List entries = new ArrayList( );
+
+	private Object[] currentValues;
+	private List currentEntries;
+	private int currentIndex;
+	private int currentPrimaryIndex = -1;
+
+	private int unmatchedIndex;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param matcher
+	 * @param keyHelper
+	 * @param isLeft
+	 *            whether the rows of the table are from the left data set
+	 */
+	HashJoinResultObjectSeeker( IJoinConditionMatcher matcher,
+			HashJoinKeyHelper keyHelper, boolean isLeft )
+	{
+		this.matcher = matcher;
+		this.keyHelper = keyHelper;
+		this.isLeft = isLeft;
+	}
+
+	/**
+	 * Add a row to the hash table.
+	 *
+	 * @param key
+	 *            the key of the values returned by HashJoinKeyHelper
+	 * @param values
+	 *            the join condition values of the row
+	 * @param row
+	 */
+	void add( Object key, Object[] values, IResultObject row )
+	{
+		Entry entry = new Entry( values, row );
+		List list = (List) table.get( key );
+		if ( list == null )
+		{
+			list = new ArrayList( 1 );
+			table.put( key, list );
+		}
+		list.add( entry );
+		entries.add( entry );
+	}
+
+	/**
+	 * @return the count of rows in the hash table
+	 */
+	int getRowCount( )
+	{
+		return entries.size( );
+	}
+
+	/**
+	 * Set the join condition values of the row to be matched.
+	 *
+	 * @param key
+	 * @param values
+	 *            the join condition values of the other data set
+	 */
+	void setMatchValues( Object key, Object[] values )
+	{
+		this.currentValues = values;
+		this.currentEntries = (List) table.get( key );
+		this.currentIndex = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.jointdataset.IMatchResultObjectSeeker#getNextMatchedResultObject(int)
+	 */
+	public IResultObject getNextMatchedResultObject( int currentPrimaryIndex )
+			throws DataException
+	{
+		if ( currentPrimaryIndex != this.currentPrimaryIndex )
+		{
+			// a new row of the other data set, whose values are evaluated
+			// with the matcher
+			this.currentPrimaryIndex = currentPrimaryIndex;
+			Object[] values = matcher.getCompareValue( !isLeft );
+			setMatchValues( keyHelper.getKey( values ), values );
+		}
+		return nextMatchedResultObject( );
+	}
+
+	/**
+	 * Return the next row which matches the values set by setMatchValues.
+	 *
+	 * @return null if there is no more matched row
+	 * @throws DataException
+	 */
+	IResultObject nextMatchedResultObject( ) throws DataException
+	{
+		if ( currentEntries == null )
+			return null;
+		while ( currentIndex < currentEntries.size( ) )
+		{
+			Entry entry = (Entry) currentEntries.get( currentIndex++ );
+			// the values with the same key might still be different
+			int result = isLeft ? matcher.compare( entry.values, currentValues )
+					: matcher.compare( currentValues, entry.values );
+			if ( result == 0 )
+			{
+				entry.matched = true;
+				return entry.row;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return the next row which has not matched any row, in the order the
+	 * rows are added.
+	 *
+	 * @return null if there is no more unmatched row
+	 */
+	IResultObject nextUnmatchedResultObject( )
+	{
+		while ( unmatchedIndex < entries.size( ) )
+		{
+			Entry entry = (Entry) entries.get( unmatchedIndex++ );
+			if ( !entry.matched )
+				return entry.row;
+		}
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.jointdataset.IMatchResultObjectSeeker#setResultIterator(org.eclipse.birt.data.engine.odi.IResultIterator)
+	 */
+	public void setResultIterator( IResultIterator ri ) throws DataException
+	{
+		clear( );
+		IResultObject row = ri.getCurrentResult( );
+		while ( row != null )
+		{
+			Object[] values = matcher.getCompareValue( isLeft );
+			add( keyHelper.getKey( values ), values, row );
+			ri.next( );
+			row = ri.getCurrentResult( );
+		}
+	}
+
+	/**
+	 * Move the rows to the spill file and release them.
+	 *
+	 * @param file
+	 * @throws DataException
+	 */
+	void writeTo( HashJoinSpillFile file ) throws DataException
+	{
+		for ( int i = 0; i < entries.size( ); i++ )
+		{
+			Entry entry = (Entry) entries.get( i );
+			file.write( entry.values, entry.row );
+		}
+		clear( );
+	}
+
+	/**
+	 * Release the rows.
+	 */
+	void clear( )
+	{
+		table.clear( );
+		entries.clear( );
+		currentValues = null;
+		currentEntries = null;
+		currentPrimaryIndex = -1;
+		unmatchedIndex = 0;
+	}
+
+	/**
+	 * A row in the hash table.
+	 */
+	private static class Entry
+	{
+		private Object[] values;
+		private IResultObject row;
+		private boolean matched;
+
+		Entry( Object[] values, IResultObject row )
+		{
+			this.values = values;
+			this.row = row;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * The file of one partition of the hash join, which keeps the rows together
+ * with their join condition values, since the join conditions can not be
+ * evaluated again once the rows leave the result iterator. The rows are
+ * written first and then read once in the same order.
+ */
+class HashJoinSpillFile
+{
+	private File file;
+	private ResultObjectUtil resultObjectUtil;
+
+	private DataOutputStream output;
+	private DataInputStream input;
+	private int rowCount;
+	private int readCount;
+
+	private Object[] currentValues;
+	private IResultObject currentRow;
+
+	/**
+	 * @param file
+	 * @param resultObjectUtil
+	 *            the util of the data set which the rows come from
+	 */
+	HashJoinSpillFile( File file, ResultObjectUtil resultObjectUtil )
+	{
+		this.file = file;
+		this.resultObjectUtil = resultObjectUtil;
+	}
+
+	/**
+	 * @param values
+	 * @param row
+	 * @throws DataException
+	 */
+	void write( Object[] values, IResultObject row ) throws DataException
+	{
+		try
+		{
+			if ( output == null )
+			{
+				output = new DataOutputStream( new BufferedOutputStream( FileSecurity.createFileOutputStream( file ) ) );
+			}
+			IOUtil.writeInt( output, values.length );
+			for ( int i = 0; i < values.length; i++ )
+			{
+				IOUtil.writeObject( output, values[i] );
+			}
+			resultObjectUtil.writeData( output, row );
+			rowCount++;
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR, e );
+		}
+	}
+
+	/**
+	 * @return the count of rows written
+	 */
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * Move to the next row.
+	 *
+	 * @return false if there is no more rows
+	 * @throws DataException
+	 */
+	boolean next( ) throws DataException
+	{
+		currentValues = null;
+		currentRow = null;
+		if ( readCount >= rowCount )
+			return false;
+		try
+		{
+			if ( input == null )
+			{
+				output.close( );
+				output = null;
+				input = new DataInputStream( new BufferedInputStream( FileSecurity.createFileInputStream( file ) ) );
+			}
+			currentValues = new Object[IOUtil.readInt( input )];
+			for ( int i = 0; i < currentValues.length; i++ )
+			{
+				currentValues[i] = IOUtil.readObject( input,
+						DataEngineSession.getCurrentClassLoader( ) );
+			}
+			currentRow = resultObjectUtil.readData( input,
+					DataEngineSession.getCurrentClassLoader( ),
+					1 )[0];
+			readCount++;
+			return true;
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( ResourceConstants.READ_TEMPFILE_ERROR, e );
+		}
+	}
+
+	/**
+	 * @return the join condition values of the current row
+	 */
+	Object[] getValues( )
+	{
+		return currentValues;
+	}
+
+	/**
+	 * @return the current row
+	 */
+	IResultObject getRow( )
+	{
+		return currentRow;
+	}
+
+	/**
+	 * Close and delete the file.
+	 */
+	void close( )
+	{
+		try
+		{
+			if ( output != null )
+				output.close( );
+			if ( input != null )
+				input.close( );
+		}
+		catch ( IOException e )
+		{
+			// the file is deleted anyway
+		}
+		output = null;
+		input = null;
+		currentValues = null;
+		currentRow = null;
+		if ( FileSecurity.fileExist( file ) )
+			FileSecurity.fileDelete( file );
+	}
+}
@@ -0,0 +1,724 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * An implementation of IDataSetPopulator which joins the data sets with a
+ * hash table, so that neither data set needs to be sorted. The smaller data
+ * set is read into the hash table, and the rows of the other data set are
+ * streamed against it.
+ * <p>
+ * The rows are hashed into partitions. When the rows of the hash table exceed
+ * the memory buffer size, the largest partition is moved to a temp file, and
+ * the rows of the other data set which fall into that partition are written
+ * to a temp file as well. The partitions on disk are joined one by one after
+ * all the rows in memory are done, in the same way with a different hash.
+ * <p>
+ * Unlike BaseJointDataSetPopulator, the rows are returned in the order of the
+ * streamed data set instead of the order of the join condition values.
+ */
+public class HashJointDataSetPopulator implements IDataSetPopulator
+{
+	private static final int PARTITION_COUNT = 16;
+
+	// the partitions of this level are kept in memory whatever the size is,
+	// which stops the repartition of the rows with the same values
+	private static final int MAX_LEVEL = 3;
+
+	// the max count of rows read ahead to decide the type of the values
+	private static final int SAMPLE_SIZE = 1000;
+
+	private static final int PROBE = 0;
+	private static final int UNMATCHED = 1;
+	private static final int SPILLED = 2;
+	private static final int DONE = 3;
+
+	private static int tempDirCount;
+
+	//
+	private JointResultMetadata meta;
+	private IJoinConditionMatcher jcm;
+	private DataEngineSession session;
+
+	private IResultIterator buildIterator;
+	private IResultIterator probeIterator;
+	private boolean isBuildLeft;
+	private boolean keepUnmatchedBuild;
+	private boolean keepUnmatchedProbe;
+
+	private HashJoinKeyHelper keyHelper = new HashJoinKeyHelper( );
+	private long memoryBufferSize;
+	private SizeOfUtil sizeOfUtil;
+	private ResultObjectUtil buildObjectUtil;
+	private ResultObjectUtil probeObjectUtil;
+	private File tempDir;
+	private int tempFileCount;
+
+	private Pass pass;
+
+	private int rowFetchLimit;
+	private int rowCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param left
+	 * @param right
+	 * @param meta
+	 * @param jcm
+	 * @param joinType
+	 * @param session
+	 * @param rowFetchLimit
+	 * @param appContext
+	 * @throws DataException
+	 */
+	public HashJointDataSetPopulator( IResultIterator left,
+			IResultIterator right, JointResultMetadata meta,
+			IJoinConditionMatcher jcm, int joinType, DataEngineSession session,
+			int rowFetchLimit, Map appContext ) throws DataException
+	{
+		this.meta = meta;
+		this.jcm = jcm;
+		this.session = session;
+		this.rowFetchLimit = rowFetchLimit;
+		this.rowCount = 0;
+
+		// the rows of both data sets are already cached, so the smaller one
+		// can be chosen for the hash table
+		int leftCount = left.getRowCount( );
+		int rightCount = right.getRowCount( );
+		this.isBuildLeft = leftCount >= 0
+				&& rightCount >= 0 && leftCount < rightCount;
+		this.buildIterator = isBuildLeft ? left : right;
+		this.probeIterator = isBuildLeft ? right : left;
+
+		boolean keepLeft = joinType == IJointDataSetDesign.LEFT_OUTER_JOIN
+				|| joinType == IJointDataSetDesign.FULL_OUTER_JOIN;
+		boolean keepRight = joinType == IJointDataSetDesign.RIGHT_OUTER_JOIN
+				|| joinType == IJointDataSetDesign.FULL_OUTER_JOIN;
+		this.keepUnmatchedBuild = isBuildLeft ? keepLeft : keepRight;
+		this.keepUnmatchedProbe = isBuildLeft ? keepRight : keepLeft;
+
+		this.memoryBufferSize = CacheUtil.computeMemoryBufferSize( appContext );
+		if ( memoryBufferSize > 0 )
+		{
+			this.sizeOfUtil = new SizeOfUtil( buildIterator.getResultClass( ) );
+			this.buildObjectUtil = ResultObjectUtil.newInstance( buildIterator.getResultClass( ),
+					session );
+			this.probeObjectUtil = ResultObjectUtil.newInstance( probeIterator.getResultClass( ),
+					session );
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.odi.IDataSetPopulator#next()
+	 */
+	public IResultObject next( ) throws DataException
+	{
+		if ( this.rowFetchLimit > 0 && this.rowCount >= this.rowFetchLimit )
+		{
+			close( );
+			return null;
+		}
+		if ( pass == null )
+		{
+			pass = new Pass( 0,
+					new IteratorSource( buildIterator, isBuildLeft ),
+					new IteratorSource( probeIterator, !isBuildLeft ) );
+		}
+		IResultObject result;
+		try
+		{
+			result = pass.next( );
+		}
+		catch ( DataException e )
+		{
+			close( );
+			throw e;
+		}
+		if ( result != null )
+			this.rowCount++;
+		else
+			close( );
+		return result;
+	}
+
+	/**
+	 * Release the rows and delete the temp files.
+	 */
+	private void close( )
+	{
+		if ( pass != null )
+			pass.close( );
+		if ( tempDir != null && FileSecurity.fileExist( tempDir ) )
+			FileSecurity.fileDelete( tempDir );
+		tempDir = null;
+	}
+
+	/**
+	 * @param resultObjectUtil
+	 * @return a new temp file for a spilled partition
+	 */
+	private HashJoinSpillFile newSpillFile( ResultObjectUtil resultObjectUtil )
+	{
+		if ( tempDir == null )
+		{
+			tempDir = new File( session.getTempDir( ), "HashJoin_"
+					+ nextTempDirIndex( ) );
+			if ( !FileSecurity.fileExist( tempDir ) )
+				FileSecurity.fileMakeDirs( tempDir );
+		}
+		return new HashJoinSpillFile( new File( tempDir, "partition_"
+				+ tempFileCount++ ), resultObjectUtil );
+	}
+
+	/**
+	 * @return
+	 */
+	private static synchronized int nextTempDirIndex( )
+	{
+		return tempDirCount++;
+	}
+
+	/**
+	 * Create an instance of IResultObject.
+	 *
+	 * @param build
+	 *            the row from the hash table, null if there is no match
+	 * @param probe
+	 *            the row from the streamed data set, null if there is no
+	 *            match
+	 * @return
+	 * @throws DataException
+	 */
+	private IResultObject createResultObject( IResultObject build,
+			IResultObject probe ) throws DataException
+	{
+		IResultObject left = isBuildLeft ? build : probe;
+		IResultObject right = isBuildLeft ? probe : build;
+		Object[] fields = new Object[meta.getResultClass( ).getFieldCount( )];
+		for ( int i = 1; i <= fields.length; i++ )
+		{
+			IResultObject ri = null;
+			if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_LEFT )
+				ri = left;
+			else if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_RIGHT )
+				ri = right;
+
+			fields[i - 1] = ri == null ? null
+					: ri.getFieldValue( meta.getSourceIndex( i ) );
+		}
+		return new ResultObject( meta.getResultClass( ), fields );
+	}
+
+	/**
+	 * The rows to be joined, with their join condition values.
+	 */
+	private static interface RowSource
+	{
+		/**
+		 * @return false if there is no more rows
+		 * @throws DataException
+		 */
+		boolean next( ) throws DataException;
+
+		Object[] getValues( );
+
+		IResultObject getRow( );
+
+		void close( );
+	}
+
+	/**
+	 * The rows of a data set, whose join condition values are evaluated when
+	 * the row is fetched.
+	 */
+	private class IteratorSource implements RowSource
+	{
+		private IResultIterator iterator;
+		private boolean isLeft;
+		private boolean started;
+		private IResultObject row;
+		private Object[] values;
+
+		IteratorSource( IResultIterator iterator, boolean isLeft )
+		{
+			this.iterator = iterator;
+			this.isLeft = isLeft;
+		}
+
+		public boolean next( ) throws DataException
+		{
+			if ( started && row == null )
+				return false;
+			// the iterator stays at the first row before it is read
+			if ( started )
+				iterator.next( );
+			started = true;
+			row = iterator.getCurrentResult( );
+			values = row == null ? null : jcm.getCompareValue( isLeft );
+			return row != null;
+		}
+
+		public Object[] getValues( )
+		{
+			return values;
+		}
+
+		public IResultObject getRow( )
+		{
+			return row;
+		}
+
+		public void close( )
+		{
+			row = null;
+			values = null;
+		}
+	}
+
+	/**
+	 * The rows of a spilled partition.
+	 */
+	private static class FileSource implements RowSource
+	{
+		private HashJoinSpillFile file;
+
+		FileSource( HashJoinSpillFile file )
+		{
+			this.file = file;
+		}
+
+		public boolean next( ) throws DataException
+		{
+			return file.next( );
+		}
+
+		public Object[] getValues( )
+		{
+			return file.getValues( );
+		}
+
+		public IResultObject getRow( )
+		{
+			return file.getRow( );
+		}
+
+		public void close( )
+		{
+			file.close( );
+		}
+	}
+
+	/**
+	 * The rows read ahead followed by the rest rows of the source.
+	 */
+	private static class BufferedSource implements RowSource
+	{
+		private List rows;
+		private RowSource source;
+		private Object[] current;
+
+		BufferedSource( List rows, RowSource source )
+		{
+			this.rows = rows;
+			this.source = source;
+		}
+
+		public boolean next( ) throws DataException
+		{
+			if ( !rows.isEmpty( ) )
+			{
+				current = (Object[]) rows.remove( 0 );
+				return true;
+			}
+			current = null;
+			return source.next( );
+		}
+
+		public Object[] getValues( )
+		{
+			return current == null ? source.getValues( )
+					: (Object[]) current[0];
+		}
+
+		public IResultObject getRow( )
+		{
+			return current == null ? source.getRow( )
+					: (IResultObject) current[1];
+		}
+
+		public void close( )
+		{
+			rows.clear( );
+			current = null;
+			source.close( );
+		}
+	}
+
+	/**
+	 * Joins the rows of the build source with the rows of the probe source.
+	 */
+	private class Pass
+	{
+		private int level;
+		private RowSource buildSource;
+		private RowSource probeSource;
+
+		// null for the partitions moved to disk
+		private HashJoinResultObjectSeeker[] seekers = new HashJoinResultObjectSeeker[PARTITION_COUNT];
+		private long[] memorySizes = new long[PARTITION_COUNT];
+		private long memorySize;
+		private HashJoinSpillFile[] buildFiles = new HashJoinSpillFile[PARTITION_COUNT];
+		private HashJoinSpillFile[] probeFiles = new HashJoinSpillFile[PARTITION_COUNT];
+
+		private int state;
+		private boolean hasProbeRow;
+		private IResultObject probeRow;
+		private boolean probeMatched;
+		private HashJoinResultObjectSeeker probeSeeker;
+		private int partition;
+		private Pass spilledPass;
+
+		/**
+		 * @param level
+		 * @param buildSource
+		 * @param probeSource
+		 */
+		Pass( int level, RowSource buildSource, RowSource probeSource )
+		{
+			this.level = level;
+			this.buildSource = buildSource;
+			this.probeSource = probeSource;
+			for ( int i = 0; i < PARTITION_COUNT; i++ )
+			{
+				seekers[i] = new HashJoinResultObjectSeeker( jcm,
+						keyHelper,
+						isBuildLeft );
+			}
+			this.state = -1;
+		}
+
+		/**
+		 * Read the build source into the hash table.
+		 *
+		 * @throws DataException
+		 */
+		private void build( ) throws DataException
+		{
+			if ( level == 0 )
+			{
+				List buildRows = new LinkedList( );
+				List probeRows = new LinkedList( );
+				Object[] buildValues = sample( buildSource, buildRows );
+				Object[] probeValues = sample( probeSource, probeRows );
+				keyHelper.initialize( buildValues, probeValues );
+				buildSource = new BufferedSource( buildRows, buildSource );
+				probeSource = new BufferedSource( probeRows, probeSource );
+			}
+			int buildRowCount = 0;
+			while ( buildSource.next( ) )
+			{
+				addBuildRow( buildSource.getValues( ), buildSource.getRow( ) );
+				buildRowCount++;
+			}
+			buildSource.close( );
+
+			state = PROBE;
+			// no row can be returned from the probe source if the hash table
+			// is empty for inner join
+			hasProbeRow = buildRowCount > 0 || keepUnmatchedProbe;
+		}
+
+		/**
+		 * Read ahead the rows until each join condition has a value other
+		 * than null, which decides the type of the values.
+		 *
+		 * @param source
+		 * @param rows
+		 *            the rows read ahead
+		 * @return the first value other than null of each join condition,
+		 *         null if there is no row
+		 * @throws DataException
+		 */
+		private Object[] sample( RowSource source, List rows )
+				throws DataException
+		{
+			Object[] result = null;
+			int count = 0;
+			while ( rows.size( ) < SAMPLE_SIZE && source.next( ) )
+			{
+				Object[] values = source.getValues( );
+				rows.add( new Object[]{
+						values, source.getRow( )
+				} );
+				if ( result == null )
+					result = new Object[values.length];
+				for ( int i = 0; i < values.length; i++ )
+				{
+					if ( result[i] == null && values[i] != null )
+					{
+						result[i] = values[i];
+						count++;
+					}
+				}
+				if ( count == result.length )
+					break;
+			}
+			return result;
+		}
+
+		/**
+		 * @param values
+		 * @param row
+		 * @throws DataException
+		 */
+		private void addBuildRow( Object[] values, IResultObject row )
+				throws DataException
+		{
+			Object key = keyHelper.getKey( values );
+			int index = getPartition( key );
+			if ( seekers[index] == null )
+			{
+				buildFiles[index].write( values, row );
+				return;
+			}
+			seekers[index].add( key, values, row );
+			if ( memoryBufferSize > 0 && level < MAX_LEVEL )
+			{
+				long size = sizeOfUtil.sizeOf( row );
+				memorySizes[index] += size;
+				memorySize += size;
+				while ( memorySize > memoryBufferSize && spillPartition( ) )
+					;
+			}
+		}
+
+		/**
+		 * Move the largest partition in memory to disk.
+		 *
+		 * @return false if all the partitions are on disk
+		 * @throws DataException
+		 */
+		private boolean spillPartition( ) throws DataException
+		{
+			int index = -1;
+			for ( int i = 0; i < PARTITION_COUNT; i++ )
+			{
+				if ( seekers[i] != null
+						&& ( index < 0 || memorySizes[i] > memorySizes[index] ) )
+					index = i;
+			}
+			if ( index < 0 )
+				return false;
+
+			buildFiles[index] = newSpillFile( buildObjectUtil );
+			probeFiles[index] = newSpillFile( probeObjectUtil );
+			seekers[index].writeTo( buildFiles[index] );
+			seekers[index] = null;
+			memorySize -= memorySizes[index];
+			memorySizes[index] = 0;
+			return true;
+		}
+
+		/**
+		 * @param key
+		 * @return the index of partition
+		 */
+		private int getPartition( Object key )
+		{
+			// the rows of a spilled partition are spread with another hash in
+			// the next level
+			int h = key.hashCode( ) + level * 0x9E3779B9;
+			h ^= h >>> 16;
+			h *= 0x85EBCA6B;
+			h ^= h >>> 13;
+			return ( h & 0x7FFFFFFF ) % PARTITION_COUNT;
+		}
+
+		/**
+		 * @return the next joint row, null if there is no more rows
+		 * @throws DataException
+		 */
+		IResultObject next( ) throws DataException
+		{
+			if ( state < 0 )
+				build( );
+			while ( true )
+			{
+				switch ( state )
+				{
+					case PROBE :
+						if ( probeRow != null )
+						{
+							IResultObject build = probeSeeker.nextMatchedResultObject( );
+							if ( build != null )
+							{
+								probeMatched = true;
+								return createResultObject( build, probeRow );
+							}
+							IResultObject probe = probeRow;
+							probeRow = null;
+							if ( !probeMatched && keepUnmatchedProbe )
+								return createResultObject( null, probe );
+						}
+						if ( !nextProbeRow( ) )
+						{
+							probeSource.close( );
+							state = UNMATCHED;
+							partition = 0;
+						}
+						break;
+					case UNMATCHED :
+						if ( keepUnmatchedBuild )
+						{
+							for ( ; partition < PARTITION_COUNT; partition++ )
+							{
+								IResultObject build = seekers[partition] == null
+										? null
+										: seekers[partition].nextUnmatchedResultObject( );
+								if ( build != null )
+									return createResultObject( build, null );
+							}
+						}
+						releaseSeekers( );
+						state = SPILLED;
+						partition = 0;
+						break;
+					case SPILLED :
+						if ( spilledPass != null )
+						{
+							IResultObject result = spilledPass.next( );
+							if ( result != null )
+								return result;
+							spilledPass.close( );
+							spilledPass = null;
+							partition++;
+						}
+						if ( !nextSpilledPartition( ) )
+							state = DONE;
+						break;
+					default :
+						return null;
+				}
+			}
+		}
+
+		/**
+		 * Fetch the next row from the probe source, which is either looked
+		 * up in the hash table or written to the spilled partition.
+		 *
+		 * @return false if there is no more rows
+		 * @throws DataException
+		 */
+		private boolean nextProbeRow( ) throws DataException
+		{
+			if ( !hasProbeRow || !probeSource.next( ) )
+				return false;
+
+			Object[] values = probeSource.getValues( );
+			Object key = keyHelper.getKey( values );
+			int index = getPartition( key );
+			if ( seekers[index] == null )
+			{
+				probeFiles[index].write( values, probeSource.getRow( ) );
+				return true;
+			}
+			probeRow = probeSource.getRow( );
+			probeMatched = false;
+			probeSeeker = seekers[index];
+			probeSeeker.setMatchValues( key, values );
+			return true;
+		}
+
+		/**
+		 * Start the join of the next partition on disk.
+		 *
+		 * @return false if there is no more partition
+		 */
+		private boolean nextSpilledPartition( )
+		{
+			for ( ; partition < PARTITION_COUNT; partition++ )
+			{
+				if ( buildFiles[partition] == null )
+					continue;
+				if ( probeFiles[partition].getRowCount( ) == 0
+						&& !keepUnmatchedBuild )
+				{
+					buildFiles[partition].close( );
+					probeFiles[partition].close( );
+					continue;
+				}
+				spilledPass = new Pass( level + 1,
+						new FileSource( buildFiles[partition] ),
+						new FileSource( probeFiles[partition] ) );
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Release the rows in memory.
+		 */
+		private void releaseSeekers( )
+		{
+			for ( int i = 0; i < PARTITION_COUNT; i++ )
+			{
+				if ( seekers[i] != null )
+					seekers[i].clear( );
+				seekers[i] = null;
+			}
+			probeSeeker = null;
+			probeRow = null;
+			memorySize = 0;
+		}
+
+		/**
+		 * Release the rows and delete the files of this pass.
+		 */
+		void close( )
+		{
+			if ( spilledPass != null )
+				spilledPass.close( );
+			spilledPass = null;
+			buildSource.close( );
+			probeSource.close( );
+			releaseSeekers( );
+			for ( int i = 0; i < PARTITION_COUNT; i++ )
+			{
+				if ( buildFiles[i] != null )
+					buildFiles[i].close( );
+				if ( probeFiles[i] != null )
+					probeFiles[i].close( );
+			}
+			state = DONE;
+		}
+	}
+}
@@ -10,6 +10,11 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.impl.jointdataset;
 
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.IJoinCondition;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
@@ -54,4 +59,50 @@ public class JointDataSetPopulatorFactory
 	{
 		return new BaseJointDataSetPopulator( left, right, meta, jcm , joinType, null, session, rowFetchLimit );
 	}
+	
+	/**
+	 * Return whether the data sets are joined with hash table, which is used
+	 * for the equal join conditions when it is enabled in the app context.
+	 * Then the data sets do not need to be sorted.
+	 * 
+	 * @param joinConditions
+	 * @param appContext
+	 * @return
+	 */
+	public static boolean isHashJoin( List joinConditions, Map appContext )
+	{
+		if ( joinConditions == null || joinConditions.isEmpty( ) )
+			return false;
+		Object propValue = appContext == null ? null
+				: appContext.get( DataEngine.JOINT_DATA_SET_HASH_JOIN );
+		if ( propValue == null
+				|| !"true".equalsIgnoreCase( propValue.toString( ).trim( ) ) )
+			return false;
+		for ( int i = 0; i < joinConditions.size( ); i++ )
+		{
+			if ( ( (IJoinCondition) joinConditions.get( i ) ).getOperator( ) != IJoinCondition.OP_EQ )
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Return instance of IJointDataSetPopulator which joins the data sets
+	 * with hash table.
+	 * 
+	 * @param left
+	 * @param right
+	 * @param meta
+	 * @param jcm
+	 * @param joinType
+	 * @param session
+	 * @param rowFetchLimit
+	 * @param appContext
+	 * @return
+	 * @throws DataException
+	 */
+	public static IDataSetPopulator getHashJoinDataSetPopulator( IResultIterator left, IResultIterator right, JointResultMetadata meta, IJoinConditionMatcher jcm , int joinType, DataEngineSession session, int rowFetchLimit, Map appContext ) throws DataException
+	{
+		return new HashJointDataSetPopulator( left, right, meta, jcm, joinType, session, rowFetchLimit, appContext );
+	}
 }
@@ -47,6 +47,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
 import org.eclipse.birt.data.engine.olap.data.impl.AggregationFunctionDefinition;
 import org.eclipse.birt.data.engine.olap.data.impl.AggregationResultSetSaveUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.Cube;
+import org.eclipse.birt.data.engine.olap.data.impl.CubeRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.SecuredCube;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationExecutor;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultRow;
@@ -54,6 +55,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResult
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultSet;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeDimensionReader;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.DataSetFromOriginalCube;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.DataSetFromRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.AggrMeasureFilterHelper;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.AggregationFilterHelper;
@@ -937,6 +939,17 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 	{
 		IDiskArray[] dimPosition = getFilterResult( );
 
+		CubeRollup rollup = findRollup( aggregations, dimPosition );
+		if ( rollup != null )
+		{
+			IDataSet4Aggregation dataSet4Aggregation = new DataSetFromRollup( rollup,
+					populateDimensionResultIterator( dimPosition, stopSign ) );
+			IAggregationResultSet[] resultSet = aggregate( dataSet4Aggregation,
+					rollup.rewrite( aggregations ),
+					stopSign );
+			return rollup.restore( aggregations, resultSet );
+		}
+
 		FactTableRowIterator factTableRowIterator = populateFactTableIterator( stopSign,
 				dimPosition );
 		DimensionResultIterator[] dimensionResultIterators = populateDimensionResultIterator( dimPosition, stopSign );
@@ -945,6 +958,63 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 				dimensionResultIterators,
 				computedMeasureHelper );
 		
+		return aggregate( dataSet4Aggregation, aggregations, stopSign );
+	}
+
+	/**
+	 * Return the smallest rollup of the cube which can calculate the
+	 * aggregations, or null if the aggregations should be calculated from the
+	 * fact table rows. The rollup rows are not filtered, so no rollup is used
+	 * when the query has any filter.
+	 * 
+	 * @param aggregations
+	 * @param dimPosition
+	 * @return
+	 */
+	private CubeRollup findRollup( AggregationDefinition[] aggregations,
+			IDiskArray[] dimPosition )
+	{
+		CubeRollup[] rollups = cube.getRollups( );
+		if ( rollups == null || rollups.length == 0 || cube instanceof SecuredCube )
+			return null;
+		for ( int i = 0; i < dimPosition.length; i++ )
+		{
+			if ( dimPosition[i] != null )
+				return null;
+		}
+		if ( ( cubePosFilters != null && !cubePosFilters.isEmpty( ) )
+				|| !measureFilters.isEmpty( ) )
+			return null;
+		if ( computedMeasureHelper != null
+				&& computedMeasureHelper.getAllComputedMeasureInfos( ) != null
+				&& computedMeasureHelper.getAllComputedMeasureInfos( ).length > 0 )
+			return null;
+		CubeRollup result = null;
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			if ( rollups[i].covers( aggregations )
+					&& ( result == null || rollups[i].getRowCount( ) < result.getRowCount( ) ) )
+			{
+				result = rollups[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 
+	 * @param dataSet4Aggregation
+	 * @param aggregations
+	 * @param stopSign
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	private IAggregationResultSet[] aggregate(
+			IDataSet4Aggregation dataSet4Aggregation,
+			AggregationDefinition[] aggregations, StopSign stopSign )
+			throws DataException, IOException
+	{
 		long memoryCacheSize = this.memoryCacheSize;
 		if( this.appContext != null )
 		{
@@ -958,6 +1028,7 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 				memoryCacheSize );
 		
 		aggregationCalculatorExecutor.setMaxDataObjectRows( maxDataObjectRows );
+		aggregationCalculatorExecutor.setThreadCount( CacheUtil.getCubeAggregationThreadCount( appContext ) );
 		
 		return aggregationCalculatorExecutor.execute( stopSign );
 	}
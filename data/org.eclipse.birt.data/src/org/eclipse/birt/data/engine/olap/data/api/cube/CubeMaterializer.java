@@ -15,6 +15,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.util.Map;
 
+import org.eclipse.birt.core.archive.IDocArchiveReader;
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.RAOutputStream;
 import org.eclipse.birt.core.exception.BirtException;
@@ -24,14 +25,18 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
 import org.eclipse.birt.data.engine.olap.data.api.ILevel;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
 import org.eclipse.birt.data.engine.olap.data.impl.Cube;
+import org.eclipse.birt.data.engine.olap.data.impl.CubeRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Hierarchy;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.AppendedFactTableIterator;
 
 /**
  * 
@@ -39,6 +44,10 @@ import org.eclipse.birt.data.engine.olap.data.impl.dimension.Hierarchy;
 
 public class CubeMaterializer
 {
+	private static final String SUM_FUNC = "SUM";
+	private static final String MIN_FUNC = "MIN";
+	private static final String MAX_FUNC = "MAX";
+	
 	private IDocumentManager documentManager;
 	private DataEngine dataEngine;
 	
@@ -63,11 +72,30 @@ public class CubeMaterializer
 	 * @throws IOException
 	 */
 	public CubeMaterializer( DataEngineImpl dataEngine, String managerName, int cacheSize  ) throws DataException, IOException
+	{
+		this( dataEngine, managerName, cacheSize, false );
+	}
+	
+	/**
+	 * 
+	 * @param dataEngine
+	 * @param managerName
+	 * @param cacheSize
+	 * @param mapped
+	 *            whether the cube is saved in a memory mapped file, the cache
+	 *            size is ignored then
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	public CubeMaterializer( DataEngineImpl dataEngine, String managerName, int cacheSize, boolean mapped ) throws DataException, IOException
 	{
 		this.dataEngine = dataEngine;
 		setShutdownListener( );
 		DataEngineThreadLocal.getInstance( ).getPathManager( ).setTempPath( dataEngine.getSession( ).getTempDir( ) );
-		documentManager = DocumentManagerFactory.createFileDocumentManager( dataEngine.getSession( ).getTempDir( ), managerName, cacheSize );
+		if ( mapped )
+			documentManager = DocumentManagerFactory.createMappedDocumentManager( dataEngine.getSession( ).getTempDir( ), managerName );
+		else
+			documentManager = DocumentManagerFactory.createFileDocumentManager( dataEngine.getSession( ).getTempDir( ), managerName, cacheSize );
 		if ( this.dataEngine != null )
 		{
 			DocManagerMap.getDocManagerMap( )
@@ -88,6 +116,20 @@ public class CubeMaterializer
 		documentManager = DocumentManagerFactory.createFileDocumentManager( dataEngine.getSession( ).getTempDir( ));
 	}
 
+	/**
+	 * Create a materializer on a document manager which has been created or
+	 * loaded by the caller, for example to append rows to a saved cube. The
+	 * caller closes the document manager.
+	 * 
+	 * @param dataEngine
+	 * @param documentManager
+	 */
+	public CubeMaterializer( DataEngineImpl dataEngine, IDocumentManager documentManager )
+	{
+		this.dataEngine = dataEngine;
+		this.documentManager = documentManager;
+	}
+
 	/**
 	 * 
 	 */
@@ -240,6 +282,208 @@ public class CubeMaterializer
 		documentManager.flush( );
 	}
 	
+	/**
+	 * Create a cube from the rows of the same cube saved before and the rows
+	 * of a fact table iterator which are appended to them, so that the saved
+	 * rows are not queried again. The saved cube is read from the archive it
+	 * has been saved to by saveCubeToReportDocument.
+	 * <p>
+	 * The dimensions are created by the caller from all their members, which
+	 * may include members the saved cube does not have. Since the dimension
+	 * positions follow the sorted members, the saved rows are read with the
+	 * joint column values of their members and saved again at the positions in
+	 * the new dimensions, together with the appended rows. The rollups of the
+	 * saved cube are not copied, they are created again by createRollup.
+	 * <p>
+	 * The cube is not created when the saved cube has other dimensions, levels
+	 * or measures, or when a measure aggregation can not be calculated again
+	 * from the aggregated saved rows. The caller should create the cube from
+	 * all the rows then.
+	 * 
+	 * @param name
+	 * @param savedCube
+	 *            the archive the cube has been saved to
+	 * @param factTableJointColumnNames
+	 * @param DimJointColumnNames
+	 * @param dimensions
+	 * @param factTable
+	 *            the appended rows
+	 * @param measureColumns
+	 * @param calculatedMeasure
+	 * @param measureAggrFunctionNames
+	 * @param cacheSize
+	 * @param stopSign
+	 * @return whether the cube is created
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public boolean appendCube( String name, IDocArchiveReader savedCube,
+			String[][] factTableJointColumnNames,
+			String[][] DimJointColumnNames, IDimension[] dimensions,
+			IDatasetIterator factTable, String[] measureColumns,
+			Map calculatedMeasure, String[] measureAggrFunctionNames,
+			long cacheSize, StopSign stopSign ) throws IOException,
+			BirtException
+	{
+		if ( !isReaggregatable( measureAggrFunctionNames ) )
+		{
+			return false;
+		}
+		IDocumentManager savedManager = DocumentManagerFactory.createRADocumentManager( savedCube );
+		Cube cube = new Cube( name, savedManager );
+		cube.load( stopSign );
+		AppendedFactTableIterator rows = null;
+		try
+		{
+			if ( !isAppendable( cube, dimensions, factTable, measureColumns ) )
+			{
+				return false;
+			}
+			IDimension[] savedDimensions = cube.getDimesions( );
+			Dimension[] tDimensions = new Dimension[savedDimensions.length];
+			for ( int i = 0; i < tDimensions.length; i++ )
+			{
+				tDimensions[i] = (Dimension) savedDimensions[i];
+			}
+			rows = new AppendedFactTableIterator( cube.getFactTable( ),
+					tDimensions,
+					factTableJointColumnNames,
+					DimJointColumnNames,
+					measureColumns,
+					factTable,
+					stopSign );
+			createCube( name,
+					factTableJointColumnNames,
+					DimJointColumnNames,
+					dimensions,
+					rows,
+					measureColumns,
+					calculatedMeasure,
+					measureAggrFunctionNames,
+					cacheSize,
+					stopSign );
+		}
+		finally
+		{
+			if ( rows != null )
+			{
+				rows.close( );
+			}
+			cube.close( );
+			savedManager.close( );
+		}
+		return true;
+	}
+	
+	/**
+	 * Whether the aggregation of the saved rows, which are aggregated
+	 * already, and the appended rows is the same as the aggregation of all the
+	 * rows.
+	 * 
+	 * @param measureAggrFunctionNames
+	 * @return
+	 */
+	private static boolean isReaggregatable( String[] measureAggrFunctionNames )
+	{
+		if ( measureAggrFunctionNames == null )
+		{
+			return true;
+		}
+		for ( int i = 0; i < measureAggrFunctionNames.length; i++ )
+		{
+			if ( !SUM_FUNC.equalsIgnoreCase( measureAggrFunctionNames[i] )
+					&& !MIN_FUNC.equalsIgnoreCase( measureAggrFunctionNames[i] )
+					&& !MAX_FUNC.equalsIgnoreCase( measureAggrFunctionNames[i] ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Whether the saved cube has the same dimensions, levels and measures as
+	 * the cube created from it.
+	 * 
+	 * @param cube
+	 * @param dimensions
+	 * @param factTable
+	 * @param measureColumns
+	 * @return
+	 * @throws BirtException
+	 */
+	private static boolean isAppendable( Cube cube, IDimension[] dimensions,
+			IDatasetIterator factTable, String[] measureColumns )
+			throws BirtException
+	{
+		IDimension[] savedDimensions = cube.getDimesions( );
+		if ( savedDimensions.length != dimensions.length )
+		{
+			return false;
+		}
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			if ( !savedDimensions[i].getName( ).equals( dimensions[i].getName( ) ) )
+			{
+				return false;
+			}
+			ILevel[] savedLevels = savedDimensions[i].getHierarchy( ).getLevels( );
+			ILevel[] levels = dimensions[i].getHierarchy( ).getLevels( );
+			if ( savedLevels.length != levels.length )
+			{
+				return false;
+			}
+			for ( int j = 0; j < levels.length; j++ )
+			{
+				if ( !savedLevels[j].getName( ).equals( levels[j].getName( ) ) )
+				{
+					return false;
+				}
+			}
+		}
+		MeasureInfo[] measureInfo = cube.getFactTable( ).getMeasureInfo( );
+		if ( measureInfo.length != measureColumns.length )
+		{
+			return false;
+		}
+		for ( int i = 0; i < measureInfo.length; i++ )
+		{
+			if ( !measureInfo[i].getMeasureName( ).equals( measureColumns[i] )
+					|| measureInfo[i].getDataType( ) != factTable.getFieldType( measureColumns[i] ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Aggregate the rows of a saved cube at the levels and save them with the
+	 * cube, so that the queries at some of these levels are calculated from
+	 * the aggregated rows instead of the fact table rows.
+	 * 
+	 * @param cubeName
+	 * @param levels
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void createRollup( String cubeName, DimLevel[] levels,
+			StopSign stopSign ) throws IOException, BirtException
+	{
+		Cube cube = new Cube( cubeName, documentManager );
+		cube.load( stopSign );
+		try
+		{
+			CubeRollup.create( cube, levels, 0, stopSign );
+		}
+		finally
+		{
+			cube.close( );
+			documentManager.flush( );
+		}
+	}
+	
 	/**
 	 * 
 	 * @param cubeName
@@ -271,6 +515,16 @@ public class CubeMaterializer
 		catch ( EOFException e )
 		{
 
+		}
+		//save rollups
+		CubeRollup[] rollups = cube.getRollups( );
+		if ( rollups.length > 0 )
+		{
+			saveDocObjToReportDocument( NamingUtil.getRollupListName( cubeName ), writer, stopSign );
+			for ( int i = 0; i < rollups.length; i++ )
+			{
+				saveDocObjToReportDocument( rollups[i].getDocumentObjectName( ), writer, stopSign );
+			}
 		}
 		//save dimension
 		IDimension[] dimensions = cube.getDimesions( );
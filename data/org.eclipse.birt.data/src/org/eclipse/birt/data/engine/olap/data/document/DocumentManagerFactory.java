@@ -141,4 +141,31 @@ public class DocumentManagerFactory
 	{
 		return FileDocumentManager.loadManager( dirName, managerName );
 	}
+	
+	/**
+	 * 
+	 * @param dirName
+	 * @param managerName
+	 * @return a document manager whose data is read and written in memory
+	 *         mapped regions of its file
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static public IDocumentManager createMappedDocumentManager( String dirName, String managerName ) throws DataException, IOException
+	{
+		return MappedDocumentManager.createManager( dirName, managerName );
+	}
+	
+	/**
+	 * 
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static public IDocumentManager loadMappedDocumentManager( String dirName, String managerName ) throws DataException, IOException
+	{
+		return MappedDocumentManager.loadManager( dirName, managerName );
+	}
 }
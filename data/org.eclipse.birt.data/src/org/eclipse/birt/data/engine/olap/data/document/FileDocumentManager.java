@@ -90,7 +90,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	/**
 	 * 
 	 */
-	private FileDocumentManager(  )
+	FileDocumentManager(  )
 	{
 		this.dataFileCacheSize = 0;
 	}
@@ -99,7 +99,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * 
 	 * @param fileCacheSize
 	 */
-	private FileDocumentManager( int fileCacheSize )
+	FileDocumentManager( int fileCacheSize )
 	{
 		this.dataFileCacheSize = fileCacheSize * 1024*1024;
 	}
@@ -111,7 +111,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * @throws IOException
 	 * @throws DataException
 	 */
-	private void create( String dirName, String managerName ) throws IOException, DataException
+	void create( String dirName, String managerName ) throws IOException, DataException
 	{
 		documentObjectMap = new HashMap( );
 		
@@ -122,8 +122,22 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 		oatAccessFile = new BufferedRandomAccessFile( oatFile, "rw", 1024, dataFileCacheSize / 10 );
 		oatAccessFile.setLength( 0 );
 		dataFile = new File( dirName + File.separatorChar + managerName + "data" );
-		dataAccessFile = new BufferedRandomAccessFile( dataFile, "rw", 1024, dataFileCacheSize );
-		dataAccessFile.setLength( 0 );
+		openDataFile( dataFile, true );
+	}
+	
+	/**
+	 * Open the file which saves the blocks of all document objects.
+	 * 
+	 * @param file
+	 * @param truncate
+	 *            whether the existing content of the file is discarded
+	 * @throws IOException
+	 */
+	void openDataFile( File file, boolean truncate ) throws IOException
+	{
+		dataAccessFile = new BufferedRandomAccessFile( file, "rw", 1024, dataFileCacheSize );
+		if ( truncate )
+			dataAccessFile.setLength( 0 );
 	}
 	
 	/**
@@ -133,7 +147,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * @throws IOException
 	 * @throws DataException
 	 */
-	private void load( String dirName, String managerName ) throws IOException, DataException
+	void load( String dirName, String managerName ) throws IOException, DataException
 	{
 		documentObjectMap = new HashMap( );
 		
@@ -159,7 +173,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 			throw new DataException( ResourceConstants.OLAPFILE_NOT_FOUND,
 					file.getAbsolutePath( ) );
 		}
-		dataAccessFile = new BufferedRandomAccessFile( file, "rw", 1024, dataFileCacheSize );
+		openDataFile( file, false );
 		
 		objectAccessFile.seek( 0 );
 		while(true)
@@ -185,7 +199,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	{
 		objectAccessFile.close( );
 		oatAccessFile.close( );
-		dataAccessFile.close( );
+		closeDataFile( );
 		clearTmpFile( );
 	}
 	
@@ -223,10 +237,27 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 		objectStructure.length = 0;
 		writeObjectStructure( objectStructure );
 		this.documentObjectMap.put( objectStructure.name, objectStructure );
+		return createDocumentObject( documentObjectName,
+				objectStructure.firstBlock,
+				objectStructure.length );
+	}
+	
+	/**
+	 * Create the document object which accesses the blocks of the data file.
+	 * 
+	 * @param documentObjectName
+	 * @param firstBlock
+	 * @param length
+	 * @return
+	 * @throws IOException
+	 */
+	IDocumentObject createDocumentObject( String documentObjectName,
+			int firstBlock, long length ) throws IOException
+	{
 		return new DocumentObject( new BufferedRandomDataAccessObject( new BlockRandomAccessObject( dataAccessFile,
 				documentObjectName,
-				objectStructure.firstBlock,
-				objectStructure.length,
+				firstBlock,
+				length,
 				this ),
 				1024 ) );
 	}
@@ -284,12 +315,9 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 		{
 			return null;
 		}
-		return new DocumentObject( new BufferedRandomDataAccessObject( new BlockRandomAccessObject( dataAccessFile,
-				documentObjectName,
+		return createDocumentObject( documentObjectName,
 				objectStructure.firstBlock,
-				objectStructure.length,
-				this ),
-				1024 ) );
+				objectStructure.length );
 	}
 
 	/*
@@ -347,9 +375,27 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	{
 		objectAccessFile.flush( );
 		oatAccessFile.flush( );
+		flushDataFile( );
+	}
+	
+	/**
+	 * 
+	 * @throws IOException
+	 */
+	void flushDataFile( ) throws IOException
+	{
 		dataAccessFile.flush( );
 	}
 	
+	/**
+	 * 
+	 * @throws IOException
+	 */
+	void closeDataFile( ) throws IOException
+	{
+		dataAccessFile.close( );
+	}
+	
 }
 
 class ObjectStructure
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+
+/**
+ * A <tt>FileDocumentManager</tt> whose data file is mapped into memory. The
+ * document objects read and write the mapped regions directly, so the data
+ * is served from the page cache of the operating system without being copied
+ * into the buffers of the document objects. The files have the same format as
+ * the ones of <tt>FileDocumentManager</tt>.
+ * <p>
+ * A region of the data file is first mapped up to the block in use, and
+ * mapped again with twice the size, at most REGION_SIZE, when a block beyond
+ * its end is used. The data file is cut to the blocks in use when the manager
+ * is closed, and a loaded manager maps only the length of the data file, read
+ * only. The data file of a loaded manager may end in the middle of its last
+ * block, as the files written by <tt>FileDocumentManager</tt> do, so the
+ * document objects rely on their stored length rather than on whole blocks.
+ */
+
+public class MappedDocumentManager extends FileDocumentManager
+{
+	// a multiple of the block size, so that no block spans two regions
+	static final int REGION_SIZE = 4096 * BLOCK_SIZE;
+
+	private RandomAccessFile dataAccessFile = null;
+	private FileChannel dataChannel = null;
+	private boolean readOnly = false;
+	private List regions = null;
+	// the regions which were mapped again with a larger size, still used by
+	// the duplicates of the document objects until the manager is closed
+	private List remappedRegions = null;
+	// the end of the last block which is read or written
+	private long usedSize = 0;
+
+	/**
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static MappedDocumentManager createManager( String dirName,
+			String managerName ) throws DataException, IOException
+	{
+		File tmpDir = new File( dirName );
+		if ( !FileSecurity.fileExist( tmpDir )
+				|| !FileSecurity.fileIsDirectory( tmpDir ) )
+		{
+			FileSecurity.fileMakeDirs( tmpDir );
+		}
+		MappedDocumentManager manager = new MappedDocumentManager( );
+		manager.create( dirName, managerName );
+		return manager;
+	}
+
+	/**
+	 * Load a manager whose data file is mapped read only, so the document
+	 * objects of the manager can not be written.
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static MappedDocumentManager loadManager( String dirName,
+			String managerName ) throws DataException, IOException
+	{
+		MappedDocumentManager manager = new MappedDocumentManager( );
+		manager.load( dirName, managerName );
+		return manager;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.FileDocumentManager#openDataFile(java.io.File, boolean)
+	 */
+	void openDataFile( File file, boolean truncate ) throws IOException
+	{
+		// the data file is only truncated when the manager is created
+		readOnly = !truncate;
+		dataAccessFile = FileSecurity.createRandomAccessFile( file,
+				readOnly ? "r" : "rw" );
+		if ( truncate )
+			dataAccessFile.setLength( 0 );
+		dataChannel = dataAccessFile.getChannel( );
+		regions = new ArrayList( );
+		remappedRegions = new ArrayList( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.FileDocumentManager#createDocumentObject(java.lang.String, int, long)
+	 */
+	IDocumentObject createDocumentObject( String documentObjectName,
+			int firstBlock, long length ) throws IOException
+	{
+		return new DocumentObject( new RandomDataAccessObject( new MappedRandomAccessObject( this,
+				documentObjectName,
+				firstBlock,
+				length,
+				this ) ) );
+	}
+
+	/**
+	 * Return the mapped region of the data file with the given index, which
+	 * is mapped with at least the given size. When the manager is created,
+	 * the data file grows when the region is mapped beyond its end. When the
+	 * manager is loaded, the region is mapped up to the end of the data file,
+	 * so the last region may end before the given size. The returned buffer
+	 * is shared, so the callers must work on a duplicate of it.
+	 *
+	 * @param index
+	 * @param size
+	 *            the end of the block to be read or written in the region
+	 * @return
+	 * @throws IOException
+	 */
+	synchronized ByteBuffer getRegion( int index, int size ) throws IOException
+	{
+		while ( regions.size( ) <= index )
+		{
+			regions.add( null );
+		}
+		MappedByteBuffer region = (MappedByteBuffer) regions.get( index );
+		long start = (long) index * REGION_SIZE;
+		if ( readOnly )
+		{
+			// the file does not grow, so the region is mapped once up to the
+			// end of the file, which may be in the middle of the last block
+			if ( region == null )
+			{
+				long fileSize = dataChannel.size( );
+				if ( start >= fileSize )
+				{
+					throw new EOFException( );
+				}
+				region = dataChannel.map( FileChannel.MapMode.READ_ONLY,
+						start,
+						Math.min( REGION_SIZE, fileSize - start ) );
+				regions.set( index, region );
+			}
+			return region;
+		}
+		usedSize = Math.max( usedSize, start + size );
+		if ( region != null && region.capacity( ) >= size )
+		{
+			return region;
+		}
+		int mappedSize = size;
+		if ( region != null )
+		{
+			mappedSize = Math.max( size,
+					Math.min( REGION_SIZE, region.capacity( ) * 2 ) );
+			remappedRegions.add( region );
+		}
+		region = dataChannel.map( FileChannel.MapMode.READ_WRITE,
+				start,
+				mappedSize );
+		regions.set( index, region );
+		return region;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.FileDocumentManager#flushDataFile()
+	 */
+	synchronized void flushDataFile( ) throws IOException
+	{
+		for ( int i = 0; i < regions.size( ); i++ )
+		{
+			MappedByteBuffer region = (MappedByteBuffer) regions.get( i );
+			if ( region != null )
+				region.force( );
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.FileDocumentManager#closeDataFile()
+	 */
+	synchronized void closeDataFile( ) throws IOException
+	{
+		// the regions are unmapped at once rather than when they are garbage
+		// collected, the document objects of the manager are not used any
+		// more
+		boolean released = true;
+		for ( int i = 0; i < regions.size( ); i++ )
+		{
+			released = FileSecurity.releaseMappedBuffer( (MappedByteBuffer) regions.get( i ) )
+					&& released;
+		}
+		for ( int i = 0; i < remappedRegions.size( ); i++ )
+		{
+			released = FileSecurity.releaseMappedBuffer( (MappedByteBuffer) remappedRegions.get( i ) )
+					&& released;
+		}
+		regions.clear( );
+		remappedRegions.clear( );
+		// the last region may be mapped beyond the blocks in use, a file
+		// which is still mapped can not be cut on some platforms
+		if ( !readOnly && released && usedSize < dataChannel.size( ) )
+		{
+			dataChannel.truncate( usedSize );
+		}
+		dataChannel.close( );
+		dataAccessFile.close( );
+	}
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An implementation of the <tt>IRandomAccessObject</tt> interface. The
+ * instance of this class allocates some blocks from the data file of a
+ * MappedDocumentManager and reads and writes these blocks in the mapped
+ * regions of the file.
+ */
+
+public class MappedRandomAccessObject implements IRandomAccessObject
+{
+	private static final int BLOCK_SIZE = IObjectAllocTable.BLOCK_SIZE;
+
+	private MappedDocumentManager documentManager;
+	private String name;
+	private long length;
+	private IObjectAllocTable documentObjectAllocatedTable;
+	private long position;
+	private int[] blocks;
+	private int blockCount;
+
+	private int regionIndex = -1;
+	private ByteBuffer region = null;
+
+	/**
+	 *
+	 * @param documentManager
+	 * @param name
+	 * @param firstBlock
+	 * @param length
+	 * @param documentObjectAllocatedTable
+	 * @throws IOException
+	 */
+	MappedRandomAccessObject( MappedDocumentManager documentManager,
+			String name, int firstBlock, long length,
+			IObjectAllocTable documentObjectAllocatedTable ) throws IOException
+	{
+		this.documentManager = documentManager;
+		this.name = name;
+		this.length = length;
+		this.documentObjectAllocatedTable = documentObjectAllocatedTable;
+		this.position = 0;
+		this.blocks = new int[16];
+		this.blockCount = 0;
+		int blockNumber = firstBlock;
+		do
+		{
+			addBlock( blockNumber );
+			blockNumber = documentObjectAllocatedTable.getNextBlock( blockNumber );
+		} while ( blockNumber > 0 );
+	}
+
+	/**
+	 *
+	 * @param blockNumber
+	 */
+	private void addBlock( int blockNumber )
+	{
+		if ( blockCount == blocks.length )
+		{
+			int[] newBlocks = new int[blockCount * 2];
+			System.arraycopy( blocks, 0, newBlocks, 0, blockCount );
+			blocks = newBlocks;
+		}
+		blocks[blockCount++] = blockNumber;
+	}
+
+	/**
+	 * Position the mapped region at the current position of this object. The
+	 * region has at least the given bytes remaining, the last region of a
+	 * loaded data file may end in the middle of its last block.
+	 *
+	 * @param size
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer seekRegion( int size ) throws IOException
+	{
+		long filePosition = (long) blocks[(int) ( position / BLOCK_SIZE )]
+				* BLOCK_SIZE + position % BLOCK_SIZE;
+		int index = (int) ( filePosition / MappedDocumentManager.REGION_SIZE );
+		int offset = (int) ( filePosition % MappedDocumentManager.REGION_SIZE );
+		// a region ends at the end of a block, so the whole block of the
+		// position is mapped if the position is, except the last region of a
+		// loaded data file which ends at the end of the file
+		if ( index != regionIndex || offset >= region.capacity( ) )
+		{
+			region = documentManager.getRegion( index,
+					offset - offset % BLOCK_SIZE + BLOCK_SIZE ).duplicate( );
+			regionIndex = index;
+		}
+		if ( offset + size > region.capacity( ) )
+		{
+			throw new EOFException( );
+		}
+		region.position( offset );
+		return region;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#close()
+	 */
+	public void close( ) throws IOException
+	{
+		seek( 0 );
+		documentObjectAllocatedTable.setObjectLength( name, length );
+		region = null;
+		regionIndex = -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#getFilePointer()
+	 */
+	public long getFilePointer( ) throws IOException
+	{
+		return position;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#length()
+	 */
+	public long length( ) throws IOException
+	{
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[], int, int)
+	 */
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		if ( len == 0 )
+		{
+			return 0;
+		}
+		if ( position >= length )
+		{
+			return -1;
+		}
+		int readSize = (int) Math.min( length - position, len );
+		int remain = readSize;
+		while ( remain > 0 )
+		{
+			int size = Math.min( remain, BLOCK_SIZE
+					- (int) ( position % BLOCK_SIZE ) );
+			seekRegion( size ).get( b, off, size );
+			off += size;
+			remain -= size;
+			position += size;
+		}
+		return readSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[])
+	 */
+	public int read( byte[] b ) throws IOException
+	{
+		return read( b, 0, b.length );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read()
+	 */
+	public int read( ) throws IOException
+	{
+		if ( position >= length )
+		{
+			return -1;
+		}
+		int result = seekRegion( 1 ).get( ) & 0xff;
+		position++;
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#seek(long)
+	 */
+	public void seek( long pos ) throws IOException
+	{
+		this.position = pos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#setLength(long)
+	 */
+	public void setLength( long newLength ) throws IOException
+	{
+		assert newLength > 0;
+		int needBlockCount = (int) ( ( newLength - 1 ) / BLOCK_SIZE ) + 1;
+		while ( blockCount < needBlockCount )
+		{
+			addBlock( documentObjectAllocatedTable.allocateBlock( blocks[blockCount - 1] ) );
+		}
+		length = newLength;
+		documentObjectAllocatedTable.setObjectLength( name, length );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#write(byte[], int, int)
+	 */
+	public void write( byte[] b, int off, int len ) throws IOException
+	{
+		if ( len == 0 )
+		{
+			return;
+		}
+		if ( position + len > length )
+		{
+			setLength( position + len );
+		}
+		while ( len > 0 )
+		{
+			int size = Math.min( len, BLOCK_SIZE
+					- (int) ( position % BLOCK_SIZE ) );
+			seekRegion( size ).put( b, off, size );
+			off += size;
+			len -= size;
+			position += size;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#flush()
+	 */
+	public void flush( ) throws IOException
+	{
+		seek( 0 );
+		documentObjectAllocatedTable.setObjectLength( name, length );
+	}
+}
@@ -13,6 +13,7 @@ package org.eclipse.birt.data.engine.olap.data.impl;
 
 import java.util.logging.Logger;
 
+import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.api.timefunction.ITimeFunction;
 import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
 import org.eclipse.birt.data.engine.olap.util.filter.IJSFacttableFilterEvalHelper;
@@ -32,6 +33,7 @@ public class AggregationFunctionDefinition
 	private Object paraValue;
 	private ITimeFunction timeFunction;
 	private ITimeFunction timeFunctionFilter;
+	private IAggrFunction aggregation;
 	 
 	public ITimeFunction getTimeFunctionFilter()
 	{
@@ -179,4 +181,25 @@ public class AggregationFunctionDefinition
 	{
 		return filterEvalHelper;
 	}
+
+	/**
+	 * 
+	 * @return the function which calculates the aggregation instead of the
+	 *         registered function of the function name, or null
+	 */
+	public IAggrFunction getAggregation( )
+	{
+		return aggregation;
+	}
+
+	/**
+	 * Set the function which calculates the aggregation, for an internal
+	 * function which is not registered by its name.
+	 * 
+	 * @param aggregation
+	 */
+	public void setAggregation( IAggrFunction aggregation )
+	{
+		this.aggregation = aggregation;
+	}
 }
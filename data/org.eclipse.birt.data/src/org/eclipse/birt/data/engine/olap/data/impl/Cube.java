@@ -39,6 +39,7 @@ public class Cube implements ICube
 	protected IDocumentManager documentManager;
 	protected IDimension[] dimension;
 	private FactTable factTable;
+	private CubeRollup[] rollups;
 
 	private static Logger logger = Logger.getLogger( Cube.class.getName( ) );
 
@@ -192,6 +193,7 @@ public class Cube implements ICube
 		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
 		factTable = factTableConstructor.load( name,
 				stopSign );
+		rollups = CubeRollup.load( name, documentManager );
 		documentObject.close( );
 	}
 
@@ -220,6 +222,15 @@ public class Cube implements ICube
 		return factTable;
 	}
 
+	/**
+	 * 
+	 * @return the saved rollups of the cube
+	 */
+	public CubeRollup[] getRollups( )
+	{
+		return rollups;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.api.ICube#close()
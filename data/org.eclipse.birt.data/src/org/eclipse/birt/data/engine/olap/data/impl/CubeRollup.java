@@ -0,0 +1,892 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
+import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
+import org.eclipse.birt.data.engine.cache.Constants;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.DataResourceHandle;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultRow;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.api.IDimensionSortDefn;
+import org.eclipse.birt.data.engine.olap.data.api.ILevel;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.api.cube.IDimension;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationExecutor;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultRow;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeDimensionReader;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.DataSetFromOriginalCube;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionResultIterator;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableRowIterator;
+import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.DataType;
+import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+
+/**
+ * A rollup saves the aggregated rows of a cube at a combination of levels,
+ * so that the queries whose levels are all in the combination are
+ * aggregated from the rollup rows instead of the fact table rows. A rollup
+ * saves the SUM, COUNT, MIN and MAX of every measure, which can be aggregated
+ * again to the same values at fewer levels. The SUM of a BigDecimal measure is
+ * saved as an exact BigDecimal.
+ */
+
+public class CubeRollup
+{
+	private static final String SUM_FUNC = "SUM";
+	private static final String COUNT_FUNC = "COUNT";
+	private static final String MIN_FUNC = "MIN";
+	private static final String MAX_FUNC = "MAX";
+
+	private String cubeName;
+	private String docName;
+	private IDocumentManager documentManager;
+	private DimLevel[] levels;
+	private String[] functionNames;
+	private String[] measureNames;
+	private MeasureInfo[] columns;
+	private int rowCount;
+	private long rowOffset;
+
+	/**
+	 *
+	 * @param cubeName
+	 * @param docName
+	 * @param documentManager
+	 */
+	private CubeRollup( String cubeName, String docName,
+			IDocumentManager documentManager )
+	{
+		this.cubeName = cubeName;
+		this.docName = docName;
+		this.documentManager = documentManager;
+	}
+
+	/**
+	 * Aggregate the rows of a cube at the levels and save them as a new
+	 * rollup of the cube.
+	 *
+	 * @param cube
+	 * @param levels
+	 * @param memoryCacheSize
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public static void create( Cube cube, DimLevel[] levels,
+			long memoryCacheSize, StopSign stopSign ) throws IOException,
+			DataException
+	{
+		IDocumentManager documentManager = cube.getFactTable( )
+				.getDocumentManager( );
+		String listName = NamingUtil.getRollupListName( cube.name );
+		int count = 0;
+		IDocumentObject listObject;
+		if ( documentManager.exist( listName ) )
+		{
+			listObject = documentManager.openDocumentObject( listName );
+			count = listObject.readInt( );
+			listObject.seek( 0 );
+		}
+		else
+		{
+			listObject = documentManager.createDocumentObject( listName );
+		}
+		CubeRollup rollup = new CubeRollup( cube.name,
+				NamingUtil.getRollupDocName( cube.name, count ),
+				documentManager );
+		rollup.save( cube, levels, memoryCacheSize, stopSign );
+		listObject.writeInt( count + 1 );
+		listObject.close( );
+	}
+
+	/**
+	 * Aggregate the rows of a cube again for all its rollups, after the fact
+	 * table rows of the cube have changed.
+	 *
+	 * @param cube
+	 * @param memoryCacheSize
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public static void refresh( Cube cube, long memoryCacheSize,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		CubeRollup[] rollups = cube.getRollups( );
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			rollups[i].save( cube, rollups[i].levels, memoryCacheSize, stopSign );
+		}
+	}
+
+	/**
+	 * Load the saved rollups of a cube.
+	 *
+	 * @param cubeName
+	 * @param documentManager
+	 * @return
+	 * @throws IOException
+	 */
+	public static CubeRollup[] load( String cubeName,
+			IDocumentManager documentManager ) throws IOException
+	{
+		String listName = NamingUtil.getRollupListName( cubeName );
+		if ( !documentManager.exist( listName ) )
+		{
+			return new CubeRollup[0];
+		}
+		IDocumentObject listObject = documentManager.openDocumentObject( listName );
+		CubeRollup[] rollups = new CubeRollup[listObject.readInt( )];
+		listObject.close( );
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			rollups[i] = new CubeRollup( cubeName,
+					NamingUtil.getRollupDocName( cubeName, i ),
+					documentManager );
+			rollups[i].loadMetaInfo( );
+		}
+		return rollups;
+	}
+
+	/**
+	 *
+	 * @param cube
+	 * @param levels
+	 * @param memoryCacheSize
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void save( Cube cube, DimLevel[] levels, long memoryCacheSize,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		this.levels = levels;
+		populateColumns( cube.getFactTable( ).getMeasureInfo( ) );
+		IAggregationResultSet resultSet = aggregate( cube,
+				memoryCacheSize,
+				stopSign );
+
+		IDocumentObject documentObject;
+		if ( documentManager.exist( docName ) )
+		{
+			// the old rows are overwritten, the bytes left after them are
+			// never read
+			documentObject = documentManager.openDocumentObject( docName );
+		}
+		else
+		{
+			documentObject = documentManager.createDocumentObject( docName );
+		}
+		documentObject.writeInt( levels.length );
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			documentObject.writeString( levels[i].getDimensionName( ) );
+			documentObject.writeString( levels[i].getLevelName( ) );
+		}
+		documentObject.writeInt( columns.length );
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			documentObject.writeString( functionNames[i] );
+			documentObject.writeBoolean( measureNames[i] != null );
+			if ( measureNames[i] != null )
+			{
+				documentObject.writeString( measureNames[i] );
+			}
+			documentObject.writeInt( columns[i].getDataType( ) );
+		}
+		rowCount = resultSet.length( );
+		documentObject.writeInt( rowCount );
+		rowOffset = documentObject.getFilePointer( );
+		for ( int i = 0; i < rowCount && !stopSign.isStopped( ); i++ )
+		{
+			resultSet.seek( i );
+			IAggregationResultRow row = resultSet.getCurrentRow( );
+			for ( int j = 0; j < levels.length; j++ )
+			{
+				writeMember( documentObject, row.getLevelMembers( )[j] );
+			}
+			for ( int j = 0; j < columns.length; j++ )
+			{
+				writeValue( documentObject, row.getAggregationValues( )[j] );
+			}
+		}
+		documentObject.close( );
+		resultSet.close( );
+	}
+
+	/**
+	 *
+	 * @param measureInfos
+	 */
+	private void populateColumns( MeasureInfo[] measureInfos )
+	{
+		List functionList = new ArrayList( );
+		List measureList = new ArrayList( );
+		List columnList = new ArrayList( );
+		// the count of the fact table rows
+		functionList.add( COUNT_FUNC );
+		measureList.add( null );
+		columnList.add( new MeasureInfo( getColumnName( COUNT_FUNC, null ),
+				DataType.INTEGER_TYPE ) );
+		for ( int i = 0; i < measureInfos.length; i++ )
+		{
+			String measureName = measureInfos[i].getMeasureName( );
+			int dataType = measureInfos[i].getDataType( );
+			String[] functions;
+			if ( dataType == DataType.INTEGER_TYPE
+					|| dataType == DataType.DOUBLE_TYPE
+					|| dataType == DataType.BIGDECIMAL_TYPE )
+			{
+				functions = new String[]{
+						SUM_FUNC, COUNT_FUNC, MIN_FUNC, MAX_FUNC
+				};
+			}
+			else
+			{
+				functions = new String[]{
+						COUNT_FUNC, MIN_FUNC, MAX_FUNC
+				};
+			}
+			for ( int j = 0; j < functions.length; j++ )
+			{
+				int columnType = dataType;
+				if ( SUM_FUNC.equals( functions[j] )
+						&& dataType != DataType.BIGDECIMAL_TYPE )
+				{
+					columnType = DataType.DOUBLE_TYPE;
+				}
+				else if ( COUNT_FUNC.equals( functions[j] ) )
+				{
+					columnType = DataType.INTEGER_TYPE;
+				}
+				functionList.add( functions[j] );
+				measureList.add( measureName );
+				columnList.add( new MeasureInfo( getColumnName( functions[j],
+						measureName ), columnType ) );
+			}
+		}
+		functionNames = (String[]) functionList.toArray( new String[0] );
+		measureNames = (String[]) measureList.toArray( new String[0] );
+		columns = (MeasureInfo[]) columnList.toArray( new MeasureInfo[0] );
+	}
+
+	/**
+	 * Aggregate all the fact table rows of the cube at the levels of this
+	 * rollup.
+	 *
+	 * @param cube
+	 * @param memoryCacheSize
+	 * @param stopSign
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IAggregationResultSet aggregate( Cube cube, long memoryCacheSize,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		IDimension[] dimensions = cube.getDimesions( );
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			if ( getLevelIndex( dimensions, levels[i] ) < 0 )
+			{
+				throw new DataException( DataResourceHandle.getInstance( )
+						.getMessage( ResourceConstants.NONEXISTENT_LEVEL )
+						+ "<" + levels[i].getDimensionName( ) + " , "
+						+ levels[i].getLevelName( ) + ">" );
+			}
+		}
+		DimensionResultIterator[] dimensionResultIterators = new DimensionResultIterator[dimensions.length];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			dimensionResultIterators[i] = new DimensionResultIterator( (Dimension) dimensions[i],
+					null,
+					stopSign );
+		}
+		FactTableRowIterator factTableRowIterator = new FactTableRowIterator( cube.getFactTable( ),
+				new String[0],
+				new IDiskArray[0],
+				dimensions,
+				null,
+				stopSign );
+		AggregationFunctionDefinition[] functions = new AggregationFunctionDefinition[columns.length];
+		for ( int i = 0; i < functions.length; i++ )
+		{
+			functions[i] = new AggregationFunctionDefinition( columns[i].getMeasureName( ),
+					measureNames[i],
+					functionNames[i] );
+			if ( SUM_FUNC.equals( functionNames[i] )
+					&& columns[i].getDataType( ) == DataType.BIGDECIMAL_TYPE )
+			{
+				// the registered SUM adds doubles
+				functions[i].setAggregation( new DecimalSum( AggregationManager.getInstance( )
+						.getAggregation( SUM_FUNC ) ) );
+			}
+		}
+		int[] sortTypes = new int[levels.length];
+		Arrays.fill( sortTypes, IDimensionSortDefn.SORT_ASC );
+		AggregationExecutor aggregationExecutor = new AggregationExecutor( new CubeDimensionReader( cube ),
+				new DataSetFromOriginalCube( factTableRowIterator,
+						dimensionResultIterators,
+						null ),
+				new AggregationDefinition[]{
+					new AggregationDefinition( levels, sortTypes, functions )
+				},
+				memoryCacheSize );
+		return aggregationExecutor.execute( stopSign )[0];
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	private void loadMetaInfo( ) throws IOException
+	{
+		IDocumentObject documentObject = documentManager.openDocumentObject( docName );
+		levels = new DimLevel[documentObject.readInt( )];
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			String dimensionName = documentObject.readString( );
+			levels[i] = new DimLevel( dimensionName, documentObject.readString( ) );
+		}
+		columns = new MeasureInfo[documentObject.readInt( )];
+		functionNames = new String[columns.length];
+		measureNames = new String[columns.length];
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			functionNames[i] = documentObject.readString( );
+			if ( documentObject.readBoolean( ) )
+			{
+				measureNames[i] = documentObject.readString( );
+			}
+			columns[i] = new MeasureInfo( getColumnName( functionNames[i],
+					measureNames[i] ), documentObject.readInt( ) );
+		}
+		rowCount = documentObject.readInt( );
+		rowOffset = documentObject.getFilePointer( );
+		documentObject.close( );
+	}
+
+	/**
+	 *
+	 * @param functionName
+	 * @param measureName
+	 * @return
+	 */
+	private static String getColumnName( String functionName,
+			String measureName )
+	{
+		return functionName + "(" + ( measureName == null ? "*" : measureName )
+				+ ")";
+	}
+
+	/**
+	 *
+	 * @param dimensions
+	 * @param level
+	 * @return
+	 */
+	private static int getLevelIndex( IDimension[] dimensions, DimLevel level )
+	{
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			if ( dimensions[i].getName( ).equals( level.getDimensionName( ) ) )
+			{
+				ILevel[] dimLevels = dimensions[i].getHierarchy( ).getLevels( );
+				for ( int j = 0; j < dimLevels.length; j++ )
+				{
+					if ( dimLevels[j].getName( ).equals( level.getLevelName( ) ) )
+					{
+						return j;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 *
+	 * @return the levels of the rollup
+	 */
+	public DimLevel[] getLevels( )
+	{
+		return levels;
+	}
+
+	/**
+	 *
+	 * @return the aggregated values which are saved in every rollup row
+	 */
+	public MeasureInfo[] getColumns( )
+	{
+		return columns;
+	}
+
+	/**
+	 *
+	 * @return the count of the rollup rows
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 *
+	 * @return the name of the cube
+	 */
+	public String getCubeName( )
+	{
+		return cubeName;
+	}
+
+	/**
+	 *
+	 * @return the name of the document object of the rollup
+	 */
+	public String getDocumentObjectName( )
+	{
+		return docName;
+	}
+
+	/**
+	 * Return the index of a level in the rollup levels, or -1 if the level is
+	 * not rolled up.
+	 *
+	 * @param dimensionName
+	 * @param levelName
+	 * @return
+	 */
+	public int getLevelIndex( String dimensionName, String levelName )
+	{
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			if ( levels[i].getDimensionName( ).equals( dimensionName )
+					&& levels[i].getLevelName( ).equals( levelName ) )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether all the aggregations can be calculated from the rollup rows.
+	 * The levels of every aggregation must be rolled up, and every function
+	 * must be a SUM, COUNT, MIN or MAX of a measure without any filter,
+	 * parameter or time function.
+	 *
+	 * @param aggregations
+	 * @return
+	 */
+	public boolean covers( AggregationDefinition[] aggregations )
+	{
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			if ( aggregations[i].getDrilledInfo( ) != null )
+			{
+				return false;
+			}
+			DimLevel[] aggrLevels = aggregations[i].getLevels( );
+			if ( aggrLevels != null )
+			{
+				for ( int j = 0; j < aggrLevels.length; j++ )
+				{
+					if ( getLevelIndex( aggrLevels[j].getDimensionName( ),
+							aggrLevels[j].getLevelName( ) ) < 0 )
+					{
+						return false;
+					}
+				}
+			}
+			AggregationFunctionDefinition[] functions = aggregations[i].getAggregationFunctions( );
+			if ( functions == null )
+			{
+				continue;
+			}
+			for ( int j = 0; j < functions.length; j++ )
+			{
+				if ( functions[j].getFilterEvalHelper( ) != null
+						|| functions[j].getTimeFunction( ) != null
+						|| functions[j].getTimeFunctionFilter( ) != null
+						|| functions[j].getParaCol( ) != null
+						|| functions[j].getParaValue( ) != null
+						|| getColumnIndex( functions[j].getFunctionName( ),
+								functions[j].getMeasureName( ) ) < 0 )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @param functionName
+	 * @param measureName
+	 * @return
+	 */
+	private int getColumnIndex( String functionName, String measureName )
+	{
+		if ( functionName == null )
+		{
+			return -1;
+		}
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			if ( functionNames[i].equalsIgnoreCase( functionName )
+					&& ( measureNames[i] == null ? measureName == null
+							: measureNames[i].equals( measureName ) ) )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the aggregations which calculate the covered aggregations from
+	 * the rollup rows. Each function aggregates its rollup column again, the
+	 * counts are summed.
+	 *
+	 * @param aggregations
+	 * @return
+	 */
+	public AggregationDefinition[] rewrite( AggregationDefinition[] aggregations )
+	{
+		AggregationDefinition[] result = new AggregationDefinition[aggregations.length];
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			AggregationFunctionDefinition[] functions = aggregations[i].getAggregationFunctions( );
+			AggregationFunctionDefinition[] rollupFunctions = null;
+			if ( functions != null )
+			{
+				rollupFunctions = new AggregationFunctionDefinition[functions.length];
+				for ( int j = 0; j < functions.length; j++ )
+				{
+					int index = getColumnIndex( functions[j].getFunctionName( ),
+							functions[j].getMeasureName( ) );
+					rollupFunctions[j] = new AggregationFunctionDefinition( functions[j].getName( ),
+							columns[index].getMeasureName( ),
+							COUNT_FUNC.equals( functionNames[index] ) ? SUM_FUNC
+									: functionNames[index] );
+				}
+			}
+			result[i] = new AggregationDefinition( aggregations[i].getLevels( ),
+					aggregations[i].getSortTypes( ),
+					rollupFunctions );
+		}
+		return result;
+	}
+
+	/**
+	 * Return the result sets of the original aggregations from the result
+	 * sets of the rewritten ones. The summed counts are integers again.
+	 *
+	 * @param aggregations
+	 * @param resultSets
+	 * @return
+	 * @throws IOException
+	 */
+	public IAggregationResultSet[] restore(
+			AggregationDefinition[] aggregations,
+			IAggregationResultSet[] resultSets ) throws IOException
+	{
+		IAggregationResultSet[] result = new IAggregationResultSet[resultSets.length];
+		for ( int i = 0; i < resultSets.length; i++ )
+		{
+			AggregationFunctionDefinition[] functions = aggregations[i].getAggregationFunctions( );
+			IDiskArray rows = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+					Constants.LIST_BUFFER_SIZE );
+			for ( int j = 0; j < resultSets[i].length( ); j++ )
+			{
+				resultSets[i].seek( j );
+				IAggregationResultRow row = resultSets[i].getCurrentRow( );
+				Object[] values = row.getAggregationValues( );
+				if ( values != null )
+				{
+					values = (Object[]) values.clone( );
+					for ( int k = 0; k < values.length; k++ )
+					{
+						if ( values[k] instanceof Number
+								&& COUNT_FUNC.equalsIgnoreCase( functions[k].getFunctionName( ) ) )
+						{
+							values[k] = Integer.valueOf( ( (Number) values[k] ).intValue( ) );
+						}
+					}
+				}
+				rows.add( new AggregationResultRow( row.getLevelMembers( ),
+						values ) );
+			}
+			result[i] = new AggregationResultSet( aggregations[i],
+					rows,
+					resultSets[i].getKeyNames( ),
+					resultSets[i].getAttributeNames( ) );
+			resultSets[i].close( );
+		}
+		return result;
+	}
+
+	/**
+	 * Open the document object of the rollup at its first row.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public IDocumentObject openRows( ) throws IOException
+	{
+		IDocumentObject documentObject = documentManager.openDocumentObject( docName );
+		documentObject.seek( rowOffset );
+		return documentObject;
+	}
+
+	/**
+	 * Read the next rollup row of the document object.
+	 *
+	 * @param documentObject
+	 * @param members
+	 *            receives the level members of the row
+	 * @return the aggregated values of the row
+	 * @throws IOException
+	 */
+	public Object[] readRow( IDocumentObject documentObject, Member[] members )
+			throws IOException
+	{
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			members[i] = readMember( documentObject );
+		}
+		Object[] values = new Object[columns.length];
+		for ( int i = 0; i < values.length; i++ )
+		{
+			values[i] = readValue( documentObject );
+		}
+		return values;
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @param member
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static void writeMember( IDocumentObject documentObject,
+			Member member ) throws IOException, DataException
+	{
+		Object[] keyValues = member.getKeyValues( );
+		documentObject.writeInt( keyValues.length );
+		for ( int i = 0; i < keyValues.length; i++ )
+		{
+			writeValue( documentObject, keyValues[i] );
+		}
+		Object[] attributes = member.getAttributes( );
+		documentObject.writeInt( attributes == null ? -1 : attributes.length );
+		if ( attributes != null )
+		{
+			for ( int i = 0; i < attributes.length; i++ )
+			{
+				writeValue( documentObject, attributes[i] );
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @return
+	 * @throws IOException
+	 */
+	private static Member readMember( IDocumentObject documentObject )
+			throws IOException
+	{
+		Member member = new Member( );
+		Object[] keyValues = new Object[documentObject.readInt( )];
+		for ( int i = 0; i < keyValues.length; i++ )
+		{
+			keyValues[i] = readValue( documentObject );
+		}
+		member.setKeyValues( keyValues );
+		int attributeCount = documentObject.readInt( );
+		if ( attributeCount >= 0 )
+		{
+			Object[] attributes = new Object[attributeCount];
+			for ( int i = 0; i < attributes.length; i++ )
+			{
+				attributes[i] = readValue( documentObject );
+			}
+			member.setAttributes( attributes );
+		}
+		return member;
+	}
+
+	/**
+	 * Write a value with its data type, so that it is read as an object of
+	 * the same class.
+	 *
+	 * @param documentObject
+	 * @param value
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static void writeValue( IDocumentObject documentObject,
+			Object value ) throws IOException, DataException
+	{
+		int dataType = DataType.UNKNOWN_TYPE;
+		if ( value != null )
+		{
+			dataType = DataType.getDataType( value.getClass( ) );
+			if ( dataType == DataType.UNKNOWN_TYPE
+					|| !value.getClass( ).equals( DataType.getClass( dataType ) ) )
+			{
+				dataType = DataType.JAVA_OBJECT_TYPE;
+			}
+		}
+		documentObject.writeInt( dataType );
+		DocumentObjectUtil.writeValue( documentObject, dataType, value );
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @return
+	 * @throws IOException
+	 */
+	private static Object readValue( IDocumentObject documentObject )
+			throws IOException
+	{
+		int dataType = documentObject.readInt( );
+		return DocumentObjectUtil.readValue( documentObject, dataType );
+	}
+
+	/**
+	 * The SUM of BigDecimal values, which adds them exactly instead of as
+	 * doubles.
+	 */
+	private static class DecimalSum implements IAggrFunction
+	{
+
+		private IAggrFunction sum;
+
+		/**
+		 *
+		 * @param sum
+		 *            the registered SUM function
+		 */
+		DecimalSum( IAggrFunction sum )
+		{
+			this.sum = sum;
+		}
+
+		public String getName( )
+		{
+			return sum.getName( );
+		}
+
+		public String getDisplayName( )
+		{
+			return sum.getDisplayName( );
+		}
+
+		public String getDescription( )
+		{
+			return sum.getDescription( );
+		}
+
+		public int getType( )
+		{
+			return sum.getType( );
+		}
+
+		public int getDataType( )
+		{
+			return org.eclipse.birt.core.data.DataType.DECIMAL_TYPE;
+		}
+
+		public IParameterDefn[] getParameterDefn( )
+		{
+			return sum.getParameterDefn( );
+		}
+
+		public int getNumberOfPasses( )
+		{
+			return sum.getNumberOfPasses( );
+		}
+
+		public Object getDefaultValue( )
+		{
+			return sum.getDefaultValue( );
+		}
+
+		public boolean isDataOrderSensitive( )
+		{
+			return sum.isDataOrderSensitive( );
+		}
+
+		public Accumulator newAccumulator( )
+		{
+			return new Accumulator( ) {
+
+				private BigDecimal total;
+
+				public void start( ) throws DataException
+				{
+					total = null;
+				}
+
+				public void onRow( Object[] args ) throws DataException
+				{
+					if ( args[0] == null ) // ignore nulls in calculations
+					{
+						return;
+					}
+					try
+					{
+						BigDecimal value = DataTypeUtil.toBigDecimal( args[0] );
+						total = total == null ? value : total.add( value );
+					}
+					catch ( BirtException e )
+					{
+						throw DataException.wrap( e );
+					}
+				}
+
+				public Object getValue( ) throws DataException
+				{
+					return total;
+				}
+			};
+		}
+	}
+}
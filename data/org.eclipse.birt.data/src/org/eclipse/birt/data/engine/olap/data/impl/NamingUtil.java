@@ -26,6 +26,8 @@ public class NamingUtil
 	private static final String FACT_TABLE = OLAP_PREFIX + "fact_table_";
 	private static final String FTSU_LIST = OLAP_PREFIX + "ftsu_list_";
 	private static final String AGGREGATION_RS_DOC = OLAP_PREFIX + "rs_doc_";
+	private static final String ROLLUP_LIST = OLAP_PREFIX + "rollup_list_";
+	private static final String ROLLUP = OLAP_PREFIX + "rollup_";
 
 	public static final String DERIVED_MEASURE_PREFIX = "_${DERIVED_MEASURE}$_";
 
@@ -148,4 +150,25 @@ public class NamingUtil
 	{
 		return AGGREGATION_RS_DOC + ID;
 	}
+
+	/**
+	 * 
+	 * @param cubeName
+	 * @return
+	 */
+	public static String getRollupListName( String cubeName )
+	{
+		return ROLLUP_LIST + cubeName;
+	}
+	
+	/**
+	 * 
+	 * @param cubeName
+	 * @param index
+	 * @return
+	 */
+	public static String getRollupDocName( String cubeName, int index )
+	{
+		return ROLLUP + cubeName + '_' + index;
+	}
 }
@@ -103,8 +103,10 @@ public class AggregationCalculator
 				
 			for ( int i = 0; i < aggregationFunction.length; i++ )
 			{
-				IAggrFunction aggregation = AggregationManager.getInstance( )
-						.getAggregation( aggregationFunction[i].getFunctionName( ) );
+				IAggrFunction aggregation = aggregationFunction[i].getAggregation( );
+				if ( aggregation == null )
+					aggregation = AggregationManager.getInstance( )
+							.getAggregation( aggregationFunction[i].getFunctionName( ) );
 				if( aggregationFunction[i].getTimeFunctionFilter() != null )
 				{
 					String tDimName = aggregationFunction[i].getTimeFunctionFilter().getTimeDimension( );
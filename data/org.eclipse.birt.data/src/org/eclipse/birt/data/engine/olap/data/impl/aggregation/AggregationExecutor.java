@@ -17,10 +17,20 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.aggregation.AggregationUtil;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ComparatorUtil;
@@ -74,6 +84,11 @@ public class AggregationExecutor
 	public Row4Aggregation[] aggregationRow;
 	private AggregationFunctionDefinition simpleFunc;
 	private boolean existReferenceDate = false;
+	private int threadCount = 1;
+	
+	// the worker threads shared by all the aggregations, which stop when idle
+	private static ThreadPoolExecutor workers;
+	private static AtomicInteger workerNumber = new AtomicInteger( );
 	
 	private static String[] simpleFuncNames = new String[]{
 		"SUM",
@@ -283,33 +298,17 @@ public class AggregationExecutor
 			throws IOException, DataException
 	{
 		populateSortedFactRows( stopSign );
-		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+		if ( threadCount > 1
+				&& allSortedFactRows.size( ) > 1 && canAggregateInParallel( ) )
 		{
-			DiskSortedStackWrapper diskSortedStackWrapper = (DiskSortedStackWrapper) allSortedFactRows.get( i );
-			int[] calculatorIndexs = new int[sortedFactRows.length];
-			int pos = 0;
-			for ( int j = 0; j < calculatorIndexs.length; j++ )
-			{
-				if ( sortedFactRows[j] == diskSortedStackWrapper )
-				{
-					calculatorIndexs[pos] = j;
-					pos++;
-				}
-			}
-			while ( diskSortedStackWrapper.pop( ) != null
-					&& !stopSign.isStopped( ) )
+			aggregateInParallel( stopSign );
+		}
+		else
+		{
+			for ( int i = 0; i < allSortedFactRows.size( ); i++ )
 			{
-				Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
-				for ( int j = 0; j < pos; j++ )
-				{
-//					aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
-//							levelIndex[calculatorIndexs[j]].length / 2 ) );
-					if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
-					{
-						timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
-					}
-					aggregationCalculators[calculatorIndexs[j]].onRow( row );
-				}
+				aggregate( (DiskSortedStackWrapper) allSortedFactRows.get( i ),
+						stopSign );
 			}
 		}
 		IAggregationResultSet[] resultSets = 
@@ -343,6 +342,233 @@ public class AggregationExecutor
 		return resultSets;
 	}
 	
+	/**
+	 * Feed the rows of a sorted stack to the calculators of the aggregations
+	 * which are covered by the stack.
+	 * 
+	 * @param diskSortedStackWrapper
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void aggregate( DiskSortedStackWrapper diskSortedStackWrapper,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		int[] calculatorIndexs = new int[sortedFactRows.length];
+		int pos = 0;
+		for ( int j = 0; j < calculatorIndexs.length; j++ )
+		{
+			if ( sortedFactRows[j] == diskSortedStackWrapper )
+			{
+				calculatorIndexs[pos] = j;
+				pos++;
+			}
+		}
+		while ( diskSortedStackWrapper.pop( ) != null
+				&& !stopSign.isStopped( ) )
+		{
+			Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
+			for ( int j = 0; j < pos; j++ )
+			{
+//				aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
+//						levelIndex[calculatorIndexs[j]].length / 2 ) );
+				if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
+				{
+					timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
+				}
+				aggregationCalculators[calculatorIndexs[j]].onRow( row );
+			}
+		}
+	}
+	
+	/**
+	 * The sorted stacks and their calculators are independent of each other,
+	 * but the script filters and the time functions use the script context
+	 * and the dimension reader of the caller thread.
+	 * 
+	 * @return whether the sorted stacks can be aggregated in worker threads
+	 */
+	private boolean canAggregateInParallel( )
+	{
+		for ( int i = 0; i < aggregationCalculators.length; i++ )
+		{
+			if ( timeFunctionCalculator[i].existTimeFunction( ) )
+				return false;
+			AggregationFunctionDefinition[] functions = aggregationCalculators[i].aggregation.getAggregationFunctions( );
+			if ( functions == null )
+				continue;
+			for ( int j = 0; j < functions.length; j++ )
+			{
+				if ( functions[j].getFilterEvalHelper( ) != null
+						|| functions[j].getTimeFunctionFilter( ) != null )
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Aggregate the sorted stacks in the shared worker threads. At most
+	 * threadCount tasks are submitted, each of which takes the next stack
+	 * until all the stacks are aggregated.
+	 * 
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void aggregateInParallel( final StopSign stopSign )
+			throws IOException, DataException
+	{
+		// the temp files of the result rows are created in the worker threads
+		final String tempPath = DataEngineThreadLocal.getInstance( )
+				.getPathManager( )
+				.getTempPath( );
+		final List stacks = allSortedFactRows;
+		final AtomicInteger nextStack = new AtomicInteger( );
+		int taskCount = Math.min( threadCount, stacks.size( ) );
+		ExecutorService executor = getWorkers( taskCount );
+		List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+		try
+		{
+			for ( int i = 0; i < taskCount; i++ )
+			{
+				futures.add( executor.submit( new Callable<Object>( ) {
+
+					public Object call( ) throws Exception
+					{
+						DataEngineThreadLocal.getInstance( )
+								.getPathManager( )
+								.setTempPath( tempPath );
+						try
+						{
+							int index = nextStack.getAndIncrement( );
+							while ( index < stacks.size( ) )
+							{
+								aggregate( (DiskSortedStackWrapper) stacks.get( index ),
+										stopSign );
+								index = nextStack.getAndIncrement( );
+							}
+						}
+						finally
+						{
+							DataEngineThreadLocal.getInstance( )
+									.removeTempPathManger( );
+						}
+						return null;
+					}
+				} ) );
+			}
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				waitFor( futures.get( i ) );
+			}
+		}
+		finally
+		{
+			// when a task fails, no more stacks are taken and the running
+			// tasks are finished before the stacks are closed
+			nextStack.set( stacks.size( ) );
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				waitQuietly( futures.get( i ) );
+			}
+		}
+	}
+	
+	/**
+	 * Return the worker threads shared by all the aggregations. The pool
+	 * grows to the largest thread count which is asked for, and its threads
+	 * stop after they are idle for a while.
+	 * 
+	 * @param threadCount
+	 * @return
+	 */
+	private static synchronized ExecutorService getWorkers( int threadCount )
+	{
+		if ( workers == null )
+		{
+			workers = new ThreadPoolExecutor( threadCount,
+					threadCount,
+					60,
+					TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>( ),
+					new ThreadFactory( ) {
+
+						public Thread newThread( Runnable r )
+						{
+							Thread thread = new Thread( r,
+									"BIRT cube aggregation-" //$NON-NLS-1$
+											+ workerNumber.incrementAndGet( ) );
+							thread.setDaemon( true );
+							return thread;
+						}
+					} );
+			workers.allowCoreThreadTimeOut( true );
+		}
+		else if ( workers.getMaximumPoolSize( ) < threadCount )
+		{
+			workers.setMaximumPoolSize( threadCount );
+			workers.setCorePoolSize( threadCount );
+		}
+		return workers;
+	}
+	
+	/**
+	 * Wait for the task and throw the exception of the task if any.
+	 * 
+	 * @param future
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static void waitFor( Future<Object> future ) throws IOException,
+			DataException
+	{
+		try
+		{
+			future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			future.cancel( true );
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( ResourceConstants.UNEXPECTED_ERROR, e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof IOException )
+				throw (IOException) cause;
+			if ( cause instanceof DataException )
+				throw (DataException) cause;
+			if ( cause instanceof RuntimeException )
+				throw (RuntimeException) cause;
+			if ( cause instanceof Error )
+				throw (Error) cause;
+			throw new DataException( ResourceConstants.UNEXPECTED_ERROR, cause );
+		}
+	}
+	
+	/**
+	 * Wait for the task and ignore its exception, which has been reported by
+	 * waitFor or is not reported as another task failed first.
+	 * 
+	 * @param future
+	 */
+	private static void waitQuietly( Future<Object> future )
+	{
+		try
+		{
+			future.get( );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+		}
+		catch ( ExecutionException e )
+		{
+		}
+	}
+	
 	private void populateEdgeMember( List<Member[]> edgeMember, IAggregationResultSet rs ) throws IOException
 	{
 		for ( int i = 0; i < rs.length( ); i++ )
@@ -1105,6 +1331,16 @@ public class AggregationExecutor
 		this.memoryCacheSize = memoryCacheSize;
 	}
 	
+	/**
+	 * Set the count of threads which aggregate the sorted fact table rows.
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount( int threadCount )
+	{
+		this.threadCount = threadCount;
+	}
+	
 	public int getMemoryCacheSize( int memoryCacheSize )
 	{
 		return memoryCacheSize;
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.aggregation;
+
+import java.io.IOException;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.olap.data.api.IDimensionResultIterator;
+import org.eclipse.birt.data.engine.olap.data.api.ILevel;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.CubeRollup;
+import org.eclipse.birt.data.engine.olap.data.impl.DimColumn;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
+
+/**
+ * The data prepared for aggregation is from the rows of a cube rollup. The
+ * measures are the aggregated columns of the rollup, and only the rolled up
+ * levels have members.
+ */
+public class DataSetFromRollup implements IDataSet4Aggregation
+{
+	private CubeRollup rollup;
+	private IDimensionResultIterator[] dimensionResultIterators;
+	private IDataSet4Aggregation.MetaInfo cubeMetaInfo;
+	// the index of every level of the cube in the rollup levels
+	private int[][] rollupLevelIndex;
+	private IDocumentObject documentObject;
+	private int rowIndex = -1;
+	private Member[] members;
+	private Object[] values;
+
+	/**
+	 *
+	 * @param rollup
+	 * @param dimensionResultIterators
+	 * @throws IOException
+	 */
+	public DataSetFromRollup( CubeRollup rollup,
+			IDimensionResultIterator[] dimensionResultIterators )
+			throws IOException
+	{
+		this.rollup = rollup;
+		this.dimensionResultIterators = dimensionResultIterators;
+		// the dimension meta info is the same as the one of the cube, which
+		// does not use the fact table rows
+		this.cubeMetaInfo = new DataSetFromOriginalCube( null,
+				dimensionResultIterators,
+				null ).getMetaInfo( );
+		this.rollupLevelIndex = new int[dimensionResultIterators.length][];
+		for ( int i = 0; i < dimensionResultIterators.length; i++ )
+		{
+			ILevel[] levels = dimensionResultIterators[i].getLevels( );
+			String dimensionName = dimensionResultIterators[i].getDimesion( )
+					.getName( );
+			rollupLevelIndex[i] = new int[levels.length];
+			for ( int j = 0; j < levels.length; j++ )
+			{
+				rollupLevelIndex[i][j] = rollup.getLevelIndex( dimensionName,
+						levels[j].getName( ) );
+			}
+		}
+		this.documentObject = rollup.openRows( );
+		this.members = new Member[rollup.getLevels( ).length];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation#getMetaInfo()
+	 */
+	public MetaInfo getMetaInfo( )
+	{
+		return new IDataSet4Aggregation.MetaInfo( ) {
+
+			public String[] getAttributeNames( int dimIndex, int levelIndex )
+			{
+				return cubeMetaInfo.getAttributeNames( dimIndex, levelIndex );
+			}
+
+			public ColumnInfo getColumnInfo( DimColumn dimColumn )
+					throws DataException
+			{
+				return cubeMetaInfo.getColumnInfo( dimColumn );
+			}
+
+			public int getDimensionIndex( String dimensionName )
+			{
+				return cubeMetaInfo.getDimensionIndex( dimensionName );
+			}
+
+			public String[] getKeyNames( int dimIndex, int levelIndex )
+			{
+				return cubeMetaInfo.getKeyNames( dimIndex, levelIndex );
+			}
+
+			public int getLevelIndex( String dimensionName, String levelName )
+			{
+				return cubeMetaInfo.getLevelIndex( dimensionName, levelName );
+			}
+
+			public int getMeasureIndex( String measureName )
+			{
+				MeasureInfo[] columns = rollup.getColumns( );
+				for ( int i = 0; i < columns.length; i++ )
+				{
+					if ( columns[i].getMeasureName( ).equals( measureName ) )
+					{
+						return i;
+					}
+				}
+				return -1;
+			}
+
+			public MeasureInfo[] getMeasureInfos( )
+			{
+				return rollup.getColumns( );
+			}
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation#next()
+	 */
+	public boolean next( ) throws DataException, IOException
+	{
+		if ( rowIndex + 1 >= rollup.getRowCount( ) )
+		{
+			return false;
+		}
+		rowIndex++;
+		values = rollup.readRow( documentObject, members );
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation#getMeasureValue(int)
+	 */
+	public Object getMeasureValue( int measureIndex ) throws DataException,
+			IOException
+	{
+		return values[measureIndex];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation#getMember(int, int)
+	 */
+	public Member getMember( int dimIndex, int levelIndex )
+			throws DataException, IOException
+	{
+		int index = rollupLevelIndex[dimIndex][levelIndex];
+		if ( index < 0 )
+		{
+			return null;
+		}
+		return members[index];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation#isDuplicatedRow()
+	 */
+	public boolean isDuplicatedRow( )
+	{
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation#getDimensionPosition()
+	 */
+	public int[] getDimensionPosition( )
+	{
+		// the rollup rows are not at any dimension position
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation#close()
+	 */
+	public void close( ) throws DataException, IOException
+	{
+		documentObject.close( );
+		for ( int i = 0; i < dimensionResultIterators.length; i++ )
+		{
+			try
+			{
+				dimensionResultIterators[i].close( );
+			}
+			catch ( BirtException e )
+			{
+				throw DataException.wrap( e );
+			}
+		}
+	}
+}
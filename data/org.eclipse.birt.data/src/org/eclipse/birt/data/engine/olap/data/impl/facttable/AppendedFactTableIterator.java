@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionKey;
+import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+
+/**
+ * Iterates the rows of a saved fact table and then the rows of a fact table
+ * iterator which are appended to them, so that a fact table can be saved
+ * again from both without querying the saved rows. The fields are the fact
+ * table joint columns and the measures. The joint column values of a saved
+ * row are read from the members of the saved dimensions at the dimension
+ * positions of the row, so the rows can be saved with other dimensions which
+ * have new members.
+ */
+public class AppendedFactTableIterator implements IDatasetIterator
+{
+
+	private FactTableRowIterator savedRows;
+	private IDatasetIterator appendedRows;
+	private IDiskArray[] dimensionKeys;
+	private String[] fieldNames;
+	// the dimension and the key index of each joint column
+	private int[] dimensionIndex;
+	private int[] keyIndex;
+	// the saved measure index of each measure
+	private int[] measureIndex;
+	private int[] appendedFieldIndex;
+	private boolean appending;
+
+	/**
+	 *
+	 * @param factTable
+	 *            the saved fact table
+	 * @param dimensions
+	 *            the saved dimensions of the fact table
+	 * @param factTableJointColumnNames
+	 * @param DimJointColumnNames
+	 * @param measureColumnNames
+	 *            the measures, which the saved fact table has
+	 * @param appendedRows
+	 *            the appended rows, which are not closed by this iterator
+	 * @param stopSign
+	 * @throws BirtException
+	 * @throws IOException
+	 */
+	public AppendedFactTableIterator( FactTable factTable,
+			Dimension[] dimensions, String[][] factTableJointColumnNames,
+			String[][] DimJointColumnNames, String[] measureColumnNames,
+			IDatasetIterator appendedRows, StopSign stopSign )
+			throws BirtException, IOException
+	{
+		this.appendedRows = appendedRows;
+		int[][][] columnIndex = FactTableAccessor.getColumnIndex( DimJointColumnNames,
+				dimensions );
+		dimensionKeys = new IDiskArray[dimensions.length];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			// the keys are in the order of the dimension positions
+			dimensionKeys[i] = FactTableAccessor.getDimCombinatedKey( columnIndex[i],
+					dimensions[i].getAllRows( stopSign ) );
+		}
+
+		int jointColumnCount = 0;
+		for ( int i = 0; i < factTableJointColumnNames.length; i++ )
+		{
+			jointColumnCount += factTableJointColumnNames[i].length;
+		}
+		fieldNames = new String[jointColumnCount + measureColumnNames.length];
+		dimensionIndex = new int[jointColumnCount];
+		keyIndex = new int[jointColumnCount];
+		int index = 0;
+		for ( int i = 0; i < factTableJointColumnNames.length; i++ )
+		{
+			for ( int j = 0; j < factTableJointColumnNames[i].length; j++ )
+			{
+				fieldNames[index] = factTableJointColumnNames[i][j];
+				dimensionIndex[index] = i;
+				keyIndex[index] = j;
+				index++;
+			}
+		}
+		measureIndex = new int[measureColumnNames.length];
+		for ( int i = 0; i < measureColumnNames.length; i++ )
+		{
+			fieldNames[jointColumnCount + i] = measureColumnNames[i];
+			measureIndex[i] = factTable.getMeasureIndex( measureColumnNames[i] );
+		}
+		appendedFieldIndex = new int[fieldNames.length];
+		for ( int i = 0; i < fieldNames.length; i++ )
+		{
+			appendedFieldIndex[i] = appendedRows.getFieldIndex( fieldNames[i] );
+		}
+
+		savedRows = new FactTableRowIterator( factTable,
+				new String[0],
+				new IDiskArray[0],
+				stopSign );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator#getFieldIndex(java.lang.String)
+	 */
+	public int getFieldIndex( String name ) throws BirtException
+	{
+		for ( int i = 0; i < fieldNames.length; i++ )
+		{
+			if ( fieldNames[i].equals( name ) )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator#getFieldType(java.lang.String)
+	 */
+	public int getFieldType( String name ) throws BirtException
+	{
+		return appendedRows.getFieldType( name );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator#next()
+	 */
+	public boolean next( ) throws BirtException
+	{
+		if ( !appending )
+		{
+			try
+			{
+				if ( savedRows.next( ) )
+				{
+					return true;
+				}
+			}
+			catch ( IOException e )
+			{
+				throw new DataException( e.getLocalizedMessage( ), e );
+			}
+			appending = true;
+		}
+		return appendedRows.next( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator#getValue(int)
+	 */
+	public Object getValue( int fieldIndex ) throws BirtException
+	{
+		if ( appending )
+		{
+			if ( appendedFieldIndex[fieldIndex] < 0 )
+			{
+				return null;
+			}
+			return appendedRows.getValue( appendedFieldIndex[fieldIndex] );
+		}
+		if ( fieldIndex >= dimensionIndex.length )
+		{
+			return savedRows.getMeasure( measureIndex[fieldIndex
+					- dimensionIndex.length] );
+		}
+		int dimension = dimensionIndex[fieldIndex];
+		try
+		{
+			DimensionKey key = (DimensionKey) dimensionKeys[dimension].get( savedRows.getDimensionPosition( dimension ) );
+			return key.getKeyValues( )[keyIndex[fieldIndex]];
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( e.getLocalizedMessage( ), e );
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator#close()
+	 */
+	public void close( ) throws BirtException
+	{
+		try
+		{
+			savedRows.close( );
+			for ( int i = 0; i < dimensionKeys.length; i++ )
+			{
+				dimensionKeys[i].close( );
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( e.getLocalizedMessage( ), e );
+		}
+	}
+}
@@ -306,7 +306,7 @@ public class FactTableAccessor
 				stopSign );
 	}
 	
-	private int[][][] getColumnIndex( String[][] keyColumnNames,
+	static int[][][] getColumnIndex( String[][] keyColumnNames,
 			Dimension[] dimensions ) throws DataException
 	{
 		int[][][] columnIndex = new int[keyColumnNames.length][][];
@@ -357,7 +357,7 @@ public class FactTableAccessor
 	 * @param str
 	 * @return
 	 */
-	private int find( String[] strArray, String str )
+	private static int find( String[] strArray, String str )
 	{
 		if( strArray == null )
 		{
@@ -379,7 +379,7 @@ public class FactTableAccessor
 	 * @return
 	 * @throws IOException
 	 */
-	private static IDiskArray getDimCombinatedKey( int[][] columnIndex , IDiskArray dimRowArray ) throws IOException
+	static IDiskArray getDimCombinatedKey( int[][] columnIndex , IDiskArray dimRowArray ) throws IOException
 	{
 		BufferedStructureArray resultArray = new BufferedStructureArray( DimensionKey.getCreator( ),
 				dimRowArray.size( ) );
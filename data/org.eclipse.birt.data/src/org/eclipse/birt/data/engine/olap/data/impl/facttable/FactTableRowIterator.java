@@ -14,7 +14,6 @@ package org.eclipse.birt.data.engine.olap.data.impl.facttable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -37,6 +36,8 @@ import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableAccessor.F
 import org.eclipse.birt.data.engine.olap.data.util.Bytes;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
+import org.eclipse.birt.data.engine.olap.util.filter.CubePosFilter;
 import org.eclipse.birt.data.engine.olap.util.filter.ICubePosFilter;
 import org.eclipse.birt.data.engine.olap.util.filter.IFacttableRow;
 import org.eclipse.birt.data.engine.olap.util.filter.IJSFacttableFilterEvalHelper;
@@ -65,7 +66,7 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	private Traversalor traversalor;
 	private StopSign stopSign;
 	
-	private int[][] selectedPosOfCurSegment;
+	private PositionBitmap[] selectedPosBitmaps;	//selected positions of each dimension, null for all positions
 	
 	private IComputedMeasureHelper computedMeasureHelper;
 
@@ -122,7 +123,7 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		this.factTable = factTable;
 		this.selectedPos = dimensionPos;
 		this.selectedSubDim = new List[factTable.getDimensionInfo( ).length];
-		this.selectedPosOfCurSegment = new int[factTable.getDimensionInfo( ).length][];
+		this.selectedPosBitmaps = new PositionBitmap[factTable.getDimensionInfo( ).length];
 		this.stopSign = stopSign;
 		this.measureFilters = new ArrayList( );
 		this.cubePosFilters = new ArrayList( );
@@ -150,6 +151,13 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		caculateMeasuerSize( );
 		
 		filterSubDimension( );
+		for ( int i = 0; i < dimensionIndex.length; i++ )
+		{
+			if ( dimensionIndex[i] != -1 )
+			{
+				selectedPosBitmaps[i] = PositionBitmap.valueOf( selectedPos[dimensionIndex[i]] );
+			}
+		}
 		this.currentPos = new int[factTable.getDimensionInfo( ).length];
 		this.currentMeasureValues = new Object[factTable.getMeasureInfo( ).length];
 		this.currentMeasureMap = new MeasureMap( this.factTable.getMeasureInfo( ) );
@@ -388,13 +396,11 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		{
 			for ( int i = 0; i < currentPos.length; i++ )
 			{
-				if ( dimensionIndex[i] != -1 )
+				if ( selectedPosBitmaps[i] != null
+						&& !selectedPosBitmaps[i].contains( currentPos[i] ) )
 				{
-					if( Arrays.binarySearch( selectedPosOfCurSegment[i], currentPos[i] ) < 0 )
-					{
-						lastFilterResult = false;
-						return false;
-					}
+					lastFilterResult = false;
+					return false;
 				}
 			}
 			for( int i=0;i<cubePosFilters.size( );i++)
@@ -514,7 +520,8 @@ public class FactTableRowIterator implements IFactTableRowIterator
 			subDimensionIndex = getSubDimensionIndex( );
 			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( NamingUtil.getFactTableName( factTable.getName( ) ),
 					subDimensionIndex );
-			if ( !factTable.getDocumentManager( ).exist( FTSUDocName ) )
+			if ( !isSelectedSegment( )
+					|| !factTable.getDocumentManager( ).exist( FTSUDocName ) )
 			{
 				continue;
 			}
@@ -523,23 +530,29 @@ public class FactTableRowIterator implements IFactTableRowIterator
 				currentSegment.close( );
 			
 			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
-			
-			for ( int i = 0; i < dimensionIndex.length; i++ )
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * Return whether the current segment may contain a selected row, that is
+	 * every dimension has at least one selected position in the range of its
+	 * current sub dimension.
+	 * 
+	 * @return
+	 */
+	private boolean isSelectedSegment( )
+	{
+		DimensionDivision[] dimensionDivisions = factTable.getDimensionDivision( );
+		for ( int i = 0; i < selectedPosBitmaps.length; i++ )
+		{
+			if ( selectedPosBitmaps[i] != null )
 			{
-				if ( dimensionIndex[i] != -1 )
-				{
-					SelectedSubDimension selectedSubDimension = ( (SelectedSubDimension) selectedSubDim[i].get( currentSubDim[i] ) );
-					selectedPosOfCurSegment[i] = new int[selectedSubDimension.end
-							- selectedSubDimension.start + 1];
-					for ( int j = 0; j < selectedSubDimension.end
-							- selectedSubDimension.start + 1; j++ )
-					{
-						selectedPosOfCurSegment[i][j] = ( (Integer) selectedPos[dimensionIndex[i]].get( selectedSubDimension.start
-								+ j ) ).intValue( );
-					}
-				}
+				DimensionDivision.IntRange range = dimensionDivisions[i].getRanges( )[subDimensionIndex[i]];
+				if ( !selectedPosBitmaps[i].intersects( range.start, range.end ) )
+					return false;
 			}
-			break;
 		}
 		return true;
 	}
@@ -666,6 +679,28 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	 */
 	public void addCubePosFilter( ICubePosFilter cubePosFilter )
 	{
+		PositionBitmap[] filterBitmaps = null;
+		if ( cubePosFilter instanceof CubePosFilter )
+			filterBitmaps = ( (CubePosFilter) cubePosFilter ).getDimensionPositionBitmaps( );
+		if ( filterBitmaps != null )
+		{
+			// intersect the positions which may pass the filter with the
+			// selected positions, so that a row which fails one of them is
+			// rejected without evaluating the filter and a segment without
+			// any such row is never read
+			String[] filterDimensionNames = cubePosFilter.getFilterDimensionNames( );
+			for ( int i = 0; i < filterDimensionNames.length; i++ )
+			{
+				int index = factTable.getDimensionIndex( filterDimensionNames[i] );
+				if ( selectedPosBitmaps[index] == null )
+					selectedPosBitmaps[index] = filterBitmaps[i];
+				else
+					selectedPosBitmaps[index] = selectedPosBitmaps[index].and( filterBitmaps[i] );
+			}
+			// the bitmap of a single dimension is the filter itself
+			if ( filterDimensionNames.length == 1 )
+				return;
+		}
 		cubePosFilters.add( new CubePosFilterHelper( factTable, cubePosFilter ) );
 	}
 	
@@ -0,0 +1,423 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressed bitmap of dimension positions. The positions are grouped in
+ * chunks of 65536 by their high 16 bits. A chunk with few positions keeps them
+ * in a sorted array, a dense chunk keeps them in a plain bitmap, so that both
+ * the sparse and the dense selections of a big dimension are cheap to store
+ * and to intersect.
+ */
+
+public class PositionBitmap
+{
+
+	private static final int ARRAY_LIMIT = 4096;
+
+	private int[] keys;
+	private Container[] containers;
+	private int size;
+
+	/**
+	 *
+	 */
+	public PositionBitmap( )
+	{
+		this.keys = new int[4];
+		this.containers = new Container[4];
+		this.size = 0;
+	}
+
+	/**
+	 * Create a bitmap from an array of integer positions.
+	 *
+	 * @param positions
+	 * @return
+	 * @throws IOException
+	 */
+	public static PositionBitmap valueOf( IDiskArray positions )
+			throws IOException
+	{
+		PositionBitmap result = new PositionBitmap( );
+		for ( int i = 0; i < positions.size( ); i++ )
+		{
+			result.add( ( (Integer) positions.get( i ) ).intValue( ) );
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 */
+	public void add( int pos )
+	{
+		int key = pos >>> 16;
+		int index = Arrays.binarySearch( keys, 0, size, key );
+		if ( index < 0 )
+		{
+			index = -index - 1;
+			insertContainer( index, key, new ArrayContainer( ) );
+		}
+		containers[index] = containers[index].add( (char) pos );
+	}
+
+	/**
+	 * Add all the positions from start to end, both inclusive.
+	 *
+	 * @param start
+	 * @param end
+	 */
+	public void add( int start, int end )
+	{
+		for ( int i = start; i <= end; i++ )
+		{
+			add( i );
+		}
+	}
+
+	/**
+	 *
+	 * @param pos
+	 * @return
+	 */
+	public boolean contains( int pos )
+	{
+		int index = Arrays.binarySearch( keys, 0, size, pos >>> 16 );
+		return index >= 0 && containers[index].contains( (char) pos );
+	}
+
+	/**
+	 * Return whether any position from start to end, both inclusive, is in
+	 * this bitmap.
+	 *
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public boolean intersects( int start, int end )
+	{
+		if ( start > end )
+			return false;
+		int startKey = start >>> 16;
+		int endKey = end >>> 16;
+		int index = Arrays.binarySearch( keys, 0, size, startKey );
+		if ( index < 0 )
+			index = -index - 1;
+		for ( ; index < size && keys[index] <= endKey; index++ )
+		{
+			int low = keys[index] == startKey ? start & 0xFFFF : 0;
+			int high = keys[index] == endKey ? end & 0xFFFF : 0xFFFF;
+			if ( containers[index].intersects( low, high ) )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return the intersection of this bitmap and the other one.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public PositionBitmap and( PositionBitmap other )
+	{
+		PositionBitmap result = new PositionBitmap( );
+		int i = 0, j = 0;
+		while ( i < size && j < other.size )
+		{
+			if ( keys[i] < other.keys[j] )
+			{
+				i++;
+			}
+			else if ( keys[i] > other.keys[j] )
+			{
+				j++;
+			}
+			else
+			{
+				Container container = containers[i].and( other.containers[j] );
+				if ( container.getCardinality( ) > 0 )
+					result.insertContainer( result.size, keys[i], container );
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getCardinality( )
+	{
+		int result = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			result += containers[i].getCardinality( );
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public boolean isEmpty( )
+	{
+		return size == 0;
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @param key
+	 * @param container
+	 */
+	private void insertContainer( int index, int key, Container container )
+	{
+		if ( size == keys.length )
+		{
+			int[] newKeys = new int[size * 2];
+			Container[] newContainers = new Container[size * 2];
+			System.arraycopy( keys, 0, newKeys, 0, size );
+			System.arraycopy( containers, 0, newContainers, 0, size );
+			keys = newKeys;
+			containers = newContainers;
+		}
+		System.arraycopy( keys, index, keys, index + 1, size - index );
+		System.arraycopy( containers, index, containers, index + 1, size
+				- index );
+		keys[index] = key;
+		containers[index] = container;
+		size++;
+	}
+
+	/**
+	 * The low 16 bits of the positions which share the same high 16 bits.
+	 */
+	private static abstract class Container
+	{
+
+		abstract Container add( char value );
+
+		abstract boolean contains( char value );
+
+		abstract boolean intersects( int low, int high );
+
+		abstract Container and( Container other );
+
+		abstract int getCardinality( );
+	}
+
+	/**
+	 * A sorted array for a sparse container.
+	 */
+	private static class ArrayContainer extends Container
+	{
+
+		private char[] values;
+		private int cardinality;
+
+		ArrayContainer( )
+		{
+			this( new char[4], 0 );
+		}
+
+		ArrayContainer( char[] values, int cardinality )
+		{
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		Container add( char value )
+		{
+			int index;
+			// positions are mostly added in ascending order
+			if ( cardinality == 0 || values[cardinality - 1] < value )
+			{
+				index = cardinality;
+			}
+			else
+			{
+				index = Arrays.binarySearch( values, 0, cardinality, value );
+				if ( index >= 0 )
+					return this;
+				index = -index - 1;
+			}
+			if ( cardinality == ARRAY_LIMIT )
+			{
+				BitmapContainer bitmap = new BitmapContainer( );
+				for ( int i = 0; i < cardinality; i++ )
+				{
+					bitmap.add( values[i] );
+				}
+				return bitmap.add( value );
+			}
+			if ( cardinality == values.length )
+			{
+				char[] newValues = new char[Math.min( cardinality * 2,
+						ARRAY_LIMIT )];
+				System.arraycopy( values, 0, newValues, 0, cardinality );
+				values = newValues;
+			}
+			System.arraycopy( values, index, values, index + 1, cardinality
+					- index );
+			values[index] = value;
+			cardinality++;
+			return this;
+		}
+
+		boolean contains( char value )
+		{
+			return Arrays.binarySearch( values, 0, cardinality, value ) >= 0;
+		}
+
+		boolean intersects( int low, int high )
+		{
+			int index = Arrays.binarySearch( values,
+					0,
+					cardinality,
+					(char) low );
+			if ( index >= 0 )
+				return true;
+			index = -index - 1;
+			return index < cardinality && values[index] <= high;
+		}
+
+		Container and( Container other )
+		{
+			char[] result = new char[cardinality];
+			int count = 0;
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				int i = 0, j = 0;
+				while ( i < cardinality && j < array.cardinality )
+				{
+					if ( values[i] < array.values[j] )
+					{
+						i++;
+					}
+					else if ( values[i] > array.values[j] )
+					{
+						j++;
+					}
+					else
+					{
+						result[count++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			else
+			{
+				for ( int i = 0; i < cardinality; i++ )
+				{
+					if ( other.contains( values[i] ) )
+						result[count++] = values[i];
+				}
+			}
+			return new ArrayContainer( result, count );
+		}
+
+		int getCardinality( )
+		{
+			return cardinality;
+		}
+	}
+
+	/**
+	 * A plain bitmap for a dense container.
+	 */
+	private static class BitmapContainer extends Container
+	{
+
+		private long[] words = new long[1024];
+		private int cardinality;
+
+		Container add( char value )
+		{
+			long mask = 1L << value;
+			if ( ( words[value >>> 6] & mask ) == 0 )
+			{
+				words[value >>> 6] |= mask;
+				cardinality++;
+			}
+			return this;
+		}
+
+		boolean contains( char value )
+		{
+			return ( words[value >>> 6] & ( 1L << value ) ) != 0;
+		}
+
+		boolean intersects( int low, int high )
+		{
+			int startWord = low >>> 6;
+			int endWord = high >>> 6;
+			for ( int i = startWord; i <= endWord; i++ )
+			{
+				long word = words[i];
+				if ( i == startWord )
+					word &= -1L << low;
+				if ( i == endWord )
+					word &= -1L >>> ( 63 - ( high & 63 ) );
+				if ( word != 0 )
+					return true;
+			}
+			return false;
+		}
+
+		Container and( Container other )
+		{
+			if ( other instanceof ArrayContainer )
+			{
+				return other.and( this );
+			}
+			BitmapContainer bitmap = (BitmapContainer) other;
+			BitmapContainer result = new BitmapContainer( );
+			for ( int i = 0; i < words.length; i++ )
+			{
+				result.words[i] = words[i] & bitmap.words[i];
+				result.cardinality += Long.bitCount( result.words[i] );
+			}
+			if ( result.cardinality > ARRAY_LIMIT )
+			{
+				return result;
+			}
+			char[] values = new char[result.cardinality];
+			int count = 0;
+			for ( int i = 0; i < result.words.length; i++ )
+			{
+				long word = result.words[i];
+				while ( word != 0 )
+				{
+					values[count++] = (char) ( i * 64 + Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer( values, count );
+		}
+
+		int getCardinality( )
+		{
+			return cardinality;
+		}
+	}
+}
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
 
 /**
  * 
@@ -62,6 +63,16 @@ public abstract class CubePosFilter implements ICubePosFilter
 	 */
 	public abstract boolean getFilterResult( int[] dimPositions );
 
+	/**
+	 * Return for each filter dimension the bitmap of the positions which may
+	 * pass this filter, or null if a position of any dimension may pass it.
+	 * 
+	 * @return
+	 */
+	public PositionBitmap[] getDimensionPositionBitmaps( )
+	{
+		return null;
+	}
 
 }
 
@@ -143,6 +154,22 @@ class CubePositionRangeFilter
 		}
 		return true;
 	}
+	
+	/**
+	 * Add the positions of every dimension to the bitmap of that dimension.
+	 * 
+	 * @param bitmaps
+	 */
+	void addTo( PositionBitmap[] bitmaps )
+	{
+		for ( int i = 0; i < dimPosRanges.length; i++ )
+		{
+			for ( int j = 0; j < dimPosRanges[i].length; j++ )
+			{
+				bitmaps[i].add( dimPosRanges[i][j].start, dimPosRanges[i][j].end );
+			}
+		}
+	}
 }
 
 /**
@@ -152,8 +179,8 @@ class CubePositionRangeFilter
  */
 class Range
 {
-	private int start;
-	private int end;
+	int start;
+	int end;
 	
 	/**
 	 * 
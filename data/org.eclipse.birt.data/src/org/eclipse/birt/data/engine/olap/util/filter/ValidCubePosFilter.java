@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.olap.util.filter;
 
+import org.eclipse.birt.data.engine.olap.data.util.PositionBitmap;
+
 /**
  * 
  */
@@ -42,4 +44,24 @@ public class ValidCubePosFilter extends CubePosFilter
 		return false;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.util.filter.CubePosFilter#getDimensionPositionBitmaps()
+	 */
+	public PositionBitmap[] getDimensionPositionBitmaps( )
+	{
+		// a valid position of a dimension is in at least one of the valid
+		// combinations
+		PositionBitmap[] result = new PositionBitmap[dimensionNames.length];
+		for ( int i = 0; i < result.length; i++ )
+		{
+			result[i] = new PositionBitmap( );
+		}
+		for ( int i = 0; i < cubePosRangeFilter.size( ); i++ )
+		{
+			( (CubePositionRangeFilter) cubePosRangeFilter.get( i ) ).addTo( result );
+		}
+		return result;
+	}
+
 }
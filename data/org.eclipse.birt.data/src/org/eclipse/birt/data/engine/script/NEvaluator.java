@@ -1,15 +1,20 @@
 package org.eclipse.birt.data.engine.script;
 
+import java.util.BitSet;
+
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
 import org.eclipse.birt.core.script.ScriptExpression;
 import org.eclipse.birt.data.engine.api.IConditionalExpression;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
-import org.eclipse.birt.data.engine.cache.BasicCachedArray;
+import org.eclipse.birt.data.engine.cache.BasicCachedList;
+import org.eclipse.birt.data.engine.cache.BoundedHeap;
+import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.expression.ExprEvaluateUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.impl.DataSetRuntime;
 import org.mozilla.javascript.Scriptable;
 
@@ -20,8 +25,12 @@ import org.mozilla.javascript.Scriptable;
  */
 public abstract class NEvaluator
 {
-	private BasicCachedArray valueList; 
-	private BasicCachedArray rowIdList;
+	// the top/bottom N values of the first pass
+	private BoundedHeap heap;
+	// the values of the first pass, cached on disk when N exceeds the heap
+	private BasicCachedList valueList;
+	// the row indexes of the top/bottom N values, used in the second pass
+	private BitSet qualifiedRows;
 	private int firstPassRowNumberCounter = 0;
 	private int secondPassRowNumberCounter = 0;
 	private int qualifiedRowCounter = 0;
@@ -155,8 +164,11 @@ public abstract class NEvaluator
 	}
 
 	/**
-	 * Do the first pass. In the first pass we maintain a value list and a row id list that will
-	 * host all top/bottom N values/rowIds so that in pass 2 we can use them to filter rows out.
+	 * Do the first pass. In the first pass we keep the top/bottom N values
+	 * and their row indexes in a bounded heap so that in pass 2 we can use
+	 * them to filter rows out. When N is larger than the heap, such as for a
+	 * large percent, the values are cached on disk and selected in several
+	 * passes at the start of pass 2.
 	 * @param value
 	 * @return
 	 * @throws DataException
@@ -164,70 +176,62 @@ public abstract class NEvaluator
 	private boolean doFirstPass( Object value ) throws DataException
 	{
 		firstPassRowNumberCounter++;
-		if ( valueList == null )
+		if ( heap == null )
 		{
-			valueList = new BasicCachedArray( tempDir, N );
-			rowIdList = new BasicCachedArray( tempDir, N );
-			
+			heap = new BoundedHeap( Math.min( N, Constants.LIST_BUFFER_SIZE ) ) {
+
+				protected boolean isBefore( Object value1, int id1,
+						Object value2, int id2 ) throws DataException
+				{
+					// the values which are equal keep the order of the rows
+					if ( isTrue( doCompare( value1, value2 ) ) )
+						return true;
+					if ( isTrue( doCompare( value2, value1 ) ) )
+						return false;
+					return id1 < id2;
+				}
+			};
+			if ( N > Constants.LIST_BUFFER_SIZE )
+			{
+				valueList = new BasicCachedList( tempDir,
+						DataEngineSession.getCurrentClassLoader( ) );
+			}
+		}
+		if ( valueList != null )
+		{
+			valueList.add( value );
 		}
-		if ( value != null )
+		else if ( value != null )
 		{
-			populateValueListAndRowIdList( value, N );
+			heap.offer( value, firstPassRowNumberCounter - 1 );
 		}
 		return true;
 	}
 
 	/**
-	 * @param value
-	 * @param N
+	 * 
+	 * @param result
+	 * @return
 	 * @throws DataException
 	 */
-	private void populateValueListAndRowIdList( Object value, int N ) throws DataException
+	private static boolean isTrue( Object result ) throws DataException
 	{
-		assert N>=0;
-		int activeCount = N < this.firstPassRowNumberCounter? N:this.firstPassRowNumberCounter;
-		for( int i = 0; i < activeCount; i++ )
+		try
 		{
-			if( valueList.get( i ) == null )
-			{
-				valueList.set( i, value);
-				rowIdList.set( i, Integer.valueOf( firstPassRowNumberCounter ) );
-				break;
-			}
-			else 
-			{
-				Object result = this.doCompare( value, valueList.get( i ) );
-				
-				try
-				{
-					// filter in
-					if ( DataTypeUtil.toBoolean( result ).booleanValue( ) == true )
-					{
-						for( int j = activeCount - 1; j > i; j--)
-						{
-							valueList.set( j, valueList.get( j - 1 ) );
-							rowIdList.set( j, rowIdList.get( j - 1 ) );
-						}
-						valueList.set( i, value );
-						rowIdList.set( i,
-								Integer.valueOf( firstPassRowNumberCounter ) );
-						break;
-					}
-				}
-				catch ( BirtException e )
-				{
-					throw DataException.wrap(e);
-				}
-			}
+			return DataTypeUtil.toBoolean( result ).booleanValue( );
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
 		}
 	}
 	
 	/**
 	 * Do the second pass
-	 * @param N
 	 * @return
+	 * @throws DataException
 	 */
-	private boolean doSecondPass( )
+	private boolean doSecondPass( ) throws DataException
 	{
 		secondPassRowNumberCounter++;
 		if( secondPassRowNumberCounter > this.filterPassController.getSecondPassRowCount() )
@@ -235,22 +239,17 @@ public abstract class NEvaluator
 		else
 			this.secondPassRowNumberCounter = this.filterPassController.getSecondPassRowCount();
 		
+		if ( qualifiedRows == null )
+		{
+			qualifiedRows = getQualifiedRows( );
+		}
 		if ( qualifiedRowCounter < N )
 		{
-			for ( int i = 0; i < N; i++ )
+			if ( qualifiedRows.get( secondPassRowNumberCounter - 1 ) )
 			{
-				int rowId = 0;
-				if( rowIdList.get( i )!=null)
-				{
-					rowId = ((Integer)rowIdList.get( i )).intValue( );
-				}
-				if ( rowId == secondPassRowNumberCounter )
-				{
-					qualifiedRowCounter++;
-					reset( );
-					return true;
-
-				}
+				qualifiedRowCounter++;
+				reset( );
+				return true;
 			}
 			return false;
 		}
@@ -261,6 +260,32 @@ public abstract class NEvaluator
 		}
 	}
 
+	/**
+	 * Return the row indexes of the top/bottom N values of the first pass.
+	 * @return
+	 * @throws DataException
+	 */
+	private BitSet getQualifiedRows( ) throws DataException
+	{
+		BitSet result = new BitSet( );
+		if ( valueList != null )
+		{
+			result = heap.select( valueList, N );
+			valueList.close( );
+			valueList = null;
+		}
+		else if ( heap != null )
+		{
+			int[] ids = heap.getSortedIds( );
+			for ( int i = 0; i < ids.length; i++ )
+			{
+				result.set( ids[i] );
+			}
+		}
+		heap = null;
+		return result;
+	}
+
 	/**
 	 * Reset all the member data to their default value.
 	 */
@@ -281,8 +306,13 @@ public abstract class NEvaluator
 		firstPassRowNumberCounter = 0;
 		secondPassRowNumberCounter = 0;
 		qualifiedRowCounter = 0;
-		rowIdList = null;
-		valueList = null;
+		heap = null;
+		if ( valueList != null )
+		{
+			valueList.close( );
+			valueList = null;
+		}
+		qualifiedRows = null;
 		N = -1;
 	}
 	protected abstract Object doCompare( Object value1, Object value2 ) throws DataException;
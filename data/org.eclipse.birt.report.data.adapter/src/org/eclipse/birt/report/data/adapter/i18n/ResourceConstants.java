@@ -51,6 +51,7 @@ public class ResourceConstants
 	public final static String CUBE_DERIVED_MEASURE_INVALID_REF = "cube.derivedMeasure.invalid.reference";
 	public final static String CUBE_DERIVED_MEASURE_RESOLVE_ERROR = "cube.derivedMeasure.resolve.error";
 	public final static String CUBE_DERIVED_MEASURE_RECURSIVE_REF = "cube.derivedMeasure.recursive.ref";
+	public final static String CUBE_APPEND_FOLDER_RENAME_ERROR = "cube.error.renameAppendFolder";
 	
 	public final static String TIMEFUNCITON_CURRENT_QUARTER= "timeFunction.CURRENT_QUARTER.name"; 
 	public final static String TIMEFUNCITON_CURRENT_QUARTER_DES = "timeFunction.CURRENT_QUARTER.description";
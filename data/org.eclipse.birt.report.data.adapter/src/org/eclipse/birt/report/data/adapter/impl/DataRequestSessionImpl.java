@@ -33,6 +33,10 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.core.archive.ArchiveUtil;
+import org.eclipse.birt.core.archive.FolderArchiveReader;
+import org.eclipse.birt.core.archive.FolderArchiveWriter;
+import org.eclipse.birt.core.archive.IDocArchiveReader;
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.data.ExpressionUtil;
@@ -156,7 +160,7 @@ public class DataRequestSessionImpl extends DataRequestSession
 	private IDataQueryDefinition[] registeredQueries;
 	private IDataSetInterceptorContext interceptorContext;
 
-	private CubeMaterializer getCubeMaterializer( int cacheSize ) throws BirtException
+	private CubeMaterializer getCubeMaterializer( int cacheSize, boolean mapped ) throws BirtException
 	{
 		//Make sure only one instance, do not created until really needed
 		if ( cubeMaterializer == null )
@@ -164,7 +168,7 @@ public class DataRequestSessionImpl extends DataRequestSession
 			try
 			{
 				cubeMaterializer = new CubeMaterializer( this.dataEngine,
-						String.valueOf( dataEngine.hashCode( )), cacheSize );
+						String.valueOf( dataEngine.hashCode( )), cacheSize, mapped );
 			}
 			catch ( IOException e )
 			{
@@ -771,6 +775,9 @@ public class DataRequestSessionImpl extends DataRequestSession
 
 			String memoryUsage =  (String)( appContext.get( DataEngine.MEMORY_USAGE ) );
 			MemoryUsageSetting.setMemoryUsage( memoryUsage );
+			Object mappedValue = appContext.get( DataEngine.MAPPED_CUBE_DOCUMENT );
+			boolean mapped = mappedValue != null
+					&& "true".equalsIgnoreCase( mappedValue.toString( ).trim( ) );
 
 			if ( mode == DataEngineContext.DIRECT_PRESENTATION )
 			{
@@ -783,14 +790,14 @@ public class DataRequestSessionImpl extends DataRequestSession
 						size = value.intValue( );
 					}
 				}
-				CubeMaterializer cm = getCubeMaterializer( size );
+				CubeMaterializer cm = getCubeMaterializer( size, mapped );
 				createCube( (TabularCubeHandle) cubeHandle,
 						cm,
 						appContext );
 			}
 			else if ( mode == DataEngineContext.MODE_GENERATION )
 			{
-				CubeMaterializer cm = getCubeMaterializer( 0 );
+				CubeMaterializer cm = getCubeMaterializer( 0, mapped );
 				createCube(  (TabularCubeHandle)cubeHandle, cm, appContext );
 				cm.saveCubeToReportDocument( cubeHandle.getQualifiedName( ),
 						this.sessionContext.getDocumentWriter( ),
@@ -970,6 +977,26 @@ public class DataRequestSessionImpl extends DataRequestSession
 					throw new AdapterException( ResourceConstants.MISSING_JOIN_CONDITION, dim.getName() );
 			}
 		}
+		// the rows are appended to the saved cube, see
+		// DataEngine.CUBE_APPEND_FOLDER
+		File appendFolder = null;
+		IDocArchiveReader savedCube = null;
+		FilterDefinition appendFilter = null;
+		if ( !cubeHandle.autoPrimaryKey( ) || fromJoin )
+		{
+			appendFolder = getCubeAppendFolder( cubeHandle, appContext );
+		}
+		if ( appendFolder != null )
+		{
+			restoreCubeAppendFolder( appendFolder );
+		}
+		if ( appendFolder != null && appendFolder.exists( ) )
+		{
+			savedCube = openSavedCube( appendFolder );
+			appendFilter = new FilterDefinition( new ScriptExpression( appContext.get( DataEngine.CUBE_APPEND_FILTER )
+					.toString( ) ) );
+			cubeQueryMap.get( cubeHandle ).addFilter( appendFilter );
+		}
 		DataSetIterator dataForCube = null;
 		if ( cubeHandle.autoPrimaryKey( ) )
 		{
@@ -1088,16 +1115,61 @@ public class DataRequestSessionImpl extends DataRequestSession
 						cubeMetaMap.get( cubeHandle ),
 						appContext );
 			}
-			cubeMaterializer.createCube( cubeHandle.getQualifiedName( ),
-					factTableKey,
-					dimensionKey,
+			boolean appended = false;
+			if ( savedCube != null )
+			{
+				appended = cubeMaterializer.appendCube( cubeHandle.getQualifiedName( ),
+						savedCube,
+						factTableKey,
+						dimensionKey,
+						dimensions,
+						dataForCube,
+						this.toStringArray( measureNames ),
+						calculatedMeasure,
+						this.toStringArray( measureAggrFunctions ),
+						computeMemoryBufferSize( appContext ),
+						dataEngine.getSession( ).getStopSign( ) );
+				if ( !appended )
+				{
+					// the saved cube has other dimensions or measures, the
+					// cube is created from all the rows
+					QueryDefinition query = cubeQueryMap.get( cubeHandle );
+					query.getFilters( ).remove( appendFilter );
+					dataForCube.close( );
+					dataForCube = new DataSetIterator( this,
+							query,
+							cubeMetaMap.get( cubeHandle ),
+							appContext );
+				}
+			}
+			if ( !appended )
+			{
+				cubeMaterializer.createCube( cubeHandle.getQualifiedName( ),
+						factTableKey,
+						dimensionKey,
+						dimensions,
+						dataForCube,
+						this.toStringArray( measureNames ),
+						calculatedMeasure,
+						this.toStringArray( measureAggrFunctions ),
+						computeMemoryBufferSize( appContext ),
+						dataEngine.getSession( ).getStopSign( ) );
+			}
+			createRollups( cubeMaterializer,
+					cubeHandle.getQualifiedName( ),
 					dimensions,
-					dataForCube,
-					this.toStringArray( measureNames ),
-					calculatedMeasure,
-					this.toStringArray( measureAggrFunctions ),
-					computeMemoryBufferSize( appContext ),
-					dataEngine.getSession( ).getStopSign( ) );
+					appContext );
+			if ( appendFolder != null )
+			{
+				if ( savedCube != null )
+				{
+					savedCube.close( );
+					savedCube = null;
+				}
+				saveCubeToAppendFolder( cubeMaterializer,
+						cubeHandle.getQualifiedName( ),
+						appendFolder );
+			}
 		}
 		catch ( Exception e )
 		{
@@ -1108,6 +1180,9 @@ public class DataRequestSessionImpl extends DataRequestSession
 		{
 			if( dataForCube!= null )
 				dataForCube.close( );
+			if ( appendFilter != null )
+				cubeQueryMap.get( cubeHandle ).getFilters( ).remove( appendFilter );
+			closeSavedCube( savedCube );
 		}
 
 		sl.end( );
@@ -1115,6 +1190,213 @@ public class DataRequestSessionImpl extends DataRequestSession
 		restoreAppContext( appContext, backupAppContext );
 	}
 
+	/**
+	 * Get the folder where the cube is saved to be appended in the next run.
+	 *
+	 * @param cubeHandle
+	 * @param appContext
+	 * @return null if the cube is not appended
+	 */
+	private File getCubeAppendFolder( TabularCubeHandle cubeHandle,
+			Map appContext )
+	{
+		Object folder = appContext.get( DataEngine.CUBE_APPEND_FOLDER );
+		Object filter = appContext.get( DataEngine.CUBE_APPEND_FILTER );
+		if ( folder == null || filter == null
+				|| filter.toString( ).trim( ).length( ) == 0 )
+			return null;
+		return new File( folder.toString( ), cubeHandle.getQualifiedName( ) );
+	}
+
+	/**
+	 *
+	 * @param folder
+	 * @return the archive of the saved cube
+	 * @throws DataException
+	 */
+	private IDocArchiveReader openSavedCube( File folder )
+			throws DataException
+	{
+		try
+		{
+			return new FolderArchiveReader( folder.getAbsolutePath( ) );
+		}
+		catch ( IOException e )
+		{
+			throw new DataException( e.getLocalizedMessage( ), e );
+		}
+	}
+
+	private void closeSavedCube( IDocArchiveReader savedCube )
+	{
+		if ( savedCube == null )
+			return;
+		try
+		{
+			savedCube.close( );
+		}
+		catch ( IOException e )
+		{
+			logger.log( Level.WARNING, e.getLocalizedMessage( ), e );
+		}
+	}
+
+	/**
+	 * Restore the saved cube which was moved aside by a run that stopped before
+	 * the new cube was moved into the folder.
+	 *
+	 * @param folder
+	 * @throws AdapterException
+	 */
+	private void restoreCubeAppendFolder( File folder ) throws AdapterException
+	{
+		File oldFolder = new File( folder.getParentFile( ), folder.getName( )
+				+ ".old" );
+		if ( !oldFolder.exists( ) )
+			return;
+		if ( folder.exists( ) )
+		{
+			ArchiveUtil.deleteAllFiles( oldFolder );
+		}
+		else if ( !oldFolder.renameTo( folder ) )
+		{
+			throw new AdapterException( ResourceConstants.CUBE_APPEND_FOLDER_RENAME_ERROR,
+					new Object[]{
+							oldFolder.getAbsolutePath( ),
+							folder.getAbsolutePath( )
+					} );
+		}
+	}
+
+	/**
+	 * Save the cube to the folder where it is appended in the next run. The
+	 * cube is saved to a new folder first. The saved cube is then moved aside,
+	 * the new folder is moved in and only then the saved cube is deleted, so
+	 * that a whole cube is kept whenever a step fails.
+	 *
+	 * @param cubeMaterializer
+	 * @param cubeName
+	 * @param folder
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private void saveCubeToAppendFolder( CubeMaterializer cubeMaterializer,
+			String cubeName, File folder ) throws IOException, BirtException
+	{
+		File newFolder = new File( folder.getParentFile( ), folder.getName( )
+				+ ".new" );
+		ArchiveUtil.deleteAllFiles( newFolder );
+		FolderArchiveWriter writer = new FolderArchiveWriter( newFolder.getAbsolutePath( ) );
+		try
+		{
+			cubeMaterializer.saveCubeToReportDocument( cubeName,
+					writer,
+					dataEngine.getSession( ).getStopSign( ) );
+		}
+		finally
+		{
+			writer.finish( );
+		}
+		File oldFolder = new File( folder.getParentFile( ), folder.getName( )
+				+ ".old" );
+		ArchiveUtil.deleteAllFiles( oldFolder );
+		if ( folder.exists( ) && !folder.renameTo( oldFolder ) )
+		{
+			throw new AdapterException( ResourceConstants.CUBE_APPEND_FOLDER_RENAME_ERROR,
+					new Object[]{
+							folder.getAbsolutePath( ),
+							oldFolder.getAbsolutePath( )
+					} );
+		}
+		if ( !newFolder.renameTo( folder ) )
+		{
+			// keep the saved cube
+			oldFolder.renameTo( folder );
+			throw new AdapterException( ResourceConstants.CUBE_APPEND_FOLDER_RENAME_ERROR,
+					new Object[]{
+							newFolder.getAbsolutePath( ),
+							folder.getAbsolutePath( )
+					} );
+		}
+		ArchiveUtil.deleteAllFiles( oldFolder );
+	}
+
+	/**
+	 * Create the rollups of the level combinations in the application context
+	 * whose levels are all in the cube.
+	 *
+	 * @param cubeMaterializer
+	 * @param cubeName
+	 * @param dimensions
+	 * @param appContext
+	 * @throws BirtException
+	 * @throws IOException
+	 */
+	private void createRollups( CubeMaterializer cubeMaterializer,
+			String cubeName, IDimension[] dimensions, Map appContext )
+			throws BirtException, IOException
+	{
+		Object rollupValue = appContext.get( DataEngine.CUBE_ROLLUP_LEVELS );
+		if ( rollupValue == null )
+			return;
+		String[] rollups = rollupValue.toString( ).split( ";" );
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			if ( rollups[i].trim( ).length( ) == 0 )
+				continue;
+			String[] levelNames = rollups[i].split( "," );
+			DimLevel[] levels = new DimLevel[levelNames.length];
+			for ( int j = 0; j < levelNames.length && levels != null; j++ )
+			{
+				String levelName = levelNames[j].trim( );
+				int index = levelName.indexOf( '/' );
+				if ( index > 0
+						&& existLevel( dimensions,
+								levelName.substring( 0, index ),
+								levelName.substring( index + 1 ) ) )
+				{
+					levels[j] = new DimLevel( levelName.substring( 0, index ),
+							levelName.substring( index + 1 ) );
+				}
+				else
+				{
+					levels = null;
+				}
+			}
+			if ( levels != null )
+			{
+				cubeMaterializer.createRollup( cubeName,
+						levels,
+						dataEngine.getSession( ).getStopSign( ) );
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param dimensions
+	 * @param dimensionName
+	 * @param levelName
+	 * @return
+	 */
+	private static boolean existLevel( IDimension[] dimensions,
+			String dimensionName, String levelName )
+	{
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			if ( dimensions[i].getName( ).equals( dimensionName ) )
+			{
+				ILevel[] levels = dimensions[i].getHierarchy( ).getLevels( );
+				for ( int j = 0; j < levels.length; j++ )
+				{
+					if ( levels[j].getName( ).equals( levelName ) )
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	public static long computeMemoryBufferSize( Map appContext )
 	{
 		//here a simple assumption, that 1M memory can accommodate 2000 rows
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.datatools.connectivity.oda.IResultSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the result set which is read in a background thread.
+ */
+public class PrefetchResultSetTest
+{
+
+	private Connection conn = null;
+
+	private java.sql.Connection jdbcConn = null;
+
+	private java.sql.Statement jdbcStmt = null;
+
+	private String sql = "select * from " + TestUtil.TABLE_NAME;
+
+	@Before
+	public void prefetchResultSetSetUp( ) throws Exception
+	{
+		TestUtil.createTestData( );
+		conn = TestUtil.openConnection( );
+		jdbcConn = TestUtil.openJDBCConnection( );
+		jdbcStmt = jdbcConn.createStatement( );
+	}
+
+	@After
+	public void prefetchResultSetTearDown( ) throws Exception
+	{
+		conn.close( );
+		jdbcStmt.close( );
+		jdbcConn.close( );
+		TestUtil.deleteTestData( );
+	}
+
+	private IResultSet executeQuery( Statement stmt ) throws Exception
+	{
+		Map appContext = new HashMap( );
+		appContext.put( Statement.PREFETCH_RESULT_SET, Boolean.TRUE );
+		stmt.setAppContext( appContext );
+		stmt.prepare( sql );
+		return stmt.executeQuery( );
+	}
+
+	@Test
+	public void testResultValues( ) throws Exception
+	{
+		Statement stmt = (Statement) conn.newQuery( "" );
+		IResultSet rs = executeQuery( stmt );
+		assertTrue( rs instanceof PrefetchResultSet );
+		java.sql.ResultSet jdbcRs = jdbcStmt.executeQuery( sql );
+		while ( rs.next( ) )
+		{
+			assertTrue( jdbcRs.next( ) );
+			assertEquals( rs.getRow( ), jdbcRs.getRow( ) );
+			assertEquals( rs.getBigDecimal( 1 ), jdbcRs.getBigDecimal( 1 ) );
+			assertEquals( rs.wasNull( ), jdbcRs.wasNull( ) );
+			assertEquals( rs.getDate( 2 ), jdbcRs.getDate( 2 ) );
+			assertEquals( rs.wasNull( ), jdbcRs.wasNull( ) );
+			assertEquals( rs.getDouble( 3 ),
+					jdbcRs.getDouble( 3 ),
+					Double.MIN_VALUE );
+			assertEquals( rs.wasNull( ), jdbcRs.wasNull( ) );
+			assertEquals( rs.getInt( 4 ), jdbcRs.getInt( 4 ) );
+			assertEquals( rs.wasNull( ), jdbcRs.wasNull( ) );
+			assertEquals( rs.getString( 5 ), jdbcRs.getString( 5 ) );
+			assertEquals( rs.getString( "col4" ), jdbcRs.getString( "col4" ) );
+			assertEquals( rs.getTime( 6 ), jdbcRs.getTime( 6 ) );
+			assertEquals( rs.getTimestamp( 7 ), jdbcRs.getTimestamp( 7 ) );
+			// the values read with another getter are converted
+			assertEquals( rs.getString( 4 ), jdbcRs.getString( 4 ) );
+			assertEquals( rs.getDouble( 4 ), jdbcRs.getDouble( 4 ), Double.MIN_VALUE );
+		}
+		assertFalse( jdbcRs.next( ) );
+		assertFalse( rs.next( ) );
+		assertEquals( rs.findColumn( "col3" ), jdbcRs.findColumn( "col3" ) );
+		rs.close( );
+		jdbcRs.close( );
+		stmt.close( );
+	}
+
+	@Test
+	public void testMaxRowsAndClose( ) throws Exception
+	{
+		Statement stmt = (Statement) conn.newQuery( "" );
+		IResultSet rs = executeQuery( stmt );
+		rs.setMaxRows( 3 );
+		int count = 0;
+		while ( rs.next( ) )
+			count++;
+		assertEquals( 3, count );
+		rs.close( );
+
+		// the result set is closed before all the rows are read
+		rs = executeQuery( stmt );
+		assertTrue( rs.next( ) );
+		rs.close( );
+		stmt.close( );
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the connection pool of the ODA JDBC driver.
+ */
+public class ConnectionPoolManagerTest
+{
+
+	private static final String DRIVER_CLASS = "org.apache.derby.jdbc.EmbeddedDriver";
+	private static final String URL = "jdbc:derby:memory:ConnectionPoolTest;create=true";
+
+	private ConnectionPoolManager manager;
+	private Map appContext;
+
+	@Before
+	public void connectionPoolSetUp( ) throws Exception
+	{
+		manager = new ConnectionPoolManager( );
+		appContext = new HashMap( );
+		appContext.put( ConnectionPoolManager.ENABLED, "true" );
+	}
+
+	@After
+	public void connectionPoolTearDown( ) throws Exception
+	{
+		manager.close( );
+	}
+
+	private Connection getConnection( String user ) throws Exception
+	{
+		Properties props = new Properties( );
+		props.setProperty( "user", user );
+		props.setProperty( "password", "pwd" );
+		return manager.getConnection( DRIVER_CLASS, URL, props, null, appContext );
+	}
+
+	@Test
+	public void testReuse( ) throws Exception
+	{
+		Connection conn = getConnection( "user1" );
+		String physical = conn.toString( );
+		conn.close( );
+		assertTrue( conn.isClosed( ) );
+		// closing a closed connection is a no-op
+		conn.close( );
+		try
+		{
+			conn.createStatement( );
+			fail( );
+		}
+		catch ( SQLException e )
+		{
+		}
+
+		Connection conn1 = getConnection( "user1" );
+		assertEquals( physical, conn1.toString( ) );
+		assertFalse( conn1.isClosed( ) );
+		// a connection in use is never shared
+		Connection conn2 = getConnection( "user1" );
+		assertFalse( physical.equals( conn2.toString( ) ) );
+		// the pool is keyed by the connection properties
+		Connection conn3 = getConnection( "user2" );
+		assertFalse( physical.equals( conn3.toString( ) ) );
+		conn1.close( );
+		conn2.close( );
+		conn3.close( );
+		assertTrue( manager.getStatistics( ).indexOf( "created=2" ) > 0 );
+	}
+
+	@Test
+	public void testReset( ) throws Exception
+	{
+		Connection conn = getConnection( "user1" );
+		Statement statement = conn.createStatement( );
+		statement.execute( "create table POOL_RESET (ID int)" );
+		statement.close( );
+		conn.setAutoCommit( false );
+		statement = conn.createStatement( );
+		statement.execute( "insert into POOL_RESET values (1)" );
+		statement.close( );
+		conn.close( );
+
+		// the insert is rolled back and the auto commit is restored
+		conn = getConnection( "user1" );
+		assertTrue( conn.getAutoCommit( ) );
+		statement = conn.createStatement( );
+		ResultSet rs = statement.executeQuery( "select count(*) from POOL_RESET" );
+		assertTrue( rs.next( ) );
+		assertEquals( 0, rs.getInt( 1 ) );
+		rs.close( );
+		statement.execute( "drop table POOL_RESET" );
+		statement.close( );
+		conn.close( );
+	}
+
+	@Test
+	public void testValidation( ) throws Exception
+	{
+		Connection conn = getConnection( "user1" );
+		String physical = conn.toString( );
+		Connection physicalConnection = conn.getMetaData( ).getConnection( );
+		conn.close( );
+		physicalConnection.close( );
+
+		// the closed physical connection is not handed out again
+		conn = getConnection( "user1" );
+		assertFalse( physical.equals( conn.toString( ) ) );
+		assertFalse( conn.isClosed( ) );
+		conn.close( );
+		assertTrue( manager.getStatistics( ).indexOf( "validationFailures=1" ) > 0 );
+	}
+
+	@Test
+	public void testCloseConnection( ) throws Exception
+	{
+		Connection conn = getConnection( "user1" );
+		String physical = conn.toString( );
+		manager.closeConnection( conn );
+		// the connection is closed and dropped, not returned to the pool
+		assertTrue( conn.isClosed( ) );
+		conn.close( );
+		assertTrue( manager.getStatistics( ).indexOf( "idle=0" ) > 0 );
+		conn = getConnection( "user1" );
+		assertFalse( physical.equals( conn.toString( ) ) );
+		conn.close( );
+	}
+
+	@Test
+	public void testCloseStatements( ) throws Exception
+	{
+		Connection conn = getConnection( "user1" );
+		Statement statement = conn.createStatement( );
+		assertSame( conn, statement.getConnection( ) );
+		ResultSet rs = statement.executeQuery( "values 1" );
+		assertSame( statement, rs.getStatement( ) );
+		PreparedStatement prepared = conn.prepareStatement( "values cast(? as int)" );
+		prepared.setInt( 1, 2 );
+		ResultSet preparedRs = prepared.executeQuery( );
+		Statement closed = conn.createStatement( );
+		closed.close( );
+		conn.close( );
+
+		// the statements and result sets left open are closed with the
+		// connection
+		assertTrue( statement.isClosed( ) );
+		assertTrue( rs.isClosed( ) );
+		assertTrue( prepared.isClosed( ) );
+		assertTrue( preparedRs.isClosed( ) );
+	}
+
+	@Test
+	public void testMaxLifetime( ) throws Exception
+	{
+		appContext.put( ConnectionPoolManager.MAX_LIFETIME, "1" );
+		Connection conn = getConnection( "user1" );
+		String physical = conn.toString( );
+		Thread.sleep( 10 );
+		conn.close( );
+		conn = getConnection( "user1" );
+		assertFalse( physical.equals( conn.toString( ) ) );
+		conn.close( );
+		assertTrue( manager.getStatistics( ).indexOf( "created=2" ) > 0 );
+	}
+
+	@Test
+	public void testDisabled( ) throws Exception
+	{
+		appContext.put( ConnectionPoolManager.ENABLED, "false" );
+		assertNull( getConnection( "user1" ) );
+		// pooling is off by default
+		appContext.remove( ConnectionPoolManager.ENABLED );
+		assertNull( getConnection( "user1" ) );
+	}
+}
@@ -594,23 +594,25 @@ public class CallStatement implements IAdvancedQuery
     	catch( Exception e )
     	{}
     	
-     	try
+    	// the pooled connection is dropped before it is closed, so that it
+    	// is never returned to the pool
+    	try
        	{
-       		if( this.conn != null )
-       		{
-       			this.conn.close( );
-       		}
+	       	IConnectionPoolManager manager = ConnectionPoolFactory.getInstance();
+	       	if( manager!= null )
+	       		manager.closeConnection( this.conn );
        	}
        	catch( Exception e )
        	{
        		
        	}
-     	
-    	try
+       	
+     	try
        	{
-	       	IConnectionPoolManager manager = ConnectionPoolFactory.getInstance();
-	       	if( manager!= null )
-	       		manager.closeConnection( this.conn );
+       		if( this.conn != null )
+       		{
+       			this.conn.close( );
+       		}
        	}
        	catch( Exception e )
        	{
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.birt.report.data.oda.jdbc;
 
+import org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolManager;
+
 class ConnectionPoolFactory
 {
 
@@ -53,4 +55,17 @@ class ConnectionPoolFactory
 
 		return mgr_instance;
 	}
+
+	/**
+	 * close the pooled connections
+	 */
+	static void close( )
+	{
+		synchronized ( ConnectionPoolFactory.class )
+		{
+			if ( mgr_instance instanceof ConnectionPoolManager )
+				( (ConnectionPoolManager) mgr_instance ).close( );
+			mgr_instance = null;
+		}
+	}
 }
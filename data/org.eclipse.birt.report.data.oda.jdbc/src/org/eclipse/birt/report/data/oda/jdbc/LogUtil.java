@@ -13,10 +13,10 @@ package org.eclipse.birt.report.data.oda.jdbc;
  *LogUtil to encrypt password/psw value in log file.
  * 
  */
-class LogUtil
+public class LogUtil
 {
 
-	static String encryptURL( String url )
+	public static String encryptURL( String url )
 	{
 		if ( url != null )
 		{
@@ -0,0 +1,908 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.i18n.ResourceConstants;
+import org.eclipse.datatools.connectivity.oda.IBlob;
+import org.eclipse.datatools.connectivity.oda.IClob;
+import org.eclipse.datatools.connectivity.oda.IResultSetMetaData;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The result set which reads the rows of the JDBC result set in a background
+ * thread, so that the database reads overlap with the processing of the rows.
+ * The values are read with the getter of the ODA type of each column into a
+ * bounded buffer; the value of a column read with another getter is
+ * converted. The result sets with BLOB, CLOB or binary columns are not
+ * prefetched, since their values can not be read before the cursor is on
+ * the row.
+ * <p>
+ * Unless the fetch size is set by the rowFetchSize property, the fetch size
+ * is adjusted to the measured row width and round trip latency: the slowest
+ * call to next() of a window of rows is taken as the round trip, and the
+ * fetch size is chosen so that the round trips take a small part of the time
+ * spent on the rows, limited by the memory of a fetch.
+ */
+public class PrefetchResultSet extends ResultSet
+{
+
+	// the kinds of the values read from the JDBC result set
+	private static final int STRING = 0;
+	private static final int INTEGER = 1;
+	private static final int DOUBLE = 2;
+	private static final int DECIMAL = 3;
+	private static final int DATE = 4;
+	private static final int TIME = 5;
+	private static final int TIMESTAMP = 6;
+	private static final int BOOLEAN = 7;
+
+	// the rows are passed to the reading thread in chunks
+	private static final int CHUNK_SIZE = 64;
+	private static final int QUEUE_CAPACITY = 16;
+	private static final Object[][] END = new Object[0][];
+
+	private static Logger logger = Logger.getLogger( PrefetchResultSet.class.getName( ) );
+
+	private java.sql.ResultSetMetaData metaData;
+	private int[] kinds;
+	private Map<String, Integer> columnIndexes;
+	private boolean adaptFetchSize;
+
+	private BlockingQueue<Object[][]> queue = new ArrayBlockingQueue<Object[][]>( QUEUE_CAPACITY );
+	private Thread thread;
+	private volatile boolean closed;
+	private volatile Throwable error;
+
+	private Object[][] chunk;
+	private int chunkIndex;
+	private Object[] rowValues;
+	private boolean finished;
+	private boolean lastNull;
+
+	/**
+	 * @param connection
+	 * @param jrs
+	 * @param metaData
+	 *            the metadata of the JDBC result set
+	 * @param kinds
+	 *            the kinds returned by getValueKinds
+	 * @param adaptFetchSize
+	 *            whether to adjust the fetch size
+	 * @throws OdaException
+	 */
+	private PrefetchResultSet( java.sql.Connection connection,
+			java.sql.ResultSet jrs, java.sql.ResultSetMetaData metaData,
+			int[] kinds, boolean adaptFetchSize ) throws OdaException
+	{
+		super( connection, jrs );
+		this.metaData = metaData;
+		this.kinds = kinds;
+		this.adaptFetchSize = adaptFetchSize;
+		this.columnIndexes = new HashMap<String, Integer>( );
+		try
+		{
+			// the first column of a name is found, as JDBC does
+			for ( int i = kinds.length; i >= 1; i-- )
+			{
+				columnIndexes.put( metaData.getColumnName( i ).toUpperCase( ),
+						Integer.valueOf( i ) );
+			}
+			for ( int i = kinds.length; i >= 1; i-- )
+			{
+				columnIndexes.put( metaData.getColumnLabel( i ).toUpperCase( ),
+						Integer.valueOf( i ) );
+			}
+		}
+		catch ( SQLException e )
+		{
+			throw new JDBCException( ResourceConstants.RESULTSET_METADATA_CANNOT_GET,
+					e );
+		}
+	}
+
+	/**
+	 * Create the prefetching result set of a JDBC result set.
+	 *
+	 * @param connection
+	 * @param jrs
+	 * @param adaptFetchSize
+	 * @return a plain result set if the columns can not be prefetched
+	 * @throws OdaException
+	 */
+	static ResultSet newInstance( java.sql.Connection connection,
+			java.sql.ResultSet jrs, boolean adaptFetchSize ) throws OdaException
+	{
+		if ( jrs != null )
+		{
+			try
+			{
+				java.sql.ResultSetMetaData metaData = jrs.getMetaData( );
+				int[] kinds = getValueKinds( metaData );
+				if ( kinds != null )
+					return new PrefetchResultSet( connection,
+							jrs,
+							metaData,
+							kinds,
+							adaptFetchSize );
+			}
+			catch ( SQLException e )
+			{
+				logger.log( Level.FINE, "The result set is not prefetched", e ); //$NON-NLS-1$
+			}
+		}
+		return new ResultSet( connection, jrs );
+	}
+
+	/**
+	 * @param metaData
+	 * @return the value kind of each column, null if a column can not be
+	 *         prefetched
+	 * @throws SQLException
+	 */
+	private static int[] getValueKinds( java.sql.ResultSetMetaData metaData )
+			throws SQLException
+	{
+		if ( metaData == null )
+			return null;
+		int[] kinds = new int[metaData.getColumnCount( )];
+		for ( int i = 0; i < kinds.length; i++ )
+		{
+			// the ODA types of the JDBC types are defined in plugin.xml
+			switch ( metaData.getColumnType( i + 1 ) )
+			{
+				case Types.CHAR :
+				case Types.VARCHAR :
+				case Types.LONGVARCHAR :
+				case Types.NCHAR :
+				case Types.NVARCHAR :
+				case Types.LONGNVARCHAR :
+					kinds[i] = STRING;
+					break;
+				case Types.BIT :
+				case Types.TINYINT :
+				case Types.SMALLINT :
+				case Types.INTEGER :
+					kinds[i] = INTEGER;
+					break;
+				case Types.FLOAT :
+				case Types.REAL :
+				case Types.DOUBLE :
+					kinds[i] = DOUBLE;
+					break;
+				case Types.BIGINT :
+				case Types.NUMERIC :
+				case Types.DECIMAL :
+					kinds[i] = DECIMAL;
+					break;
+				case Types.DATE :
+					kinds[i] = DATE;
+					break;
+				case Types.TIME :
+					kinds[i] = TIME;
+					break;
+				case Types.TIMESTAMP :
+				case -101 : // TIMESTAMPTZ
+				case -102 : // TIMESTAMPLTZ
+					kinds[i] = TIMESTAMP;
+					break;
+				case Types.BOOLEAN :
+					kinds[i] = BOOLEAN;
+					break;
+				default :
+					return null;
+			}
+		}
+		return kinds;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getMetaData()
+	 */
+	public IResultSetMetaData getMetaData( ) throws OdaException
+	{
+		// the JDBC result set is used by the reading thread
+		return new ResultSetMetaData( metaData );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#next()
+	 */
+	public boolean next( ) throws OdaException
+	{
+		if ( finished || currentRow >= maxRows )
+		{
+			rowValues = null;
+			return false;
+		}
+		if ( thread == null )
+			start( );
+		if ( chunk == null
+				|| chunkIndex >= chunk.length || chunk[chunkIndex] == null )
+		{
+			chunk = take( );
+			chunkIndex = 0;
+			if ( chunk == END )
+			{
+				finished = true;
+				rowValues = null;
+				throwError( );
+				return false;
+			}
+		}
+		rowValues = chunk[chunkIndex];
+		chunk[chunkIndex++] = null;
+		currentRow++;
+		return true;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#close()
+	 */
+	public void close( ) throws OdaException
+	{
+		closed = true;
+		if ( thread != null )
+		{
+			// the reading thread is not interrupted, since some drivers close
+			// the connection when they are interrupted
+			while ( thread.isAlive( ) )
+			{
+				queue.clear( );
+				try
+				{
+					thread.join( 100 );
+				}
+				catch ( InterruptedException e )
+				{
+					Thread.currentThread( ).interrupt( );
+					break;
+				}
+			}
+			queue.clear( );
+		}
+		chunk = null;
+		rowValues = null;
+		super.close( );
+	}
+
+	/**
+	 * Start the reading thread.
+	 */
+	private void start( )
+	{
+		thread = new Thread( new Reader( maxRows ), "BIRT JDBC prefetch" ); //$NON-NLS-1$
+		thread.setDaemon( true );
+		thread.start( );
+	}
+
+	/**
+	 * @return the next chunk of rows
+	 * @throws OdaException
+	 */
+	private Object[][] take( ) throws OdaException
+	{
+		try
+		{
+			return queue.take( );
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new OdaException( e );
+		}
+	}
+
+	/**
+	 * Throw the error of the reading thread, if any.
+	 *
+	 * @throws OdaException
+	 */
+	private void throwError( ) throws OdaException
+	{
+		Throwable e = error;
+		if ( e == null )
+			return;
+		if ( e instanceof OdaException )
+			throw (OdaException) e;
+		if ( e instanceof SQLException )
+			throw new JDBCException( ResourceConstants.RESULTSET_CURSOR_DOWN_ERROR,
+					(SQLException) e );
+		if ( e instanceof RuntimeException )
+			throw (RuntimeException) e;
+		if ( e instanceof Error )
+			throw (Error) e;
+		throw new OdaException( e );
+	}
+
+	/**
+	 * @param index
+	 * @return the prefetched value of the column
+	 */
+	private Object getValue( int index )
+	{
+		Object value = null;
+		if ( rowValues == null )
+		{
+			logger.log( Level.WARNING, "The cursor is not on a row" ); //$NON-NLS-1$
+		}
+		else if ( index < 1 || index > rowValues.length )
+		{
+			logger.log( Level.WARNING, "Invalid column index: " + index ); //$NON-NLS-1$
+		}
+		else
+		{
+			value = rowValues[index - 1];
+		}
+		lastNull = value == null;
+		return value;
+	}
+
+	/**
+	 * @param columnName
+	 * @return the prefetched value of the column
+	 */
+	private Object getValue( String columnName )
+	{
+		Integer index = columnName == null ? null
+				: columnIndexes.get( columnName.toUpperCase( ) );
+		if ( index == null )
+		{
+			logger.log( Level.WARNING, "Invalid column name: " + columnName ); //$NON-NLS-1$
+			lastNull = true;
+			return null;
+		}
+		return getValue( index.intValue( ) );
+	}
+
+	private static String toString( Object value )
+	{
+		if ( value == null || value instanceof String )
+			return (String) value;
+		if ( value instanceof BigDecimal )
+			return ( (BigDecimal) value ).toPlainString( );
+		return value.toString( );
+	}
+
+	private static BigDecimal toBigDecimal( Object value )
+	{
+		if ( value == null || value instanceof BigDecimal )
+			return (BigDecimal) value;
+		try
+		{
+			if ( value instanceof Boolean )
+				return ( (Boolean) value ).booleanValue( ) ? BigDecimal.ONE
+						: BigDecimal.ZERO;
+			return new BigDecimal( value.toString( ).trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, e.getLocalizedMessage( ) );
+			return null;
+		}
+	}
+
+	private static double toDouble( Object value )
+	{
+		if ( value instanceof Number )
+			return ( (Number) value ).doubleValue( );
+		BigDecimal decimal = toBigDecimal( value );
+		return decimal == null ? 0 : decimal.doubleValue( );
+	}
+
+	private static int toInt( Object value )
+	{
+		if ( value instanceof Number )
+			return ( (Number) value ).intValue( );
+		BigDecimal decimal = toBigDecimal( value );
+		return decimal == null ? 0 : decimal.intValue( );
+	}
+
+	private static boolean toBoolean( Object value )
+	{
+		if ( value == null || value instanceof Boolean )
+			return value != null && ( (Boolean) value ).booleanValue( );
+		if ( value instanceof Number )
+			return ( (Number) value ).doubleValue( ) != 0;
+		String text = value.toString( ).trim( );
+		return text.equalsIgnoreCase( "true" ) //$NON-NLS-1$
+				|| text.equals( "1" ) || text.equalsIgnoreCase( "t" ); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static Date toDate( Object value )
+	{
+		if ( value == null || value instanceof Date )
+			return (Date) value;
+		try
+		{
+			if ( value instanceof java.util.Date )
+				return new Date( ( (java.util.Date) value ).getTime( ) );
+			return Date.valueOf( value.toString( ).trim( ) );
+		}
+		catch ( IllegalArgumentException e )
+		{
+			logger.log( Level.WARNING, e.getLocalizedMessage( ) );
+			return null;
+		}
+	}
+
+	private static Time toTime( Object value )
+	{
+		if ( value == null || value instanceof Time )
+			return (Time) value;
+		try
+		{
+			if ( value instanceof java.util.Date )
+				return new Time( ( (java.util.Date) value ).getTime( ) );
+			return Time.valueOf( value.toString( ).trim( ) );
+		}
+		catch ( IllegalArgumentException e )
+		{
+			logger.log( Level.WARNING, e.getLocalizedMessage( ) );
+			return null;
+		}
+	}
+
+	private static Timestamp toTimestamp( Object value )
+	{
+		if ( value == null || value instanceof Timestamp )
+			return (Timestamp) value;
+		try
+		{
+			if ( value instanceof java.util.Date )
+				return new Timestamp( ( (java.util.Date) value ).getTime( ) );
+			return Timestamp.valueOf( value.toString( ).trim( ) );
+		}
+		catch ( IllegalArgumentException e )
+		{
+			logger.log( Level.WARNING, e.getLocalizedMessage( ) );
+			return null;
+		}
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getString(int)
+	 */
+	public String getString( int index ) throws OdaException
+	{
+		return toString( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getString(java.lang.String)
+	 */
+	public String getString( String columnName ) throws OdaException
+	{
+		return toString( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getInt(int)
+	 */
+	public int getInt( int index ) throws OdaException
+	{
+		return toInt( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getInt(java.lang.String)
+	 */
+	public int getInt( String columnName ) throws OdaException
+	{
+		return toInt( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getDouble(int)
+	 */
+	public double getDouble( int index ) throws OdaException
+	{
+		return toDouble( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getDouble(java.lang.String)
+	 */
+	public double getDouble( String columnName ) throws OdaException
+	{
+		return toDouble( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getBigDecimal(int)
+	 */
+	public BigDecimal getBigDecimal( int index ) throws OdaException
+	{
+		return toBigDecimal( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getBigDecimal(java.lang.String)
+	 */
+	public BigDecimal getBigDecimal( String columnName ) throws OdaException
+	{
+		return toBigDecimal( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getDate(int)
+	 */
+	public Date getDate( int index ) throws OdaException
+	{
+		return toDate( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getDate(java.lang.String)
+	 */
+	public Date getDate( String columnName ) throws OdaException
+	{
+		return toDate( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getTime(int)
+	 */
+	public Time getTime( int index ) throws OdaException
+	{
+		return toTime( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getTime(java.lang.String)
+	 */
+	public Time getTime( String columnName ) throws OdaException
+	{
+		return toTime( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getTimestamp(int)
+	 */
+	public Timestamp getTimestamp( int index ) throws OdaException
+	{
+		return toTimestamp( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getTimestamp(java.lang.String)
+	 */
+	public Timestamp getTimestamp( String columnName ) throws OdaException
+	{
+		return toTimestamp( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getBoolean(int)
+	 */
+	public boolean getBoolean( int index ) throws OdaException
+	{
+		return toBoolean( getValue( index ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getBoolean(java.lang.String)
+	 */
+	public boolean getBoolean( String columnName ) throws OdaException
+	{
+		return toBoolean( getValue( columnName ) );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getBlob(int)
+	 */
+	public IBlob getBlob( int index ) throws OdaException
+	{
+		// the result sets with BLOB columns are not prefetched
+		getValue( index );
+		lastNull = true;
+		return null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getBlob(java.lang.String)
+	 */
+	public IBlob getBlob( String columnName ) throws OdaException
+	{
+		getValue( columnName );
+		lastNull = true;
+		return null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getClob(int)
+	 */
+	public IClob getClob( int index ) throws OdaException
+	{
+		// the result sets with CLOB columns are not prefetched
+		getValue( index );
+		lastNull = true;
+		return null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#getClob(java.lang.String)
+	 */
+	public IClob getClob( String columnName ) throws OdaException
+	{
+		getValue( columnName );
+		lastNull = true;
+		return null;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#wasNull()
+	 */
+	public boolean wasNull( ) throws OdaException
+	{
+		return lastNull;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.ResultSet#findColumn(java.lang.String)
+	 */
+	public int findColumn( String columnName ) throws OdaException
+	{
+		Integer index = columnName == null ? null
+				: columnIndexes.get( columnName.toUpperCase( ) );
+		if ( index == null )
+			throw new JDBCException( ResourceConstants.RESULTSET_CANNOT_FIND_COLUMN,
+					new SQLException( "Invalid column name: " + columnName ) ); //$NON-NLS-1$
+		return index.intValue( );
+	}
+
+	/**
+	 * The task of the reading thread. It is the only user of the JDBC result
+	 * set until the result set is closed.
+	 */
+	private class Reader implements Runnable
+	{
+
+		private int limit;
+		private FetchSizeTuner tuner;
+
+		/**
+		 * @param limit
+		 *            the max number of rows to read
+		 */
+		Reader( int limit )
+		{
+			this.limit = limit;
+		}
+
+		/*
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run( )
+		{
+			try
+			{
+				if ( adaptFetchSize )
+					tuner = new FetchSizeTuner( rs );
+				Object[][] rows = new Object[CHUNK_SIZE][];
+				int size = 0;
+				int count = 0;
+				long time = System.nanoTime( );
+				while ( !closed && count < limit )
+				{
+					boolean hasNext = rs.next( );
+					long nextTime = System.nanoTime( );
+					if ( !hasNext )
+						break;
+					Object[] row = new Object[kinds.length];
+					int width = readRow( row );
+					count++;
+					rows[size++] = row;
+					if ( size == CHUNK_SIZE )
+					{
+						put( rows );
+						rows = new Object[CHUNK_SIZE][];
+						size = 0;
+					}
+					long endTime = System.nanoTime( );
+					if ( tuner != null )
+						tuner.record( width, nextTime - time, endTime
+								- nextTime );
+					time = endTime;
+				}
+				if ( size > 0 )
+					put( rows );
+			}
+			catch ( Throwable e )
+			{
+				error = e;
+			}
+			finally
+			{
+				put( END );
+			}
+		}
+
+		/**
+		 * Read the values of the current row with the getters of the super
+		 * class, which handle the quirks of the drivers.
+		 *
+		 * @param row
+		 * @return the estimated size of the row in bytes
+		 * @throws OdaException
+		 */
+		private int readRow( Object[] row ) throws OdaException
+		{
+			int width = 16;
+			for ( int i = 0; i < row.length; i++ )
+			{
+				int index = i + 1;
+				Object value;
+				switch ( kinds[i] )
+				{
+					case INTEGER :
+						int intValue = PrefetchResultSet.super.getInt( index );
+						value = PrefetchResultSet.super.wasNull( ) ? null
+								: Integer.valueOf( intValue );
+						break;
+					case DOUBLE :
+						double doubleValue = PrefetchResultSet.super.getDouble( index );
+						value = PrefetchResultSet.super.wasNull( ) ? null
+								: Double.valueOf( doubleValue );
+						break;
+					case DECIMAL :
+						value = PrefetchResultSet.super.getBigDecimal( index );
+						break;
+					case DATE :
+						value = PrefetchResultSet.super.getDate( index );
+						break;
+					case TIME :
+						value = PrefetchResultSet.super.getTime( index );
+						break;
+					case TIMESTAMP :
+						value = PrefetchResultSet.super.getTimestamp( index );
+						break;
+					case BOOLEAN :
+						boolean booleanValue = PrefetchResultSet.super.getBoolean( index );
+						value = PrefetchResultSet.super.wasNull( ) ? null
+								: Boolean.valueOf( booleanValue );
+						break;
+					default :
+						value = PrefetchResultSet.super.getString( index );
+						break;
+				}
+				row[i] = value;
+				if ( value instanceof String )
+					width += 40 + 2 * ( (String) value ).length( );
+				else
+					width += value == null ? 4 : 24;
+			}
+			return width;
+		}
+
+		/**
+		 * Put a chunk of rows to the queue, waiting until there is room for
+		 * it or the result set is closed.
+		 *
+		 * @param rows
+		 */
+		private void put( Object[][] rows )
+		{
+			try
+			{
+				while ( !closed )
+				{
+					if ( queue.offer( rows, 100, TimeUnit.MILLISECONDS ) )
+						return;
+				}
+			}
+			catch ( InterruptedException e )
+			{
+				closed = true;
+			}
+		}
+	}
+
+	/**
+	 * Adjust the fetch size of the JDBC result set to the measured row width
+	 * and round trip latency.
+	 */
+	private static class FetchSizeTuner
+	{
+
+		private static final int MIN_FETCH_SIZE = 100;
+		// Statement does not honor the fetch size > 10000
+		private static final int MAX_FETCH_SIZE = 10000;
+		// the max memory of the rows of a fetch
+		private static final long MAX_FETCH_BYTES = 4 * 1024 * 1024;
+		// the round trips take about 1/10 of the time at most
+		private static final int LATENCY_RATIO = 10;
+		private static final int MIN_SAMPLE_ROWS = 500;
+
+		private java.sql.ResultSet rs;
+		private int fetchSize;
+		private boolean enabled = true;
+
+		private int rowCount;
+		private long widthSum;
+		private long timeSum;
+		private long maxNextTime;
+
+		FetchSizeTuner( java.sql.ResultSet rs )
+		{
+			this.rs = rs;
+			try
+			{
+				fetchSize = rs.getFetchSize( );
+			}
+			catch ( SQLException e )
+			{
+				enabled = false;
+			}
+		}
+
+		/**
+		 * @param width
+		 *            the size of the row in bytes
+		 * @param nextTime
+		 *            the nanoseconds spent in next()
+		 * @param workTime
+		 *            the nanoseconds spent on the row besides next()
+		 */
+		void record( int width, long nextTime, long workTime )
+		{
+			if ( !enabled )
+				return;
+			rowCount++;
+			widthSum += width;
+			timeSum += nextTime + workTime;
+			if ( nextTime > maxNextTime )
+				maxNextTime = nextTime;
+			// a window includes at least one round trip
+			if ( rowCount <= Math.max( MIN_SAMPLE_ROWS, fetchSize ) )
+				return;
+
+			long rowWidth = Math.max( 1, widthSum / rowCount );
+			long rowTime = Math.max( 1, ( timeSum - maxNextTime )
+					/ ( rowCount - 1 ) );
+			long size = maxNextTime * LATENCY_RATIO / rowTime;
+			size = Math.min( size, MAX_FETCH_BYTES / rowWidth );
+			size = Math.max( MIN_FETCH_SIZE, Math.min( MAX_FETCH_SIZE, size ) );
+			if ( Math.abs( size - fetchSize ) > fetchSize / 4 )
+			{
+				try
+				{
+					rs.setFetchSize( (int) size );
+					logger.log( Level.FINE, "Fetch size is changed from " //$NON-NLS-1$
+							+ fetchSize + " to " + size ); //$NON-NLS-1$
+					fetchSize = (int) size;
+				}
+				catch ( SQLException e )
+				{
+					enabled = false;
+				}
+			}
+			rowCount = 0;
+			widthSum = 0;
+			timeSum = 0;
+			maxNextTime = 0;
+		}
+	}
+}
@@ -17,6 +17,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,9 +57,18 @@ public class Statement implements IQuery
 	
 	private static Logger logger = Logger.getLogger( Statement.class.getName( ) );	
 
+	/**
+	 * The application context key to read the rows of the result set in a
+	 * background thread, with value Boolean.TRUE or "true".
+	 */
+	public static final String PREFETCH_RESULT_SET = "OdaJDBCDriverPrefetchResultSet";
+
 	private IResultSetMetaData cachedResultMetaData;
 	private IResultSet cachedResultSet;
 	private QuerySpecification querySpec;
+	private Map appContext;
+	/** whether the fetch size is set by the rowFetchSize property */
+	private boolean fetchSizeSet = false;
 	
 	/**
 	 * assertNull(Object o)
@@ -142,7 +152,9 @@ public class Statement implements IQuery
 	 */
 	public void setAppContext( Object context ) throws OdaException
 	{
-	    // do nothing; no support for pass-through application context
+		// only the prefetch option is read from the application context
+		if ( context instanceof Map )
+			this.appContext = (Map) context;
 	}
 
 	/*
@@ -189,6 +201,7 @@ public class Statement implements IQuery
 					if( rows > 10000 )
 						rows = 10000;
 					this.preStat.setFetchSize((int) rows);
+					fetchSizeSet = true;
 
 				} 
 				else 
@@ -475,7 +488,7 @@ public class Statement implements IQuery
 				maxRowsUpToDate = true;
 			}
 			/* redirect the call to JDBC preparedStatement.executeQuery() */
-			return new ResultSet( this.conn, this.preStat.executeQuery( ) );
+			return createResultSet( this.preStat.executeQuery( ) );
 		}
 		catch ( SQLException e )
 		{
@@ -483,6 +496,24 @@ public class Statement implements IQuery
 		}
 	}
 
+	/**
+	 * Wrap the JDBC result set, with prefetching if it is enabled by the
+	 * application context.
+	 * 
+	 * @param jrs
+	 * @return
+	 * @throws OdaException
+	 */
+	private IResultSet createResultSet( java.sql.ResultSet jrs )
+			throws OdaException
+	{
+		Object option = this.appContext == null ? null
+				: this.appContext.get( PREFETCH_RESULT_SET );
+		if ( Boolean.TRUE.equals( option ) || "true".equals( option ) )
+			return PrefetchResultSet.newInstance( this.conn, jrs, !fetchSizeSet );
+		return new ResultSet( this.conn, jrs );
+	}
+
 	/*
 	 * TODO: used by junit tests only;
 	 * to be removed after update of tests
@@ -528,12 +559,13 @@ public class Statement implements IQuery
 			
 		}
        	
+       	// the pooled connection is dropped before it is closed, so that it
+       	// is never returned to the pool
        	try
        	{
-       		if( this.conn != null )
-       		{
-       			this.conn.close( );
-       		}
+	       	IConnectionPoolManager manager = ConnectionPoolFactory.getInstance();
+	       	if( manager!= null )
+	       		manager.closeConnection( this.conn );
        	}
        	catch( Exception e )
        	{
@@ -542,9 +574,10 @@ public class Statement implements IQuery
        	
        	try
        	{
-	       	IConnectionPoolManager manager = ConnectionPoolFactory.getInstance();
-	       	if( manager!= null )
-	       		manager.closeConnection( this.conn );
+       		if( this.conn != null )
+       		{
+       			this.conn.close( );
+       		}
        	}
        	catch( Exception e )
        	{
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.jdbc.JDBCDriverManager;
+import org.eclipse.birt.report.data.oda.jdbc.LogUtil;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The pool of the physical connections of one driver, url, user and set of
+ * connection properties. The idle connections are handed out the most
+ * recently used first, so that the connections which are not needed any more
+ * stay idle and are evicted. The number of connections in use is not limited:
+ * a report might open several connections at once, and waiting for another
+ * report to release one could block forever.
+ */
+class ConnectionPool
+{
+
+	private static Logger logger = Logger.getLogger( ConnectionPool.class.getName( ) );
+
+	private String driverClass;
+	private String url;
+	private Properties connectionProps;
+	private Collection<String> driverClassPath;
+	private ConnectionPoolSettings settings;
+
+	private LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>( );
+	private Set<PooledConnection> borrowedConnections = new HashSet<PooledConnection>( );
+	private boolean closed;
+
+	// metrics
+	private long createdCount;
+	private long destroyedCount;
+	private long borrowedCount;
+	private long reusedCount;
+	private long validationFailureCount;
+	private long evictedCount;
+	private long leakCount;
+
+	/**
+	 * @param driverClass
+	 * @param url
+	 * @param connectionProps
+	 * @param driverClassPath
+	 * @param settings
+	 */
+	ConnectionPool( String driverClass, String url, Properties connectionProps,
+			Collection<String> driverClassPath, ConnectionPoolSettings settings )
+	{
+		this.driverClass = driverClass;
+		this.url = url;
+		this.connectionProps = connectionProps;
+		this.driverClassPath = driverClassPath;
+		this.settings = settings;
+	}
+
+	/**
+	 * Get an idle connection which is still valid, or else open a new one.
+	 *
+	 * @return
+	 * @throws SQLException
+	 * @throws OdaException
+	 */
+	Connection borrow( ) throws SQLException, OdaException
+	{
+		while ( true )
+		{
+			PooledConnection connection;
+			synchronized ( this )
+			{
+				if ( closed || idleConnections.isEmpty( ) )
+					break;
+				connection = idleConnections.removeFirst( );
+			}
+			long now = System.currentTimeMillis( );
+			if ( isExpired( connection, now ) )
+			{
+				destroy( connection, true );
+				continue;
+			}
+			if ( now - connection.getLastUsedTime( ) >= settings.validationInterval
+					&& !connection.validate( settings.validationQuery,
+							settings.validationTimeout ) )
+			{
+				synchronized ( this )
+				{
+					validationFailureCount++;
+				}
+				logger.log( Level.FINE, "Invalid pooled connection is dropped: " //$NON-NLS-1$
+						+ connection );
+				destroy( connection, false );
+				continue;
+			}
+			synchronized ( this )
+			{
+				borrowedConnections.add( connection );
+				borrowedCount++;
+				reusedCount++;
+			}
+			return connection.borrow( settings.leakDetectionThreshold > 0 );
+		}
+
+		Connection physicalConnection = JDBCDriverManager.getInstance( )
+				.getConnection( driverClass,
+						url,
+						connectionProps,
+						driverClassPath );
+		if ( physicalConnection == null )
+			return null;
+		PooledConnection connection;
+		try
+		{
+			connection = new PooledConnection( this, physicalConnection );
+		}
+		catch ( SQLException e )
+		{
+			physicalConnection.close( );
+			throw e;
+		}
+		synchronized ( this )
+		{
+			borrowedConnections.add( connection );
+			createdCount++;
+			borrowedCount++;
+		}
+		logger.log( Level.FINE, "Pooled connection is opened: " //$NON-NLS-1$
+				+ physicalConnection + " (" + getDescription( ) + ")" ); //$NON-NLS-1$ //$NON-NLS-2$
+		return connection.borrow( settings.leakDetectionThreshold > 0 );
+	}
+
+	/**
+	 * Return a connection to the pool once its proxy is closed.
+	 *
+	 * @param connection
+	 */
+	void release( PooledConnection connection )
+	{
+		connection.closeStatements( );
+		try
+		{
+			connection.reset( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Pooled connection can not be reset: " //$NON-NLS-1$
+					+ connection, e );
+			connection.invalidate( );
+		}
+		boolean keep;
+		synchronized ( this )
+		{
+			borrowedConnections.remove( connection );
+			keep = !closed
+					&& !connection.isBroken( )
+					&& !isExpired( connection, System.currentTimeMillis( ) )
+					&& idleConnections.size( ) < settings.maxIdle;
+			if ( keep )
+				idleConnections.addFirst( connection );
+		}
+		if ( !keep )
+			destroy( connection, false );
+	}
+
+	/**
+	 * Close the connections which are idle for too long or too old, and
+	 * report the connections which are in use for too long.
+	 */
+	void evict( )
+	{
+		long now = System.currentTimeMillis( );
+		List<PooledConnection> evicted = new ArrayList<PooledConnection>( );
+		List<PooledConnection> leaked = new ArrayList<PooledConnection>( );
+		synchronized ( this )
+		{
+			Iterator<PooledConnection> it = idleConnections.iterator( );
+			while ( it.hasNext( ) )
+			{
+				PooledConnection connection = it.next( );
+				if ( isExpired( connection, now )
+						|| ( settings.idleTimeout > 0 && now
+								- connection.getLastUsedTime( ) > settings.idleTimeout ) )
+				{
+					it.remove( );
+					evicted.add( connection );
+				}
+			}
+			if ( settings.leakDetectionThreshold > 0 )
+			{
+				for ( PooledConnection connection : borrowedConnections )
+				{
+					if ( now - connection.getBorrowTime( ) > settings.leakDetectionThreshold
+							&& connection.isBorrowed( )
+							&& connection.reportLeak( ) )
+					{
+						leaked.add( connection );
+						leakCount++;
+					}
+				}
+			}
+		}
+		for ( PooledConnection connection : evicted )
+		{
+			destroy( connection, true );
+		}
+		for ( PooledConnection connection : leaked )
+		{
+			logger.log( Level.WARNING,
+					"Pooled connection is not closed after " //$NON-NLS-1$
+							+ ( now - connection.getBorrowTime( ) )
+							+ " ms, it might be leaked: " + connection //$NON-NLS-1$
+							+ " (" + getDescription( ) + ")", //$NON-NLS-1$ //$NON-NLS-2$
+					connection.getBorrowStack( ) );
+		}
+		if ( logger.isLoggable( Level.FINE ) )
+			logger.log( Level.FINE, getStatistics( ) );
+	}
+
+	/**
+	 * Close the idle connections; the connections in use are closed once they
+	 * are released.
+	 */
+	void close( )
+	{
+		List<PooledConnection> connections;
+		synchronized ( this )
+		{
+			closed = true;
+			connections = new ArrayList<PooledConnection>( idleConnections );
+			idleConnections.clear( );
+		}
+		for ( PooledConnection connection : connections )
+		{
+			destroy( connection, false );
+		}
+		logger.log( Level.FINE, getStatistics( ) );
+	}
+
+	/**
+	 * @return whether the pool has no connection at all
+	 */
+	synchronized boolean isEmpty( )
+	{
+		return idleConnections.isEmpty( ) && borrowedConnections.isEmpty( );
+	}
+
+	synchronized int getIdleCount( )
+	{
+		return idleConnections.size( );
+	}
+
+	synchronized int getActiveCount( )
+	{
+		return borrowedConnections.size( );
+	}
+
+	/**
+	 * @return the metrics of the pool
+	 */
+	synchronized String getStatistics( )
+	{
+		return "Connection pool " + getDescription( ) //$NON-NLS-1$
+				+ ": active=" + borrowedConnections.size( ) //$NON-NLS-1$
+				+ ", idle=" + idleConnections.size( ) //$NON-NLS-1$
+				+ ", created=" + createdCount //$NON-NLS-1$
+				+ ", destroyed=" + destroyedCount //$NON-NLS-1$
+				+ ", borrowed=" + borrowedCount //$NON-NLS-1$
+				+ ", reused=" + reusedCount //$NON-NLS-1$
+				+ ", validationFailures=" + validationFailureCount //$NON-NLS-1$
+				+ ", evicted=" + evictedCount //$NON-NLS-1$
+				+ ", leaks=" + leakCount; //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the description of the pool, without password
+	 */
+	private String getDescription( )
+	{
+		String user = connectionProps.getProperty( "user" ); //$NON-NLS-1$
+		return "driverClass=" + driverClass //$NON-NLS-1$
+				+ "; URL=" + LogUtil.encryptURL( url ) //$NON-NLS-1$
+				+ ( user == null ? "" : "; user=" + user ); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * @param connection
+	 * @param now
+	 * @return whether the connection is older than the max lifetime
+	 */
+	private boolean isExpired( PooledConnection connection, long now )
+	{
+		return settings.maxLifetime > 0
+				&& now - connection.getCreateTime( ) > settings.maxLifetime;
+	}
+
+	/**
+	 * @param connection
+	 * @param evicted
+	 */
+	private void destroy( PooledConnection connection, boolean evicted )
+	{
+		connection.destroy( );
+		synchronized ( this )
+		{
+			destroyedCount++;
+			if ( evicted )
+				evictedCount++;
+		}
+		logger.log( Level.FINE, "Pooled connection is closed: " + connection ); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The connection pool of the ODA JDBC driver. A pool is kept for each driver
+ * class, url, driver class path and set of connection properties, which
+ * include the user and password. A connection is validated before it is
+ * handed out again; the connections which are idle for too long or older
+ * than the max lifetime are closed by a background timer, which also reports
+ * the connections which are not closed for too long.
+ * <p>
+ * Pooling is off unless ENABLED is "true". The settings below are read from the application context of the
+ * connection which creates a pool, or else from the system properties. The
+ * statistics of each pool are logged at level FINE.
+ */
+public class ConnectionPoolManager implements IConnectionPoolManager
+{
+
+	/**
+	 * "true" to pool the connections. The default is "false", which opens a
+	 * new physical connection each time.
+	 */
+	public static final String ENABLED = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.enabled"; //$NON-NLS-1$
+
+	/**
+	 * The max number of idle connections of each pool. The default is 8.
+	 */
+	public static final String MAX_IDLE = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.maxIdle"; //$NON-NLS-1$
+
+	/**
+	 * The time in milliseconds after which an idle connection is closed, 0
+	 * for never. The default is 5 minutes.
+	 */
+	public static final String IDLE_TIMEOUT = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.idleTimeout"; //$NON-NLS-1$
+
+	/**
+	 * The time in milliseconds after which a connection is closed once it is
+	 * not in use, 0 for never. The default is 30 minutes.
+	 */
+	public static final String MAX_LIFETIME = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.maxLifetime"; //$NON-NLS-1$
+
+	/**
+	 * The idle time in milliseconds after which a connection is validated
+	 * before it is handed out again. The default is 0, which validates the
+	 * connection each time.
+	 */
+	public static final String VALIDATION_INTERVAL = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.validationInterval"; //$NON-NLS-1$
+
+	/**
+	 * The timeout in seconds of the validation. The default is 5.
+	 */
+	public static final String VALIDATION_TIMEOUT = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.validationTimeout"; //$NON-NLS-1$
+
+	/**
+	 * The query executed to validate a connection. By default the driver is
+	 * asked by Connection.isValid.
+	 */
+	public static final String VALIDATION_QUERY = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.validationQuery"; //$NON-NLS-1$
+
+	/**
+	 * The time in milliseconds after which a connection not closed is
+	 * reported as leaked, 0 for never. The default is 10 minutes.
+	 */
+	public static final String LEAK_DETECTION_THRESHOLD = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.leakDetectionThreshold"; //$NON-NLS-1$
+
+	/**
+	 * The system property of the interval in milliseconds of the background
+	 * timer. The default is 30 seconds.
+	 */
+	public static final String EVICTION_INTERVAL = "org.eclipse.birt.report.data.oda.jdbc.connectionpool.evictionInterval"; //$NON-NLS-1$
+
+	private static Logger logger = Logger.getLogger( ConnectionPoolManager.class.getName( ) );
+
+	private Map<PoolKey, ConnectionPool> pools = new HashMap<PoolKey, ConnectionPool>( );
+	private Timer timer;
+	private boolean closed;
+
+	/**
+	 * Constructor.
+	 */
+	public ConnectionPoolManager( )
+	{
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager#getConnection(java.lang.String, java.lang.String, java.util.Properties, java.util.Collection, java.util.Map)
+	 */
+	public Connection getConnection( String driverClass, String url,
+			Properties connectionProps, Collection<String> driverClassPath,
+			Map appContext ) throws SQLException, OdaException
+	{
+		ConnectionPoolSettings settings = new ConnectionPoolSettings( appContext );
+		if ( !settings.enabled )
+			return null;
+		return getPool( driverClass,
+				url,
+				connectionProps,
+				driverClassPath,
+				settings ).borrow( );
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager#closeConnection(java.sql.Connection)
+	 */
+	public void closeConnection( Connection connection ) throws OdaException,
+			SQLException
+	{
+		if ( connection == null )
+			return;
+		PooledConnection pooledConnection = PooledConnection.getPooledConnection( connection );
+		if ( pooledConnection == null )
+		{
+			if ( !connection.isClosed( ) )
+				connection.close( );
+			return;
+		}
+		// the physical connection is closed, since the connection is closed
+		// on purpose, for instance when a statement is cancelled. It is marked
+		// before the proxy is closed, so that the pool drops it instead of
+		// handing it out again
+		if ( pooledConnection.invalidate( connection ) )
+			connection.close( );
+	}
+
+	/**
+	 * Close all the idle connections and stop the background timer. The
+	 * connections in use are closed once they are released.
+	 */
+	public void close( )
+	{
+		List<ConnectionPool> closedPools;
+		synchronized ( this )
+		{
+			closed = true;
+			if ( timer != null )
+			{
+				timer.cancel( );
+				timer = null;
+			}
+			closedPools = new ArrayList<ConnectionPool>( pools.values( ) );
+			pools.clear( );
+		}
+		for ( ConnectionPool pool : closedPools )
+		{
+			pool.close( );
+		}
+	}
+
+	/**
+	 * @return the statistics of all the pools
+	 */
+	public String getStatistics( )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		for ( ConnectionPool pool : getPools( ) )
+		{
+			if ( buffer.length( ) > 0 )
+				buffer.append( '\n' );
+			buffer.append( pool.getStatistics( ) );
+		}
+		return buffer.toString( );
+	}
+
+	/**
+	 * @param driverClass
+	 * @param url
+	 * @param connectionProps
+	 * @param driverClassPath
+	 * @param settings
+	 * @return the pool of the connection properties
+	 */
+	private synchronized ConnectionPool getPool( String driverClass,
+			String url, Properties connectionProps,
+			Collection<String> driverClassPath, ConnectionPoolSettings settings )
+	{
+		Properties props = copy( connectionProps );
+		List<String> classPath = driverClassPath == null ? null
+				: new ArrayList<String>( driverClassPath );
+		PoolKey key = new PoolKey( driverClass, url, props, classPath );
+		ConnectionPool pool = pools.get( key );
+		if ( pool == null )
+		{
+			pool = new ConnectionPool( driverClass,
+					url,
+					props,
+					classPath,
+					settings );
+			if ( closed )
+			{
+				// the connections are closed once they are released
+				pool.close( );
+				return pool;
+			}
+			pools.put( key, pool );
+			startTimer( );
+		}
+		return pool;
+	}
+
+	/**
+	 * @return
+	 */
+	private synchronized List<ConnectionPool> getPools( )
+	{
+		return new ArrayList<ConnectionPool>( pools.values( ) );
+	}
+
+	/**
+	 * Start the background timer if it is not started yet.
+	 */
+	private void startTimer( )
+	{
+		if ( timer != null )
+			return;
+		long interval = 30 * 1000L;
+		String value = System.getProperty( EVICTION_INTERVAL );
+		if ( value != null )
+		{
+			try
+			{
+				interval = Long.parseLong( value.trim( ) );
+			}
+			catch ( NumberFormatException e )
+			{
+				logger.log( Level.WARNING, "Invalid eviction interval: " //$NON-NLS-1$
+						+ value );
+			}
+		}
+		if ( interval <= 0 )
+			return;
+		timer = new Timer( "BIRT JDBC connection pool", true ); //$NON-NLS-1$
+		timer.schedule( new EvictionTask( ), interval, interval );
+	}
+
+	/**
+	 * @param props
+	 * @return
+	 */
+	private static Properties copy( Properties props )
+	{
+		Properties result = new Properties( );
+		if ( props != null )
+		{
+			for ( Enumeration<?> names = props.propertyNames( ); names.hasMoreElements( ); )
+			{
+				String name = (String) names.nextElement( );
+				String value = props.getProperty( name );
+				if ( value != null )
+					result.setProperty( name, value );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The timer task which closes the idle connections and reports the
+	 * leaked ones.
+	 */
+	private class EvictionTask extends TimerTask
+	{
+
+		@Override
+		public void run( )
+		{
+			for ( ConnectionPool pool : getPools( ) )
+			{
+				try
+				{
+					pool.evict( );
+				}
+				catch ( RuntimeException e )
+				{
+					logger.log( Level.WARNING, e.getLocalizedMessage( ), e );
+				}
+			}
+		}
+	}
+
+	/**
+	 * The key of a pool.
+	 */
+	private static class PoolKey
+	{
+
+		private String driverClass;
+		private String url;
+		private Properties props;
+		private List<String> driverClassPath;
+		private int hashCode;
+
+		PoolKey( String driverClass, String url, Properties props,
+				List<String> driverClassPath )
+		{
+			this.driverClass = driverClass;
+			this.url = url;
+			this.props = props;
+			this.driverClassPath = driverClassPath;
+			this.hashCode = hashCode( driverClass ) * 31 * 31 * 31
+					+ hashCode( url ) * 31 * 31 + props.hashCode( ) * 31
+					+ hashCode( driverClassPath );
+		}
+
+		private static int hashCode( Object o )
+		{
+			return o == null ? 0 : o.hashCode( );
+		}
+
+		private static boolean equals( Object o1, Object o2 )
+		{
+			return o1 == null ? o2 == null : o1.equals( o2 );
+		}
+
+		/*
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		/*
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals( Object o )
+		{
+			if ( this == o )
+				return true;
+			if ( !( o instanceof PoolKey ) )
+				return false;
+			PoolKey other = (PoolKey) o;
+			return hashCode == other.hashCode
+					&& equals( driverClass, other.driverClass )
+					&& equals( url, other.url )
+					&& props.equals( other.props )
+					&& equals( driverClassPath, other.driverClassPath );
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.util.Map;
+
+/**
+ * The settings of a connection pool. Each setting is read from the
+ * application context of the connection which creates the pool, or else from
+ * the system property of the same name.
+ */
+class ConnectionPoolSettings
+{
+
+	boolean enabled;
+	int maxIdle;
+	long idleTimeout;
+	long maxLifetime;
+	long validationInterval;
+	int validationTimeout;
+	String validationQuery;
+	long leakDetectionThreshold;
+
+	/**
+	 * @param appContext
+	 *            may be null
+	 */
+	ConnectionPoolSettings( Map appContext )
+	{
+		enabled = "true".equalsIgnoreCase( getValue( appContext, //$NON-NLS-1$
+				ConnectionPoolManager.ENABLED ) );
+		maxIdle = (int) getLong( appContext, ConnectionPoolManager.MAX_IDLE, 8 );
+		idleTimeout = getLong( appContext,
+				ConnectionPoolManager.IDLE_TIMEOUT,
+				5 * 60 * 1000L );
+		maxLifetime = getLong( appContext,
+				ConnectionPoolManager.MAX_LIFETIME,
+				30 * 60 * 1000L );
+		validationInterval = getLong( appContext,
+				ConnectionPoolManager.VALIDATION_INTERVAL,
+				0 );
+		validationTimeout = (int) getLong( appContext,
+				ConnectionPoolManager.VALIDATION_TIMEOUT,
+				5 );
+		validationQuery = getValue( appContext,
+				ConnectionPoolManager.VALIDATION_QUERY );
+		if ( validationQuery != null && validationQuery.trim( ).length( ) == 0 )
+			validationQuery = null;
+		leakDetectionThreshold = getLong( appContext,
+				ConnectionPoolManager.LEAK_DETECTION_THRESHOLD,
+				10 * 60 * 1000L );
+	}
+
+	/**
+	 * @param appContext
+	 * @param name
+	 * @return
+	 */
+	private static String getValue( Map appContext, String name )
+	{
+		Object value = appContext == null ? null : appContext.get( name );
+		if ( value == null )
+			value = System.getProperty( name );
+		return value == null ? null : value.toString( );
+	}
+
+	/**
+	 * @param appContext
+	 * @param name
+	 * @param defaultValue
+	 * @return the value, or the default value if it is not a number
+	 */
+	private static long getLong( Map appContext, String name, long defaultValue )
+	{
+		String value = getValue( appContext, name );
+		if ( value == null )
+			return defaultValue;
+		try
+		{
+			return Long.parseLong( value.trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			return defaultValue;
+		}
+	}
+}
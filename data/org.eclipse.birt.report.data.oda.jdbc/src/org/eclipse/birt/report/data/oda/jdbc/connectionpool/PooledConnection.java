@@ -0,0 +1,425 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A physical JDBC connection kept by a ConnectionPool. The connection handed
+ * out to the ODA driver is a proxy of the physical connection: closing the
+ * proxy returns the physical connection to the pool instead of closing it,
+ * and the proxy can not be used any more once it is closed. The statements
+ * and result sets opened through the proxy are proxies as well, and those
+ * left open are closed when the connection returns to the pool.
+ */
+class PooledConnection implements InvocationHandler
+{
+
+	// the SQL state class of the connection exceptions
+	private static final String CONNECTION_EXCEPTION = "08"; //$NON-NLS-1$
+
+	private ConnectionPool pool;
+	private Connection physicalConnection;
+	private long createTime;
+	private long lastUsedTime;
+
+	// the settings of the physical connection when it is created, restored
+	// whenever the connection returns to the pool
+	private boolean autoCommit;
+	private int transactionIsolation;
+	private boolean readOnly;
+	private String catalog;
+	private boolean settingsChanged;
+
+	private Connection proxy;
+	private long borrowTime;
+	private Throwable borrowStack;
+	private boolean leakReported;
+	private boolean broken;
+
+	// the statements and result sets opened through the proxy and not
+	// closed yet
+	private List<PooledStatement> statements = new ArrayList<PooledStatement>( );
+
+	/**
+	 * @param pool
+	 * @param physicalConnection
+	 * @throws SQLException
+	 */
+	PooledConnection( ConnectionPool pool, Connection physicalConnection )
+			throws SQLException
+	{
+		this.pool = pool;
+		this.physicalConnection = physicalConnection;
+		this.createTime = System.currentTimeMillis( );
+		this.lastUsedTime = createTime;
+		this.autoCommit = physicalConnection.getAutoCommit( );
+		this.transactionIsolation = physicalConnection.getTransactionIsolation( );
+		this.readOnly = physicalConnection.isReadOnly( );
+		this.catalog = physicalConnection.getCatalog( );
+	}
+
+	/**
+	 * Hand out a new proxy of the physical connection.
+	 *
+	 * @param captureStack
+	 *            whether to keep the stack of the caller for leak detection
+	 * @return
+	 */
+	synchronized Connection borrow( boolean captureStack )
+	{
+		borrowTime = System.currentTimeMillis( );
+		borrowStack = captureStack ? new Throwable( "Connection borrowed" ) : null; //$NON-NLS-1$
+		leakReported = false;
+		proxy = (Connection) Proxy.newProxyInstance( PooledConnection.class.getClassLoader( ),
+				new Class[]{
+					Connection.class
+				},
+				this );
+		return proxy;
+	}
+
+	/**
+	 * Detach the proxy from the physical connection and restore the settings
+	 * of the physical connection, so that it can be handed out again.
+	 *
+	 * @throws SQLException
+	 */
+	synchronized void reset( ) throws SQLException
+	{
+		proxy = null;
+		borrowStack = null;
+		lastUsedTime = System.currentTimeMillis( );
+		if ( broken )
+			return;
+		if ( !physicalConnection.getAutoCommit( ) )
+		{
+			// the work which is neither committed nor rolled back must not be
+			// seen by the next user
+			physicalConnection.rollback( );
+		}
+		if ( settingsChanged )
+		{
+			if ( physicalConnection.getAutoCommit( ) != autoCommit )
+				physicalConnection.setAutoCommit( autoCommit );
+			if ( physicalConnection.getTransactionIsolation( ) != transactionIsolation )
+				physicalConnection.setTransactionIsolation( transactionIsolation );
+			if ( physicalConnection.isReadOnly( ) != readOnly )
+				physicalConnection.setReadOnly( readOnly );
+			if ( catalog != null && !catalog.equals( physicalConnection.getCatalog( ) ) )
+				physicalConnection.setCatalog( catalog );
+			settingsChanged = false;
+		}
+		physicalConnection.clearWarnings( );
+	}
+
+	/**
+	 * Check whether the physical connection is still usable.
+	 *
+	 * @param validationQuery
+	 *            the query to execute, null to ask the driver
+	 * @param timeout
+	 *            in seconds
+	 * @return
+	 */
+	boolean validate( String validationQuery, int timeout )
+	{
+		try
+		{
+			if ( validationQuery != null )
+			{
+				Statement statement = physicalConnection.createStatement( );
+				try
+				{
+					if ( timeout > 0 )
+						statement.setQueryTimeout( timeout );
+					statement.execute( validationQuery );
+				}
+				finally
+				{
+					statement.close( );
+				}
+				return true;
+			}
+			try
+			{
+				return physicalConnection.isValid( timeout );
+			}
+			catch ( AbstractMethodError e )
+			{
+				// the driver is older than JDBC 4
+				return !physicalConnection.isClosed( );
+			}
+		}
+		catch ( SQLException e )
+		{
+			return false;
+		}
+		catch ( RuntimeException e )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Close the physical connection.
+	 */
+	void destroy( )
+	{
+		synchronized ( this )
+		{
+			proxy = null;
+			borrowStack = null;
+			broken = true;
+		}
+		try
+		{
+			physicalConnection.close( );
+		}
+		catch ( SQLException e )
+		{
+			// the connection is dropped anyway
+		}
+		catch ( RuntimeException e )
+		{
+			// the connection is dropped anyway
+		}
+	}
+
+	/**
+	 * Mark the connection not to be returned to the pool.
+	 */
+	synchronized void invalidate( )
+	{
+		broken = true;
+	}
+
+	/**
+	 * Mark the connection not to be returned to the pool, if the proxy is the
+	 * one currently handed out.
+	 *
+	 * @param proxy
+	 * @return false if the proxy is closed already
+	 */
+	synchronized boolean invalidate( Object proxy )
+	{
+		if ( this.proxy != proxy )
+			return false;
+		broken = true;
+		return true;
+	}
+
+	/**
+	 * @param statement
+	 *            a statement or result set opened through the proxy
+	 */
+	synchronized void track( PooledStatement statement )
+	{
+		statements.add( statement );
+	}
+
+	/**
+	 * Stop tracking a statement or result set once it is closed, together
+	 * with the result sets of a statement.
+	 *
+	 * @param statement
+	 */
+	synchronized void untrack( PooledStatement statement )
+	{
+		Iterator<PooledStatement> it = statements.iterator( );
+		while ( it.hasNext( ) )
+		{
+			PooledStatement next = it.next( );
+			if ( next == statement || next.getParent( ) == statement )
+				it.remove( );
+		}
+	}
+
+	/**
+	 * Close the statements and result sets left open, the result sets before
+	 * their statements.
+	 */
+	void closeStatements( )
+	{
+		List<PooledStatement> opened;
+		synchronized ( this )
+		{
+			opened = new ArrayList<PooledStatement>( statements );
+			statements.clear( );
+		}
+		for ( int i = opened.size( ) - 1; i >= 0; i-- )
+		{
+			opened.get( i ).close( );
+		}
+	}
+
+	synchronized boolean isBroken( )
+	{
+		return broken;
+	}
+
+	synchronized boolean isBorrowed( )
+	{
+		return proxy != null;
+	}
+
+	/**
+	 * @param proxy
+	 * @return whether the proxy is the one currently handed out
+	 */
+	synchronized boolean isCurrentProxy( Object proxy )
+	{
+		return this.proxy == proxy;
+	}
+
+	ConnectionPool getPool( )
+	{
+		return pool;
+	}
+
+	long getCreateTime( )
+	{
+		return createTime;
+	}
+
+	synchronized long getLastUsedTime( )
+	{
+		return lastUsedTime;
+	}
+
+	synchronized long getBorrowTime( )
+	{
+		return borrowTime;
+	}
+
+	synchronized Throwable getBorrowStack( )
+	{
+		return borrowStack;
+	}
+
+	/**
+	 * Mark the leak of the current proxy as reported.
+	 *
+	 * @return false if it has been reported already
+	 */
+	synchronized boolean reportLeak( )
+	{
+		if ( leakReported )
+			return false;
+		leakReported = true;
+		return true;
+	}
+
+	/*
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString( )
+	{
+		return physicalConnection.toString( );
+	}
+
+	/**
+	 * Return the pooled connection of a proxy.
+	 *
+	 * @param connection
+	 * @return null if the connection is not a proxy of the pool
+	 */
+	static PooledConnection getPooledConnection( Object connection )
+	{
+		if ( connection == null || !Proxy.isProxyClass( connection.getClass( ) ) )
+			return null;
+		InvocationHandler handler = Proxy.getInvocationHandler( connection );
+		if ( handler instanceof PooledConnection )
+			return (PooledConnection) handler;
+		return null;
+	}
+
+	/*
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke( Object proxy, Method method, Object[] args )
+			throws Throwable
+	{
+		String name = method.getName( );
+		int argCount = args == null ? 0 : args.length;
+		if ( "equals".equals( name ) && argCount == 1 ) //$NON-NLS-1$
+			return Boolean.valueOf( proxy == args[0] );
+		if ( "hashCode".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+			return Integer.valueOf( System.identityHashCode( proxy ) );
+		if ( "toString".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+			return "Pooled " + physicalConnection; //$NON-NLS-1$
+
+		boolean current = isCurrentProxy( proxy );
+		if ( "close".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			// closing a closed connection is a no-op
+			if ( current )
+				pool.release( this );
+			return null;
+		}
+		if ( "isClosed".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+		{
+			if ( !current )
+				return Boolean.TRUE;
+		}
+		else if ( !current )
+		{
+			throw new SQLException( "Connection is closed." ); //$NON-NLS-1$
+		}
+
+		if ( name.equals( "setAutoCommit" ) //$NON-NLS-1$
+				|| name.equals( "setTransactionIsolation" ) //$NON-NLS-1$
+				|| name.equals( "setReadOnly" ) //$NON-NLS-1$
+				|| name.equals( "setCatalog" ) ) //$NON-NLS-1$
+		{
+			synchronized ( this )
+			{
+				settingsChanged = true;
+			}
+		}
+		Object result;
+		try
+		{
+			result = method.invoke( physicalConnection, args );
+		}
+		catch ( InvocationTargetException e )
+		{
+			Throwable cause = e.getTargetException( );
+			if ( cause instanceof SQLException )
+			{
+				String state = ( (SQLException) cause ).getSQLState( );
+				if ( state != null && state.startsWith( CONNECTION_EXCEPTION ) )
+					invalidate( );
+			}
+			throw cause;
+		}
+		if ( result instanceof Statement )
+		{
+			// createStatement, prepareStatement or prepareCall
+			return PooledStatement.wrap( this,
+					null,
+					proxy,
+					result,
+					method.getReturnType( ) );
+		}
+		return result;
+	}
+}
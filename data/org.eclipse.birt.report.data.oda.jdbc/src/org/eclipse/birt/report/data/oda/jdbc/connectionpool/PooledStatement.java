@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A statement or a result set opened through the proxy of a pooled
+ * connection. The object handed out is a proxy which is tracked by the pooled
+ * connection until it is closed, so that the statements and result sets left
+ * open are closed when the connection returns to the pool. The proxy also
+ * hands out the proxy of its connection or statement, and never the physical
+ * one, which would bypass the pool.
+ */
+class PooledStatement implements InvocationHandler
+{
+
+	private PooledConnection connection;
+	private PooledStatement parent;
+	private Object owner;
+	private Object target;
+
+	/**
+	 * @param connection
+	 *            the pooled connection which tracks the proxy
+	 * @param parent
+	 *            the statement of a result set, null for a statement
+	 * @param owner
+	 *            the proxy returned by getConnection or getStatement
+	 * @param target
+	 *            the physical statement or result set
+	 */
+	private PooledStatement( PooledConnection connection,
+			PooledStatement parent, Object owner, Object target )
+	{
+		this.connection = connection;
+		this.parent = parent;
+		this.owner = owner;
+		this.target = target;
+	}
+
+	/**
+	 * Wrap a physical statement or result set into a tracked proxy.
+	 *
+	 * @param connection
+	 *            the pooled connection which tracks the proxy
+	 * @param parent
+	 *            the statement of a result set, null for a statement
+	 * @param owner
+	 *            the proxy returned by getConnection or getStatement
+	 * @param target
+	 *            the physical statement or result set
+	 * @param type
+	 *            the interface of the proxy, which the target implements
+	 * @return the proxy
+	 */
+	static Object wrap( PooledConnection connection, PooledStatement parent,
+			Object owner, Object target, Class type )
+	{
+		PooledStatement handler = new PooledStatement( connection,
+				parent,
+				owner,
+				target );
+		Object proxy = Proxy.newProxyInstance( PooledStatement.class.getClassLoader( ),
+				new Class[]{
+					type
+				},
+				handler );
+		connection.track( handler );
+		return proxy;
+	}
+
+	PooledStatement getParent( )
+	{
+		return parent;
+	}
+
+	/**
+	 * Close the physical statement or result set, ignoring the errors since
+	 * the connection is reused anyway.
+	 */
+	void close( )
+	{
+		try
+		{
+			if ( target instanceof ResultSet )
+				( (ResultSet) target ).close( );
+			else
+				( (Statement) target ).close( );
+		}
+		catch ( SQLException e )
+		{
+			// the connection is reset or dropped next
+		}
+		catch ( RuntimeException e )
+		{
+			// the connection is reset or dropped next
+		}
+	}
+
+	/*
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke( Object proxy, Method method, Object[] args )
+			throws Throwable
+	{
+		String name = method.getName( );
+		int argCount = args == null ? 0 : args.length;
+		if ( "equals".equals( name ) && argCount == 1 ) //$NON-NLS-1$
+			return Boolean.valueOf( proxy == args[0] );
+		if ( "hashCode".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+			return Integer.valueOf( System.identityHashCode( proxy ) );
+		if ( "toString".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+			return "Pooled " + target; //$NON-NLS-1$
+		if ( ( "getConnection".equals( name ) || "getStatement".equals( name ) ) //$NON-NLS-1$ //$NON-NLS-2$
+				&& argCount == 0 )
+			return owner;
+		if ( "close".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+			connection.untrack( this );
+
+		Object result;
+		try
+		{
+			result = method.invoke( target, args );
+		}
+		catch ( InvocationTargetException e )
+		{
+			throw e.getTargetException( );
+		}
+		if ( result instanceof ResultSet && target instanceof Statement )
+		{
+			// the result sets of a statement, such as by executeQuery,
+			// getResultSet or getGeneratedKeys
+			return wrap( connection, this, proxy, result, ResultSet.class );
+		}
+		return result;
+	}
+}
@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.exception.CoreException;
 import org.eclipse.birt.core.i18n.ResourceConstants;
+import org.eclipse.birt.core.script.CompiledScriptCache;
 import org.eclipse.birt.core.script.CoreJavaScriptInitializer;
 import org.eclipse.birt.core.script.CoreJavaScriptWrapper;
 import org.eclipse.birt.core.script.ICompiledScript;
@@ -71,6 +72,12 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 
 	private JavascriptEngineFactory factory;
 
+	/**
+	 * the application class loader set to the engine, the compiled scripts
+	 * are cached per class loader.
+	 */
+	private ClassLoader applicationClassLoader;
+
 	static
 	{
 		try
@@ -232,15 +239,31 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 	public CompiledJavascript compile( ScriptContext scriptContext,
 			final String id, final int lineNumber, final String script ) throws BirtException
 	{
-		Script scriptObject = AccessController
-				.doPrivileged( new PrivilegedAction<Script>( ) {
+		CompiledScriptCache cache = CompiledScriptCache.getInstance( );
+		ClassLoader loader = applicationClassLoader != null
+				? applicationClassLoader
+				: context.getApplicationClassLoader( );
+		int optimizationLevel = context.getOptimizationLevel( );
+		Script scriptObject = (Script) cache.get( loader,
+				JavascriptEngineFactory.SCRIPT_JAVASCRIPT, optimizationLevel,
+				id, lineNumber, script );
+		if ( scriptObject == null )
+		{
+			scriptObject = AccessController
+					.doPrivileged( new PrivilegedAction<Script>( ) {
 
-					public Script run( )
-					{
-						return context.compileString( script, id, lineNumber,
-								ScriptUtil.getSecurityDomain( id ) );
-					}
-				} );
+						public Script run( )
+						{
+							return context.compileString( script, id,
+									lineNumber,
+									ScriptUtil.getSecurityDomain( id ) );
+						}
+					} );
+			// compiled script doesn't hold any state, it can be shared by
+			// all the engines using the same class loader.
+			cache.put( loader, JavascriptEngineFactory.SCRIPT_JAVASCRIPT,
+					optimizationLevel, id, lineNumber, script, scriptObject );
+		}
 		return new CompiledJavascript( id, lineNumber, script, scriptObject );
 	}
 
@@ -326,6 +349,7 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 		{
 			return;
 		}
+		applicationClassLoader = appLoader;
 		ClassLoader loader = appLoader;
 		try
 		{
@@ -97,11 +97,25 @@ public abstract class BasicComponent extends AbstractWordXmlWriter
 	private ReportDesignHandle handle;
 
 	protected BasicComponent( IPart part ) throws IOException
+	{
+		this( part, true );
+	}
+
+	/**
+	 * @param part
+	 * @param needCache
+	 *            whether the part is buffered until the package is saved,
+	 *            otherwise it is written into the package directly when no
+	 *            other part is being written
+	 * @throws IOException
+	 */
+	protected BasicComponent( IPart part, boolean needCache )
+			throws IOException
 	{
 		this.part = part;
 		this.imageManager = (ImageManager) part.getPackage( )
 				.getExtensionData( );
-		ooxmlWriter = part.getCacheWriter( );
+		ooxmlWriter = needCache ? part.getCacheWriter( ) : part.getWriter( );
 		writer = ooxmlWriter;
 	}
 
@@ -48,7 +48,10 @@ public class Document extends BasicComponent
 			String backgroundHeight, String backgroundWidth,
 			boolean rtl ) throws IOException
 	{
-		super( part );
+		// the body is the largest part, it is written into the package
+		// directly, while the headers, footers and images written in the
+		// middle of it are buffered
+		super( part, false );
 		this.backgroundColor = backgroundColor;
 		this.backgroundImageImgUrl = backgroundImageUrl;
 		this.backgroundHeight = backgroundHeight;
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.pdf.merge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.birt.report.engine.api.ITOCTree;
+import org.eclipse.birt.report.engine.api.TOCNode;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfDestination;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.SimpleNamedDestination;
+
+/**
+ * Joins the PDF fragments rendered from the page ranges of a report document,
+ * see ParallelPageRenderer, into one PDF file.
+ * <p>
+ * The pages are copied in the order of the fragments. The bookmarks of all
+ * the fragments are defined in the joined file, so the links between the
+ * fragments work, and the outline is built from the TOC of the document in
+ * the same way as PDFPageDevice does.
+ */
+public class PDFFragmentMerger
+{
+
+	/**
+	 * The max number of pdf outline, the same as TOCHandler.
+	 */
+	private static final long MAX_COUNT = 70000l;
+
+	private OutputStream out;
+
+	private ITOCTree tocTree;
+
+	private long counter = 0;
+
+	/**
+	 *
+	 * @param out
+	 *            the output of the joined file
+	 */
+	public PDFFragmentMerger( OutputStream out )
+	{
+		this.out = out;
+	}
+
+	/**
+	 * Sets the TOC of the report document, from which the outline is built.
+	 * There is no outline if it is not set.
+	 *
+	 * @param tocTree
+	 *            the TOC tree of the "pdf" format
+	 */
+	public void setTOCTree( ITOCTree tocTree )
+	{
+		this.tocTree = tocTree;
+	}
+
+	/**
+	 * Joins the fragments. The input streams are not closed.
+	 *
+	 * @param fragments
+	 *            the fragments in the order of their pages
+	 * @throws IOException
+	 * @throws DocumentException
+	 */
+	public void merge( InputStream[] fragments ) throws IOException,
+			DocumentException
+	{
+		Document document = null;
+		PdfCopy copy = null;
+		Set<String> bookmarks = new HashSet<String>( );
+		try
+		{
+			for ( int i = 0; i < fragments.length; i++ )
+			{
+				PdfReader reader = new PdfReader( fragments[i] );
+				int pageCount = reader.getNumberOfPages( );
+				if ( pageCount == 0 )
+				{
+					continue;
+				}
+				if ( document == null )
+				{
+					document = new Document( reader
+							.getPageSizeWithRotation( 1 ) );
+					copy = new PdfCopy( document, out );
+					copy.setPdfVersion( reader.getPdfVersion( ) );
+					addInfo( document, reader.getInfo( ) );
+					document.open( );
+				}
+				Map<Integer, Map<String, PdfDestination>> destinations = getDestinations( reader );
+				for ( int page = 1; page <= pageCount; page++ )
+				{
+					// a destination is added to the current page, which is
+					// the page to be copied next
+					Map<String, PdfDestination> pageDestinations = destinations
+							.get( page );
+					if ( pageDestinations != null )
+					{
+						for ( Map.Entry<String, PdfDestination> entry : pageDestinations
+								.entrySet( ) )
+						{
+							if ( bookmarks.add( entry.getKey( ) ) )
+							{
+								copy.getDirectContent( ).localDestination(
+										entry.getKey( ), entry.getValue( ) );
+							}
+						}
+					}
+					copy.addPage( copy.getImportedPage( reader, page ) );
+				}
+				copy.freeReader( reader );
+				reader.close( );
+			}
+			if ( document == null )
+			{
+				return;
+			}
+			List<Map<String, Object>> outlines = createOutlines( bookmarks );
+			if ( outlines.isEmpty( ) )
+			{
+				copy.setViewerPreferences( PdfWriter.PageModeUseNone );
+			}
+			else
+			{
+				copy.setViewerPreferences( PdfWriter.PageModeUseOutlines );
+				copy.setOutlines( outlines );
+			}
+		}
+		finally
+		{
+			if ( document != null )
+			{
+				document.close( );
+			}
+		}
+	}
+
+	private void addInfo( Document document, Map info )
+	{
+		String creator = (String) info.get( "Creator" );
+		if ( creator != null )
+		{
+			document.addCreator( creator );
+		}
+		String author = (String) info.get( "Author" );
+		if ( author != null )
+		{
+			document.addAuthor( author );
+		}
+		String title = (String) info.get( "Title" );
+		if ( title != null )
+		{
+			document.addTitle( title );
+		}
+		String subject = (String) info.get( "Subject" );
+		if ( subject != null )
+		{
+			document.addSubject( subject );
+		}
+		String keywords = (String) info.get( "Keywords" );
+		if ( keywords != null )
+		{
+			document.addKeywords( keywords );
+		}
+	}
+
+	/**
+	 * Gets the named destinations of a fragment, which are the bookmarks
+	 * created by PDFPage.
+	 *
+	 * @param reader
+	 * @return key: the page number in the fragment, value: the destinations on
+	 *         the page by name
+	 */
+	private Map<Integer, Map<String, PdfDestination>> getDestinations(
+			PdfReader reader )
+	{
+		Map<Integer, Map<String, PdfDestination>> destinations = new HashMap<Integer, Map<String, PdfDestination>>( );
+		HashMap names = SimpleNamedDestination.getNamedDestination( reader,
+				false );
+		names.putAll( SimpleNamedDestination.getNamedDestination( reader,
+				true ) );
+		for ( Iterator iter = names.entrySet( ).iterator( ); iter.hasNext( ); )
+		{
+			Map.Entry entry = (Map.Entry) iter.next( );
+			// the destination is "page type arguments", such as
+			// "3 XYZ null 680.5 0"
+			String[] tokens = ( (String) entry.getValue( ) ).split( " " );
+			int page;
+			try
+			{
+				page = Integer.parseInt( tokens[0] );
+			}
+			catch ( NumberFormatException ex )
+			{
+				continue;
+			}
+			if ( page < 1 )
+			{
+				continue;
+			}
+			Map<String, PdfDestination> pageDestinations = destinations
+					.get( page );
+			if ( pageDestinations == null )
+			{
+				pageDestinations = new HashMap<String, PdfDestination>( );
+				destinations.put( page, pageDestinations );
+			}
+			pageDestinations.put( (String) entry.getKey( ),
+					createDestination( tokens ) );
+		}
+		return destinations;
+	}
+
+	private PdfDestination createDestination( String[] tokens )
+	{
+		if ( tokens.length == 5 && "XYZ".equals( tokens[1] ) )
+		{
+			try
+			{
+				// PdfDestination writes null for a negative position
+				return new PdfDestination( PdfDestination.XYZ,
+						parsePosition( tokens[2] ), parsePosition( tokens[3] ),
+						"null".equals( tokens[4] ) ? 0 : Float
+								.parseFloat( tokens[4] ) );
+			}
+			catch ( NumberFormatException ex )
+			{
+				// use FIT instead
+			}
+		}
+		return new PdfDestination( PdfDestination.FIT );
+	}
+
+	private float parsePosition( String token )
+	{
+		return "null".equals( token ) ? -1 : Float.parseFloat( token );
+	}
+
+	/**
+	 * Creates the outline in the format of SimpleBookmark, with an entry for
+	 * each bookmark TOCHandler creates an entry for.
+	 *
+	 * @param bookmarks
+	 *            the bookmarks defined in the joined file
+	 * @return the outline
+	 */
+	private List<Map<String, Object>> createOutlines( Set<String> bookmarks )
+	{
+		List<Map<String, Object>> outlines = new ArrayList<Map<String, Object>>( );
+		if ( tocTree == null || bookmarks.isEmpty( ) )
+		{
+			return outlines;
+		}
+		TOCNode root = tocTree.getRoot( );
+		if ( root != null )
+		{
+			createOutlines( root, outlines, outlines, bookmarks );
+		}
+		return outlines;
+	}
+
+	private void createOutlines( TOCNode tocNode,
+			List<Map<String, Object>> parent, List<Map<String, Object>> root,
+			Set<String> bookmarks )
+	{
+		if ( counter > MAX_COUNT )
+			return;
+		if ( null == tocNode || null == tocNode.getChildren( ) )
+			return;
+		for ( Iterator i = tocNode.getChildren( ).iterator( ); i.hasNext( ); )
+		{
+			TOCNode node = (TOCNode) i.next( );
+			if ( !bookmarks.contains( node.getBookmark( ) ) )
+			{
+				// TOCHandler adds the children of such a node to the root
+				createOutlines( node, root, root, bookmarks );
+				continue;
+			}
+			Map<String, Object> outline = new HashMap<String, Object>( );
+			outline.put( "Title", node.getDisplayString( ) );
+			outline.put( "Action", "GoTo" );
+			outline.put( "Named", node.getBookmark( ) );
+			counter++;
+			parent.add( outline );
+
+			List<Map<String, Object>> kids = new ArrayList<Map<String, Object>>( );
+			createOutlines( node, kids, root, bookmarks );
+			if ( !kids.isEmpty( ) )
+			{
+				outline.put( "Kids", kids );
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.pptx.tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.eclipse.birt.report.engine.api.IRenderTask;
+import org.eclipse.birt.report.engine.api.IReportDocument;
+import org.eclipse.birt.report.engine.api.IReportEngine;
+import org.eclipse.birt.report.engine.api.RenderOption;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which parts of the OOXML outputs are buffered in the temporary
+ * archive. The parts written directly come before the package relationships
+ * in the zip, the buffered ones are copied after the content types when the
+ * package is saved.
+ */
+public class PartBufferingTest extends DesignToPNG
+{
+
+	private static final String RESOURCE = "org/eclipse/birt/report/engine/emitter/pptx/tests/designs/pptx_project/Report Designs/text.rptdesign";
+
+	private static final String OUTPUT = "./utest/buffering";
+
+	@Test
+	public void testPPTX( ) throws Exception
+	{
+		List<String> entries = render( "pptx" );
+		// the slides and layouts are written directly
+		assertWritten( entries, "ppt/slides/slide1.xml" );
+		assertWritten( entries, "ppt/slideLayouts/slideLayout1.xml" );
+		// the presentation and the masters stay open until the end
+		assertBuffered( entries, "ppt/presentation.xml" );
+		assertBuffered( entries, "ppt/slideMasters/slideMaster1.xml" );
+	}
+
+	@Test
+	public void testDOCX( ) throws Exception
+	{
+		List<String> entries = render( "docx" );
+		// the body is written directly
+		assertWritten( entries, "word/document.xml" );
+		// the styles are written while the body is open
+		assertBuffered( entries, "word/styles.xml" );
+	}
+
+	private void assertWritten( List<String> entries, String entry )
+	{
+		int index = entries.indexOf( entry );
+		assertTrue( entry, index >= 0 );
+		assertTrue( entry, index < entries.indexOf( "_rels/.rels" ) );
+	}
+
+	private void assertBuffered( List<String> entries, String entry )
+	{
+		int index = entries.indexOf( entry );
+		assertTrue( entry, index >= 0 );
+		assertTrue( entry, index > entries.indexOf( "[Content_Types].xml" ) );
+	}
+
+	private List<String> render( String format ) throws Exception
+	{
+		String design = OUTPUT + "/report.rptdesign";
+		String document = OUTPUT + "/output.rptdocument";
+		String output = OUTPUT + "/output." + format;
+		copyResource( RESOURCE, design );
+		IReportEngine engine = getReportEngine( );
+		try
+		{
+			toDocument( engine, design, document );
+			IReportDocument reportDocument = engine
+					.openReportDocument( document );
+			try
+			{
+				IRenderTask task = engine.createRenderTask( reportDocument );
+				try
+				{
+					RenderOption option = new RenderOption( );
+					option.setOutputFormat( format );
+					option.setOutputFileName( output );
+					task.setRenderOption( option );
+					task.render( );
+				}
+				finally
+				{
+					task.close( );
+				}
+			}
+			finally
+			{
+				reportDocument.close( );
+			}
+		}
+		finally
+		{
+			closeReportEngine( engine );
+		}
+		return getEntries( output );
+	}
+
+	private List<String> getEntries( String fileName ) throws IOException
+	{
+		List<String> entries = new ArrayList<String>( );
+		ZipInputStream in = new ZipInputStream( new FileInputStream( fileName ) );
+		try
+		{
+			ZipEntry entry = in.getNextEntry( );
+			while ( entry != null )
+			{
+				entries.add( entry.getName( ) );
+				entry = in.getNextEntry( );
+			}
+		}
+		finally
+		{
+			in.close( );
+		}
+		return entries;
+	}
+
+	private void copyResource( String resource, String fileName )
+			throws IOException
+	{
+		InputStream in = PartBufferingTest.class.getClassLoader( )
+				.getResourceAsStream( resource );
+		if ( in == null )
+		{
+			throw new IOException( resource );
+		}
+		new File( fileName ).getParentFile( ).mkdirs( );
+		FileOutputStream out = new FileOutputStream( fileName );
+		try
+		{
+			byte[] buffer = new byte[4096];
+			int size = in.read( buffer );
+			while ( size > 0 )
+			{
+				out.write( buffer, 0, size );
+				size = in.read( buffer );
+			}
+		}
+		finally
+		{
+			out.close( );
+			in.close( );
+		}
+	}
+}
@@ -35,7 +35,10 @@ public class Slide extends Component
 		String uri = getSlideUri( index );
 		String relationShipType = RelationshipTypes.SLIDE;
 		String type = ContentTypes.SLIDE;
-		initialize( presentation.getPart( ), uri, type, relationShipType );
+		// the slide is written at once, so it goes into the zip directly, and
+		// the images opened while it is written are buffered instead
+		initialize( presentation.getPart( ), uri, type, relationShipType,
+				false );
 		referTo(slideLayout);
 		writer.startWriter( );
 		writer.openTag( TAG_SLIDE );
@@ -18,7 +18,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -45,6 +47,13 @@ public class Package extends PartContainer
 	private ZipOutputStream zipStream;
 	
 	private boolean hasEntryWriter = false;
+
+	/**
+	 * The parts buffered in the temporary archive. They are copied into the
+	 * zip stream when the package is saved, the other parts are written into
+	 * it directly.
+	 */
+	private Set<String> bufferedParts = new HashSet<String>( );
 	
 	public static Package createInstance( OutputStream out, String tempFileDir,
 			int compressionMode )
@@ -87,8 +96,19 @@ public class Package extends PartContainer
 		return uri;
 	}
 
+	/**
+	 * Gets the output stream of a part which is buffered in the temporary
+	 * archive until the package is saved. It is used for the parts which stay
+	 * open while other parts are written, such as the PPTX presentation.
+	 * 
+	 * @param uri
+	 *            the absolute uri of the part
+	 * @return the output stream
+	 * @throws IOException
+	 */
 	OutputStream getOutputStream( String uri ) throws IOException
 	{
+		bufferedParts.add( uri );
 		return archiveWriter.getOutputStream( uri );
 	}
 
@@ -165,14 +185,14 @@ public class Package extends PartContainer
 	private void writePartData( Part part )
 			throws IOException
 	{
-		if ( !part.isCached( ) )
+		String uri = part.getAbsoluteUri( ).toString( );
+		if ( !bufferedParts.contains( uri ) )
 		{
 			return;
 		}
 		InputStream inStream = null;
 		try
 		{
-			String uri = part.getAbsoluteUri( ).toString( );
 			inStream = getInputStream( uri );
 			zipStream.putNextEntry( new ZipEntry( uri.substring( 1 ) ) );
 
@@ -209,11 +229,23 @@ public class Package extends PartContainer
 		writer.close( );
 	}
 
+	/**
+	 * Gets the writer of a part which is written into the zip stream
+	 * directly. The part is buffered in the temporary archive instead if
+	 * another entry is being written, for example an image opened while its
+	 * slide is written.
+	 * 
+	 * @param entry
+	 *            the absolute uri of the part
+	 * @return the writer, which must be closed when the part is written.
+	 * @throws IOException
+	 */
 	OOXmlWriter getEntryWriter( String entry )
 			throws IOException
 	{
 		OOXmlWriter writer = new OOXmlWriter();
-		writer.open(getFinalOutputStream( entry ), "UTF-8");
+		writer.open( hasEntryWriter ? getOutputStream( entry )
+				: getFinalOutputStream( entry ), "UTF-8" );
 		return writer;
 	}
 
@@ -259,6 +291,8 @@ public class Package extends PartContainer
 	private class FinalOutputStream extends FilterOutputStream
 	{
 
+		private boolean closed = false;
+
 		public FinalOutputStream( String entry ) throws IOException
 		{
 			super( zipStream );
@@ -284,6 +318,12 @@ public class Package extends PartContainer
 
 		public void close( )
 		{
+			if ( closed )
+			{
+				// the entry has been closed, another one might be open now
+				return;
+			}
+			closed = true;
 			hasEntryWriter = false;
 			try
 			{
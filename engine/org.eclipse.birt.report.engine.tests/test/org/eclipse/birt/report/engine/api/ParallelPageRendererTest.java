@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.emitter.pdf.merge.PDFFragmentMerger;
+
+import com.ibm.icu.util.ULocale;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.SimpleBookmark;
+import com.lowagie.text.pdf.SimpleNamedDestination;
+
+public class ParallelPageRendererTest extends EngineCase
+{
+
+	final static String REPORT_DESIGN_RESOURCE = "org/eclipse/birt/report/engine/api/mutiple-thread-render.rptdesign";
+
+	public void tearDown( ) throws Exception
+	{
+		removeFile( REPORT_DESIGN );
+		removeFile( REPORT_DOCUMENT );
+		super.tearDown( );
+	}
+
+	public void testSplitPages( )
+	{
+		long[][] ranges = ParallelPageRenderer.splitPages( 10, 3 );
+		assertEquals( 3, ranges.length );
+		assertEquals( 1, ranges[0][0] );
+		assertEquals( 4, ranges[0][1] );
+		assertEquals( 5, ranges[1][0] );
+		assertEquals( 7, ranges[1][1] );
+		assertEquals( 8, ranges[2][0] );
+		assertEquals( 10, ranges[2][1] );
+
+		ranges = ParallelPageRenderer.splitPages( 2, 4 );
+		assertEquals( 2, ranges.length );
+		assertEquals( 1, ranges[0][0] );
+		assertEquals( 1, ranges[0][1] );
+		assertEquals( 2, ranges[1][0] );
+		assertEquals( 2, ranges[1][1] );
+
+		assertEquals( 0, ParallelPageRenderer.splitPages( 0, 4 ).length );
+	}
+
+	public void testRender( ) throws Exception
+	{
+		useDesignFile( REPORT_DESIGN_RESOURCE );
+		createReportDocument( );
+
+		ByteArrayOutputStream[] outs = new ByteArrayOutputStream[3];
+		IRenderOption[] options = new IRenderOption[outs.length];
+		for ( int i = 0; i < outs.length; i++ )
+		{
+			outs[i] = new ByteArrayOutputStream( );
+			options[i] = new PDFRenderOption( );
+			options[i].setOutputFormat( "pdf" );
+			options[i].setOutputStream( outs[i] );
+		}
+		ParallelPageRenderer renderer = new ParallelPageRenderer( engine,
+				REPORT_DOCUMENT );
+		renderer.setThreadCount( 2 );
+		long[][] ranges = renderer.render( options );
+
+		IReportDocument document = engine.openReportDocument( REPORT_DOCUMENT );
+		try
+		{
+			long pageCount = document.getPageCount( );
+			assertEquals( Math.min( pageCount, outs.length ), ranges.length );
+			assertEquals( pageCount, ranges[ranges.length - 1][1] );
+		}
+		finally
+		{
+			document.close( );
+		}
+		for ( int i = 0; i < ranges.length; i++ )
+		{
+			assertTrue( outs[i].size( ) > 0 );
+		}
+	}
+
+	/**
+	 * A renderer which was canceled renders all the fragments of the next
+	 * render.
+	 */
+	public void testRenderAfterCancel( ) throws Exception
+	{
+		useDesignFile( REPORT_DESIGN_RESOURCE );
+		createReportDocument( );
+
+		ParallelPageRenderer renderer = new ParallelPageRenderer( engine,
+				REPORT_DOCUMENT );
+		renderer.setThreadCount( 2 );
+		renderer.cancel( );
+
+		ByteArrayOutputStream[] outs = new ByteArrayOutputStream[2];
+		IRenderOption[] options = new IRenderOption[outs.length];
+		for ( int i = 0; i < outs.length; i++ )
+		{
+			outs[i] = new ByteArrayOutputStream( );
+			options[i] = new PDFRenderOption( );
+			options[i].setOutputFormat( "pdf" );
+			options[i].setOutputStream( outs[i] );
+		}
+		long[][] ranges = renderer.render( options );
+		assertTrue( ranges.length > 0 );
+		for ( int i = 0; i < ranges.length; i++ )
+		{
+			assertTrue( outs[i].size( ) > 0 );
+		}
+	}
+
+	/**
+	 * Merges the fragments and compares the result with the pdf rendered by
+	 * one render task.
+	 */
+	public void testMerge( ) throws Exception
+	{
+		useDesignFile( REPORT_DESIGN_RESOURCE );
+		createReportDocument( );
+
+		ByteArrayOutputStream single = new ByteArrayOutputStream( );
+		IReportDocument document = engine.openReportDocument( REPORT_DOCUMENT );
+		try
+		{
+			IRenderTask task = engine.createRenderTask( document );
+			try
+			{
+				IRenderOption option = new PDFRenderOption( );
+				option.setOutputFormat( "pdf" );
+				option.setOutputStream( single );
+				task.setRenderOption( option );
+				task.render( );
+			}
+			finally
+			{
+				task.close( );
+			}
+		}
+		finally
+		{
+			document.close( );
+		}
+
+		ByteArrayOutputStream[] outs = new ByteArrayOutputStream[3];
+		IRenderOption[] options = new IRenderOption[outs.length];
+		for ( int i = 0; i < outs.length; i++ )
+		{
+			outs[i] = new ByteArrayOutputStream( );
+			options[i] = new PDFRenderOption( );
+			options[i].setOutputFormat( "pdf" );
+			options[i].setOutputStream( outs[i] );
+		}
+		ParallelPageRenderer renderer = new ParallelPageRenderer( engine,
+				REPORT_DOCUMENT );
+		renderer.setThreadCount( 2 );
+		long[][] ranges = renderer.render( options );
+		assertTrue( ranges.length > 1 );
+
+		ByteArrayOutputStream merged = new ByteArrayOutputStream( );
+		InputStream[] fragments = new InputStream[ranges.length];
+		for ( int i = 0; i < ranges.length; i++ )
+		{
+			fragments[i] = new ByteArrayInputStream( outs[i].toByteArray( ) );
+		}
+		PDFFragmentMerger merger = new PDFFragmentMerger( merged );
+		document = engine.openReportDocument( REPORT_DOCUMENT );
+		try
+		{
+			merger.setTOCTree( document.getTOCTree( "pdf", ULocale
+					.getDefault( ) ) );
+			merger.merge( fragments );
+		}
+		finally
+		{
+			document.close( );
+		}
+
+		PdfReader expected = new PdfReader( single.toByteArray( ) );
+		PdfReader result = new PdfReader( merged.toByteArray( ) );
+		try
+		{
+			assertEquals( expected.getNumberOfPages( ), result
+					.getNumberOfPages( ) );
+			Map expectedDestinations = getDestinations( expected );
+			assertFalse( expectedDestinations.isEmpty( ) );
+			assertEquals( expectedDestinations.keySet( ),
+					getDestinations( result ).keySet( ) );
+			List expectedOutlines = SimpleBookmark.getBookmark( expected );
+			assertNotNull( expectedOutlines );
+			assertOutlines( expectedOutlines, SimpleBookmark
+					.getBookmark( result ) );
+		}
+		finally
+		{
+			expected.close( );
+			result.close( );
+		}
+	}
+
+	private Map getDestinations( PdfReader reader )
+	{
+		Map destinations = new HashMap( );
+		destinations.putAll( SimpleNamedDestination.getNamedDestination(
+				reader, false ) );
+		destinations.putAll( SimpleNamedDestination.getNamedDestination(
+				reader, true ) );
+		return destinations;
+	}
+
+	private void assertOutlines( List expected, List result )
+	{
+		if ( expected == null )
+		{
+			assertNull( result );
+			return;
+		}
+		assertNotNull( result );
+		assertEquals( expected.size( ), result.size( ) );
+		for ( int i = 0; i < expected.size( ); i++ )
+		{
+			Map expectedOutline = (Map) expected.get( i );
+			Map outline = (Map) result.get( i );
+			assertEquals( expectedOutline.get( "Title" ), outline.get( "Title" ) );
+			assertEquals( expectedOutline.get( "Named" ), outline.get( "Named" ) );
+			assertOutlines( (List) expectedOutline.get( "Kids" ), (List) outline
+					.get( "Kids" ) );
+		}
+	}
+}
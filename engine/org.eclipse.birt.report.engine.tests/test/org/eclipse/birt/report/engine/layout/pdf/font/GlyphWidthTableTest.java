@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import com.lowagie.text.pdf.BaseFont;
+
+import junit.framework.TestCase;
+
+public class GlyphWidthTableTest extends TestCase
+{
+
+	public void testWidthPoint( ) throws Exception
+	{
+		BaseFont bf = BaseFont.createFont( BaseFont.HELVETICA,
+				BaseFont.WINANSI, false );
+		GlyphWidthTable table = GlyphWidthTable.getTable( bf );
+		assertSame( table, GlyphWidthTable.getTable( bf ) );
+
+		String[] words = new String[]{"", "a", "Report", "WAVE", "\u00e9t\u00e9",
+				"\u20ac100", "\u4e2d\u6587", "caf\u00e9 au lait"};
+		for ( int i = 0; i < words.length; i++ )
+		{
+			assertEquals( bf.getWidthPoint( words[i], 10f ), table
+					.getWidthPoint( bf, words[i], 10f ), 0f );
+			// the second time the widths come from the cache
+			assertEquals( bf.getWidthPoint( words[i], 12.5f ), table
+					.getWidthPoint( bf, words[i], 12.5f ), 0f );
+		}
+	}
+
+	public void testFontInfo( ) throws Exception
+	{
+		BaseFont bf = BaseFont.createFont( BaseFont.TIMES_ROMAN,
+				BaseFont.WINANSI, false );
+		FontInfo fontInfo = new FontInfo( bf, 11f, 0, 400, false );
+		assertEquals( bf.getWidthPoint( "justified text", 11f ), fontInfo
+				.getWordWidth( "justified text" ), 0f );
+		assertEquals( bf.getWidthPoint( "justified text", 11f ),
+				new FontInfo( fontInfo ).getWordWidth( "justified text" ), 0f );
+	}
+}
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.i18n.MessageConstants;
+
+/**
+ * Renders the pages of a report document on several threads. The pages are
+ * split into contiguous ranges, the fragments, and each fragment is rendered
+ * by its own render task into the output of its own render option. The page
+ * hints of the document give the start of every page, so the fragments are
+ * laid out independently, and the page numbers and the total page count are
+ * those of the whole document.
+ * <p>
+ * The fragments are separate outputs, which are not joined by this class.
+ * PDF fragments can be joined with PDFFragmentMerger of the PDF emitter,
+ * org.eclipse.birt.report.engine.emitter.pdf.merge, given the "pdf" TOC of
+ * the document. The outputs of the other formats are not joined.
+ */
+public class ParallelPageRenderer
+{
+
+	private IReportEngine engine;
+
+	private String documentName;
+
+	private int threadCount;
+
+	private Locale locale;
+
+	private Map appContext;
+
+	private List<IRenderTask> runningTasks = new ArrayList<IRenderTask>( );
+
+	private boolean canceled;
+
+	/**
+	 *
+	 * @param engine
+	 *            the report engine
+	 * @param documentName
+	 *            the file name of the report document. Every fragment opens
+	 *            the document itself, so that the fragments share no state.
+	 */
+	public ParallelPageRenderer( IReportEngine engine, String documentName )
+	{
+		this.engine = engine;
+		this.documentName = documentName;
+		this.threadCount = Runtime.getRuntime( ).availableProcessors( );
+	}
+
+	/**
+	 * Sets the count of the fragments rendered at the same time, which is
+	 * the count of the processors by default.
+	 *
+	 * @param threadCount
+	 */
+	public void setThreadCount( int threadCount )
+	{
+		this.threadCount = threadCount;
+	}
+
+	public void setLocale( Locale locale )
+	{
+		this.locale = locale;
+	}
+
+	public void setAppContext( Map appContext )
+	{
+		this.appContext = appContext;
+	}
+
+	/**
+	 * Splits the pages into contiguous ranges of nearly the same size.
+	 *
+	 * @param pageCount
+	 *            the count of the pages
+	 * @param fragmentCount
+	 *            the count of the ranges
+	 * @return the first and the last page of each range. There are fewer
+	 *         ranges than fragmentCount if there are fewer pages.
+	 */
+	public static long[][] splitPages( long pageCount, int fragmentCount )
+	{
+		if ( fragmentCount <= 0 )
+		{
+			throw new IllegalArgumentException( "Illegal fragment count: "
+					+ fragmentCount );
+		}
+		int count = (int) Math.min( pageCount, fragmentCount );
+		long[][] ranges = new long[count][];
+		long firstPage = 1;
+		for ( int i = 0; i < count; i++ )
+		{
+			// the first pageCount % count ranges get one more page
+			long size = pageCount / count + ( i < pageCount % count ? 1 : 0 );
+			ranges[i] = new long[]{firstPage, firstPage + size - 1};
+			firstPage += size;
+		}
+		return ranges;
+	}
+
+	/**
+	 * Renders the pages of the document, split into one fragment per render
+	 * option. Each render option must have its own output stream or output
+	 * file.
+	 *
+	 * @param fragmentOptions
+	 *            the render options of the fragments
+	 * @return the page ranges of the fragments, see splitPages(). Only the
+	 *         first ones of fragmentOptions are used if there are fewer pages
+	 *         than fragments.
+	 * @throws EngineException
+	 *             if any of the fragments fails. The other fragments are
+	 *             still finished.
+	 */
+	public long[][] render( IRenderOption[] fragmentOptions )
+			throws EngineException
+	{
+		if ( fragmentOptions == null || fragmentOptions.length == 0 )
+		{
+			throw new EngineException( MessageConstants.RENDER_OPTION_ERROR );
+		}
+		synchronized ( runningTasks )
+		{
+			// a cancel of the previous render does not apply to this one
+			canceled = false;
+		}
+		IReportDocument document = engine.openReportDocument( documentName );
+		long pageCount;
+		try
+		{
+			pageCount = document.getPageCount( );
+		}
+		finally
+		{
+			document.close( );
+		}
+		long[][] ranges = splitPages( pageCount, fragmentOptions.length );
+
+		ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1,
+				Math.min( threadCount, ranges.length ) ) );
+		try
+		{
+			List<Future<?>> results = new ArrayList<Future<?>>( );
+			for ( int i = 0; i < ranges.length; i++ )
+			{
+				final IRenderOption options = fragmentOptions[i];
+				final String pageRange = ranges[i][0] + "-" + ranges[i][1];
+				results.add( executor.submit( new Runnable( ) {
+
+					public void run( )
+					{
+						renderFragment( options, pageRange );
+					}
+				} ) );
+			}
+			EngineException error = null;
+			for ( int i = 0; i < results.size( ); i++ )
+			{
+				try
+				{
+					results.get( i ).get( );
+				}
+				catch ( InterruptedException ex )
+				{
+					cancel( );
+					Thread.currentThread( ).interrupt( );
+					throw new EngineException(
+							MessageConstants.RENDER_PAGES_ERROR,
+							ranges[i][0] + "-" + ranges[i][1], ex );
+				}
+				catch ( ExecutionException ex )
+				{
+					if ( error == null )
+					{
+						error = toEngineException( ex.getCause( ),
+								ranges[i][0] + "-" + ranges[i][1] );
+					}
+				}
+			}
+			if ( error != null )
+			{
+				throw error;
+			}
+		}
+		finally
+		{
+			executor.shutdown( );
+		}
+		return ranges;
+	}
+
+	/**
+	 * Cancels the fragments which are being rendered, and the fragments not
+	 * started yet are not rendered. The renderer can still be used for
+	 * another render afterwards.
+	 */
+	public void cancel( )
+	{
+		synchronized ( runningTasks )
+		{
+			canceled = true;
+			for ( IRenderTask task : runningTasks )
+			{
+				task.cancel( );
+			}
+		}
+	}
+
+	private void renderFragment( IRenderOption options, String pageRange )
+	{
+		try
+		{
+			IReportDocument document = engine
+					.openReportDocument( documentName );
+			try
+			{
+				IRenderTask task = engine.createRenderTask( document );
+				try
+				{
+					synchronized ( runningTasks )
+					{
+						if ( canceled )
+						{
+							return;
+						}
+						runningTasks.add( task );
+					}
+					if ( locale != null )
+					{
+						task.setLocale( locale );
+					}
+					if ( appContext != null )
+					{
+						task.setAppContext( appContext );
+					}
+					task.setRenderOption( options );
+					task.setPageRange( pageRange );
+					task.render( );
+				}
+				finally
+				{
+					synchronized ( runningTasks )
+					{
+						runningTasks.remove( task );
+					}
+					task.close( );
+				}
+			}
+			finally
+			{
+				document.close( );
+			}
+		}
+		catch ( EngineException ex )
+		{
+			throw new FragmentException( ex );
+		}
+	}
+
+	private EngineException toEngineException( Throwable cause,
+			String pageRange )
+	{
+		if ( cause instanceof FragmentException )
+		{
+			cause = cause.getCause( );
+		}
+		if ( cause instanceof EngineException )
+		{
+			return (EngineException) cause;
+		}
+		if ( cause instanceof BirtException )
+		{
+			return new EngineException( (BirtException) cause );
+		}
+		return new EngineException( MessageConstants.RENDER_PAGES_ERROR,
+				pageRange, cause );
+	}
+
+	/**
+	 * Carries the EngineException of a fragment out of its Runnable.
+	 */
+	private static class FragmentException extends RuntimeException
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		FragmentException( EngineException cause )
+		{
+			super( cause );
+		}
+	}
+}
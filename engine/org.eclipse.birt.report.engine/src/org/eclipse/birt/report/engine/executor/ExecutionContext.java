@@ -33,6 +33,7 @@ import org.eclipse.birt.core.format.DateFormatter;
 import org.eclipse.birt.core.format.NumberFormatter;
 import org.eclipse.birt.core.format.StringFormatter;
 import org.eclipse.birt.core.script.BirtHashMap;
+import org.eclipse.birt.core.script.CompiledScriptCache;
 import org.eclipse.birt.core.script.ICompiledScript;
 import org.eclipse.birt.core.script.IScriptContext;
 import org.eclipse.birt.core.script.ParameterAttribute;
@@ -523,6 +524,7 @@ public class ExecutionContext
 				&& applicationClassLoader instanceof ApplicationClassLoader )
 		{
 			( (ApplicationClassLoader) applicationClassLoader ).close( );
+			CompiledScriptCache.getInstance( ).remove( applicationClassLoader );
 		}
 
 		// RELEASE ALL THE MEMBERS EXPLICTLY AS THIS OBJECT MAY BE REFERENCED BY
@@ -1876,6 +1878,7 @@ public class ExecutionContext
 				&& applicationClassLoader instanceof ApplicationClassLoader )
 		{
 			( (ApplicationClassLoader) applicationClassLoader ).close( );
+			CompiledScriptCache.getInstance( ).remove( applicationClassLoader );
 		}
 		closeClassLoader = false;
 		this.applicationClassLoader = classLoader;
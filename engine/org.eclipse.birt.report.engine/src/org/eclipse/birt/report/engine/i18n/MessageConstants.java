@@ -116,6 +116,7 @@ public class MessageConstants
     public static final String  SKIP_ERROR = "Error.SkipError";
     public static final String  RESULTSET_EXTRACT_ERROR = "Error.ResultsetExtractError";
     public static final String  FAILED_TO_INITIALIZE_EMITTER = "Error.FailedToInitializeEmitter";
+    public static final String  RENDER_PAGES_ERROR = "Error.RenderPagesError";
     
     // Engine Version Info
     public static final String	PDF_CREATOR = "PDFCreator";
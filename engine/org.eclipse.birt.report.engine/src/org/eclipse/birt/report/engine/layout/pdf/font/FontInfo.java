@@ -21,6 +21,8 @@ public class FontInfo
 {
 	private BaseFont bf;
 
+	private GlyphWidthTable widthTable;
+
 	private float fontSize;
 
 	private int fontStyle;
@@ -40,6 +42,10 @@ public class FontInfo
 			boolean simulation )
 	{
 		this.bf = bf;
+		if ( bf != null )
+		{
+			this.widthTable = GlyphWidthTable.getTable( bf );
+		}
 		this.fontStyle = fontStyle;
 		this.simulation = simulation;
 		this.fontSize = fontSize;
@@ -50,6 +56,7 @@ public class FontInfo
 	public FontInfo( FontInfo fontInfo )
 	{
 		this.bf = fontInfo.bf;
+		this.widthTable = fontInfo.widthTable;
 		this.fontStyle = fontInfo.fontStyle;
 		this.simulation = fontInfo.simulation;
 		this.fontSize = fontInfo.fontSize;
@@ -199,7 +206,7 @@ public class FontInfo
 			return word.length( ) * ( fontSize / 2 );
 		}
 
-		return bf.getWidthPoint( word, fontSize );
+		return widthTable.getWidthPoint( bf, word, fontSize );
 	}
 	
 	public int getItalicAdjust( )
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.layout.pdf.font;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.lowagie.text.pdf.BaseFont;
+
+/**
+ * Caches the widths of the characters of a base font, so that the width of a
+ * word can be summed without calling the font for each character of it. The
+ * table of a base font is shared by all the tasks which use the font.
+ * <p>
+ * The widths are kept in pages of 256 characters which are created on demand.
+ * The pages are read and filled without synchronization: a width is an int
+ * and computing it again gives the same value, so a thread at worst asks the
+ * font for a width another thread has just cached.
+ */
+class GlyphWidthTable
+{
+
+	private static final int PAGE_SIZE = 256;
+
+	/**
+	 * key: BaseFont, value: GlyphWidthTable. The tables must not refer to
+	 * their fonts, or the fonts are never released.
+	 */
+	private static final Map tables = new WeakHashMap( );
+
+	/**
+	 * each entry is the width of the character plus 1, 0 if it is not cached
+	 */
+	private final int[][] pages = new int[( Character.MAX_VALUE + 1 )
+			/ PAGE_SIZE][];
+
+	private GlyphWidthTable( )
+	{
+	}
+
+	/**
+	 * Gets the width table of the base font.
+	 *
+	 * @param bf
+	 *            the base font
+	 * @return the width table shared by all the users of the font
+	 */
+	static synchronized GlyphWidthTable getTable( BaseFont bf )
+	{
+		GlyphWidthTable table = (GlyphWidthTable) tables.get( bf );
+		if ( table == null )
+		{
+			table = new GlyphWidthTable( );
+			tables.put( bf, table );
+		}
+		return table;
+	}
+
+	/**
+	 * Gets the width of the text, the same as BaseFont.getWidthPoint(). Kerning
+	 * is not applied.
+	 *
+	 * @param bf
+	 *            the base font of this table
+	 * @param text
+	 *            the text
+	 * @param fontSize
+	 *            the font size
+	 * @return the points of the width
+	 */
+	float getWidthPoint( BaseFont bf, String text, float fontSize )
+	{
+		int total = 0;
+		for ( int i = 0, length = text.length( ); i < length; i++ )
+		{
+			char c = text.charAt( i );
+			if ( Character.isHighSurrogate( c )
+					|| Character.isLowSurrogate( c ) )
+			{
+				// the width of a surrogate pair is not the sum of the widths
+				// of its chars
+				return bf.getWidthPoint( text, fontSize );
+			}
+			total += getWidth( bf, c );
+		}
+		return total * 0.001f * fontSize;
+	}
+
+	/**
+	 * Gets the width of the character in the normalized 1000 units.
+	 *
+	 * @param bf
+	 *            the base font of this table
+	 * @param c
+	 *            the character
+	 * @return the width
+	 */
+	private int getWidth( BaseFont bf, char c )
+	{
+		int[] page = pages[c / PAGE_SIZE];
+		if ( page == null )
+		{
+			page = new int[PAGE_SIZE];
+			pages[c / PAGE_SIZE] = page;
+		}
+		int width = page[c % PAGE_SIZE];
+		if ( width == 0 )
+		{
+			width = bf.getWidth( c ) + 1;
+			page[c % PAGE_SIZE] = width;
+		}
+		return width - 1;
+	}
+}
@@ -66,6 +66,7 @@ public class ReportRunner {
 	protected boolean nestTableInLastCell;
 	protected boolean autoFilter;
 	protected boolean blankLineAfterTopLevelTable;
+	protected boolean streamingXlsx;
 	
 	protected Boolean displayFormulas = null;
 	protected Boolean displayGridlines = null;
@@ -556,6 +557,9 @@ public class ReportRunner {
 		if( templateFile != null ) {
 			renderOptions.setOption( ExcelEmitter.TEMPLATE_FILE, templateFile );
 		}
+		if( streamingXlsx ) {
+			renderOptions.setOption( ExcelEmitter.STREAMING_XLSX, true );
+		}
 		
 		return renderOptions;
 	}
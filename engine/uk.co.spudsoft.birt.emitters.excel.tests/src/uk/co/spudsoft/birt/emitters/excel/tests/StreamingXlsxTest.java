@@ -0,0 +1,118 @@
+/*************************************************************************************
+ * Copyright (c) 2011, 2012, 2013 James Talbut.
+ *  jim-emitters@spudsoft.co.uk
+ *  
+ * All rights reserved. This program and the accompanying materials 
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     James Talbut - Initial implementation.
+ ************************************************************************************/
+
+package uk.co.spudsoft.birt.emitters.excel.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.birt.core.exception.BirtException;
+import org.junit.Test;
+
+public class StreamingXlsxTest extends ReportRunner {
+
+	@Test
+	public void testAutoColWidths() throws BirtException, IOException {
+
+		streamingXlsx = true;
+		InputStream inputStream = runAndRenderReport("AutoColWidths.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertNotNull(workbook);
+
+			assertEquals( 1, workbook.getNumberOfSheets() );
+			assertEquals( "AutoColWidths Test Report", workbook.getSheetAt(0).getSheetName());
+
+			Sheet sheet = workbook.getSheetAt(0);
+			assertEquals(23, this.firstNullRow(sheet));
+
+			assertEquals( 6127,                    sheet.getColumnWidth( 0 ) );
+			assertEquals( 2048,                    sheet.getColumnWidth( 1 ) );
+			assertEquals( 4999,                    sheet.getColumnWidth( 2 ) );
+			assertEquals( 3812,                    sheet.getColumnWidth( 3 ) );
+			assertEquals( 3812,                    sheet.getColumnWidth( 4 ) );
+			assertEquals( 2048,                    sheet.getColumnWidth( 5 ) );
+			assertTrue( ( sheet.getColumnWidth( 6 ) > 3000 ) && ( sheet.getColumnWidth( 6 ) < 3200 ) );
+			assertTrue( ( sheet.getColumnWidth( 7 ) > 2100 ) && ( sheet.getColumnWidth( 7 ) < 2900 ) );
+			assertEquals( 2048,                    sheet.getColumnWidth( 8 ) );
+
+			DataFormatter formatter = new DataFormatter();
+
+			assertEquals( "1",                     formatter.formatCellValue(sheet.getRow(2).getCell(1)));
+			assertEquals( "2019-10-11 13:18:46",   formatter.formatCellValue(sheet.getRow(2).getCell(2)));
+			assertEquals( "3.1415926536",          formatter.formatCellValue(sheet.getRow(2).getCell(3)));
+			assertEquals( "3.1415926536",          formatter.formatCellValue(sheet.getRow(2).getCell(4)));
+			assertEquals( "false",                 formatter.formatCellValue(sheet.getRow(2).getCell(5)));
+
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	@Test
+	public void testMegaXlsx() throws BirtException, IOException {
+
+		XSSFWorkbook expected;
+		InputStream inputStream = runAndRenderReport("MegaSize.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			expected = new XSSFWorkbook(inputStream);
+		} finally {
+			inputStream.close();
+		}
+
+		streamingXlsx = true;
+		inputStream = runAndRenderReport("MegaSize.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertNotNull(workbook);
+
+			assertEquals( expected.getNumberOfSheets(), workbook.getNumberOfSheets() );
+
+			Sheet expectedSheet = expected.getSheetAt(0);
+			Sheet sheet = workbook.getSheetAt(0);
+			assertEquals( expectedSheet.getSheetName(), sheet.getSheetName() );
+			assertEquals( firstNullRow(expectedSheet), firstNullRow(sheet) );
+			assertEquals( lastRow(expectedSheet), lastRow(sheet) );
+			assertEquals( greatestNumColumns(expectedSheet), greatestNumColumns(sheet) );
+
+			for( int col = 0; col < 14; ++col ) {
+				assertEquals( expectedSheet.getColumnWidth( col ), sheet.getColumnWidth( col ) );
+			}
+
+			DataFormatter formatter = new DataFormatter();
+
+			int last = lastRow(sheet);
+			for( int row : new int[] { 0, 1, 2, last / 2, last } ) {
+				for( int col = 0; col < 14; ++col ) {
+					assertEquals( formatter.formatCellValue(expectedSheet.getRow(row).getCell(col)),
+							formatter.formatCellValue(sheet.getRow(row).getCell(col)) );
+				}
+			}
+		} finally {
+			inputStream.close();
+		}
+	}
+
+}
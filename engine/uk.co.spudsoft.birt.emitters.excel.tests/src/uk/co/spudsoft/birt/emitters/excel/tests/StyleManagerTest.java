@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package uk.co.spudsoft.birt.emitters.excel.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Locale;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.birt.report.engine.css.engine.BIRTCSSEngine;
+import org.eclipse.birt.report.engine.css.engine.CSSEngine;
+import org.eclipse.birt.report.engine.css.engine.StyleConstants;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.co.spudsoft.birt.emitters.excel.BirtStyle;
+import uk.co.spudsoft.birt.emitters.excel.FontManager;
+import uk.co.spudsoft.birt.emitters.excel.StyleManager;
+import uk.co.spudsoft.birt.emitters.excel.StyleManagerUtils;
+import uk.co.spudsoft.birt.emitters.excel.StyleManagerXUtils;
+import uk.co.spudsoft.birt.emitters.excel.framework.Logger;
+
+/**
+ * Checks that the StyleManager and the FontManager share one CellStyle or Font
+ * between the BIRT styles which are equivalent, and only between them.
+ */
+public class StyleManagerTest {
+
+	private XSSFWorkbook workbook;
+	private CSSEngine cssEngine;
+	private StyleManager sm;
+	private FontManager fm;
+
+	@Before
+	public void setUp() {
+		workbook = new XSSFWorkbook();
+		cssEngine = new BIRTCSSEngine();
+		Logger log = new Logger( "uk.co.spudsoft.birt.emitters.excel.tests" );
+		sm = new StyleManager( workbook, log, StyleManagerXUtils.getFactory().create( log ), cssEngine, Locale.UK );
+		fm = sm.getFontManager();
+	}
+
+	/**
+	 * Build a new BIRT style, with new CSS values, each time it is called.
+	 */
+	private BirtStyle createBirtStyle() {
+		BirtStyle birtStyle = new BirtStyle( cssEngine );
+		birtStyle.parseString( StyleConstants.STYLE_BACKGROUND_COLOR, "#FFFF00" );
+		birtStyle.parseString( StyleConstants.STYLE_BORDER_TOP_STYLE, "solid" );
+		birtStyle.parseString( StyleConstants.STYLE_BORDER_TOP_WIDTH, "1pt" );
+		birtStyle.parseString( StyleConstants.STYLE_BORDER_TOP_COLOR, "#000000" );
+		birtStyle.parseString( StyleConstants.STYLE_FONT_WEIGHT, "bold" );
+		birtStyle.parseString( StyleConstants.STYLE_COLOR, "#0000FF" );
+		StyleManagerUtils.setNumberFormat( birtStyle, "#,##0.00", null );
+		return birtStyle;
+	}
+
+	@Test
+	public void testEquivalentStylesShared() {
+		CellStyle cellStyle = sm.getStyle( createBirtStyle() );
+		Font font = fm.getFont( createBirtStyle() );
+		int styleCount = workbook.getNumCellStyles();
+		int fontCount = workbook.getNumberOfFonts();
+
+		assertSame( cellStyle, sm.getStyle( createBirtStyle() ) );
+		assertSame( font, fm.getFont( createBirtStyle() ) );
+		assertEquals( font.getIndex(), cellStyle.getFontIndex() );
+		assertEquals( styleCount, workbook.getNumCellStyles() );
+		assertEquals( fontCount, workbook.getNumberOfFonts() );
+	}
+
+	@Test
+	public void testDifferentStylesDistinct() {
+		CellStyle cellStyle = sm.getStyle( createBirtStyle() );
+		Font font = fm.getFont( createBirtStyle() );
+
+		BirtStyle background = createBirtStyle();
+		background.parseString( StyleConstants.STYLE_BACKGROUND_COLOR, "#FF0000" );
+		CellStyle backgroundStyle = sm.getStyle( background );
+		assertNotSame( cellStyle, backgroundStyle );
+		assertSame( font, fm.getFont( background ) );
+
+		BirtStyle colour = createBirtStyle();
+		colour.parseString( StyleConstants.STYLE_COLOR, "#00FF00" );
+		assertNotSame( font, fm.getFont( colour ) );
+		assertNotSame( cellStyle, sm.getStyle( colour ) );
+
+		BirtStyle format = createBirtStyle();
+		StyleManagerUtils.setNumberFormat( format, "#,##0.000", null );
+		CellStyle formatStyle = sm.getStyle( format );
+		assertNotSame( cellStyle, formatStyle );
+		assertNotSame( backgroundStyle, formatStyle );
+
+		BirtStyle border = createBirtStyle();
+		border.parseString( StyleConstants.STYLE_BORDER_TOP_STYLE, "dashed" );
+		CellStyle borderStyle = sm.getStyle( border );
+		assertNotSame( cellStyle, borderStyle );
+		assertNotSame( backgroundStyle, borderStyle );
+		assertNotSame( formatStyle, borderStyle );
+
+		// the distinct styles are cached too
+		assertSame( backgroundStyle, sm.getStyle( background ) );
+		assertSame( formatStyle, sm.getStyle( format ) );
+		assertSame( borderStyle, sm.getStyle( border ) );
+	}
+}
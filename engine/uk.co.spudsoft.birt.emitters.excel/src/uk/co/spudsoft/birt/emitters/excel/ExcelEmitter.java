@@ -84,6 +84,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	public static final String DISPLAYZEROS_PROP = "ExcelEmitter.DisplayZeros";
 
 	public static final String TEMPLATE_FILE = "ExcelEmitter.TemplateFile";
+	public static final String STREAMING_XLSX = "ExcelEmitter.StreamingXlsx";
 	
 	/**
 	 * Logger.
@@ -163,6 +164,40 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	 */
 	protected abstract Workbook openWorkbook( File templateFile ) throws IOException;
 	
+	/**
+	 * Constructs a new workbook to be processed by the emitter, taking the options of the report into account.
+	 * <p>
+	 * The default implementation calls createWorkbook().
+	 * </p>
+	 * @param report
+	 * The report being emitted.
+	 * @return
+	 * The new workbook.
+	 */
+	protected Workbook createWorkbook( IReportContent report ) {
+		return createWorkbook();
+	}
+	
+	/**
+	 * Releases the resources held by a workbook once it has been written, or has failed to be written.
+	 * <p>
+	 * The default implementation does nothing.
+	 * </p>
+	 * @param wb
+	 * The workbook processed by the emitter.
+	 */
+	protected void disposeWorkbook( Workbook wb ) {
+	}
+	
+	/**
+	 * Returns the render options passed to initialize().
+	 * @return
+	 * The render options.
+	 */
+	protected IRenderOption getRenderOptions() {
+		return renderOptions;
+	}
+	
 	
 	public void initialize( IEmitterServices service ) throws BirtException {
 		renderOptions = service.getRenderOption();
@@ -207,7 +242,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 						);			
 			}
 		} else {
-		    wb = createWorkbook();
+		    wb = createWorkbook( report );
 		}
 		
 	    CSSEngine cssEngine = report.getRoot().getCSSEngine();
@@ -275,6 +310,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 					log.debug("ex:", ex.toString());
 				}
 			}
+			disposeWorkbook( handlerState.getWb() );
 			handlerState = null;
 			reportOutputFilename = null;			
 			reportOutputStream = null;
@@ -14,8 +14,8 @@
 
 package uk.co.spudsoft.birt.emitters.excel;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.FontUnderline;
@@ -36,23 +36,37 @@ import org.w3c.dom.css.CSSValue;
 public class FontManager {
 	
 	/**
-	 * FontPair maintains the relationship between a BIRT style and a POI font.
-	 * @author Jim Talbut
+	 * FontKey identifies a POI font by the BIRT style it was created from, with a hash code consistent with fontsEquivalent.
 	 *
 	 */
-	private class FontPair {
-		public BirtStyle birtStyle;
-		public Font poiFont;
+	private static class FontKey {
+		private BirtStyle birtStyle;
+		private int hash;
 		
-		public FontPair(BirtStyle birtStyle, Font poiFont) {
+		public FontKey(BirtStyle birtStyle, int hash) {
 			this.birtStyle = birtStyle;
-			this.poiFont = poiFont;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if( obj instanceof FontKey ) {
+				FontKey other = (FontKey)obj;
+				return ( hash == other.hash ) && fontsEquivalent(birtStyle, other.birtStyle);
+			}
+			return false;
 		}
 	}
 	
 	private Workbook workbook;
 	private StyleManagerUtils smu;
-	private List<FontPair> fonts = new ArrayList<FontPair>();
+	private Map<FontKey, Font> fonts = new HashMap<FontKey, Font>();
+	private Map<Font, BirtStyle> birtStyles = new HashMap<Font, BirtStyle>();
 	private Font defaultFont = null;
 	private CSSEngine cssEngine;
 
@@ -117,7 +131,8 @@ public class FontManager {
 	/**
 	 * Test whether two BIRT styles are equivalent, as far as their font definitions are concerned.
 	 * <br/>
-	 * Every attribute tested in this method must be used in the construction of the font in createFont.
+	 * Every attribute tested in this method must be used in the construction of the font in createFont,
+	 * and in the calculation of fontHashCode.
 	 * @param style1
 	 * The first BIRT style to be compared.
 	 * @param style2
@@ -138,14 +153,31 @@ public class FontManager {
 		return true;
 	}
 	
+	/**
+	 * Calculate a hash code for the font definition of a BIRT style.
+	 * @param birtStyle
+	 * The BIRT style.
+	 * @return
+	 * A hash code that is the same for any two BIRT styles that fontsEquivalent considers equivalent.
+	 */
+	public static int fontHashCode(BirtStyle birtStyle) {
+		int result = 1;
+		for( int i = 0; i < COMPARE_CSS_PROPERTIES.length; ++i ) {
+			result = 31 * result + StyleManagerUtils.cssValueHashCode( birtStyle.getProperty( COMPARE_CSS_PROPERTIES[ i ] ) );
+		}
+		return result;
+	}
+	
 	/**
 	 * Create a new POI Font based upon a BIRT style.
 	 * @param birtStyle
 	 * The BIRT style to base the Font upon.
+	 * @param hash
+	 * The fontHashCode of the BIRT style.
 	 * @return
 	 * The Font whose attributes are described by the BIRT style. 
 	 */
-	private Font createFont(BirtStyle birtStyle) {
+	private Font createFont(BirtStyle birtStyle, int hash) {
 		Font font = workbook.createFont();
 		
 		// Family
@@ -177,7 +209,12 @@ public class FontManager {
 		// Colour
 		smu.addColourToFont( workbook, font, cleanupQuotes( birtStyle.getProperty( StyleConstants.STYLE_COLOR ) ) );
 						
-		fonts.add(new FontPair(birtStyle, font));
+		// The cache keeps its own copy, as the caller may go on to change birtStyle
+		BirtStyle cachedStyle = birtStyle.clone();
+		fonts.put(new FontKey(cachedStyle, hash), font);
+		if( ! birtStyles.containsKey(font) ) {
+			birtStyles.put(font, cachedStyle);
+		}
 		return font;
 	}
 	
@@ -221,20 +258,19 @@ public class FontManager {
 			return getDefaultFont();
 		}
 		
-		for(FontPair fontPair : fonts) {
-			if(fontsEquivalent(birtStyle, fontPair.birtStyle)) {
-				return fontPair.poiFont;
-			}
+		int hash = fontHashCode(birtStyle);
+		Font font = fonts.get(new FontKey(birtStyle, hash));
+		if( font != null ) {
+			return font;
 		}
 		
-		return createFont(birtStyle);
+		return createFont(birtStyle, hash);
 	}
 	
 	private BirtStyle birtStyleFromFont( Font source ) {
-		for(FontPair fontPair : fonts) {
-			if( source.equals(fontPair.poiFont) ) {
-				return fontPair.birtStyle.clone();
-			}
+		BirtStyle birtStyle = birtStyles.get(source);
+		if( birtStyle != null ) {
+			return birtStyle.clone();
 		}
 		
 		return new BirtStyle(cssEngine);
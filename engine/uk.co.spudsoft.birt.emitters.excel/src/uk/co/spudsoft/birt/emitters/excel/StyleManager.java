@@ -13,9 +13,9 @@
 
 package uk.co.spudsoft.birt.emitters.excel;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
@@ -39,23 +39,37 @@ import uk.co.spudsoft.birt.emitters.excel.framework.Logger;
 public class StyleManager {
 	
 	/**
-	 * StylePair maintains the relationship between a BIRT style and a POI style.
-	 * @author Jim Talbut
+	 * StyleKey identifies a POI style by the BIRT style it was created from, with a hash code consistent with stylesEquivalent.
 	 *
 	 */
-	private class StylePair {
-		public BirtStyle birtStyle;
-		public CellStyle poiStyle;
+	private static class StyleKey {
+		private BirtStyle birtStyle;
+		private int hash;
 		
-		public StylePair(BirtStyle birtStyle, CellStyle poiStyle) {
+		public StyleKey(BirtStyle birtStyle, int hash) {
 			this.birtStyle = birtStyle;
-			this.poiStyle = poiStyle;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if( obj instanceof StyleKey ) {
+				StyleKey other = (StyleKey)obj;
+				return ( hash == other.hash ) && stylesEquivalent(birtStyle, other.birtStyle);
+			}
+			return false;
 		}
 	}
 	
 	private Workbook workbook;
 	private FontManager fm;
-	private List<StylePair> styles = new ArrayList<StylePair>();
+	private Map<StyleKey, CellStyle> styles = new HashMap<StyleKey, CellStyle>();
+	private Map<CellStyle, BirtStyle> birtStyles = new HashMap<CellStyle, BirtStyle>();
 	private StyleManagerUtils smu;
 	private CSSEngine cssEngine;
 	private Logger log;
@@ -113,7 +127,8 @@ public class StyleManager {
 	/**
 	 * Test whether two BIRT styles are equivalent, as far as the attributes understood by POI are concerned.
 	 * <br/>
-	 * Every attribute tested in this method must be used in the construction of the CellStyle in createStyle.
+	 * Every attribute tested in this method must be used in the construction of the CellStyle in createStyle,
+	 * and in the calculation of styleHashCode.
 	 * @param style1
 	 * The first BIRT style to be compared.
 	 * @param style2
@@ -121,7 +136,7 @@ public class StyleManager {
 	 * @return
 	 * true if style1 and style2 would produce identical CellStyles if passed to createStyle.
 	 */
-	private boolean stylesEquivalent( BirtStyle style1, BirtStyle style2) {
+	private static boolean stylesEquivalent( BirtStyle style1, BirtStyle style2) {
 		
 		// System.out.println( "style1: " + style1 );
 		// System.out.println( "style2: " + style2 );
@@ -156,14 +171,34 @@ public class StyleManager {
 		return true;
 	}
 	
+	/**
+	 * Calculate a hash code for a BIRT style, as far as the attributes understood by POI are concerned.
+	 * @param birtStyle
+	 * The BIRT style.
+	 * @return
+	 * A hash code that is the same for any two BIRT styles that stylesEquivalent considers equivalent.
+	 */
+	private static int styleHashCode( BirtStyle birtStyle ) {
+		int result = 1;
+		for( int i = 0; i < COMPARE_CSS_PROPERTIES.length; ++i ) {
+			result = 31 * result + StyleManagerUtils.cssValueHashCode( birtStyle.getProperty( COMPARE_CSS_PROPERTIES[ i ] ) );
+		}
+		result = 31 * result + StyleManagerUtils.cssValueHashCode( birtStyle.getProperty( BirtStyle.TEXT_ROTATION ) );
+		result = 31 * result + StyleManagerUtils.dataFormatHashCode( (DataFormatValue)birtStyle.getProperty( StyleConstants.STYLE_DATA_FORMAT ) );
+		result = 31 * result + FontManager.fontHashCode( birtStyle );
+		return result;
+	}
+	
 	/**
 	 * Create a new POI CellStyle based upon a BIRT style.
 	 * @param birtStyle
 	 * The BIRT style to base the CellStyle upon.
+	 * @param hash
+	 * The styleHashCode of the BIRT style.
 	 * @return
 	 * The CellStyle whose attributes are described by the BIRT style. 
 	 */
-	private CellStyle createStyle( BirtStyle birtStyle ) {
+	private CellStyle createStyle( BirtStyle birtStyle, int hash ) {
 		CellStyle poiStyle = workbook.createCellStyle();
 		// Font
 		Font font = fm.getFont(birtStyle);
@@ -202,26 +237,28 @@ public class StyleManager {
 			poiStyle.setRotation( (short) ((FloatValue)rotation).getFloatValue() );
 		}
 
-		styles.add(new StylePair( birtStyle.clone(), poiStyle ) );
+		BirtStyle cachedStyle = birtStyle.clone();
+		styles.put( new StyleKey( cachedStyle, hash ), poiStyle );
+		if( ! birtStyles.containsKey( poiStyle ) ) {
+			birtStyles.put( poiStyle, cachedStyle );
+		}
 		return poiStyle;
 	}
 
 	public CellStyle getStyle( BirtStyle birtStyle ) {
-		for(StylePair stylePair : styles) {
-			if(stylesEquivalent(birtStyle, stylePair.birtStyle)) {
-				// System.err.println( "Equivalent :\n\t" + birtStyle + "\n\t" + stylePair.birtStyle );
-				return stylePair.poiStyle;
-			}
+		int hash = styleHashCode( birtStyle );
+		CellStyle poiStyle = styles.get( new StyleKey( birtStyle, hash ) );
+		if( poiStyle != null ) {
+			return poiStyle;
 		}
 		
-		return createStyle(birtStyle);		
+		return createStyle(birtStyle, hash);		
 	}
 	
 	private BirtStyle birtStyleFromCellStyle( CellStyle source ) {
-		for(StylePair stylePair : styles) {
-			if( source.equals(stylePair.poiStyle) ) {
-				return stylePair.birtStyle.clone();
-			}
+		BirtStyle birtStyle = birtStyles.get( source );
+		if( birtStyle != null ) {
+			return birtStyle.clone();
 		}
 		
 		return new BirtStyle(cssEngine);
@@ -42,6 +42,9 @@ import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder.BorderSide;
 import org.eclipse.birt.report.engine.content.IPageContent;
 import org.eclipse.birt.report.engine.css.engine.StyleConstants;
 import org.eclipse.birt.report.engine.css.engine.value.DataFormatValue;
+import org.eclipse.birt.report.engine.css.engine.value.FloatValue;
+import org.eclipse.birt.report.engine.css.engine.value.ListValue;
+import org.eclipse.birt.report.engine.css.engine.value.RGBColorValue;
 import org.eclipse.birt.report.engine.css.engine.value.StringValue;
 import org.eclipse.birt.report.engine.css.engine.value.css.CSSConstants;
 import org.eclipse.birt.report.engine.ir.DimensionType;
@@ -116,6 +119,68 @@ public abstract class StyleManagerUtils {
         return true;
 	}
 	
+	public static int objectHashCode(Object obj) {
+		return (obj == null) ? 0 : obj.hashCode();
+	}
+	
+	/**
+	 * Calculate a hash code for a CSS value that is consistent with objectsEqual.
+	 * <br/>
+	 * The BIRT CSS values override equals without overriding hashCode, so their own hash codes cannot be used.
+	 * @param value
+	 * The CSS value, which may be null.
+	 * @return
+	 * A hash code that is the same for any two values that objectsEqual considers equal.
+	 */
+	public static int cssValueHashCode( CSSValue value ) {
+		if( value == null ) {
+			return 0;
+		}
+		if( value instanceof FloatValue ) {
+			FloatValue floatValue = (FloatValue)value;
+			float f = floatValue.getFloatValue();
+			// 0.0 and -0.0 are equal, but have different bits
+			return 31 * floatValue.getPrimitiveType() + ( f == 0.0f ? 0 : Float.floatToIntBits( f ) );
+		}
+		if( value instanceof StringValue ) {
+			StringValue stringValue = (StringValue)value;
+			return 31 * stringValue.getPrimitiveType() + objectHashCode( stringValue.getStringValue() );
+		}
+		if( value instanceof RGBColorValue ) {
+			RGBColorValue colour = (RGBColorValue)value;
+			return 31 * ( 31 * cssValueHashCode( colour.getRed() ) + cssValueHashCode( colour.getGreen() ) )
+					+ cssValueHashCode( colour.getBlue() );
+		}
+		if( value instanceof ListValue ) {
+			ListValue listValue = (ListValue)value;
+			int result = 1;
+			for( int i = 0; i < listValue.getLength(); ++i ) {
+				result = 31 * result + cssValueHashCode( listValue.item( i ) );
+			}
+			return result;
+		}
+		// Any other value is only equal to itself
+		return System.identityHashCode( value );
+	}
+	
+	/**
+	 * Calculate a hash code for a data format that is consistent with dataFormatsEquivalent.
+	 * @param dataFormat
+	 * The data format, which may be null.
+	 * @return
+	 * A hash code that is the same for any two data formats that dataFormatsEquivalent considers equivalent.
+	 */
+	public static int dataFormatHashCode( DataFormatValue dataFormat ) {
+		if( dataFormat == null ) {
+			return 0;
+		}
+		int result = objectHashCode( dataFormat.getNumberPattern() );
+		result = 31 * result + objectHashCode( dataFormat.getDatePattern() );
+		result = 31 * result + objectHashCode( dataFormat.getDateTimePattern() );
+		result = 31 * result + objectHashCode( dataFormat.getTimePattern() );
+		return result;
+	}
+	
 	
 	
 	/**
@@ -19,7 +19,9 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.birt.report.engine.content.IReportContent;
 
 /**
  * XlsxEmitter is the leaf class for implementing the ExcelEmitter with XSSFWorkbook.
@@ -43,6 +45,28 @@ public class XlsxEmitter extends ExcelEmitter {
 		return new XSSFWorkbook();
 	}
 	
+	/**
+	 * <p>
+	 * When the ExcelEmitter.StreamingXlsx option is set the workbook is an SXSSFWorkbook that keeps every row in memory
+	 * until the TopLevelTableHandler writes it to a temporary file, which it does once no handler will change the row again.
+	 * </p><p>
+	 * Rich text formatting within a cell is lost in a streamed workbook.
+	 * </p>
+	 */
+	protected Workbook createWorkbook( IReportContent report ) {
+		if( EmitterServices.booleanOption( getRenderOptions(), report, ExcelEmitter.STREAMING_XLSX, false ) ) {
+			log.debug("Streaming rows of the workbook");
+			return new SXSSFWorkbook( -1 );
+		}
+		return createWorkbook();
+	}
+	
+	protected void disposeWorkbook( Workbook wb ) {
+		if( wb instanceof SXSSFWorkbook ) {
+			((SXSSFWorkbook)wb).dispose();
+		}
+	}
+	
 	protected Workbook openWorkbook( File templateFile ) throws IOException {
 		InputStream stream = new FileInputStream( templateFile );
 		try {
@@ -34,10 +34,16 @@ import uk.co.spudsoft.birt.emitters.excel.framework.Logger;
 
 public class AbstractRealTableHandler extends AbstractHandler implements ITableHandler, NestedTableContainer {
 
+	/**
+	 * The number of details rows that the widths of the columns without widths are calculated from.
+	 */
+	protected static final int AUTO_COL_WIDTHS_ROWS = 13;
+
 	protected int startRow;
 	protected int startCol;
 	protected int startDetailsRow = -1;
 	protected int endDetailsRow;
+	private boolean autoColWidthsApplied;
 	
 	private ITableGroupContent currentGroup;
 	private ITableBandContent currentBand;
@@ -135,26 +141,8 @@ public class AbstractRealTableHandler extends AbstractHandler implements ITableH
 		
 		log.debug( "Details rows from ", startDetailsRow, " to ", endDetailsRow );
 		
-		if( ( startDetailsRow > 0 ) && ( endDetailsRow > startDetailsRow ) ) {
-			boolean forceAutoColWidths = EmitterServices.booleanOption( state.getRenderOptions(), table, ExcelEmitter.FORCEAUTOCOLWIDTHS_PROP, false );
-			for( int col = 0; col < table.getColumnCount(); ++col ) {
-				int oldWidth = state.currentSheet.getColumnWidth(col);
-				if( forceAutoColWidths || ( oldWidth == 256 * state.currentSheet.getDefaultColumnWidth() ) ) {
-					FilteredSheet filteredSheet = new FilteredSheet( state.currentSheet, startDetailsRow, Math.min(endDetailsRow, startDetailsRow + 12) );
-			        double calcWidth = SheetUtil.getColumnWidth( filteredSheet, col, false );
-
-			        if (calcWidth > 1.0) {
-			        	calcWidth *= 256;
-			            int maxColumnWidth = 255*256; // The maximum column width for an individual cell is 255 characters
-			            if (calcWidth > maxColumnWidth) {
-			            	calcWidth = maxColumnWidth;
-			            }
-			            if( calcWidth > oldWidth ) {
-			            	state.currentSheet.setColumnWidth( col, (int)(calcWidth) );
-			            }
-			        }
-				}
-			}
+		if( ( ! autoColWidthsApplied ) && ( startDetailsRow > 0 ) && ( endDetailsRow > startDetailsRow ) ) {
+			applyAutoColWidths( state, table, Math.min(endDetailsRow, startDetailsRow + AUTO_COL_WIDTHS_ROWS - 1) );
 		}
 		
 		if( ( table.getBookmark() != null ) && ( state.rowNum > startRow ) && ( table.getColumnCount() > 1 ) ) {
@@ -175,6 +163,55 @@ public class AbstractRealTableHandler extends AbstractHandler implements ITableH
 		}
 	}
 
+	/**
+	 * <p>
+	 * Calculate the widths of the columns without widths from the details rows, unless that has been done already.
+	 * </p><p>
+	 * A streaming sheet writes rows out as the table is processed, so the widths are calculated as soon as the rows
+	 * they are calculated from are complete.
+	 * </p>
+	 * @return
+	 * The first row that the widths are still to be calculated from, or -1 if the widths do not need any more rows.
+	 */
+	protected int applyCompleteAutoColWidths( HandlerState state ) {
+		if( autoColWidthsApplied || ( startDetailsRow <= 0 ) ) {
+			return -1;
+		}
+		int lastDetailsRow = endDetailsRow;
+		if( ( currentBand != null ) && ( currentBand.getBandType() == ITableBandContent.BAND_DETAIL ) ) {
+			lastDetailsRow = state.rowNum - 1;
+		}
+		int lastRow = startDetailsRow + AUTO_COL_WIDTHS_ROWS - 1;
+		if( lastDetailsRow < lastRow ) {
+			return startDetailsRow;
+		}
+		applyAutoColWidths( state, (ITableContent)element, lastRow );
+		return -1;
+	}
+	
+	private void applyAutoColWidths( HandlerState state, ITableContent table, int lastRow ) {
+		boolean forceAutoColWidths = EmitterServices.booleanOption( state.getRenderOptions(), table, ExcelEmitter.FORCEAUTOCOLWIDTHS_PROP, false );
+		for( int col = 0; col < table.getColumnCount(); ++col ) {
+			int oldWidth = state.currentSheet.getColumnWidth(col);
+			if( forceAutoColWidths || ( oldWidth == 256 * state.currentSheet.getDefaultColumnWidth() ) ) {
+				FilteredSheet filteredSheet = new FilteredSheet( state.currentSheet, startDetailsRow, lastRow );
+		        double calcWidth = SheetUtil.getColumnWidth( filteredSheet, col, false );
+
+		        if (calcWidth > 1.0) {
+		        	calcWidth *= 256;
+		            int maxColumnWidth = 255*256; // The maximum column width for an individual cell is 255 characters
+		            if (calcWidth > maxColumnWidth) {
+		            	calcWidth = maxColumnWidth;
+		            }
+		            if( calcWidth > oldWidth ) {
+		            	state.currentSheet.setColumnWidth( col, (int)(calcWidth) );
+		            }
+		        }
+			}
+		}
+		autoColWidthsApplied = true;
+	}
+
 	@Override
 	public void startTableBand(HandlerState state, ITableBandContent band) throws BirtException {
 		if( ( band.getBandType() == ITableBandContent.BAND_DETAIL ) && ( startDetailsRow < 0 ) ) {
@@ -250,7 +250,7 @@ public class PageHandler extends AbstractHandler {
 		state.currentSheet = null;
 	}
 	
-	private CellRangeAddress getMergedRegionBegunBy( Sheet sheet, int row, int col ) {
+	private static CellRangeAddress getMergedRegionBegunBy( Sheet sheet, int row, int col ) {
 		for( int i = 0; i < sheet.getNumMergedRegions(); ++i ) {
 			CellRangeAddress range = sheet.getMergedRegion(i);
 			if( ( range.getFirstColumn() == col ) && ( range.getFirstRow() == row ) ) {
@@ -265,11 +265,13 @@ public class PageHandler extends AbstractHandler {
 	 * Process a CellImage from the images list and place the image on the sheet.
 	 * </p><p>
 	 * This involves changing the row height as necesssary and determining the column spread of the image.
+	 * </p><p>
+	 * The rows covered by the image must not have been written out of a streaming sheet.
 	 * </p>
 	 * @param cellImage
 	 * The image to be placed on the sheet.
 	 */
-	private void processCellImage( HandlerState state, Drawing drawing, CellImage cellImage ) {
+	static void processCellImage( HandlerState state, Drawing drawing, CellImage cellImage ) {
 		Coordinate location = cellImage.location;
 		
 		Cell cell = state.currentSheet.getRow( location.getRow() ).getCell( location.getCol() );
@@ -296,7 +298,7 @@ public class PageHandler extends AbstractHandler {
 		// Allow image to span multiple columns
 		CellRangeAddress mergedRegion = getMergedRegionBegunBy( state.currentSheet, location.getRow(), location.getCol() );
 		if( (cellImage.spanColumns) || ( mergedRegion != null ) ) {
-	        log.debug( "Image size: ", image.getWidth(), " translates as mmWidth = ", mmWidth );
+	        state.getLog().debug( "Image size: ", image.getWidth(), " translates as mmWidth = ", mmWidth );
 	        if( mmWidth > 0) {
 	            double mmAccumulatedWidth = 0;
 	            int endColLimit = cellImage.spanColumns ? 256 : mergedRegion.getLastColumn();
@@ -304,7 +306,7 @@ public class PageHandler extends AbstractHandler {
 	                lastColWidth = ClientAnchorConversions.widthUnits2Millimetres( (short)state.currentSheet.getColumnWidth( endCol ) )
 	                		+ 2.0;
 	                mmAccumulatedWidth += lastColWidth;
-	                log.debug( "lastColWidth = ", lastColWidth, "; mmAccumulatedWidth = ", mmAccumulatedWidth);
+	                state.getLog().debug( "lastColWidth = ", lastColWidth, "; mmAccumulatedWidth = ", mmAccumulatedWidth);
 	            }
 	            if( mmAccumulatedWidth > mmWidth ) {
 	                mmAccumulatedWidth -= lastColWidth;
@@ -13,9 +13,14 @@
 
 package uk.co.spudsoft.birt.emitters.excel.handlers;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.Stack;
 
+import org.apache.poi.ss.usermodel.Drawing;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.report.engine.content.IRowContent;
 import org.eclipse.birt.report.engine.content.ITableContent;
@@ -23,6 +28,8 @@ import org.eclipse.birt.report.engine.content.ITableGroupContent;
 import org.eclipse.birt.report.engine.ir.TableGroupDesign;
 import org.eclipse.birt.report.model.api.elements.DesignChoiceConstants;
 
+import uk.co.spudsoft.birt.emitters.excel.Area;
+import uk.co.spudsoft.birt.emitters.excel.CellImage;
 import uk.co.spudsoft.birt.emitters.excel.EmitterServices;
 import uk.co.spudsoft.birt.emitters.excel.ExcelEmitter;
 import uk.co.spudsoft.birt.emitters.excel.HandlerState;
@@ -75,9 +82,76 @@ public class TopLevelTableHandler extends AbstractRealTableHandler {
 
 	@Override
 	public void startRow(HandlerState state, IRowContent row) throws BirtException {
+		if( state.currentSheet instanceof SXSSFSheet ) {
+			flushRows(state);
+		}
 		state.setHandler(new TopLevelTableRowHandler(log, this, row));
 		state.getHandler().startRow(state, row);
 	}
+	
+	/**
+	 * <p>
+	 * Write the rows that will not be changed again out of a streaming sheet.
+	 * </p><p>
+	 * The last rows are kept, as are the rows of the groups, row spans and column widths that are not complete.
+	 * The images in the rows being written are placed first, using the column widths known at this point.
+	 * </p>
+	 */
+	private void flushRows(HandlerState state) throws BirtException {
+		int limit = state.rowNum - SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+		if( ( groupStarts != null ) && ! groupStarts.isEmpty() ) {
+			limit = Math.min( limit, groupStarts.firstElement() );
+		}
+		for( Area area : state.rowSpans ) {
+			if( area.getY().getRow() >= state.rowNum ) {
+				limit = Math.min( limit, area.getX().getRow() );
+			}
+		}
+		int autoColWidthsRow = applyCompleteAutoColWidths(state);
+		if( autoColWidthsRow >= 0 ) {
+			limit = Math.min( limit, autoColWidthsRow );
+		}
+		// An image can only be placed while all the rows it covers are kept
+		boolean limitChanged = true;
+		while( limitChanged ) {
+			limitChanged = false;
+			for( CellImage cellImage : state.images ) {
+				int imageRow = cellImage.location.getRow();
+				if( ( imageRow < limit ) 
+						&& ( imageRow + state.findRowsSpanned( imageRow, cellImage.location.getCol() ) >= limit ) ) {
+					limit = imageRow;
+					limitChanged = true;
+				}
+			}
+		}
+		if( limit <= 0 ) {
+			return;
+		}
+		
+		Drawing drawing = null;
+		for( Iterator<CellImage> iter = state.images.iterator(); iter.hasNext(); ) {
+			CellImage cellImage = iter.next();
+			if( cellImage.location.getRow() < limit ) {
+				if( drawing == null ) {
+					drawing = state.currentSheet.createDrawingPatriarch();
+				}
+				PageHandler.processCellImage(state, drawing, cellImage);
+				iter.remove();
+			}
+		}
+		
+		SXSSFSheet sheet = (SXSSFSheet)state.currentSheet;
+		log.debug( "Writing out rows before ", limit );
+		try {
+			// Rows that have been removed only make this keep more rows than necessary
+			sheet.flushRows( Math.max( 0, sheet.getLastRowNum() + 1 - limit ) );
+		} catch( IOException ex ) {
+			throw new BirtException( EmitterServices.getPluginName()
+					, "Unable to write rows to the temporary file"
+					, ex
+					);
+		}
+	}
 
 	@Override
 	public void startTableGroup(HandlerState state, ITableGroupContent group) throws BirtException {